@@ -86,6 +86,27 @@ public interface QueryEngineSettingsMBean {
 
     void setFastQuerySize(boolean fastQuerySize);
 
+    /**
+     * Get the number of query results that are read ahead and prefetched from
+     * the node store in one batch.
+     *
+     * @return the number of results to prefetch, or 0 if disabled
+     */
+    @Description("Get the number of query results that are prefetched from the node store in one batch (0 = disabled).")
+    int getPrefetchCount();
+
+    /**
+     * Set the number of query results that are read ahead and prefetched from
+     * the node store in one batch.
+     *
+     * @param prefetchCount the number of results to prefetch, or 0 to disable
+     */
+    @Description("Set the number of query results that are prefetched from the node store in one batch (0 = disabled).")
+    void setPrefetchCount(
+            @Description("the number of results to prefetch, or 0 to disable")
+            @Name("prefetchCount")
+            int prefetchCount);
+
     /**
      * Whether Path restrictions are enabled while figuring out index plan
      *
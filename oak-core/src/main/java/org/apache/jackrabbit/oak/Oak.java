@@ -940,6 +940,16 @@ public class Oak {
             settings.setFastQuerySize(fastQuerySize);
         }
 
+        @Override
+        public int getPrefetchCount() {
+            return settings.getPrefetchCount();
+        }
+
+        @Override
+        public void setPrefetchCount(int prefetchCount) {
+            settings.setPrefetchCount(prefetchCount);
+        }
+
         public String getStrictPathRestriction() {
             return settings.getStrictPathRestriction();
         }
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.oak.plugins.index;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -36,6 +38,7 @@ import org.apache.jackrabbit.oak.spi.query.QueryLimits;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -126,6 +129,24 @@ public class Cursors {
         return new AncestorCursor(c, level, settings);
     }
 
+    /**
+     * Returns a cursor wrapper, which reads up to <code>count</code> rows
+     * ahead of the wrapped cursor <code>c</code> and passes their paths to
+     * {@link PrefetchNodeStore#prefetch(Iterable)} in one call, before the
+     * rows are returned one by one.
+     *
+     * @param c the cursor to wrap.
+     * @param store the node store to prefetch the nodes from.
+     * @param count the number of rows to read ahead. Must be {@code >= 1}.
+     * @return cursor over the same rows as <code>c</code>.
+     */
+    public static Cursor newPrefetchCursor(Cursor c, PrefetchNodeStore store, int count) {
+        checkNotNull(c);
+        checkNotNull(store);
+        checkArgument(count >= 1);
+        return new PrefetchCursor(c, store, count);
+    }
+
     /**
      * A Cursor implementation where the remove method throws an
      * UnsupportedOperationException.
@@ -554,4 +575,55 @@ public class Cursors {
         }
 
     }
+
+    /**
+     * A cursor that reads a batch of rows ahead of the wrapped cursor and
+     * prefetches their nodes from the node store.
+     */
+    private static class PrefetchCursor extends AbstractCursor {
+
+        private final Cursor cursor;
+        private final PrefetchNodeStore store;
+        private final int count;
+        private final Deque<IndexRow> rows = new ArrayDeque<IndexRow>();
+
+        PrefetchCursor(Cursor cursor, PrefetchNodeStore store, int count) {
+            this.cursor = cursor;
+            this.store = store;
+            this.count = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !rows.isEmpty() || cursor.hasNext();
+        }
+
+        @Override
+        public IndexRow next() {
+            if (rows.isEmpty()) {
+                fetchNext();
+            }
+            return rows.remove();
+        }
+
+        private void fetchNext() {
+            List<String> paths = new ArrayList<String>(count);
+            while (rows.size() < count && cursor.hasNext()) {
+                IndexRow row = cursor.next();
+                rows.add(row);
+                if (!row.isVirtualRow()) {
+                    paths.add(row.getPath());
+                }
+            }
+            if (paths.size() > 1) {
+                store.prefetch(paths);
+            }
+        }
+
+        @Override
+        public long getSize(SizePrecision precision, long max) {
+            return cursor.getSize(precision, max);
+        }
+
+    }
 }
@@ -24,6 +24,7 @@ import org.apache.jackrabbit.oak.query.ast.NodeTypeInfoProvider;
 import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -47,15 +48,26 @@ public class ExecutionContext {
 
     private final PermissionProvider permissionProvider;
 
+    private final PrefetchNodeStore prefetchNodeStore;
+
     public ExecutionContext(
             NodeState baseState, Root root,
             QueryEngineSettings settings,
             QueryIndexProvider indexProvider, PermissionProvider permissionProvider) {
+        this(baseState, root, settings, indexProvider, permissionProvider, PrefetchNodeStore.NOOP);
+    }
+
+    public ExecutionContext(
+            NodeState baseState, Root root,
+            QueryEngineSettings settings,
+            QueryIndexProvider indexProvider, PermissionProvider permissionProvider,
+            PrefetchNodeStore prefetchNodeStore) {
         this.baseState = baseState;
         this.root = root;
         this.settings = settings;
         this.indexProvider = indexProvider;
         this.permissionProvider = permissionProvider;
+        this.prefetchNodeStore = prefetchNodeStore;
     }
 
     /**
@@ -106,4 +118,13 @@ public class ExecutionContext {
     public PermissionProvider getPermissionProvider() {
         return permissionProvider;
     }
+
+    /**
+     * @return the node store used to prefetch the nodes of the query result,
+     * or {@link PrefetchNodeStore#NOOP} if prefetching is not supported.
+     */
+    @NotNull
+    public PrefetchNodeStore getPrefetchNodeStore() {
+        return prefetchNodeStore;
+    }
 }
@@ -69,6 +69,14 @@ public class QueryEngineSettingsService {
         )
         boolean fastQuerySize() default false;
 
+        @AttributeDefinition(
+                name = "Prefetch count",
+                description = "Number of query results that are read ahead and prefetched from the node store " +
+                        "in one batch. This avoids a round trip to the backend per result on a DocumentNodeStore. " +
+                        "0 disables prefetching."
+        )
+        int prefetchCount() default DEFAULT_PREFETCH_COUNT;
+
         @AttributeDefinition(
                 name = "Enable Strict Path restrictions for indexes to be used",
                 description = "Whether path restrictions of indexes (excludedPaths / includedPaths) are taken into" +
@@ -92,6 +100,10 @@ public class QueryEngineSettingsService {
     static final String QUERY_FAIL_TRAVERSAL = "queryFailTraversal";
     
     static final String QUERY_FAST_QUERY_SIZE = "fastQuerySize";
+
+    // should be the same as QueryEngineSettings.DEFAULT_PREFETCH_COUNT
+    private static final int DEFAULT_PREFETCH_COUNT = 0;
+    static final String QUERY_PREFETCH_COUNT = "prefetchCount";
     static final String DISABLED_STRICT_PATH_RESTRICTION = "DISABLE";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -125,6 +137,12 @@ public class QueryEngineSettingsService {
         boolean fastQuerySizeSysProp = QueryEngineSettings.DEFAULT_FAST_QUERY_SIZE;
         boolean fastQuerySizeFromConfig = config.fastQuerySize();
         queryEngineSettings.setFastQuerySize(fastQuerySizeFromConfig || fastQuerySizeSysProp);
+
+        if (System.getProperty(QueryEngineSettings.OAK_QUERY_PREFETCH_COUNT) == null) {
+            queryEngineSettings.setPrefetchCount(config.prefetchCount());
+        } else {
+            logMsg(QUERY_PREFETCH_COUNT, QueryEngineSettings.OAK_QUERY_PREFETCH_COUNT);
+        }
         
         queryEngineSettings.setStrictPathRestriction(config.getStrictPathRestrictionsForIndexes());
 
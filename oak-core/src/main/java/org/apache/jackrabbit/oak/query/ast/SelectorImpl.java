@@ -56,6 +56,7 @@ import org.apache.jackrabbit.oak.spi.query.QueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.oak.stats.CounterStats;
@@ -364,6 +365,13 @@ public class SelectorImpl extends SourceImpl {
             planIndexName = index.getIndexName(f, rootState);
             cursor = index.query(f, rootState);
         }
+        int prefetchCount = query.getSettings().getPrefetchCount();
+        ExecutionContext context = query.getExecutionContext();
+        if (prefetchCount > 1 && context != null
+                && context.getPrefetchNodeStore() != PrefetchNodeStore.NOOP) {
+            // read the nodes of the next rows with one call to the node store
+            cursor = Cursors.newPrefetchCursor(cursor, context.getPrefetchNodeStore(), prefetchCount);
+        }
     }
     
     private long startTimer() {
@@ -22,12 +22,14 @@ import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
 import org.junit.Test;
 
 /**
@@ -67,6 +69,31 @@ public class CursorsTest {
         }
     }
 
+    @Test
+    public void prefetchCursor() {
+        final List<String> prefetched = new ArrayList<String>();
+        PrefetchNodeStore store = new PrefetchNodeStore() {
+            @Override
+            public void prefetch(Iterable<String> paths) {
+                StringBuilder buff = new StringBuilder();
+                for (String p : paths) {
+                    buff.append(buff.length() == 0 ? "" : ", ");
+                    buff.append(p);
+                }
+                prefetched.add(buff.toString());
+            }
+        };
+        Cursor a = new SimpleCursor("1:", "/a", "/b", "/c", "/d", "/e");
+        Cursor c = Cursors.newPrefetchCursor(a, store, 2);
+        assertEquals("1:/a", c.next().toString());
+        assertEquals("[/a, /b]", prefetched.toString());
+        assertEquals("1:/b, 1:/c, 1:/d, 1:/e", list(c));
+        assertFalse(c.hasNext());
+        // a single remaining row is not prefetched
+        assertEquals(2, prefetched.size());
+        assertEquals("/c, /d", prefetched.get(1));
+    }
+
     static String list(Cursor c) {
         StringBuilder buff = new StringBuilder();
         while (c.hasNext()) {
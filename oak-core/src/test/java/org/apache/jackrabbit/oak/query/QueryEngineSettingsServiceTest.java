@@ -41,7 +41,8 @@ public class QueryEngineSettingsServiceTest {
     private final Set<String> sysPropNames = ImmutableSet.of(
             QueryEngineSettings.OAK_QUERY_LIMIT_IN_MEMORY,
             QueryEngineSettings.OAK_QUERY_LIMIT_READS,
-            QueryEngineSettings.OAK_QUERY_FAIL_TRAVERSAL
+            QueryEngineSettings.OAK_QUERY_FAIL_TRAVERSAL,
+            QueryEngineSettings.OAK_QUERY_PREFETCH_COUNT
     );
 
     private QueryEngineSettingsService settingsService = new QueryEngineSettingsService();
@@ -74,12 +75,14 @@ public class QueryEngineSettingsServiceTest {
         config.put(QueryEngineSettingsService.QUERY_LIMIT_IN_MEMORY, 142);
         config.put(QueryEngineSettingsService.QUERY_FAIL_TRAVERSAL, true);
         config.put(QueryEngineSettingsService.QUERY_FAST_QUERY_SIZE, true);
+        config.put(QueryEngineSettingsService.QUERY_PREFETCH_COUNT, 20);
 
         context.registerInjectActivateService(settingsService, config);
         assertEquals(100, settings.getLimitReads());
         assertEquals(142, settings.getLimitInMemory());
         assertTrue(settings.getFailTraversal());
         assertTrue(settings.isFastQuerySize());
+        assertEquals(20, settings.getPrefetchCount());
     }
 
     @Test
@@ -89,6 +92,7 @@ public class QueryEngineSettingsServiceTest {
         System.setProperty(QueryEngineSettings.OAK_QUERY_LIMIT_READS, String.valueOf(QueryEngineSettings
                 .DEFAULT_QUERY_LIMIT_READS));
         System.setProperty(QueryEngineSettings.OAK_QUERY_FAIL_TRAVERSAL, "false");
+        System.setProperty(QueryEngineSettings.OAK_QUERY_PREFETCH_COUNT, "0");
 
         QueryEngineSettings settings = new QueryEngineSettings();
         context.registerService(QueryEngineSettingsMBean.class, settings);
@@ -97,6 +101,7 @@ public class QueryEngineSettingsServiceTest {
         config.put(QueryEngineSettingsService.QUERY_LIMIT_READS, 100);
         config.put(QueryEngineSettingsService.QUERY_LIMIT_IN_MEMORY, 142);
         config.put(QueryEngineSettingsService.QUERY_FAIL_TRAVERSAL, true);
+        config.put(QueryEngineSettingsService.QUERY_PREFETCH_COUNT, 20);
 
         context.registerInjectActivateService(settingsService, config);
         assertEquals(QueryEngineSettings
@@ -104,6 +109,7 @@ public class QueryEngineSettingsServiceTest {
         assertEquals(QueryEngineSettings
                 .DEFAULT_QUERY_LIMIT_IN_MEMORY, settings.getLimitInMemory());
         assertFalse(settings.getFailTraversal());
+        assertEquals(0, settings.getPrefetchCount());
     }
 
     private void collectExistingValues() {
@@ -61,6 +61,10 @@ class CheckCommand implements Command {
             .withValuesSeparatedBy(',')
             .defaultsTo("all");
         OptionSpec<?> ioStatistics = parser.accepts("io-stats", "Print I/O statistics (only for oak-segment-tar)");
+        OptionSpec<Integer> prefetchThreads = parser.accepts("prefetch-threads", "number of threads prefetching referenced segments (default: 0, disabled)")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(0);
         OptionSpec<File> dir = parser.nonOptions()
             .describedAs("path")
             .ofType(File.class);
@@ -83,6 +87,7 @@ class CheckCommand implements Command {
             .withCheckpoints(toCheckpointsSet(options, head, cp))
             .withFilterPaths(toSet(options, filter))
             .withIOStatistics(options.has(ioStatistics))
+            .withPrefetchThreads(prefetchThreads.value(options))
             .withOutWriter(new PrintWriter(System.out, true))
             .withErrWriter(new PrintWriter(System.err, true));
 
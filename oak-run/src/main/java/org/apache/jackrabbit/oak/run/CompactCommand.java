@@ -56,11 +56,15 @@ class CompactCommand implements Command {
                 .withOptionalArg()
                 .ofType(Boolean.class);
         OptionSpec<String> compactor = parser.accepts("compactor",
-                "Allow the user to control compactor type to be used. Valid choices are \"classic\" and \"diff\". " +
-                        "While the former is slower, it might be more stable, due to lack of optimisations employed " +
-                        "by the \"diff\" compactor which compacts the checkpoints on top of each other. If not " +
-                        "specified, \"diff\" compactor is used.")
+                "Allow the user to control compactor type to be used. Valid choices are \"classic\", \"diff\" " +
+                        "and \"parallel\". While the former is slower, it might be more stable, due to lack of " +
+                        "optimisations employed by the \"diff\" compactor which compacts the checkpoints on top of " +
+                        "each other. The \"parallel\" compactor works like the \"diff\" compactor but compacts " +
+                        "independent subtrees concurrently. If not specified, \"diff\" compactor is used.")
                 .withRequiredArg().ofType(String.class);
+        OptionSpec<Integer> threads = parser.accepts("threads",
+                "Number of threads used by the \"parallel\" compactor. Only applies to TAR segment stores.")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(1);
         OptionSet options = parser.parse(args);
 
         String path = directoryArg.value(options);
@@ -102,7 +106,8 @@ class CompactCommand implements Command {
                     .withMmap(mmapArg.value(options))
                     .withOs(StandardSystemProperty.OS_NAME.value())
                     .withSegmentCacheSize(Integer.getInteger("cache", 256))
-                    .withGCLogInterval(Long.getLong("compaction-progress-log", 150000));
+                    .withGCLogInterval(Long.getLong("compaction-progress-log", 150000))
+                    .withConcurrency(threads.value(options));
 
             if (options.has(compactor)) {
                 tarBuilder.withCompactorType(CompactorType.fromDescription(compactor.value(options)));
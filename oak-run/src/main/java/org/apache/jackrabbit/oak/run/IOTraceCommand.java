@@ -27,22 +27,32 @@ import static org.apache.jackrabbit.oak.run.Traces.DEFAULT_SEED;
 import static org.apache.jackrabbit.oak.run.Traces.DEPTH;
 import static org.apache.jackrabbit.oak.run.Traces.RANDOM;
 import static org.apache.jackrabbit.oak.segment.FileStoreHelper.isValidFileStoreOrFail;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplay.newIOTraceReplay;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.function.Function;
 
 import joptsimple.ArgumentAcceptingOptionSpec;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import org.apache.jackrabbit.oak.run.commons.Command;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplay;
 import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTracer;
 import org.jetbrains.annotations.NotNull;
 
 /**
- *  Command line utility for collection {@link IOTracer io traces}
+ *  Command line utility for collection {@link IOTracer io traces} and for
+ *  {@link IOTraceReplay replaying} them.
  *
     <pre>
     usage: iotrace path/to/segmentstore <options>
@@ -52,7 +62,9 @@ import org.jetbrains.annotations.NotNull;
     --mmap <Boolean>           use memory mapping for the file store (default: true)
     --output <File>            output file where the IO trace is written to (default: iotrace.csv)
     --path <String>            starting path for the traversal (default: /root)
+    --replay <File>            IO trace to replay instead of collecting a trace
     --segment-cache <Integer>  size of the segment cache in MB (default: 256)
+    --threads <Integer>        number of threads replaying the IO trace (default: 1)
     --trace <Traces> (*)       type of the traversal. Either of [DEPTH, BREADTH]
     </pre>
  */
@@ -65,8 +77,20 @@ class IOTraceCommand implements Command {
         ArgumentAcceptingOptionSpec<Traces> traceOption = optionParser
                 .accepts("trace", "type of the traversal. Either of " + Arrays.toString(Traces.values()))
                 .withRequiredArg()
-                .ofType(Traces.class)
-                .required();
+                .ofType(Traces.class);
+
+        ArgumentAcceptingOptionSpec<File> replayOption = optionParser
+                .accepts("replay", "IO trace to replay instead of collecting a trace")
+                .withRequiredArg()
+                .ofType(File.class);
+
+        ArgumentAcceptingOptionSpec<Integer> threadsOption = optionParser
+                .accepts("threads", "number of threads replaying the IO trace")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+
+        traceOption.requiredUnless(replayOption);
 
         ArgumentAcceptingOptionSpec<File> outputOption = optionParser
                 .accepts("output", "output file where the IO trace is written to")
@@ -132,6 +156,19 @@ class IOTraceCommand implements Command {
             File segmentStore = isValidFileStoreOrFail(new File(options.nonOptionArguments().get(0).toString()));
             Boolean mmap = mmapOption.value(options);
             Integer segmentCache = segmentCacheOption.value(options);
+
+            if (options.has(replayOption)) {
+                File input = replayOption.value(options);
+                Integer threads = threadsOption.value(options);
+                System.out.println(
+                        format("replaying %s on %s", input, segmentStore));
+                System.out.println(
+                        format("mmap=%b, segment cache=%d, threads=%d", mmap, segmentCache, threads));
+
+                replayIOTrace(segmentStore, mmap, segmentCache, threads, input);
+                return;
+            }
+
             File output = outputOption.value(options);
 
             Traces trace = traceOption.value(options);
@@ -155,6 +192,30 @@ class IOTraceCommand implements Command {
         }
     }
 
+    private static void replayIOTrace(
+            @NotNull File segmentStore,
+            boolean mmap,
+            int segmentCacheSize,
+            int threads,
+            @NotNull File input)
+    throws IOException, InterruptedException {
+        Function<IOMonitor, FileStore> factory = ioMonitor -> {
+            try {
+                return fileStoreBuilder(segmentStore)
+                        .withMemoryMapping(mmap)
+                        .withSegmentCacheSize(segmentCacheSize)
+                        .withIOMonitor(ioMonitor)
+                        .build();
+            } catch (InvalidFileStoreVersionException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        try (Reader trace = Files.newBufferedReader(input.toPath())) {
+            System.out.println(newIOTraceReplay(factory, threads).replay(trace));
+        }
+    }
+
     private static void printUsage(
             @NotNull OptionParser parser,
             @NotNull PrintStream err,
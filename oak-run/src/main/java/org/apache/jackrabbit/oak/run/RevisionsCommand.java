@@ -98,6 +98,8 @@ public class RevisionsCommand implements Command {
         final OptionSpec<Long> timeLimit;
         final OptionSpec<Long> olderThan;
         final OptionSpec<Double> delay;
+        final OptionSpec<Integer> parallelism;
+        final OptionSpec<Double> rateLimit;
         final OptionSpec<?> continuous;
         final OptionSpec<?> verbose;
 
@@ -113,6 +115,12 @@ public class RevisionsCommand implements Command {
             delay = parser
                     .accepts("delay", "introduce delays to reduce impact on system").withRequiredArg()
                     .ofType(Double.class).defaultsTo(0.0);
+            parallelism = parser
+                    .accepts("parallelism", "collect deleted documents in shards with n threads").withRequiredArg()
+                    .ofType(Integer.class).defaultsTo(1);
+            rateLimit = parser
+                    .accepts("rateLimit", "modify at most n documents per second").withRequiredArg()
+                    .ofType(Double.class).defaultsTo(0.0);
             timeLimit = parser
                     .accepts("timeLimit", "cancel garbage collection after n seconds").withRequiredArg()
                     .ofType(Long.class).defaultsTo(-1L);
@@ -151,6 +159,14 @@ public class RevisionsCommand implements Command {
             return delay.value(options);
         }
 
+        int getParallelism() {
+            return parallelism.value(options);
+        }
+
+        double getRateLimit() {
+            return rateLimit.value(options);
+        }
+
         long getTimeLimit() {
             return timeLimit.value(options);
         }
@@ -230,6 +246,8 @@ public class RevisionsCommand implements Command {
 
         VersionGCOptions gcOptions = gc.getOptions();
         gcOptions = gcOptions.withDelayFactor(options.getDelay());
+        gcOptions = gcOptions.withParallelism(options.getParallelism());
+        gcOptions = gcOptions.withRateLimit(options.getRateLimit());
         if (options.runOnce()) {
             gcOptions = gcOptions.withMaxIterations(1);
         }
@@ -37,6 +37,8 @@ import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
 
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
@@ -55,10 +57,17 @@ public class AwsArchiveManager implements SegmentArchiveManager {
 
     private final FileStoreMonitor monitor;
 
+    private final RemoteStoreMonitor remoteStoreMonitor;
+
     public AwsArchiveManager(S3Directory directory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) {
+        this(directory, ioMonitor, fileStoreMonitor, new RemoteStoreMonitorAdapter());
+    }
+
+    public AwsArchiveManager(S3Directory directory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor, RemoteStoreMonitor remoteStoreMonitor) {
         this.directory = directory;
         this.ioMonitor = ioMonitor;
         this.monitor = fileStoreMonitor;
+        this.remoteStoreMonitor = remoteStoreMonitor;
     }
 
     @Override
@@ -105,7 +114,7 @@ public class AwsArchiveManager implements SegmentArchiveManager {
 
     @Override
     public SegmentArchiveWriter create(String archiveName) throws IOException {
-        return new AwsSegmentArchiveWriter(directory.withDirectory(archiveName), archiveName, ioMonitor, monitor);
+        return new AwsSegmentArchiveWriter(directory.withDirectory(archiveName), archiveName, ioMonitor, monitor, remoteStoreMonitor);
     }
 
     @Override
@@ -44,7 +44,7 @@ public class AwsPersistence implements SegmentNodeStorePersistence {
     public SegmentArchiveManager createArchiveManager(boolean mmap, boolean offHeapAccess, IOMonitor ioMonitor,
             FileStoreMonitor fileStoreMonitor, RemoteStoreMonitor remoteStoreMonitor) {
         awsContext.setRemoteStoreMonitor(remoteStoreMonitor);
-        return new AwsArchiveManager(awsContext.directory, ioMonitor, fileStoreMonitor);
+        return new AwsArchiveManager(awsContext.directory, ioMonitor, fileStoreMonitor, remoteStoreMonitor);
     }
 
     @Override
@@ -30,6 +30,7 @@ import org.apache.jackrabbit.oak.segment.remote.AbstractRemoteSegmentArchiveWrit
 import org.apache.jackrabbit.oak.segment.remote.RemoteSegmentArchiveEntry;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
 
 public class AwsSegmentArchiveWriter extends AbstractRemoteSegmentArchiveWriter {
 
@@ -44,6 +45,13 @@ public class AwsSegmentArchiveWriter extends AbstractRemoteSegmentArchiveWriter
         this.archiveName = archiveName;
     }
 
+    public AwsSegmentArchiveWriter(S3Directory directory, String archiveName, IOMonitor ioMonitor,
+            FileStoreMonitor monitor, RemoteStoreMonitor remoteStoreMonitor) {
+        super(ioMonitor, monitor, remoteStoreMonitor);
+        this.directory = directory;
+        this.archiveName = archiveName;
+    }
+
     @Override
     public String getName() {
         return archiveName;
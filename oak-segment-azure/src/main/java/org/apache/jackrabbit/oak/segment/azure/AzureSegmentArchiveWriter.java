@@ -23,9 +23,17 @@ import static org.apache.jackrabbit.oak.segment.remote.RemoteUtilities.OFF_HEAP;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.CloudBlobDirectory;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
@@ -33,11 +41,22 @@ import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import org.apache.jackrabbit.oak.commons.Buffer;
 import org.apache.jackrabbit.oak.segment.remote.AbstractRemoteSegmentArchiveWriter;
 import org.apache.jackrabbit.oak.segment.remote.RemoteSegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.remote.queue.SegmentWriteAction;
+import org.apache.jackrabbit.oak.segment.remote.queue.SegmentWriteQueue.PartialBatchException;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
 
 public class AzureSegmentArchiveWriter extends AbstractRemoteSegmentArchiveWriter {
 
+    /**
+     * Number of threads uploading the segments of a batch concurrently, shared
+     * by all the archive writers
+     */
+    private static final int BATCH_UPLOAD_THREADS = Integer.getInteger("oak.segment.azure.batch.threads", 8);
+
+    private static final ExecutorService BATCH_UPLOAD_EXECUTOR = newBatchUploadExecutor();
+
     private final CloudBlobDirectory archiveDirectory;
 
     public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor) {
@@ -45,6 +64,11 @@ public class AzureSegmentArchiveWriter extends AbstractRemoteSegmentArchiveWrite
         this.archiveDirectory = archiveDirectory;
     }
 
+    public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor, RemoteStoreMonitor remoteStoreMonitor) {
+        super(ioMonitor, monitor, remoteStoreMonitor);
+        this.archiveDirectory = archiveDirectory;
+    }
+
     @Override
     public String getName() {
         return AzureUtilities.getName(archiveDirectory);
@@ -68,6 +92,47 @@ public class AzureSegmentArchiveWriter extends AbstractRemoteSegmentArchiveWrite
         ioMonitor.afterSegmentWrite(new File(blob.getName()), msb, lsb, size, stopwatch.elapsed(TimeUnit.NANOSECONDS));
     }
 
+    /**
+     * Uploads the segments of a batch concurrently and reports the segments
+     * which failed to upload, such that the others are not uploaded again.
+     */
+    @Override
+    protected void doWriteArchiveEntries(List<SegmentWriteAction> segments) throws IOException {
+        if (segments.size() < 2) {
+            super.doWriteArchiveEntries(segments);
+            return;
+        }
+        List<Future<?>> uploads = new ArrayList<>(segments.size());
+        for (SegmentWriteAction segment : segments) {
+            uploads.add(BATCH_UPLOAD_EXECUTOR.submit(() -> {
+                segment.passTo(this::doWriteArchiveEntry);
+                return null;
+            }));
+        }
+        List<SegmentWriteAction> failed = new ArrayList<>();
+        Throwable cause = null;
+        for (int i = 0; i < uploads.size(); i++) {
+            try {
+                uploads.get(i).get();
+            } catch (ExecutionException e) {
+                failed.add(segments.get(i));
+                if (cause == null) {
+                    cause = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.addAll(segments.subList(i, segments.size()));
+                if (cause == null) {
+                    cause = e;
+                }
+                break;
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new PartialBatchException(failed, cause);
+        }
+    }
+
     @Override
     protected Buffer doReadArchiveEntry(RemoteSegmentArchiveEntry indexEntry)  throws IOException {
         Buffer buffer;
@@ -103,6 +168,14 @@ public class AzureSegmentArchiveWriter extends AbstractRemoteSegmentArchiveWrite
         // do nothing
     }
 
+    private static ExecutorService newBatchUploadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(BATCH_UPLOAD_THREADS, BATCH_UPLOAD_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("azure-segment-upload-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private CloudBlockBlob getBlob(String name) throws IOException {
         try {
             return archiveDirectory.getBlockBlobReference(name);
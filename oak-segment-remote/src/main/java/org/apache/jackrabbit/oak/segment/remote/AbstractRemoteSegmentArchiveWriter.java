@@ -21,12 +21,15 @@ import org.apache.jackrabbit.oak.segment.remote.queue.SegmentWriteAction;
 import org.apache.jackrabbit.oak.segment.remote.queue.SegmentWriteQueue;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -46,11 +49,31 @@ public abstract class AbstractRemoteSegmentArchiveWriter implements SegmentArchi
 
     protected volatile boolean created = false;
 
+    /**
+     * Number of entries at the time of the last flush
+     */
+    private int flushedEntries;
+
     public AbstractRemoteSegmentArchiveWriter(IOMonitor ioMonitor, FileStoreMonitor monitor) {
+        this(ioMonitor, monitor, new RemoteStoreMonitorAdapter());
+    }
+
+    public AbstractRemoteSegmentArchiveWriter(IOMonitor ioMonitor, FileStoreMonitor monitor, RemoteStoreMonitor remoteStoreMonitor) {
         this.ioMonitor = ioMonitor;
         this.monitor = monitor;
-        this.queue = SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(this::doWriteArchiveEntry))
-                : Optional.empty();
+        this.queue = SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(new SegmentWriteQueue.SegmentConsumer() {
+
+            @Override
+            public void consume(RemoteSegmentArchiveEntry indexEntry, byte[] data, int offset, int size) throws IOException {
+                doWriteArchiveEntry(indexEntry, data, offset, size);
+            }
+
+            @Override
+            public void consume(List<SegmentWriteAction> segments) throws IOException {
+                doWriteArchiveEntries(segments);
+            }
+
+        }, remoteStoreMonitor)) : Optional.empty();
     }
 
     @Override
@@ -142,11 +165,19 @@ public abstract class AbstractRemoteSegmentArchiveWriter implements SegmentArchi
         return queue.map(SegmentWriteQueue::isEmpty).orElse(true);
     }
 
+    /**
+     * Flushes the queue. The {@link #afterQueueFlushed()} hook is skipped
+     * when no segment has been written since the last flush.
+     */
     @Override
     public void flush() throws IOException {
         if (queue.isPresent()) { // required to handle IOException
             queue.get().flush();
-            afterQueueFlushed();
+            int written = entries;
+            if (written != flushedEntries) {
+                afterQueueFlushed();
+                flushedEntries = written;
+            }
         }
     }
 
@@ -159,6 +190,19 @@ public abstract class AbstractRemoteSegmentArchiveWriter implements SegmentArchi
      */
     protected abstract void doWriteArchiveEntry(RemoteSegmentArchiveEntry indexEntry, byte[] data, int offset, int size) throws IOException;
 
+    /**
+     * Writes a batch of adjacent segments to the remote storage. The segments
+     * which could not be written are reported by throwing a
+     * {@link SegmentWriteQueue.PartialBatchException}, such that only these are
+     * retried. The default implementation writes the segments one by one and
+     * stops at the first failure.
+     * @param segments, the segments to write
+     */
+    protected void doWriteArchiveEntries(List<SegmentWriteAction> segments) throws IOException {
+        SegmentWriteQueue.SegmentConsumer consumer = this::doWriteArchiveEntry;
+        consumer.consume(segments);
+    }
+
     /**
      * Reads a segment from remote storage into a buffer.
      * @param indexEntry, the archive index entry to read
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.segment.remote.persistentcache;
 import static org.apache.jackrabbit.oak.segment.remote.persistentcache.Configuration.PID;
 import static org.apache.jackrabbit.oak.segment.remote.persistentcache.PersistentDiskCache.DEFAULT_MAX_CACHE_SIZE_MB;
 import static org.apache.jackrabbit.oak.segment.remote.persistentcache.PersistentRedisCache.DEFAULT_REDIS_CACHE_EXPIRE_SECONDS;
+import static org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.AdmissionFilter.DEFAULT_MIN_FREQUENCY;
 
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -32,6 +33,31 @@ public @interface Configuration {
 
     String PID = "org.apache.jackrabbit.oak.segment.remote.RemotePersistentCacheService";
 
+    @AttributeDefinition(
+            name = "Memory cache",
+            description = "Boolean value indicating that a small in-memory cache should be used in front of the disk and redis caches"
+    )
+    boolean memoryCacheEnabled() default false;
+
+    @AttributeDefinition(
+            name = "Memory cache maximum size",
+            description = "Memory cache size (in MB). Default value is " + SegmentMemoryCache.DEFAULT_MAX_CACHE_SIZE_MB
+    )
+    int memoryCacheMaxSizeMB() default SegmentMemoryCache.DEFAULT_MAX_CACHE_SIZE_MB;
+
+    @AttributeDefinition(
+            name = "Cache admission filter",
+            description = "Boolean value indicating that the disk and redis caches should only admit segments read at least " +
+                    "'Cache admission minimum frequency' times recently, such that large traversals do not evict frequently used segments"
+    )
+    boolean admissionFilterEnabled() default false;
+
+    @AttributeDefinition(
+            name = "Cache admission minimum frequency",
+            description = "Number of recent reads of a segment before it is admitted to the disk and redis caches. Default value is " + DEFAULT_MIN_FREQUENCY
+    )
+    int admissionMinFrequency() default DEFAULT_MIN_FREQUENCY;
+
     @AttributeDefinition(
             name = "Disk cache persistence",
             description = "Boolean value indicating that the local disk persisted cache should be used for segment store"
@@ -25,6 +25,8 @@ import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.segment.spi.monitor.RoleStatisticsProvider;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.AbstractPersistentCache;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.AdmissionFilter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.PersistentCache;
 import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
 import org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils;
@@ -39,12 +41,26 @@ import org.osgi.service.component.annotations.Reference;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 @Component(
         configurationPolicy = ConfigurationPolicy.REQUIRE,
         configurationPid = {Configuration.PID})
 public class RemotePersistentCacheService {
+    /**
+     * Estimated average size of a segment, used to size the admission filters.
+     */
+    private static final int AVERAGE_SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * The redis cache is bounded by the expiry of its entries rather than
+     * by size. Its admission filter tracks as many segments as a cache of
+     * this size would hold.
+     */
+    private static final int REDIS_ADMISSION_FILTER_SIZE_MB = 4096;
+
     private ServiceRegistration registration;
 
     private PersistentCache persistentCache;
@@ -90,35 +106,48 @@ public class RemotePersistentCacheService {
         DiskCacheIOMonitor diskCacheIOMonitor = new DiskCacheIOMonitor(roleStatisticsProvider);
         RedisCacheIOMonitor redisCacheIOMonitor = new RedisCacheIOMonitor(roleStatisticsProvider);
 
-        if (configuration.diskCacheEnabled()) {
-            PersistentDiskCache persistentDiskCache = new PersistentDiskCache(new File(configuration.diskCacheDirectory()), configuration.diskCacheMaxSizeMB(), diskCacheIOMonitor);
-            closer.register(persistentDiskCache);
-
-            CacheStatsMBean diskCacheStatsMBean = persistentDiskCache.getCacheStats();
-            registerCloseable(registerMBean(CacheStatsMBean.class, diskCacheStatsMBean, CacheStats.TYPE, diskCacheStatsMBean.getName()));
+        // The cache tiers ordered from the fastest to the slowest one
+        List<AbstractPersistentCache> tiers = new ArrayList<>();
 
-            if (configuration.redisCacheEnabled()) {
-                PersistentRedisCache redisCache = new PersistentRedisCache(configuration.redisCacheHost(), configuration.redisCachePort(), configuration.redisCacheExpireSeconds(), configuration.redisSocketTimeout(), configuration.redisConnectionTimeout(),
-                        configuration.redisMinConnections(), configuration.redisMaxConnections(), configuration.redisMaxTotalConnections(), configuration.redisDBIndex(), redisCacheIOMonitor);
-                persistentDiskCache.linkWith(redisCache);
-                closer.register(redisCache);
+        if (configuration.memoryCacheEnabled()) {
+            tiers.add(new SegmentMemoryCache(configuration.memoryCacheMaxSizeMB()));
+        }
 
-                CacheStatsMBean redisCacheStatsMBean = redisCache.getCacheStats();
-                registerCloseable(registerMBean(CacheStatsMBean.class, redisCacheStatsMBean, CacheStats.TYPE, redisCacheStatsMBean.getName()));
+        if (configuration.diskCacheEnabled()) {
+            PersistentDiskCache persistentDiskCache = new PersistentDiskCache(new File(configuration.diskCacheDirectory()), configuration.diskCacheMaxSizeMB(), diskCacheIOMonitor);
+            if (configuration.admissionFilterEnabled()) {
+                persistentDiskCache.setAdmissionFilter(newAdmissionFilter(configuration, configuration.diskCacheMaxSizeMB()));
             }
+            tiers.add(persistentDiskCache);
+        }
 
-            return persistentDiskCache;
-        } else if (configuration.redisCacheEnabled()) {
+        if (configuration.redisCacheEnabled()) {
             PersistentRedisCache redisCache = new PersistentRedisCache(configuration.redisCacheHost(), configuration.redisCachePort(), configuration.redisCacheExpireSeconds(), configuration.redisSocketTimeout(), configuration.redisConnectionTimeout(),
                     configuration.redisMinConnections(), configuration.redisMaxConnections(), configuration.redisMaxTotalConnections(), configuration.redisDBIndex(), redisCacheIOMonitor);
-            closer.register(redisCache);
+            if (configuration.admissionFilterEnabled()) {
+                redisCache.setAdmissionFilter(newAdmissionFilter(configuration, REDIS_ADMISSION_FILTER_SIZE_MB));
+            }
+            tiers.add(redisCache);
+        }
+
+        AbstractPersistentCache previous = null;
+        for (AbstractPersistentCache tier : tiers) {
+            closer.register(tier);
 
-            CacheStatsMBean redisCacheStatsMBean = redisCache.getCacheStats();
-            registerCloseable(registerMBean(CacheStatsMBean.class, redisCacheStatsMBean, CacheStats.TYPE, redisCacheStatsMBean.getName()));
+            CacheStatsMBean cacheStatsMBean = tier.getCacheStats();
+            registerCloseable(registerMBean(CacheStatsMBean.class, cacheStatsMBean, CacheStats.TYPE, cacheStatsMBean.getName()));
 
-            return redisCache;
+            if (previous != null) {
+                previous.linkWith(tier);
+            }
+            previous = tier;
         }
 
-        return null;
+        return tiers.isEmpty() ? null : tiers.get(0);
+    }
+
+    private static AdmissionFilter newAdmissionFilter(Configuration configuration, int cacheMaxSizeMB) {
+        long expectedSegments = cacheMaxSizeMB * 1024L * 1024L / AVERAGE_SEGMENT_SIZE;
+        return new AdmissionFilter((int) Math.max(1024, Math.min(1 << 24, expectedSegments)), Math.max(1, configuration.admissionMinFrequency()));
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.oak.segment.remote.persistentcache;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.AbstractPersistentCache;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.AdmissionFilter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.SegmentCacheStats;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small in-memory tier in front of the disk and redis caches. Segments
+ * are evicted in LRU order. A segment loaded after a cache miss is only
+ * admitted if it was read more often recently than the segment it would
+ * evict, see {@link AdmissionFilter}.
+ */
+public class SegmentMemoryCache extends AbstractPersistentCache {
+    public static final int DEFAULT_MAX_CACHE_SIZE_MB = 64;
+    public static final String NAME = "Segment Memory Cache";
+
+    /**
+     * Estimated average size of a segment, used to size the admission filter.
+     */
+    private static final int AVERAGE_SEGMENT_SIZE = 64 * 1024;
+
+    private final long maxCacheSizeBytes;
+
+    private final Map<UUID, Buffer> segments = new LinkedHashMap<>(16, 0.75f, true);
+
+    final AtomicLong evictionCount = new AtomicLong();
+
+    public SegmentMemoryCache(int cacheMaxSizeMB) {
+        // Segments are written synchronously, so no executor is needed
+        super(0);
+        this.maxCacheSizeBytes = cacheMaxSizeMB * 1024L * 1024L;
+        this.admissionFilter = new AdmissionFilter((int) Math.max(1024, Math.min(Integer.MAX_VALUE, maxCacheSizeBytes / AVERAGE_SEGMENT_SIZE)), 1);
+
+        segmentCacheStats = new SegmentCacheStats(
+                NAME,
+                () -> maxCacheSizeBytes,
+                this::getElementCount,
+                () -> cacheSize.get(),
+                () -> evictionCount.get());
+    }
+
+    private long getElementCount() {
+        synchronized (segments) {
+            return segments.size();
+        }
+    }
+
+    @Override
+    protected Buffer readSegmentInternal(long msb, long lsb) {
+        synchronized (segments) {
+            Buffer segment = segments.get(new UUID(msb, lsb));
+            return segment == null ? null : segment.duplicate();
+        }
+    }
+
+    @Override
+    public boolean containsSegment(long msb, long lsb) {
+        synchronized (segments) {
+            return segments.containsKey(new UUID(msb, lsb));
+        }
+    }
+
+    /**
+     * Admit a segment if there is still space in the cache or if it was
+     * read more often recently than the least recently used segment.
+     */
+    @Override
+    protected boolean admit(long msb, long lsb) {
+        synchronized (segments) {
+            if (cacheSize.get() < maxCacheSizeBytes || segments.isEmpty()) {
+                return true;
+            }
+            UUID victim = segments.keySet().iterator().next();
+            return admissionFilter.admit(msb, lsb, victim.getMostSignificantBits(), victim.getLeastSignificantBits());
+        }
+    }
+
+    @Override
+    public void writeSegment(long msb, long lsb, Buffer buffer) {
+        int size = buffer.remaining();
+        if (size > maxCacheSizeBytes) {
+            return;
+        }
+
+        UUID id = new UUID(msb, lsb);
+        synchronized (segments) {
+            if (segments.containsKey(id)) {
+                return;
+            }
+            Iterator<Buffer> iterator = segments.values().iterator();
+            while (cacheSize.get() + size > maxCacheSizeBytes && iterator.hasNext()) {
+                cacheSize.addAndGet(-iterator.next().remaining());
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+            segments.put(id, buffer.duplicate());
+            cacheSize.addAndGet(size);
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        // segments are evicted when writing
+    }
+}
@@ -32,6 +32,8 @@ public class SegmentWriteAction {
 
     private final int length;
 
+    private final long queuedAt = System.nanoTime();
+
     public SegmentWriteAction(RemoteSegmentArchiveEntry indexEntry, byte[] buffer, int offset, int length) {
         this.indexEntry = indexEntry;
 
@@ -47,6 +49,17 @@ public class SegmentWriteAction {
         return new UUID(indexEntry.getMsb(), indexEntry.getLsb());
     }
 
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} when this action was created
+     */
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
     public Buffer toBuffer() {
         return Buffer.wrap(buffer, offset, length);
     }
@@ -17,11 +17,16 @@
 package org.apache.jackrabbit.oak.segment.remote.queue;
 
 import org.apache.jackrabbit.oak.segment.remote.RemoteSegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingDeque;
@@ -33,12 +38,48 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * A queue uploading segments to the remote storage in the background.
+ * <p>
+ * A pool of threads takes the queued segments and passes them in batches to
+ * the {@link SegmentConsumer}. A batch contains up to {@link #BATCH_SIZE}
+ * adjacent segments, but only when there are more queued segments than
+ * threads, such that batching never reduces the number of concurrent uploads.
+ * The number of bytes of the segments which are queued or being uploaded is
+ * bounded by {@link #MAX_IN_FLIGHT_BYTES}.
+ * <p>
+ * When an upload fails, the queue is broken: adding new segments blocks and
+ * a single recovery thread retries the upload of the failed segments with an
+ * exponential backoff until it succeeds. The segments of a batch that were
+ * uploaded before the failure are not retried when the consumer reports the
+ * failed ones with a {@link PartialBatchException}.
+ */
 public class SegmentWriteQueue implements Closeable {
 
     public static final int THREADS = Integer.getInteger("oak.segment.remote.threads", 5);
 
     private static final int QUEUE_SIZE = Integer.getInteger("oak.segment.remote.queue.size", 20);
 
+    /**
+     * Maximum number of segments passed to the {@link SegmentConsumer} at once
+     */
+    private static final int BATCH_SIZE = Integer.getInteger("oak.segment.remote.batch.size", 8);
+
+    /**
+     * Maximum number of bytes of the segments which are queued or being uploaded
+     */
+    private static final long MAX_IN_FLIGHT_BYTES = Long.getLong("oak.segment.remote.inFlightBytes", 64L * 1024 * 1024);
+
+    /**
+     * Delay in milliseconds before retrying a failed upload for the first time
+     */
+    private static final long INITIAL_BACKOFF = Long.getLong("oak.segment.remote.backoff.initial", 1000);
+
+    /**
+     * Maximum delay in milliseconds between retries of a failed upload
+     */
+    private static final long MAX_BACKOFF = Long.getLong("oak.segment.remote.backoff.max", 30000);
+
     private static final Logger log = LoggerFactory.getLogger(SegmentWriteQueue.class);
 
     private final BlockingDeque<SegmentWriteAction> queue;
@@ -51,6 +92,24 @@ public class SegmentWriteQueue implements Closeable {
 
     private final SegmentConsumer writer;
 
+    private final RemoteStoreMonitor monitor;
+
+    private final int threadNo;
+
+    private final int batchSize;
+
+    private final long maxInFlightBytes;
+
+    private final long initialBackoff;
+
+    private final long maxBackoff;
+
+    /**
+     * Number of bytes of the segments in {@link #segmentsByUUID}, guarded by
+     * the monitor of {@link #segmentsByUUID}.
+     */
+    private long inFlightBytes;
+
     private volatile boolean shutdown;
 
     private final Object brokenMonitor = new Object();
@@ -58,11 +117,26 @@ public class SegmentWriteQueue implements Closeable {
     private volatile boolean broken;
 
     public SegmentWriteQueue(SegmentConsumer writer) {
-        this(writer, QUEUE_SIZE, THREADS);
+        this(writer, new RemoteStoreMonitorAdapter());
+    }
+
+    public SegmentWriteQueue(SegmentConsumer writer, RemoteStoreMonitor monitor) {
+        this(writer, monitor, QUEUE_SIZE, THREADS, BATCH_SIZE, MAX_IN_FLIGHT_BYTES, INITIAL_BACKOFF, MAX_BACKOFF);
     }
 
     SegmentWriteQueue(SegmentConsumer writer, int queueSize, int threadNo) {
+        this(writer, new RemoteStoreMonitorAdapter(), queueSize, threadNo, BATCH_SIZE, MAX_IN_FLIGHT_BYTES, INITIAL_BACKOFF, MAX_BACKOFF);
+    }
+
+    SegmentWriteQueue(SegmentConsumer writer, RemoteStoreMonitor monitor, int queueSize, int threadNo, int batchSize,
+            long maxInFlightBytes, long initialBackoff, long maxBackoff) {
         this.writer = writer;
+        this.monitor = monitor;
+        this.threadNo = threadNo;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = Math.max(initialBackoff, maxBackoff);
         segmentsByUUID = new ConcurrentHashMap<>();
         flushLock = new ReentrantReadWriteLock();
 
@@ -81,25 +155,30 @@ public class SegmentWriteQueue implements Closeable {
                 if (shutdown) {
                     break;
                 }
-                consume();
+                consume(nextBatchSize());
             } catch (SegmentConsumeException e) {
-                SegmentWriteAction segment = e.segment;
-                log.error("Can't persist the segment {}", segment.getUuid(), e.getCause());
-                try {
-                    queue.put(segment);
-                } catch (InterruptedException e1) {
-                    log.error("Can't re-add the segment {} to the queue. It'll be dropped.", segment.getUuid(), e1);
-
-                    synchronized (segmentsByUUID) {
-                        segmentsByUUID.remove(segment.getUuid());
-                        segmentsByUUID.notifyAll();
+                log.error("Can't persist the segments {}", e.segments, e.getCause());
+                for (SegmentWriteAction segment : e.segments) {
+                    try {
+                        queue.put(segment);
+                    } catch (InterruptedException e1) {
+                        log.error("Can't re-add the segment {} to the queue. It'll be dropped.", segment.getUuid(), e1);
+                        removeSegments(Collections.singletonList(segment));
                     }
                 }
             }
         }
     }
 
-    private void consume() throws SegmentConsumeException {
+    /**
+     * Only batch segments when there are more queued segments than threads
+     * uploading them.
+     */
+    private int nextBatchSize() {
+        return Math.min(batchSize, 1 + queue.size() / Math.max(1, threadNo));
+    }
+
+    private void consume(int maxSegments) throws SegmentConsumeException {
         SegmentWriteAction segment = null;
         try {
             segment = queue.poll(100, TimeUnit.MILLISECONDS);
@@ -107,22 +186,51 @@ public class SegmentWriteQueue implements Closeable {
             log.error("Poll from queue interrupted", e);
         }
         if (segment != null) {
-            consume(segment);
+            List<SegmentWriteAction> segments = new ArrayList<>(maxSegments);
+            segments.add(segment);
+            if (maxSegments > 1) {
+                queue.drainTo(segments, maxSegments - 1);
+            }
+            monitor.segmentQueueDepth(queue.size());
+            consume(segments);
         }
     }
 
-    private void consume(SegmentWriteAction segment) throws SegmentConsumeException {
+    private void consume(List<SegmentWriteAction> segments) throws SegmentConsumeException {
         try {
-            segment.passTo(writer);
+            writer.consume(segments);
+        } catch (PartialBatchException e) {
+            List<SegmentWriteAction> failed = e.getFailedSegments();
+            List<SegmentWriteAction> persisted = new ArrayList<>(segments);
+            persisted.removeAll(failed);
+            segmentsPersisted(persisted);
+            setBroken(true);
+            throw new SegmentConsumeException(failed.isEmpty() ? segments : failed, e);
         } catch (IOException | RuntimeException e) {
             setBroken(true);
-            throw new SegmentConsumeException(segment, e);
+            throw new SegmentConsumeException(segments, e);
+        }
+        segmentsPersisted(segments);
+        setBroken(false);
+    }
+
+    private void segmentsPersisted(List<SegmentWriteAction> segments) {
+        long now = System.nanoTime();
+        for (SegmentWriteAction segment : segments) {
+            monitor.segmentUploadLatency(now - segment.getQueuedAt(), TimeUnit.NANOSECONDS);
         }
+        removeSegments(segments);
+    }
+
+    private void removeSegments(List<SegmentWriteAction> segments) {
         synchronized (segmentsByUUID) {
-            segmentsByUUID.remove(segment.getUuid());
+            for (SegmentWriteAction segment : segments) {
+                if (segmentsByUUID.remove(segment.getUuid()) != null) {
+                    inFlightBytes -= segment.getLength();
+                }
+            }
             segmentsByUUID.notifyAll();
         }
-        setBroken(false);
     }
 
     private void emergencyLoop() {
@@ -133,31 +241,42 @@ public class SegmentWriteQueue implements Closeable {
             }
 
             boolean success = false;
-            SegmentWriteAction segmentToRetry = null;
+            List<SegmentWriteAction> segmentsToRetry = null;
+            long backoff = initialBackoff;
             do {
                 try {
-                    if (segmentToRetry == null) {
-                        consume();
+                    if (segmentsToRetry == null) {
+                        consume(1);
                     } else {
-                        consume(segmentToRetry);
+                        consume(segmentsToRetry);
                     }
                     success = true;
                 } catch (SegmentConsumeException e) {
-                    segmentToRetry = e.segment;
-                    log.error("Can't persist the segment {}", segmentToRetry.getUuid(), e.getCause());
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e1) {
-                        log.warn("Interrupted", e);
-                    }
+                    segmentsToRetry = e.segments;
+                    log.error("Can't persist the segments {}. Retrying in {} ms.", segmentsToRetry, backoff, e.getCause());
+                    sleepUnlessShutdown(backoff);
+                    backoff = Math.min(2 * backoff, maxBackoff);
                     if (shutdown) {
-                        log.error("Shutdown initiated. The segment {} will be dropped.", segmentToRetry.getUuid());
+                        log.error("Shutdown initiated. The segments {} will be dropped.", segmentsToRetry);
                     }
                 }
             } while (!success && !shutdown);
         }
     }
 
+    private void sleepUnlessShutdown(long millis) {
+        long end = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (remaining > 0 && !shutdown) {
+            try {
+                Thread.sleep(Math.min(remaining, 100));
+            } catch (InterruptedException e) {
+                log.warn("Interrupted", e);
+            }
+            remaining = end - System.currentTimeMillis();
+        }
+    }
+
     public void addToQueue(RemoteSegmentArchiveEntry indexEntry, byte[] data, int offset, int size) throws IOException {
         waitWhileBroken();
         if (shutdown) {
@@ -167,17 +286,37 @@ public class SegmentWriteQueue implements Closeable {
         SegmentWriteAction action = new SegmentWriteAction(indexEntry, data, offset, size);
         flushLock.readLock().lock();
         try {
-            segmentsByUUID.put(action.getUuid(), action);
+            addSegment(action);
             if (!queue.offer(action, 1, TimeUnit.MINUTES)) {
-                segmentsByUUID.remove(action.getUuid());
+                removeSegments(Collections.singletonList(action));
                 throw new IOException("Can't add segment to the queue");
             }
         } catch (InterruptedException e) {
-            segmentsByUUID.remove(action.getUuid());
+            removeSegments(Collections.singletonList(action));
             throw new IOException(e);
         } finally {
             flushLock.readLock().unlock();
         }
+        monitor.segmentQueueDepth(queue.size());
+    }
+
+    /**
+     * Add the segment to {@link #segmentsByUUID}, waiting until the number
+     * of bytes in flight allows for adding it. A segment is always accepted
+     * when there are no other segments in flight.
+     */
+    private void addSegment(SegmentWriteAction action) throws IOException, InterruptedException {
+        synchronized (segmentsByUUID) {
+            long start = System.currentTimeMillis();
+            while (inFlightBytes > 0 && inFlightBytes + action.getLength() > maxInFlightBytes) {
+                if (System.currentTimeMillis() - start > TimeUnit.MINUTES.toMillis(1)) {
+                    throw new IOException("Can't add segment to the queue. Bytes in flight: " + inFlightBytes);
+                }
+                segmentsByUUID.wait(100);
+            }
+            segmentsByUUID.put(action.getUuid(), action);
+            inFlightBytes += action.getLength();
+        }
     }
 
     public void flush() throws IOException {
@@ -270,15 +409,59 @@ public class SegmentWriteQueue implements Closeable {
 
         void consume(RemoteSegmentArchiveEntry indexEntry, byte[] data, int offset, int size) throws IOException;
 
+        /**
+         * Persist a batch of adjacent segments. Only the segments reported by
+         * a {@link PartialBatchException} are retried, any other exception
+         * retries the batch as a whole, so persisting a segment must be
+         * idempotent. The default implementation persists the segments one by
+         * one and stops at the first failure.
+         * @param segments the segments to persist
+         */
+        default void consume(List<SegmentWriteAction> segments) throws IOException {
+            for (int i = 0; i < segments.size(); i++) {
+                try {
+                    segments.get(i).passTo(this);
+                } catch (IOException | RuntimeException e) {
+                    if (i == 0) {
+                        throw e;
+                    }
+                    throw new PartialBatchException(segments.subList(i, segments.size()), e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Thrown by a {@link SegmentConsumer} when only some of the segments of a
+     * batch could not be persisted.
+     */
+    public static class PartialBatchException extends IOException {
+
+        private final List<SegmentWriteAction> failedSegments;
+
+        public PartialBatchException(List<SegmentWriteAction> failedSegments, Throwable cause) {
+            super("Can't persist the segments " + failedSegments, cause);
+            this.failedSegments = new ArrayList<>(failedSegments);
+        }
+
+        public List<SegmentWriteAction> getFailedSegments() {
+            return failedSegments;
+        }
     }
 
     public static class SegmentConsumeException extends Exception {
 
-        private final SegmentWriteAction segment;
+        private final List<SegmentWriteAction> segments;
 
         public SegmentConsumeException(SegmentWriteAction segment, Exception cause) {
             super(cause);
-            this.segment = segment;
+            this.segments = Collections.singletonList(segment);
+        }
+
+        public SegmentConsumeException(List<SegmentWriteAction> segments, Exception cause) {
+            super(cause);
+            this.segments = segments;
         }
     }
 }
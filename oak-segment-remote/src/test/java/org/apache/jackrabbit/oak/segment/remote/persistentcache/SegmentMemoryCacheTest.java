@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.oak.segment.remote.persistentcache;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.AdmissionFilter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache.SegmentCacheStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentMemoryCacheTest extends AbstractPersistentCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
+    @Before
+    public void setUp() throws Exception {
+        persistentCache = new SegmentMemoryCache(256);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        persistentCache.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSegments() throws Exception {
+        persistentCache.close();
+        persistentCache = new SegmentMemoryCache(1);
+
+        List<TestSegment> segments = createSegments(4);
+        for (TestSegment segment : segments) {
+            long[] id = segment.getSegmentId();
+            persistentCache.writeSegment(id[0], id[1], segment.getSegmentBuffer());
+        }
+        long[] first = segments.get(0).getSegmentId();
+        long[] second = segments.get(1).getSegmentId();
+        persistentCache.readSegment(first[0], first[1], () -> null);
+
+        TestSegment segment = TestSegment.createSegment();
+        long[] id = segment.getSegmentId();
+        persistentCache.writeSegment(id[0], id[1], segment.getSegmentBuffer());
+
+        assertTrue(persistentCache.containsSegment(first[0], first[1]));
+        assertFalse(persistentCache.containsSegment(second[0], second[1]));
+        assertTrue(persistentCache.containsSegment(id[0], id[1]));
+        assertEquals(1, persistentCache.getCacheStats().getEvictionCount());
+        assertEquals(4, persistentCache.getCacheStats().getElementCount());
+    }
+
+    @Test
+    public void traversalDoesNotEvictHotSegments() throws Exception {
+        persistentCache.close();
+        persistentCache = new SegmentMemoryCache(1);
+
+        // The local file system stands in for the remote store
+        File remote = temporaryFolder.newFolder();
+        AtomicInteger remoteReads = new AtomicInteger();
+        List<TestSegment> hot = createSegments(4);
+        List<TestSegment> traversal = createSegments(20);
+        for (TestSegment segment : hot) {
+            writeRemote(remote, segment);
+        }
+        for (TestSegment segment : traversal) {
+            writeRemote(remote, segment);
+        }
+
+        PersistentDiskCache diskCache = new PersistentDiskCache(temporaryFolder.newFolder(), 10 * 1024, new IOMonitorAdapter());
+        diskCache.setAdmissionFilter(new AdmissionFilter(1024, 2));
+        persistentCache.linkWith(diskCache);
+
+        for (int i = 0; i < 3; i++) {
+            for (TestSegment segment : hot) {
+                read(remote, segment, remoteReads);
+            }
+        }
+        for (TestSegment segment : traversal) {
+            read(remote, segment, remoteReads);
+        }
+
+        for (TestSegment segment : hot) {
+            long[] id = segment.getSegmentId();
+            assertTrue(persistentCache.containsSegment(id[0], id[1]));
+        }
+        for (TestSegment segment : traversal) {
+            long[] id = segment.getSegmentId();
+            assertFalse(persistentCache.containsSegment(id[0], id[1]));
+            assertFalse(diskCache.containsSegment(id[0], id[1]));
+        }
+        assertEquals(hot.size() + traversal.size(), remoteReads.get());
+        assertEquals(2 * hot.size(), persistentCache.getCacheStats().getHitCount());
+        assertEquals(0, persistentCache.getCacheStats().getEvictionCount());
+        assertEquals(hot.size() + traversal.size(), ((SegmentCacheStats) diskCache.getCacheStats()).getAdmissionRejectCount());
+
+        // A segment read a second time is admitted to the disk cache, but
+        // not at the expense of the hot segments in the memory cache
+        long[] id = traversal.get(0).getSegmentId();
+        read(remote, traversal.get(0), remoteReads);
+        waitWhile.accept(() -> !diskCache.containsSegment(id[0], id[1]));
+        assertNoTimeout();
+        assertFalse(persistentCache.containsSegment(id[0], id[1]));
+        assertEquals(0, persistentCache.getCacheStats().getEvictionCount());
+
+        diskCache.close();
+    }
+
+    private void read(File remote, TestSegment segment, AtomicInteger remoteReads) {
+        long[] id = segment.getSegmentId();
+        Callable<Buffer> loader = () -> {
+            remoteReads.incrementAndGet();
+            return Buffer.wrap(Files.readAllBytes(new File(remote, new UUID(id[0], id[1]).toString()).toPath()));
+        };
+        assertSegmentBufferEquals(segment.getSegmentBuffer(), persistentCache.readSegment(id[0], id[1], loader));
+    }
+
+    private static void writeRemote(File remote, TestSegment segment) throws IOException {
+        long[] id = segment.getSegmentId();
+        Files.write(new File(remote, new UUID(id[0], id[1]).toString()).toPath(), segment.getSegmentBytes());
+    }
+
+    private static List<TestSegment> createSegments(int count) {
+        List<TestSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TestSegment.createSegment());
+        }
+        return segments;
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.segment.remote.queue;
 
 import org.apache.jackrabbit.oak.segment.remote.RemoteSegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
 import org.junit.After;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -28,9 +29,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -63,6 +66,7 @@ public class SegmentWriteQueueTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     public void testThreadInterruptedWhileAddigToQueue() throws InterruptedException, NoSuchFieldException {
 
         Set<UUID> added = Collections.synchronizedSet(new HashSet<>());
@@ -220,7 +224,7 @@ public class SegmentWriteQueueTest {
                 throw new IOException();
             }
             added.add(new UUID(tarEntry.getMsb(), tarEntry.getLsb()));
-        });
+        }, new RemoteStoreMonitorAdapter(), 20, 5, 8, Long.MAX_VALUE, 1000, 1000);
 
         for (int i = 0; i < 10; i++) {
             queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
@@ -323,6 +327,162 @@ public class SegmentWriteQueueTest {
         assertEquals(3, added.size());
     }
 
+    @Test
+    public void testExponentialBackoff() throws IOException, InterruptedException {
+        List<Long> writeAttempts = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean doBreak = new AtomicBoolean(true);
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {
+            writeAttempts.add(System.currentTimeMillis());
+            if (doBreak.get()) {
+                throw new IOException();
+            }
+        }, new RemoteStoreMonitorAdapter(), 20, 1, 8, Long.MAX_VALUE, 50, 400);
+
+        queue.addToQueue(tarEntry(0), EMPTY_DATA, 0, 0);
+        while (writeAttempts.size() < 6) {
+            Thread.sleep(10);
+        }
+        doBreak.set(false);
+        queue.flush();
+
+        List<Long> attempts = new ArrayList<>(writeAttempts);
+        // The first attempt is made by the main thread, the following ones by the recovery thread
+        long[] minimalDelays = new long[] {50, 100, 200, 400};
+        for (int i = 0; i < minimalDelays.length; i++) {
+            long delay = attempts.get(i + 2) - attempts.get(i + 1);
+            assertTrue("The delay between attempts should be at least " + minimalDelays[i] + " ms. Actual: " + delay,
+                    delay >= minimalDelays[i]);
+        }
+    }
+
+    @Test
+    public void testBatches() throws IOException, InterruptedException {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        Set<UUID> added = Collections.synchronizedSet(new HashSet<>());
+        Semaphore semaphore = new Semaphore(0);
+        queue = new SegmentWriteQueue(new SegmentWriteQueue.SegmentConsumer() {
+
+            @Override
+            public void consume(RemoteSegmentArchiveEntry indexEntry, byte[] data, int offset, int size) {
+                added.add(new UUID(indexEntry.getMsb(), indexEntry.getLsb()));
+            }
+
+            @Override
+            public void consume(List<SegmentWriteAction> segments) throws IOException {
+                try {
+                    semaphore.acquire();
+                } catch (InterruptedException e) {
+                }
+                batchSizes.add(segments.size());
+                SegmentWriteQueue.SegmentConsumer.super.consume(segments);
+            }
+
+        }, new RemoteStoreMonitorAdapter(), 20, 1, 4, Long.MAX_VALUE, 1000, 1000);
+
+        for (int i = 0; i < 9; i++) {
+            queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
+        }
+        semaphore.release(Integer.MAX_VALUE);
+        queue.flush();
+
+        assertEquals(9, added.size());
+        assertTrue("Segments should be consumed in batches: " + batchSizes, batchSizes.size() < 9);
+        for (int batchSize : batchSizes) {
+            assertTrue("Batches should not exceed the batch size: " + batchSizes, batchSize <= 4);
+        }
+    }
+
+    @Test
+    public void testOnlyFailedSegmentsOfBatchAreRetried() throws IOException {
+        Map<UUID, Integer> written = new ConcurrentHashMap<>();
+        AtomicBoolean doBreak = new AtomicBoolean(true);
+        Semaphore semaphore = new Semaphore(0);
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+            }
+            semaphore.release();
+            if (tarEntry.getLsb() == 3 && doBreak.getAndSet(false)) {
+                throw new IOException();
+            }
+            written.merge(new UUID(tarEntry.getMsb(), tarEntry.getLsb()), 1, Integer::sum);
+        }, new RemoteStoreMonitorAdapter(), 20, 1, 4, Long.MAX_VALUE, 10, 10);
+
+        for (int i = 0; i < 9; i++) {
+            queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
+        }
+        semaphore.release();
+        queue.flush();
+
+        assertFalse(doBreak.get());
+        assertEquals(9, written.size());
+        for (Map.Entry<UUID, Integer> e : written.entrySet()) {
+            assertEquals("The segment " + e.getKey() + " should be written once", 1, (int) e.getValue());
+        }
+    }
+
+    @Test
+    public void testInFlightBytes() throws IOException, InterruptedException {
+        Semaphore semaphore = new Semaphore(0);
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+            }
+        }, new RemoteStoreMonitorAdapter(), 20, 1, 1, 10, 1000, 1000);
+
+        // A single segment is accepted even if it exceeds the limit
+        queue.addToQueue(tarEntry(0), new byte[20], 0, 20);
+
+        AtomicBoolean addFinished = new AtomicBoolean(false);
+        new Thread(() -> {
+            try {
+                queue.addToQueue(tarEntry(1), new byte[5], 0, 5);
+                addFinished.set(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).start();
+
+        Thread.sleep(100);
+        assertFalse("Adding segments should be blocked while too many bytes are in flight", addFinished.get());
+
+        semaphore.release(Integer.MAX_VALUE);
+        while (!addFinished.get()) {
+            Thread.sleep(10);
+        }
+        queue.flush();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMonitor() throws IOException {
+        List<Integer> depths = Collections.synchronizedList(new ArrayList<>());
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {}, new RemoteStoreMonitorAdapter() {
+
+            @Override
+            public void segmentQueueDepth(int depth) {
+                depths.add(depth);
+            }
+
+            @Override
+            public void segmentUploadLatency(long duration, TimeUnit timeUnit) {
+                latencies.add(duration);
+            }
+
+        });
+
+        for (int i = 0; i < 5; i++) {
+            queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
+        }
+        queue.flush();
+
+        assertTrue(depths.size() >= 5);
+        assertEquals(5, latencies.size());
+    }
+
     private static RemoteSegmentArchiveEntry tarEntry(long i) {
         return new RemoteSegmentArchiveEntry(0, i, 0, 0, 0, 0, false);
     }
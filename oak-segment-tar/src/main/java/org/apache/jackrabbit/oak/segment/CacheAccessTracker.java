@@ -64,7 +64,16 @@ public class CacheAccessTracker<K, V> implements Cache<K,V> {
     @Nullable
     @Override
     public V get(@NotNull K key) {
-        V v = delegate.get(key);
+        return recordAccess(delegate.get(key));
+    }
+
+    /**
+     * Record an access to this cache
+     * @param v  the value returned by the access or {@code null} on a miss
+     * @return  {@code v}
+     */
+    @Nullable
+    protected V recordAccess(@Nullable V v) {
         accessCount.inc();
         if (v == null) {
             missCount.inc();
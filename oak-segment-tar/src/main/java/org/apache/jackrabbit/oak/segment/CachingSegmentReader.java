@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.segment;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
@@ -178,4 +179,20 @@ public class CachingSegmentReader implements SegmentReader {
     public CacheStats getTemplateCacheStats() {
         return templateCache.getStats();
     }
+
+    /**
+     * @see ReaderCache#getRecordIds(SegmentIdProvider, int)
+     */
+    @NotNull
+    public List<RecordId> getCachedStringIds(@NotNull SegmentIdProvider idProvider, int limit) {
+        return stringCache.getRecordIds(idProvider, limit);
+    }
+
+    /**
+     * @see ReaderCache#getRecordIds(SegmentIdProvider, int)
+     */
+    @NotNull
+    public List<RecordId> getCachedTemplateIds(@NotNull SegmentIdProvider idProvider, int limit) {
+        return templateCache.getRecordIds(idProvider, limit);
+    }
 }
@@ -63,7 +63,7 @@ public class CheckpointCompactor implements Compactor {
     private final Map<NodeState, NodeState> cpCache = newHashMap();
 
     @NotNull
-    private final ClassicCompactor compactor;
+    protected final ClassicCompactor compactor;
 
     @NotNull
     private final NodeWriter nodeWriter;
@@ -220,6 +220,20 @@ public class CheckpointCompactor implements Compactor {
         return builder;
     }
 
+    /**
+     * Delegate compaction of a single root to the underlying {@link ClassicCompactor}.
+     * Subclasses may override this method to change how a root is compacted.
+     */
+    @Nullable
+    protected SegmentNodeState compactWithDelegate(
+        @NotNull NodeState before,
+        @NotNull NodeState after,
+        @NotNull NodeState onto,
+        Canceller canceller
+    ) throws IOException {
+        return compactor.compact(before, after, onto, canceller);
+    }
+
     private static class Result {
             final NodeState compacted;
             final NodeState nextBefore;
@@ -248,7 +262,7 @@ public class CheckpointCompactor implements Compactor {
         gcListener.info("compacting {}.", path);
         NodeState compacted = cpCache.get(after);
         if (compacted == null) {
-            compacted = compactor.compact(before, after, onto, canceller);
+            compacted = compactWithDelegate(before, after, onto, canceller);
             if (compacted == null) {
                 return null;
             } else {
@@ -242,7 +242,7 @@ public class ClassicCompactor implements Compactor {
     }
 
     @NotNull
-    private  PropertyState compact(@NotNull PropertyState property) {
+    PropertyState compact(@NotNull PropertyState property) {
         compactionMonitor.onProperty();
         String name = property.getName();
         Type<?> type = property.getType();
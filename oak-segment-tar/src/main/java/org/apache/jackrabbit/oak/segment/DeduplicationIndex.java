@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index from content hashes of strings and templates to the ids of the
+ * records they have been written to. Unlike the deduplication caches of the
+ * {@link WriterCacheManager}, this index survives restarts: it is written to
+ * a file in the directory of the store on close and read back on start.
+ * <p>
+ * Like the deduplication caches, the index is striped into generations with
+ * one generation per gc cycle, such that records of old generations are never
+ * reused. As the hashes may collide and the records may have been removed by
+ * cleanup, a record found through this index must be read back and compared
+ * before it is reused.
+ * <p>
+ * The file is a text file with one entry per line consisting of the
+ * generation, the type of the record ({@code s} for strings, {@code t} for
+ * templates), the hash and the record id, separated by spaces.
+ */
+public class DeduplicationIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(DeduplicationIndex.class);
+
+    /**
+     * Name of the file of the index in the directory of the store
+     */
+    public static final String FILE_NAME = "dedup.index";
+
+    private static final String STRING = "s";
+
+    private static final String TEMPLATE = "t";
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int maxEntries;
+
+    private final ConcurrentMap<Integer, Generation> generations = newConcurrentMap();
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    private final AtomicLong recordsReused = new AtomicLong();
+
+    private class Generation {
+        final Cache<Long, RecordId> strings = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+
+        final Cache<Long, RecordId> templates = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    /**
+     * Create a new empty index.
+     *
+     * @param maxEntries maximum number of strings and of templates indexed
+     *                   per generation
+     */
+    public DeduplicationIndex(int maxEntries) {
+        checkArgument(maxEntries > 0, "maxEntries must be positive");
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the hash of the UTF-8 encoded bytes of a string
+     */
+    public static long hash(@NotNull byte[] data) {
+        return HASH.hashBytes(data).asLong();
+    }
+
+    /**
+     * @return the hash of a template
+     */
+    public static long hash(@NotNull Template template) {
+        return HASH.hashString(template.toString(), UTF_8).asLong();
+    }
+
+    @NotNull
+    private Generation generation(int generation) {
+        Generation g = generations.get(generation);
+        if (g == null) {
+            generations.putIfAbsent(generation, new Generation());
+            g = generations.get(generation);
+        }
+        return g;
+    }
+
+    /**
+     * @return the id of a string record with the given hash in the given
+     * generation or {@code null} if none is indexed.
+     */
+    @Nullable
+    public RecordId getString(int generation, long hash) {
+        Generation g = generations.get(generation);
+        return g == null ? null : g.strings.getIfPresent(hash);
+    }
+
+    /**
+     * Index the id of a string record written in the given generation.
+     */
+    public void putString(int generation, long hash, @NotNull RecordId id) {
+        generation(generation).strings.put(hash, id);
+    }
+
+    /**
+     * @return the id of a template record with the given hash in the given
+     * generation or {@code null} if none is indexed.
+     */
+    @Nullable
+    public RecordId getTemplate(int generation, long hash) {
+        Generation g = generations.get(generation);
+        return g == null ? null : g.templates.getIfPresent(hash);
+    }
+
+    /**
+     * Index the id of a template record written in the given generation.
+     */
+    public void putTemplate(int generation, long hash, @NotNull RecordId id) {
+        generation(generation).templates.put(hash, id);
+    }
+
+    /**
+     * Remove an entry whose record turned out not to match or not to exist
+     * any more.
+     */
+    void invalidate(int generation, long hash, boolean template) {
+        Generation g = generations.get(generation);
+        if (g != null) {
+            (template ? g.templates : g.strings).invalidate(hash);
+        }
+    }
+
+    /**
+     * Record that writing a record was avoided by reusing a record found
+     * through this index.
+     *
+     * @param bytes the number of bytes that would have been written
+     */
+    public void recordReuse(long bytes) {
+        recordsReused.incrementAndGet();
+        bytesSaved.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of bytes that were not written because records were
+     * reused through this index
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return the number of records reused through this index
+     */
+    public long getRecordsReused() {
+        return recordsReused.get();
+    }
+
+    /**
+     * @return the number of entries in this index
+     */
+    public long size() {
+        long size = 0;
+        for (Generation g : generations.values()) {
+            size += g.strings.size() + g.templates.size();
+        }
+        return size;
+    }
+
+    /**
+     * Remove all generations matching the passed {@code generations} predicate.
+     */
+    public void purgeGenerations(@NotNull Predicate<Integer> generations) {
+        Iterator<Integer> it = this.generations.keySet().iterator();
+        while (it.hasNext()) {
+            if (generations.apply(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Read the entries of the index file in {@code directory} into this
+     * index. Does nothing if there is no index file. Invalid entries are
+     * skipped.
+     *
+     * @param directory  the directory of the store
+     * @param idProvider the segment id provider of the store
+     * @throws IOException if reading the index file fails
+     */
+    public void load(@NotNull File directory, @NotNull SegmentIdProvider idProvider) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        int entries = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] fields = line.split(" ");
+                try {
+                    if (fields.length != 4) {
+                        throw new IllegalArgumentException("Invalid number of fields");
+                    }
+                    int generation = Integer.parseInt(fields[0]);
+                    long hash = Long.parseLong(fields[2]);
+                    RecordId id = RecordId.fromString(idProvider, fields[3]);
+                    if (STRING.equals(fields[1])) {
+                        putString(generation, hash, id);
+                        entries++;
+                    } else if (TEMPLATE.equals(fields[1])) {
+                        putTemplate(generation, hash, id);
+                        entries++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("Skipping invalid deduplication index entry {}", line);
+                }
+                line = reader.readLine();
+            }
+        }
+        LOG.info("Loaded {} entries from the deduplication index {}", entries, file);
+    }
+
+    /**
+     * Write the entries of this index to the index file in {@code directory},
+     * replacing the previous file.
+     *
+     * @param directory the directory of the store
+     * @throws IOException if writing the index file fails
+     */
+    public void save(@NotNull File directory) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        File tmp = new File(directory, FILE_NAME + ".tmp");
+        int entries = 0;
+        try (Writer writer = Files.newBufferedWriter(tmp.toPath(), UTF_8)) {
+            for (Map.Entry<Integer, Generation> generation : generations.entrySet()) {
+                entries += save(writer, generation.getKey(), STRING, generation.getValue().strings);
+                entries += save(writer, generation.getKey(), TEMPLATE, generation.getValue().templates);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        LOG.debug("Written deduplication index {} with {} entries", file, entries);
+    }
+
+    private static int save(Writer writer, int generation, String type, Cache<Long, RecordId> entries) throws IOException {
+        int count = 0;
+        for (Map.Entry<Long, RecordId> entry : entries.asMap().entrySet()) {
+            writer.write(generation + " " + type + " " + entry.getKey() + " " + entry.getValue().toString10() + "\n");
+            count++;
+        }
+        return count;
+    }
+
+}
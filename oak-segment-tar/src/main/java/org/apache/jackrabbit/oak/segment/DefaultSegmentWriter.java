@@ -47,7 +47,6 @@ import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.compareAga
 import static org.apache.jackrabbit.oak.segment.MapEntry.newModifiedMapEntry;
 import static org.apache.jackrabbit.oak.segment.MapRecord.BUCKETS_PER_LEVEL;
 import static org.apache.jackrabbit.oak.segment.RecordWriters.newNodeStateWriter;
-import static org.apache.jackrabbit.oak.segment.SegmentNodeState.getStableId;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -211,7 +210,10 @@ public class DefaultSegmentWriter implements SegmentWriter {
 
         private final Cache<Template, RecordId> templateCache;
 
-        private final Cache<String, RecordId> nodeCache;
+        private final NodeCache nodeCache;
+
+        @Nullable
+        private final DeduplicationIndex deduplicationIndex;
 
         private long lastLogTime;
 
@@ -221,6 +223,7 @@ public class DefaultSegmentWriter implements SegmentWriter {
             this.stringCache = cacheManager.getStringCache(generation);
             this.templateCache = cacheManager.getTemplateCache(generation);
             this.nodeCache = cacheManager.getNodeCache(generation);
+            this.deduplicationIndex = cacheManager.getDeduplicationIndex();
         }
 
         private WriteOperation newWriteOperation(RecordWriter recordWriter) {
@@ -512,10 +515,23 @@ public class DefaultSegmentWriter implements SegmentWriter {
 
             byte[] data = string.getBytes(UTF_8);
 
+            long hash = 0;
+            if (deduplicationIndex != null) {
+                hash = DeduplicationIndex.hash(data);
+                id = findString(string, hash, data.length);
+                if (id != null) {
+                    if (data.length < Segment.MEDIUM_LIMIT) {
+                        stringCache.put(string, id);
+                    }
+                    return id;
+                }
+            }
+
             if (data.length < Segment.MEDIUM_LIMIT) {
                 // only cache short strings to avoid excessive memory use
                 id = writeValueRecord(data.length, data);
                 stringCache.put(string, id);
+                indexString(hash, id);
                 return id;
             }
 
@@ -540,7 +556,91 @@ public class DefaultSegmentWriter implements SegmentWriter {
                 pos += len;
             }
 
-            return writeValueRecord(data.length, writeList(blockIds));
+            id = writeValueRecord(data.length, writeList(blockIds));
+            indexString(hash, id);
+            return id;
+        }
+
+        private void indexString(long hash, @NotNull RecordId id) {
+            if (deduplicationIndex != null) {
+                deduplicationIndex.putString(gcGeneration.getGeneration(), hash, id);
+            }
+        }
+
+        /**
+         * Find a string record of the current generation with the same
+         * content as {@code string} through the deduplication index.
+         */
+        @Nullable
+        private RecordId findString(@NotNull String string, long hash, int length) {
+            int generation = gcGeneration.getGeneration();
+            RecordId id = deduplicationIndex.getString(generation, hash);
+            if (id == null) {
+                return null;
+            }
+            try {
+                if (isReusable(id) && string.equals(reader.readString(id))) {
+                    deduplicationIndex.recordReuse(length);
+                    return id;
+                }
+            } catch (SegmentNotFoundException e) {
+                LOG.debug("Deduplication index refers to a removed segment {}", id, e);
+            }
+            deduplicationIndex.invalidate(generation, hash, false);
+            return null;
+        }
+
+        /**
+         * Find a template record of the current generation equal to {@code
+         * template} through the deduplication index.
+         */
+        @Nullable
+        private RecordId findTemplate(@NotNull Template template, long hash) {
+            int generation = gcGeneration.getGeneration();
+            RecordId id = deduplicationIndex.getTemplate(generation, hash);
+            if (id == null) {
+                return null;
+            }
+            try {
+                if (isReusable(id) && template.equals(reader.readTemplate(id))) {
+                    deduplicationIndex.recordReuse(estimateTemplateSize(template));
+                    return id;
+                }
+            } catch (SegmentNotFoundException e) {
+                LOG.debug("Deduplication index refers to a removed segment {}", id, e);
+            }
+            deduplicationIndex.invalidate(generation, hash, true);
+            return null;
+        }
+
+        /**
+         * Only records of the generation being written can be referenced.
+         */
+        private boolean isReusable(@NotNull RecordId id) {
+            return id.getSegmentId().getGcGeneration().getGeneration() == gcGeneration.getGeneration();
+        }
+
+        /**
+         * @return the size of the template record for {@code template}
+         * without the records it references.
+         */
+        private int estimateTemplateSize(@NotNull Template template) {
+            int ids = 0;
+            if (template.getPrimaryType() != null) {
+                ids++;
+            }
+            if (template.getMixinTypes() != null) {
+                ids += template.getMixinTypes().count();
+            }
+            String childName = template.getChildName();
+            if (childName != Template.ZERO_CHILD_NODES && childName != Template.MANY_CHILD_NODES) {
+                ids++;
+            }
+            int properties = template.getPropertyTemplates().length;
+            if (properties > 0) {
+                ids++;
+            }
+            return 4 + ids * Segment.RECORD_ID_BYTES + properties;
         }
 
         private boolean sameStore(SegmentId id) {
@@ -725,6 +825,16 @@ public class DefaultSegmentWriter implements SegmentWriter {
                 return id; // shortcut if the same template was recently stored
             }
 
+            long hash = 0;
+            if (deduplicationIndex != null) {
+                hash = DeduplicationIndex.hash(template);
+                id = findTemplate(template, hash);
+                if (id != null) {
+                    templateCache.put(template, id);
+                    return id;
+                }
+            }
+
             Collection<RecordId> ids = newArrayList();
             int head = 0;
 
@@ -789,6 +899,9 @@ public class DefaultSegmentWriter implements SegmentWriter {
                         ids, propertyNames, propertyTypes, head, primaryId, mixinIds,
                         childNameId, propNamesId)));
             templateCache.put(template, tid);
+            if (deduplicationIndex != null) {
+                deduplicationIndex.putTemplate(gcGeneration.getGeneration(), hash, tid);
+            }
             return tid;
         }
 
@@ -809,7 +922,9 @@ public class DefaultSegmentWriter implements SegmentWriter {
                 // This node state has been rewritten because it is from an older
                 // generation (e.g. due to compaction). Put it into the cache for
                 // deduplication of hard links to it (e.g. checkpoints).
-                nodeCache.put(getStableId(stableIdBytes), recordId, cost(state));
+                int pos = stableIdBytes.position();
+                nodeCache.put(stableIdBytes.getLong(pos), stableIdBytes.getLong(pos + 8),
+                        stableIdBytes.getInt(pos + 16), recordId, cost(state));
             }
             return recordId;
         }
@@ -961,7 +1076,9 @@ public class DefaultSegmentWriter implements SegmentWriter {
             // This is a segment node state from an old generation. Check
             // whether an equivalent one of the current generation is in the
             // cache
-            return nodeCache.get(sns.getStableId());
+            Buffer stableId = sns.getStableIdBytes();
+            int pos = stableId.position();
+            return nodeCache.get(stableId.getLong(pos), stableId.getLong(pos + 8), stableId.getInt(pos + 16));
         }
 
         /**
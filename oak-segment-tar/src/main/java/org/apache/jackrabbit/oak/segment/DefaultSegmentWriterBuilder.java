@@ -213,7 +213,8 @@ public final class DefaultSegmentWriterBuilder {
                     store.getSegmentIdProvider(),
                     store.getReader(),
                     name,
-                    generation
+                    generation,
+                    store.getSegmentBufferMonitor()
             );
         } else {
             return new SegmentBufferWriter(
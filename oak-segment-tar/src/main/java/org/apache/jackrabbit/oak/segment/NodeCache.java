@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Partial mapping of the stable ids of nodes to the {@link RecordId}s of
+ * their rewritten copies. In addition to their string representation (see
+ * {@link SegmentNodeState#getStableId()}), stable ids can be passed as the
+ * most and least significant bits of their segment id and their offset,
+ * which avoids formatting and parsing them on each access.
+ */
+public interface NodeCache extends Cache<String, RecordId> {
+
+    /**
+     * Add a mapping from a stable id to {@code recordId} with a given {@code cost}.
+     * @param msb       the most significant bits of the segment id of the stable id
+     * @param lsb       the least significant bits of the segment id of the stable id
+     * @param offset    the offset of the stable id
+     * @param recordId  the record id of the node
+     * @param cost      the cost of the mapping
+     */
+    default void put(long msb, long lsb, int offset, @NotNull RecordId recordId, byte cost) {
+        put(SegmentNodeState.getStableId(msb, lsb, offset), recordId, cost);
+    }
+
+    /**
+     * @param msb     the most significant bits of the segment id of the stable id
+     * @param lsb     the least significant bits of the segment id of the stable id
+     * @param offset  the offset of the stable id
+     * @return  The mapping for the stable id, or {@code null} if none.
+     */
+    @Nullable
+    default RecordId get(long msb, long lsb, int offset) {
+        return get(SegmentNodeState.getStableId(msb, lsb, offset));
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.apache.jackrabbit.oak.segment.Segment.MAX_SEGMENT_SIZE;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache keeping the raw bytes of segments outside of the Java heap.
+ * <p>
+ * Segments are appended to fixed size slabs of direct memory. Only a small
+ * handle per segment is kept on the heap. When all slabs are full, the oldest
+ * slab is reclaimed in the manner of a clock: segments that were accessed since
+ * the slab was last reclaimed are given a second chance and moved to the front
+ * of the slab, all other segments are evicted. As the segments are immutable,
+ * segments handed out by {@link #get(SegmentId)} are copies on the heap and
+ * remain valid after the slab they were copied from is reclaimed.
+ * <p>
+ * The slabs are partitioned into stripes by segment id. Each stripe has its
+ * own lock, so that accesses to segments of different stripes do not contend.
+ * <p>
+ * This class is thread safe.
+ */
+class OffHeapSegmentCache {
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapSegmentCache.class);
+
+    /**
+     * Default size of a slab in bytes
+     */
+    static final int DEFAULT_SLAB_SIZE = Integer.getInteger("oak.segment.cache.offHeapSlabSize", 16 * 1024 * 1024);
+
+    /**
+     * Maximum number of stripes
+     */
+    static final int MAX_STRIPES = Math.max(1, Integer.getInteger("oak.segment.cache.offHeapStripes", 16));
+
+    /**
+     * Minimum number of slabs per stripe, unless there are fewer slabs in total
+     */
+    private static final int MIN_STRIPE_SLABS = 4;
+
+    /**
+     * Size of the buffer through which surviving segments are moved to the
+     * front of their slab
+     */
+    private static final int MOVE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Handle to the bytes of a segment in a slab. {@code offset} is only
+     * modified while holding the write lock of the stripe of the segment.
+     */
+    private static class Entry {
+        @NotNull
+        final SegmentId id;
+
+        final int length;
+
+        final int slab;
+
+        int offset;
+
+        volatile boolean referenced;
+
+        Entry(@NotNull SegmentId id, int length, int slab, int offset) {
+            this.id = id;
+            this.length = length;
+            this.slab = slab;
+            this.offset = offset;
+        }
+    }
+
+    private final int slabSize;
+
+    private final Stripe[] stripes;
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong size = new AtomicLong();
+
+    @NotNull
+    private final Runnable onEvict;
+
+    /**
+     * Create a new off-heap cache of the given size. No more than
+     * {@code maximumSize} bytes of direct memory are allocated. If
+     * {@code maximumSize} is smaller than {@code slabSize} nothing is cached.
+     *
+     * @param maximumSize maximum number of bytes to use for caching
+     * @param slabSize    size of a slab in bytes. Must not be smaller than the
+     *                    maximum size of a segment.
+     * @param onEvict     call back called for each segment evicted from this cache
+     */
+    OffHeapSegmentCache(long maximumSize, int slabSize, @NotNull Runnable onEvict) {
+        checkArgument(slabSize >= MAX_SEGMENT_SIZE, "slabSize must be at least " + MAX_SEGMENT_SIZE);
+        this.slabSize = slabSize;
+        this.onEvict = checkNotNull(onEvict);
+
+        long slabCount = Math.max(0, maximumSize / slabSize);
+        int stripeCount = (int) Math.min(slabCount, Math.max(1, Math.min(MAX_STRIPES, slabCount / MIN_STRIPE_SLABS)));
+        this.stripes = new Stripe[stripeCount];
+        for (int k = 0; k < stripeCount; k++) {
+            stripes[k] = new Stripe((int) Math.min(Integer.MAX_VALUE, slabCount / stripeCount));
+        }
+    }
+
+    /**
+     * Retrieve a copy of the segment identified by {@code id}.
+     *
+     * @param id  the id of the segment
+     * @return  the bytes of the segment or {@code null} if not in this cache.
+     */
+    @Nullable
+    Buffer get(@NotNull SegmentId id) {
+        if (stripes.length == 0) {
+            return null;
+        }
+        return stripe(id).get(id);
+    }
+
+    /**
+     * Copy the bytes of {@code segment} into this cache unless it is already
+     * in this cache.
+     *
+     * @param segment  the segment to cache
+     * @return  {@code false} if the segment could not be cached, e.g. because
+     *          it is larger than a slab.
+     */
+    boolean put(@NotNull Segment segment) {
+        if (stripes.length == 0 || segment.size() > slabSize) {
+            return false;
+        }
+        return stripe(segment.getSegmentId()).put(segment);
+    }
+
+    /**
+     * Remove all segments from this cache. Allocated slabs are retained.
+     */
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * @return  the number of segments in this cache
+     */
+    long size() {
+        return size.get();
+    }
+
+    /**
+     * @return  the number of bytes taken by the segments in this cache
+     */
+    long weight() {
+        return weight.get();
+    }
+
+    /**
+     * @return  the maximum number of bytes of direct memory this cache allocates
+     */
+    long capacity() {
+        long capacity = 0;
+        for (Stripe stripe : stripes) {
+            capacity += (long) stripe.slabs.length * slabSize;
+        }
+        return capacity;
+    }
+
+    private Stripe stripe(SegmentId id) {
+        int hash = Long.hashCode(id.getMostSignificantBits() ^ id.getLeastSignificantBits());
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    /**
+     * A partition of the slabs of this cache together with the entries
+     * stored in them.
+     */
+    private class Stripe {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * Slabs, allocated on demand
+         */
+        private final Buffer[] slabs;
+
+        /**
+         * Entries of each slab in the order of their offset
+         */
+        private final List<List<Entry>> slabEntries;
+
+        /**
+         * Indexes of the full slabs, oldest first
+         */
+        private final Deque<Integer> fullSlabs = new ArrayDeque<>();
+
+        /**
+         * Indexes of allocated slabs not containing any entries
+         */
+        private final Deque<Integer> freeSlabs = new ArrayDeque<>();
+
+        private final Map<SegmentId, Entry> entries = newHashMap();
+
+        /**
+         * Buffer through which surviving entries are moved when reclaiming
+         * a slab, allocated on demand
+         */
+        @Nullable
+        private byte[] moveBuffer;
+
+        private int allocatedSlabs;
+
+        private int writeSlab = -1;
+
+        private int writePosition;
+
+        Stripe(int slabCount) {
+            this.slabs = new Buffer[slabCount];
+            this.slabEntries = newArrayList();
+            for (int k = 0; k < slabCount; k++) {
+                slabEntries.add(newArrayList());
+            }
+        }
+
+        @Nullable
+        Buffer get(@NotNull SegmentId id) {
+            lock.readLock().lock();
+            try {
+                Entry entry = entries.get(id);
+                if (entry == null) {
+                    return null;
+                }
+                entry.referenced = true;
+                Buffer slab = slabs[entry.slab].duplicate();
+                slab.position(entry.offset);
+                byte[] data = new byte[entry.length];
+                slab.get(data);
+                return Buffer.wrap(data);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean put(@NotNull Segment segment) {
+            SegmentId id = segment.getSegmentId();
+            int length = segment.size();
+
+            lock.writeLock().lock();
+            try {
+                Entry existing = entries.get(id);
+                if (existing != null) {
+                    existing.referenced = true;
+                    return true;
+                }
+
+                if (!allocate(length)) {
+                    return false;
+                }
+
+                Buffer slab = slabs[writeSlab].duplicate();
+                slab.position(writePosition);
+                slab.limit(writePosition + length);
+                segment.writeTo(new BufferOutputStream(slab));
+
+                Entry entry = new Entry(id, length, writeSlab, writePosition);
+                writePosition += length;
+                slabEntries.get(writeSlab).add(entry);
+                entries.put(id, entry);
+                weight.addAndGet(length);
+                size.incrementAndGet();
+                return true;
+            } catch (IOException e) {
+                LOG.warn("Unable to copy segment {} off-heap", id, e);
+                return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                for (Entry entry : entries.values()) {
+                    weight.addAndGet(-entry.length);
+                    size.decrementAndGet();
+                }
+                entries.clear();
+                for (int k = 0; k < allocatedSlabs; k++) {
+                    slabEntries.get(k).clear();
+                }
+                freeSlabs.clear();
+                fullSlabs.clear();
+                for (int k = 0; k < allocatedSlabs; k++) {
+                    freeSlabs.add(k);
+                }
+                writeSlab = -1;
+                writePosition = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Make room for {@code length} bytes in the write slab. Must be called
+         * while holding the write lock.
+         *
+         * @return {@code false} if no room could be made, which only happens
+         *         when allocating direct memory fails for the first slab.
+         */
+        private boolean allocate(int length) {
+            if (writeSlab >= 0 && writePosition + length <= slabSize) {
+                return true;
+            }
+            if (writeSlab >= 0) {
+                fullSlabs.addLast(writeSlab);
+                writeSlab = -1;
+            }
+
+            if (!freeSlabs.isEmpty()) {
+                writeSlab = freeSlabs.removeFirst();
+                writePosition = 0;
+                return true;
+            }
+
+            if (allocatedSlabs < slabs.length) {
+                try {
+                    slabs[allocatedSlabs] = Buffer.allocateDirect(slabSize);
+                } catch (OutOfMemoryError e) {
+                    LOG.warn("Unable to allocate off-heap slab of {} bytes", slabSize, e);
+                    return allocateByReclaiming(length);
+                }
+                writeSlab = allocatedSlabs++;
+                writePosition = 0;
+                return true;
+            }
+
+            return allocateByReclaiming(length);
+        }
+
+        /**
+         * Reclaim the oldest full slabs until one has room for {@code length} bytes.
+         * Each pass clears the referenced flag of the surviving entries, so this
+         * terminates after at most two rounds over all slabs.
+         */
+        private boolean allocateByReclaiming(int length) {
+            for (int k = 0; k <= 2 * allocatedSlabs && !fullSlabs.isEmpty(); k++) {
+                int slab = fullSlabs.removeFirst();
+                reclaim(slab);
+                if (writePosition + length <= slabSize) {
+                    writeSlab = slab;
+                    return true;
+                }
+                fullSlabs.addLast(slab);
+            }
+            return false;
+        }
+
+        /**
+         * Evict all entries of {@code slab} that have not been referenced since
+         * the last time this slab was reclaimed and move the others to the front
+         * of the slab. Sets {@link #writePosition} to the end of the surviving
+         * entries.
+         */
+        private void reclaim(int slab) {
+            List<Entry> survivors = newArrayList();
+            int position = 0;
+            for (Entry entry : slabEntries.get(slab)) {
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    if (entry.offset != position) {
+                        move(slabs[slab], entry.offset, position, entry.length);
+                        entry.offset = position;
+                    }
+                    position += entry.length;
+                    survivors.add(entry);
+                } else {
+                    entries.remove(entry.id);
+                    weight.addAndGet(-entry.length);
+                    size.decrementAndGet();
+                    onEvict.run();
+                }
+            }
+
+            slabEntries.set(slab, survivors);
+            writePosition = position;
+        }
+
+        /**
+         * Move {@code length} bytes within {@code slab} from {@code from} to
+         * {@code to}. As {@code to} is smaller than {@code from}, copying in
+         * ascending order through a buffer never overwrites bytes not yet
+         * copied.
+         */
+        private void move(Buffer slab, int from, int to, int length) {
+            if (moveBuffer == null) {
+                moveBuffer = new byte[MOVE_BUFFER_SIZE];
+            }
+            Buffer source = slab.duplicate();
+            source.position(from);
+            Buffer target = slab.duplicate();
+            target.position(to);
+            while (length > 0) {
+                int n = Math.min(length, moveBuffer.length);
+                source.get(moveBuffer, 0, n);
+                target.put(moveBuffer, 0, n);
+                length -= n;
+            }
+        }
+    }
+
+    /**
+     * An {@code OutputStream} writing into a {@code Buffer}.
+     */
+    private static class BufferOutputStream extends OutputStream {
+        private final Buffer buffer;
+
+        BufferOutputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+    }
+}
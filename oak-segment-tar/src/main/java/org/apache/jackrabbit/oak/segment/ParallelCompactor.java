@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.segment.ClassicCompactor.UPDATE_LIMIT;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.segment.file.GCNodeWriteMonitor;
+import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This compactor implementation extends the {@link CheckpointCompactor} by
+ * compacting independent subtrees of each root concurrently.
+ * <p>
+ * The top levels of the content tree are split into subtrees in the calling
+ * thread. Each subtree is compacted by a {@link ClassicCompactor} on a pool of
+ * {@code concurrency} threads. The calling thread then stitches the compacted
+ * subtrees together bottom up. The {@link SegmentWriter} passed to this
+ * compactor must be thread safe, i.e. backed by a {@link SegmentBufferWriterPool},
+ * so each thread writes to its own {@link SegmentBufferWriter}.
+ */
+public class ParallelCompactor extends CheckpointCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelCompactor.class);
+
+    /**
+     * Number of levels below a root up to which the content tree is split
+     * into subtrees.
+     */
+    private static final int SPLIT_DEPTH =
+            Integer.getInteger("oak.compaction.parallel.splitDepth", 2);
+
+    /**
+     * Nodes with more children than this are not split any further but
+     * compacted as a single subtree.
+     */
+    private static final long SPLIT_MAX_CHILDREN =
+            Long.getLong("oak.compaction.parallel.splitMaxChildren", 1000);
+
+    @NotNull
+    private final SegmentWriter writer;
+
+    @NotNull
+    private final SegmentReader reader;
+
+    @Nullable
+    private final BlobStore blobStore;
+
+    @NotNull
+    private final GCNodeWriteMonitor compactionMonitor;
+
+    private final int concurrency;
+
+    /**
+     * Create a new instance based on the passed arguments.
+     * @param gcListener listener receiving notifications about the garbage collection process
+     * @param reader     segment reader used to read from the segments
+     * @param writer     thread safe segment writer used to serialise to segments
+     * @param blobStore  the blob store or {@code null} if none
+     * @param compactionMonitor   notification call back for each compacted nodes,
+     *                            properties, and binaries
+     * @param concurrency  number of threads compacting subtrees concurrently
+     */
+    public ParallelCompactor(
+            @NotNull GCMonitor gcListener,
+            @NotNull SegmentReader reader,
+            @NotNull SegmentWriter writer,
+            @Nullable BlobStore blobStore,
+            @NotNull GCNodeWriteMonitor compactionMonitor,
+            int concurrency) {
+        super(gcListener, reader, writer, blobStore, compactionMonitor);
+        checkArgument(concurrency > 0, "concurrency must be positive");
+        this.writer = checkNotNull(writer);
+        this.reader = checkNotNull(reader);
+        this.blobStore = blobStore;
+        this.compactionMonitor = checkNotNull(compactionMonitor);
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    @Nullable
+    protected SegmentNodeState compactWithDelegate(
+        @NotNull NodeState before,
+        @NotNull NodeState after,
+        @NotNull NodeState onto,
+        Canceller canceller
+    ) throws IOException {
+        if (concurrency == 1) {
+            return super.compactWithDelegate(before, after, onto, canceller);
+        }
+
+        // Never interrupt the worker threads as this would close the file
+        // channels they are reading from. Stop them through the canceller instead.
+        AtomicBoolean aborted = new AtomicBoolean();
+        Canceller workerCanceller = canceller.withCondition("parallel compaction aborted", aborted::get);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new WorkerThreadFactory());
+        CompactionTree tree = null;
+        SegmentNodeState compacted = null;
+        try {
+            tree = new CompactionTree(before, after, onto);
+            if (tree.split(0, executor, workerCanceller)) {
+                compacted = tree.compact();
+            }
+            return compacted;
+        } finally {
+            if (compacted == null) {
+                // Cancelled or failed: stop the running subtrees and
+                // drop the ones not started yet
+                aborted.set(true);
+                if (tree != null) {
+                    tree.cancel();
+                }
+            }
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Wait for the worker threads to finish. The waiting thread cannot be
+     * interrupted, as the worker threads must not outlive the compaction.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (executor.awaitTermination(1, MINUTES)) {
+                        return;
+                    }
+                    log.info("Waiting for parallel compaction workers to finish");
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                currentThread().interrupt();
+            }
+        }
+    }
+
+    @Nullable
+    private static Buffer getStableIdBytes(@NotNull NodeState node) {
+        return node instanceof SegmentNodeState
+            ? ((SegmentNodeState) node).getStableIdBytes()
+            : null;
+    }
+
+    /**
+     * A node of the content tree whose changes are either compacted as a whole
+     * by a worker thread or whose children are compacted individually and then
+     * stitched together by the calling thread.
+     */
+    private class CompactionTree implements NodeStateDiff {
+        @NotNull
+        private final NodeState before;
+
+        @NotNull
+        private final NodeState after;
+
+        @NotNull
+        private final NodeState onto;
+
+        private final List<PropertyState> modifiedProperties = newArrayList();
+
+        private final List<String> removedProperties = newArrayList();
+
+        private final Map<String, CompactionTree> modifiedChildren = newLinkedHashMap();
+
+        private final List<String> removedChildren = newArrayList();
+
+        @Nullable
+        private Future<SegmentNodeState> compactedState;
+
+        CompactionTree(@NotNull NodeState before, @NotNull NodeState after, @NotNull NodeState onto) {
+            this.before = checkNotNull(before);
+            this.after = checkNotNull(after);
+            this.onto = checkNotNull(onto);
+        }
+
+        /**
+         * Split this tree into subtrees up to {@link #SPLIT_DEPTH} levels and
+         * submit the compaction of the subtrees to {@code executor}.
+         * @return {@code false} if cancelled
+         */
+        boolean split(int depth, ExecutorService executor, Canceller canceller) {
+            if (canceller.check().isCancelled()) {
+                return false;
+            }
+            if (depth >= SPLIT_DEPTH || after.getChildNodeCount(SPLIT_MAX_CHILDREN + 1) > SPLIT_MAX_CHILDREN) {
+                compactedState = executor.submit(() -> compactor.compact(before, after, onto, canceller));
+                return true;
+            }
+            after.compareAgainstBaseState(before, this);
+            for (CompactionTree child : modifiedChildren.values()) {
+                if (!child.split(depth + 1, executor, canceller)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Cancel the compaction of the subtrees that was not started yet.
+         */
+        void cancel() {
+            if (compactedState != null) {
+                compactedState.cancel(false);
+            }
+            for (CompactionTree child : modifiedChildren.values()) {
+                child.cancel();
+            }
+        }
+
+        /**
+         * Wait for the compaction of all subtrees and stitch them together.
+         * @return  the compacted node state or {@code null} if cancelled.
+         */
+        @Nullable
+        SegmentNodeState compact() throws IOException {
+            if (compactedState != null) {
+                return getCompactedState(compactedState);
+            }
+
+            MemoryNodeBuilder builder = new MemoryNodeBuilder(onto);
+            for (PropertyState property : modifiedProperties) {
+                builder.setProperty(compactor.compact(property));
+            }
+            for (String name : removedProperties) {
+                builder.removeProperty(name);
+            }
+
+            long modCount = 0;
+            for (Entry<String, CompactionTree> child : modifiedChildren.entrySet()) {
+                SegmentNodeState compacted = child.getValue().compact();
+                if (compacted == null) {
+                    return null;
+                }
+                builder.setChildNode(child.getKey(), compacted);
+                builder = updated(builder, ++modCount);
+            }
+            for (String name : removedChildren) {
+                builder.getChildNode(name).remove();
+                builder = updated(builder, ++modCount);
+            }
+
+            RecordId nodeId = writer.writeNode(builder.getNodeState(), getStableIdBytes(after));
+            compactionMonitor.onNode();
+            return new SegmentNodeState(reader, writer, blobStore, nodeId);
+        }
+
+        /**
+         * Purge the updates to the underlying segments every {@link ClassicCompactor#UPDATE_LIMIT}
+         * updates, like the {@code ClassicCompactor} does.
+         */
+        private MemoryNodeBuilder updated(MemoryNodeBuilder builder, long modCount) throws IOException {
+            if (modCount % UPDATE_LIMIT == 0) {
+                RecordId newBaseId = writer.writeNode(builder.getNodeState(), null);
+                SegmentNodeState newBase = new SegmentNodeState(reader, writer, blobStore, newBaseId);
+                return new MemoryNodeBuilder(newBase);
+            }
+            return builder;
+        }
+
+        @Nullable
+        private SegmentNodeState getCompactedState(Future<SegmentNodeState> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for parallel compaction", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        @Override
+        public boolean propertyAdded(@NotNull PropertyState after) {
+            modifiedProperties.add(after);
+            return true;
+        }
+
+        @Override
+        public boolean propertyChanged(@NotNull PropertyState before, @NotNull PropertyState after) {
+            modifiedProperties.add(after);
+            return true;
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            removedProperties.add(before.getName());
+            return true;
+        }
+
+        @Override
+        public boolean childNodeAdded(@NotNull String name, @NotNull NodeState after) {
+            modifiedChildren.put(name, new CompactionTree(EMPTY_NODE, after, EMPTY_NODE));
+            return true;
+        }
+
+        @Override
+        public boolean childNodeChanged(@NotNull String name, @NotNull NodeState before, @NotNull NodeState after) {
+            modifiedChildren.put(name, new CompactionTree(before, after, onto.getChildNode(name)));
+            return true;
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            removedChildren.add(name);
+            return true;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            Thread thread = new Thread(r, "TarMK compaction worker " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -20,9 +20,11 @@
 package org.apache.jackrabbit.oak.segment;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
 import static org.apache.jackrabbit.oak.segment.CacheWeights.OBJECT_HEADER_SIZE;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.jackrabbit.oak.cache.CacheLIRS;
 import org.apache.jackrabbit.oak.cache.CacheStats;
@@ -124,6 +126,31 @@ public abstract class ReaderCache<T> {
         return value;
     }
 
+    /**
+     * Get the ids of the records in this cache. The order is approximate as
+     * accesses served by the fast cache do not update the recency of a record.
+     *
+     * @param idProvider  the segment id provider for creating the record ids
+     * @param limit       the maximum number of record ids to return
+     * @return the ids of at most {@code limit} records, most recently used first
+     */
+    @NotNull
+    public List<RecordId> getRecordIds(@NotNull SegmentIdProvider idProvider, int limit) {
+        List<RecordId> ids = newArrayList();
+        if (fastCache == null) {
+            return ids;
+        }
+        for (CacheKey key : cache.keys(false, false)) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            if (cache.containsKey(key)) {
+                ids.add(new RecordId(idProvider.newSegmentId(key.msb, key.lsb), key.offset));
+            }
+        }
+        return ids;
+    }
+
     /**
      * Clear the cache.
      */
@@ -19,34 +19,147 @@
 
 package org.apache.jackrabbit.oak.segment;
 
-import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.System.arraycopy;
 import static java.util.Arrays.binarySearch;
 
-import java.util.Map;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * A memory optimised set of {@link RecordId}s.
- *
+ * <p>
  * The set doesn't keep references to the actual record ids
- * it contains.
+ * it contains. Instead it stores the most and least significant
+ * bits of the segment id and the record number of each record id
+ * in an open addressing hash table of primitive values, which does
+ * not allocate any objects per entry.
+ * <p>
+ * This class is not thread safe.
  */
 public class RecordIdSet {
-    private final Map<String, IntSet> seenIds = newHashMap();
+
+    /**
+     * Initial number of slots of the hash table
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Maximum number of slots of the hash table
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    /**
+     * Number of bytes occupied by each slot of the hash table
+     */
+    private static final int SLOT_SIZE = 2 * Long.BYTES + Integer.BYTES;
+
+    private long[] msbs;
+
+    private long[] lsbs;
+
+    /**
+     * The record numbers incremented by one such that {@code 0} marks
+     * an empty slot.
+     */
+    private int[] numbers;
+
+    private int size;
+
+    public RecordIdSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        numbers = new int[capacity];
+    }
+
+    private static int hash(long msb, long lsb, int number) {
+        long h = msb * 0x9e3779b97f4a7c15L + lsb;
+        h = h * 0x9e3779b97f4a7c15L + number;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Find the slot of a record id
+     * @return  the slot containing the record id or the empty slot where
+     *          it should be inserted.
+     */
+    private int slot(long msb, long lsb, int number) {
+        int mask = numbers.length - 1;
+        int i = hash(msb, lsb, number) & mask;
+        while (true) {
+            int n = numbers[i];
+            if (n == 0 || (n == number + 1 && msbs[i] == msb && lsbs[i] == lsb)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        int capacity = numbers.length;
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("RecordIdSet exceeds its maximum capacity of " + MAX_CAPACITY);
+        }
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        int[] oldNumbers = numbers;
+        allocate(2 * capacity);
+        for (int i = 0; i < capacity; i++) {
+            int n = oldNumbers[i];
+            if (n != 0) {
+                long msb = oldMsbs[i];
+                long lsb = oldLsbs[i];
+                int k = slot(msb, lsb, n - 1);
+                msbs[k] = msb;
+                lsbs[k] = lsb;
+                numbers[k] = n;
+            }
+        }
+    }
 
     /**
      * Add {@code id} to this set if not already present
      * @param id  the record id to add
      * @return  {@code true} if added, {@code false} if already present
      */
-    public boolean addIfNotPresent(RecordId id) {
-        String segmentId = id.getSegmentId().toString();
-        IntSet offsets = seenIds.get(segmentId);
-        if (offsets == null) {
-            offsets = new IntSet();
-            seenIds.put(segmentId, offsets);
+    public boolean addIfNotPresent(@NotNull RecordId id) {
+        SegmentId segmentId = id.getSegmentId();
+        return addIfNotPresent(
+                segmentId.getMostSignificantBits(),
+                segmentId.getLeastSignificantBits(),
+                id.getRecordNumber());
+    }
+
+    /**
+     * Add the record id identified by the given segment id and record
+     * number to this set if not already present
+     * @param msb     the most significant bits of the segment id
+     * @param lsb     the least significant bits of the segment id
+     * @param number  the record number
+     * @return  {@code true} if added, {@code false} if already present
+     */
+    public boolean addIfNotPresent(long msb, long lsb, int number) {
+        checkArgument(number >= 0);
+        int i = slot(msb, lsb, number);
+        if (numbers[i] != 0) {
+            return false;
+        }
+        msbs[i] = msb;
+        lsbs[i] = lsb;
+        numbers[i] = number + 1;
+        size++;
+        if (size > numbers.length / 4 * 3) {
+            grow();
         }
-        return offsets.add(id.getRecordNumber());
+        return true;
     }
 
     /**
@@ -54,12 +167,43 @@ public class RecordIdSet {
      * @param id  the record id to check for
      * @return  {@code true} iff {@code id} is present.
      */
-    public boolean contains(RecordId id) {
-        String segmentId = id.getSegmentId().toString();
-        IntSet offsets = seenIds.get(segmentId);
-        return offsets != null && offsets.contains(id.getRecordNumber());
+    public boolean contains(@NotNull RecordId id) {
+        SegmentId segmentId = id.getSegmentId();
+        return contains(
+                segmentId.getMostSignificantBits(),
+                segmentId.getLeastSignificantBits(),
+                id.getRecordNumber());
+    }
+
+    /**
+     * Check whether the record id identified by the given segment id
+     * and record number is present in this set.
+     * @param msb     the most significant bits of the segment id
+     * @param lsb     the least significant bits of the segment id
+     * @param number  the record number
+     * @return  {@code true} iff the record id is present.
+     */
+    public boolean contains(long msb, long lsb, int number) {
+        return number >= 0 && numbers[slot(msb, lsb, number)] != 0;
+    }
+
+    /**
+     * @return  the number of record ids in this set.
+     */
+    public int size() {
+        return size;
     }
 
+    /**
+     * @return  the number of bytes allocated by this set.
+     */
+    public long estimateMemoryUsage() {
+        return (long) numbers.length * SLOT_SIZE;
+    }
+
+    /**
+     * A sorted set of ints, which is compact for small sets.
+     */
     static class IntSet {
         int[] elements;
 
@@ -334,6 +334,15 @@ public class Segment {
         return segmentReferences.getSegmentId(index + 1).asUUID();
     }
 
+    /**
+     * @return  the ids of the segments referenced from this data segment.
+     * @throws IllegalStateException if this is a bulk segment.
+     */
+    @NotNull
+    public Iterable<SegmentId> getReferencedSegmentIds() {
+        return segmentReferences;
+    }
+
     /**
      * Determine the gc generation a segment from its data. Note that bulk
      * segments don't have generations (i.e. stay at 0).
@@ -42,9 +42,13 @@ import org.jetbrains.annotations.NotNull;
  *          buffers.</li>
  *     <li>{@link #HEAP_BUFFER_CAPACITY}: total capacity of the allocated
  *          heap byte buffers.</li>
+ *     <li>{@link #WRITER_POOL_CONTENTION_COUNT}: number of times a thread
+ *          had to wait for another thread to access a stripe of a
+ *          {@link SegmentBufferWriterPool}.</li>
  * </ul>
  * <p>
- * Users of this class call {@link #trackAllocation(Buffer)} to update above statistics.
+ * Users of this class call {@link #trackAllocation(Buffer)} and
+ * {@link #trackWriterPoolContention()} to update above statistics.
  */
 public class SegmentBufferMonitor {
 
@@ -68,6 +72,12 @@ public class SegmentBufferMonitor {
      */
     public static final String HEAP_BUFFER_CAPACITY = "oak.segment.heap-buffer-capacity";
 
+    /**
+     * Number of times a thread had to wait for another thread to access
+     * a stripe of a {@link SegmentBufferWriterPool}.
+     */
+    public static final String WRITER_POOL_CONTENTION_COUNT = "oak.segment.writer-pool-contention-count";
+
     @NotNull
     private final Set<BufferReference> buffers = newConcurrentHashSet();
 
@@ -86,6 +96,9 @@ public class SegmentBufferMonitor {
     @NotNull
     private final CounterStats heapBufferCapacity;
 
+    @NotNull
+    private final CounterStats writerPoolContentionCount;
+
     /**
      * Create a new instance using the passed {@code statisticsProvider} to expose
      * buffer allocations.
@@ -96,6 +109,7 @@ public class SegmentBufferMonitor {
         directBufferCapacity = statisticsProvider.getCounterStats(DIRECT_BUFFER_CAPACITY, METRICS_ONLY);
         heapBufferCount = statisticsProvider.getCounterStats(HEAP_BUFFER_COUNT, METRICS_ONLY);
         heapBufferCapacity = statisticsProvider.getCounterStats(HEAP_BUFFER_CAPACITY, METRICS_ONLY);
+        writerPoolContentionCount = statisticsProvider.getCounterStats(WRITER_POOL_CONTENTION_COUNT, METRICS_ONLY);
     }
 
     private static class BufferReference extends WeakReference<Buffer> {
@@ -121,6 +135,14 @@ public class SegmentBufferMonitor {
         trackDeallocations();
     }
 
+    /**
+     * Track a thread having to wait for another thread to access a stripe of a
+     * {@link SegmentBufferWriterPool}.
+     */
+    public void trackWriterPoolContention() {
+        writerPoolContentionCount.inc();
+    }
+
     private void trackDeallocations() {
         BufferReference reference = (BufferReference) referenceQueue.poll();
         while (reference != null) {
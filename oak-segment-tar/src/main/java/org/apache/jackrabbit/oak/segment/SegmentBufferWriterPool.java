@@ -24,6 +24,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
+import static java.lang.Integer.getInteger;
 import static java.lang.Thread.currentThread;
 
 import java.io.IOException;
@@ -31,42 +32,40 @@ import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Supplier;
 import com.google.common.util.concurrent.Monitor;
 import com.google.common.util.concurrent.Monitor.Guard;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * This {@link WriteOperationHandler} uses a pool of {@link SegmentBufferWriter}s,
  * which it passes to its {@link #execute(GCGeneration, WriteOperation) execute} method.
  * <p>
+ * Writers are kept in a fixed number of {@link Stripe stripes}, each protected
+ * by its own monitor. The stripe of a writer is determined by the thread and
+ * the gc generation it is borrowed for, so concurrent writers rarely compete
+ * for the same monitor. Contention on the stripes is reported through
+ * {@link SegmentBufferMonitor#trackWriterPoolContention()}.
+ * <p>
  * Instances of this class are thread safe.
  */
 public class SegmentBufferWriterPool implements WriteOperationHandler {
 
     /**
-     * Monitor protecting the state of this pool. Neither of {@link #writers},
-     * {@link #borrowed} and {@link #disposed} must be modified without owning
-     * this monitor.
-     */
-    private final Monitor poolMonitor = new Monitor(true);
-
-    /**
-     * Pool of current writers that are not in use
+     * Default number of stripes. Rounded up to the next power of two.
      */
-    private final Map<Object, SegmentBufferWriter> writers = newHashMap();
+    private static final int DEFAULT_STRIPE_COUNT = getInteger("oak.segment.writerPool.stripes",
+            4 * Runtime.getRuntime().availableProcessors());
 
     /**
-     * Writers that are currently in use
+     * The stripes of this pool. The length of this array is a power of two.
      */
-    private final Set<SegmentBufferWriter> borrowed = newHashSet();
-
-    /**
-     * Retired writers that have not yet been flushed
-     */
-    private final Set<SegmentBufferWriter> disposed = newHashSet();
+    @NotNull
+    private final Stripe[] stripes;
 
     @NotNull
     private final SegmentIdProvider idProvider;
@@ -80,17 +79,46 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
     @NotNull
     private final String wid;
 
-    private short writerId = -1;
+    @NotNull
+    private final SegmentBufferMonitor monitor;
+
+    private final AtomicInteger writerId = new AtomicInteger(-1);
 
     public SegmentBufferWriterPool(
             @NotNull SegmentIdProvider idProvider,
             @NotNull SegmentReader reader,
             @NotNull String wid,
             @NotNull Supplier<GCGeneration> gcGeneration) {
+        this(idProvider, reader, wid, gcGeneration, new SegmentBufferMonitor(StatisticsProvider.NOOP));
+    }
+
+    public SegmentBufferWriterPool(
+            @NotNull SegmentIdProvider idProvider,
+            @NotNull SegmentReader reader,
+            @NotNull String wid,
+            @NotNull Supplier<GCGeneration> gcGeneration,
+            @NotNull SegmentBufferMonitor monitor) {
+        this(idProvider, reader, wid, gcGeneration, monitor, DEFAULT_STRIPE_COUNT);
+    }
+
+    public SegmentBufferWriterPool(
+            @NotNull SegmentIdProvider idProvider,
+            @NotNull SegmentReader reader,
+            @NotNull String wid,
+            @NotNull Supplier<GCGeneration> gcGeneration,
+            @NotNull SegmentBufferMonitor monitor,
+            int stripeCount) {
         this.idProvider = checkNotNull(idProvider);
         this.reader = checkNotNull(reader);
         this.wid = checkNotNull(wid);
         this.gcGeneration = checkNotNull(gcGeneration);
+        this.monitor = checkNotNull(monitor);
+
+        int count = Integer.highestOneBit(Math.max(1, stripeCount) - 1) << 1;
+        this.stripes = new Stripe[Math.max(1, count)];
+        for (int k = 0; k < stripes.length; k++) {
+            stripes[k] = new Stripe();
+        }
     }
 
     @Override
@@ -105,68 +133,188 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
                             @NotNull WriteOperation writeOperation)
     throws IOException {
         SimpleImmutableEntry<?,?> key = new SimpleImmutableEntry<>(currentThread(), gcGeneration);
-        SegmentBufferWriter writer = borrowWriter(key, gcGeneration);
+        Stripe stripe = stripeFor(key);
+        SegmentBufferWriter writer = stripe.borrowWriter(key, gcGeneration);
         try {
             return writeOperation.execute(writer);
         } finally {
-            returnWriter(key, writer);
+            stripe.returnWriter(key, writer);
         }
     }
 
     @Override
     public void flush(@NotNull SegmentStore store) throws IOException {
         List<SegmentBufferWriter> toFlush = newArrayList();
-        List<SegmentBufferWriter> toReturn = newArrayList();
+        List<List<SegmentBufferWriter>> toReturn = newArrayList();
 
-        poolMonitor.enter();
-        try {
-            // Collect all writers that are not currently in use and clear
-            // the list so they won't get re-used anymore.
-            toFlush.addAll(writers.values());
-            writers.clear();
-
-            // Collect all borrowed writers, which we need to wait for.
-            // Clear the list so they will get disposed once returned.
-            toReturn.addAll(borrowed);
-            borrowed.clear();
-        } finally {
-            poolMonitor.leave();
+        // Collect the writers of all stripes first, so waiting for
+        // borrowed writers of one stripe doesn't delay the others.
+        for (Stripe stripe : stripes) {
+            toReturn.add(stripe.collect(toFlush));
         }
 
-        // Wait for the return of the borrowed writers. This is the
-        // case once all of them appear in the disposed set.
-        if (safeEnterWhen(poolMonitor, allReturned(toReturn))) {
-            try {
-                // Collect all disposed writers and clear the list to mark them
-                // as flushed.
-                toFlush.addAll(toReturn);
-                disposed.removeAll(toReturn);
-            } finally {
-                poolMonitor.leave();
-            }
+        for (int k = 0; k < stripes.length; k++) {
+            stripes[k].awaitReturned(toReturn.get(k), toFlush);
         }
 
-        // Call flush from outside the pool monitor to avoid potential
+        // Call flush from outside the stripe monitors to avoid potential
         // deadlocks of that method calling SegmentStore.writeSegment
         for (SegmentBufferWriter writer : toFlush) {
             writer.flush(store);
         }
     }
 
+    @NotNull
+    private Stripe stripeFor(@NotNull Object key) {
+        return stripes[stripeIndex(key)];
+    }
+
     /**
-     * Create a {@code Guard} that is satisfied if and only if {@link #disposed}
-     * contains all items in {@code toReturn}
+     * @return  the index of the stripe keeping the writer for {@code key}
      */
-    @NotNull
-    private Guard allReturned(final List<SegmentBufferWriter> toReturn) {
-        return new Guard(poolMonitor) {
+    int stripeIndex(@NotNull Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return h & (stripes.length - 1);
+    }
+
+    /**
+     * @return  the number of stripes of this pool
+     */
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * A stripe of this pool holding a subset of its writers.
+     */
+    private class Stripe {
+
+        /**
+         * Monitor protecting the state of this stripe. Neither of {@link #writers},
+         * {@link #borrowed} and {@link #disposed} must be modified without owning
+         * this monitor.
+         */
+        private final Monitor stripeMonitor = new Monitor(true);
 
-            @Override
-            public boolean isSatisfied() {
-                return disposed.containsAll(toReturn);
+        /**
+         * Pool of current writers that are not in use
+         */
+        private final Map<Object, SegmentBufferWriter> writers = newHashMap();
+
+        /**
+         * Writers that are currently in use
+         */
+        private final Set<SegmentBufferWriter> borrowed = newHashSet();
+
+        /**
+         * Retired writers that have not yet been flushed
+         */
+        private final Set<SegmentBufferWriter> disposed = newHashSet();
+
+        private void enter() {
+            if (!stripeMonitor.tryEnter()) {
+                monitor.trackWriterPoolContention();
+                stripeMonitor.enter();
+            }
+        }
+
+        /**
+         * Collect all writers that are not currently in use into {@code toFlush}
+         * and clear the list so they won't get re-used anymore. Returns all
+         * borrowed writers, which need to be waited for. The list of borrowed
+         * writers is cleared so they will get disposed once returned.
+         */
+        @NotNull
+        List<SegmentBufferWriter> collect(@NotNull List<SegmentBufferWriter> toFlush) {
+            List<SegmentBufferWriter> toReturn = newArrayList();
+            enter();
+            try {
+                toFlush.addAll(writers.values());
+                writers.clear();
+                toReturn.addAll(borrowed);
+                borrowed.clear();
+            } finally {
+                stripeMonitor.leave();
+            }
+            return toReturn;
+        }
+
+        /**
+         * Wait for the return of the borrowed writers in {@code toReturn}.
+         * This is the case once all of them appear in the disposed set. The
+         * returned writers are added to {@code toFlush}.
+         */
+        void awaitReturned(@NotNull List<SegmentBufferWriter> toReturn, @NotNull List<SegmentBufferWriter> toFlush) {
+            if (safeEnterWhen(stripeMonitor, allReturned(toReturn))) {
+                try {
+                    // Collect all disposed writers and clear the list to mark them
+                    // as flushed.
+                    toFlush.addAll(toReturn);
+                    disposed.removeAll(toReturn);
+                } finally {
+                    stripeMonitor.leave();
+                }
             }
+        }
+
+        /**
+         * Create a {@code Guard} that is satisfied if and only if {@link #disposed}
+         * contains all items in {@code toReturn}
+         */
+        @NotNull
+        private Guard allReturned(final List<SegmentBufferWriter> toReturn) {
+            return new Guard(stripeMonitor) {
+
+                @Override
+                public boolean isSatisfied() {
+                    return disposed.containsAll(toReturn);
+                }
+
+            };
+        }
+
+        /**
+         * Return a writer from this stripe by its {@code key}. This method may return
+         * a fresh writer at any time. Callers need to return a writer before
+         * borrowing it again. Failing to do so leads to undefined behaviour.
+         */
+        SegmentBufferWriter borrowWriter(@NotNull Object key, @NotNull GCGeneration gcGeneration) {
+            enter();
+            try {
+                SegmentBufferWriter writer = writers.remove(key);
+                if (writer == null) {
+                    writer = new SegmentBufferWriter(
+                            idProvider,
+                            reader,
+                            getWriterId(wid),
+                            gcGeneration
+                    );
+                }
+                borrowed.add(writer);
+                return writer;
+            } finally {
+                stripeMonitor.leave();
+            }
+        }
 
-        };
+        /**
+         * Return a writer to this stripe using the {@code key} that was used to borrow
+         * it.
+         */
+        void returnWriter(Object key, SegmentBufferWriter writer) {
+            enter();
+            try {
+                if (borrowed.remove(writer)) {
+                    checkState(writers.put(key, writer) == null);
+                } else {
+                    // Defer flush this writer as it was borrowed while flush() was called.
+                    disposed.add(writer);
+                }
+            } finally {
+                stripeMonitor.leave();
+            }
+        }
     }
 
     /**
@@ -184,52 +332,8 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
         }
     }
 
-    /**
-     * Return a writer from the pool by its {@code key}. This method may return
-     * a fresh writer at any time. Callers need to return a writer before
-     * borrowing it again. Failing to do so leads to undefined behaviour.
-     */
-    private SegmentBufferWriter borrowWriter(@NotNull Object key, @NotNull GCGeneration gcGeneration) {
-        poolMonitor.enter();
-        try {
-            SegmentBufferWriter writer = writers.remove(key);
-            if (writer == null) {
-                writer = new SegmentBufferWriter(
-                        idProvider,
-                        reader,
-                        getWriterId(wid),
-                        gcGeneration
-                );
-            }
-            borrowed.add(writer);
-            return writer;
-        } finally {
-            poolMonitor.leave();
-        }
-    }
-
-    /**
-     * Return a writer to the pool using the {@code key} that was used to borrow
-     * it.
-     */
-    private void returnWriter(Object key, SegmentBufferWriter writer) {
-        poolMonitor.enter();
-        try {
-            if (borrowed.remove(writer)) {
-                checkState(writers.put(key, writer) == null);
-            } else {
-                // Defer flush this writer as it was borrowed while flush() was called.
-                disposed.add(writer);
-            }
-        } finally {
-            poolMonitor.leave();
-        }
-    }
-
     private String getWriterId(String wid) {
-        if (++writerId > 9999) {
-            writerId = 0;
-        }
+        int writerId = this.writerId.updateAndGet(id -> id >= 9999 ? 0 : id + 1);
         // Manual padding seems to be fastest here
         if (writerId < 10) {
             return wid + ".000" + writerId;
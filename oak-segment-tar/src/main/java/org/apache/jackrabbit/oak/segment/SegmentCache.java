@@ -20,12 +20,18 @@
 package org.apache.jackrabbit.oak.segment;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptyList;
 import static org.apache.jackrabbit.oak.segment.CacheWeights.segmentWeight;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 import com.google.common.cache.Cache;
@@ -33,8 +39,10 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.RemovalNotification;
 import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
+import org.apache.jackrabbit.oak.commons.Buffer;
 import org.apache.jackrabbit.oak.segment.CacheWeights.SegmentCacheWeigher;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A cache for {@link SegmentId#isDataSegmentId() data} {@link Segment}
@@ -45,6 +53,10 @@ import org.jetbrains.annotations.NotNull;
  * level cache is implemented by memoising the segment in its id (see {@code
  * SegmentId#segment}. Every time an segment is evicted from this cache the
  * memoised segment is discarded (see {@code SegmentId#onAccess}.
+ * <p>
+ * Optionally segments evicted from this cache are kept off-heap in a 3rd
+ * level cache (see {@link OffHeapSegmentCache}). This allows for large
+ * segment caches without increasing the size of the heap.
  */
 public abstract class SegmentCache {
 
@@ -64,12 +76,35 @@ public abstract class SegmentCache {
     @NotNull
     public static SegmentCache newSegmentCache(long cacheSizeMB) {
         if (cacheSizeMB > 0) {
-            return new NonEmptyCache(cacheSizeMB);
+            return new NonEmptyCache(cacheSizeMB, 0, null);
         } else {
             return new EmptyCache();
         }
     }
 
+    /**
+     * Create a new segment cache of the given size, which keeps segments
+     * evicted from the heap in an off-heap cache of the given size. Returns an
+     * always empty cache for {@code cacheSizeMB <= 0} and a cache without
+     * off-heap cache for {@code offHeapCacheSizeMB <= 0}.
+     *
+     * @param cacheSizeMB        size of the on-heap cache in megabytes.
+     * @param offHeapCacheSizeMB size of the off-heap cache in megabytes.
+     * @param segmentFactory     factory for re-creating segments from the bytes
+     *                           kept off-heap.
+     */
+    @NotNull
+    public static SegmentCache newSegmentCache(long cacheSizeMB, long offHeapCacheSizeMB,
+            @NotNull BiFunction<SegmentId, Buffer, Segment> segmentFactory) {
+        if (cacheSizeMB <= 0) {
+            return new EmptyCache();
+        } else if (offHeapCacheSizeMB <= 0) {
+            return new NonEmptyCache(cacheSizeMB, 0, null);
+        } else {
+            return new NonEmptyCache(cacheSizeMB, offHeapCacheSizeMB, checkNotNull(segmentFactory));
+        }
+    }
+
     /**
      * Retrieve an segment from the cache or load it and cache it if not yet in
      * the cache.
@@ -96,6 +131,17 @@ public abstract class SegmentCache {
      */
     public abstract void clear();
 
+    /**
+     * Get the ids of the segments in this cache. Segments only kept in the
+     * off-heap tier are not included.
+     *
+     * @param limit the maximum number of segment ids to return
+     * @return the ids of at most {@code limit} segments, most recently
+     * accessed first
+     */
+    @NotNull
+    public abstract List<SegmentId> getSegmentIds(int limit);
+
     /**
      * @return Statistics for this cache.
      */
@@ -109,6 +155,15 @@ public abstract class SegmentCache {
      */
     public abstract void recordHit();
 
+    /**
+     * Record a hit in this cache's underlying statistics and the time of the
+     * access to the segment of {@code id}. {@link #getSegmentIds(int)} returns
+     * the ids of recently accessed segments first.
+     *
+     * See {@code SegmentId#onAccess}
+     */
+    public abstract void recordAccess(@NotNull SegmentId id);
+
     private static class NonEmptyCache extends SegmentCache {
 
         /**
@@ -124,12 +179,25 @@ public abstract class SegmentCache {
         @NotNull
         private final Stats stats;
 
+        /**
+         * Cache of segments evicted from {@link #cache} or {@code null} if none.
+         */
+        @Nullable
+        private final OffHeapSegmentCache offHeapCache;
+
+        @Nullable
+        private final BiFunction<SegmentId, Buffer, Segment> segmentFactory;
+
         /**
          * Create a new cache of the given size.
          *
-         * @param cacheSizeMB size of the cache in megabytes.
+         * @param cacheSizeMB        size of the cache in megabytes.
+         * @param offHeapCacheSizeMB size of the off-heap cache in megabytes.
+         * @param segmentFactory     factory for re-creating segments from the
+         *                           off-heap cache or {@code null} if none.
          */
-        private NonEmptyCache(long cacheSizeMB) {
+        private NonEmptyCache(long cacheSizeMB, long offHeapCacheSizeMB,
+                @Nullable BiFunction<SegmentId, Buffer, Segment> segmentFactory) {
             long maximumWeight = cacheSizeMB * 1024 * 1024;
             this.cache = CacheBuilder.newBuilder()
                     .concurrencyLevel(16)
@@ -137,16 +205,34 @@ public abstract class SegmentCache {
                     .weigher(new SegmentCacheWeigher())
                     .removalListener(this::onRemove)
                     .build();
-            this.stats = new Stats(NAME, maximumWeight, cache::size);
+            this.segmentFactory = segmentFactory;
+
+            if (segmentFactory != null) {
+                long offHeapWeight = offHeapCacheSizeMB * 1024 * 1024;
+                // Enough slabs for each stripe of the off-heap cache to have several
+                int slabSize = (int) Math.min(OffHeapSegmentCache.DEFAULT_SLAB_SIZE,
+                        Math.max(Segment.MAX_SEGMENT_SIZE, offHeapWeight / (4L * OffHeapSegmentCache.MAX_STRIPES)));
+                OffHeapSegmentCache offHeap = new OffHeapSegmentCache(offHeapWeight, slabSize, this::onOffHeapEvict);
+                this.offHeapCache = offHeap;
+                this.stats = new Stats(NAME, maximumWeight + offHeap.capacity(),
+                        () -> cache.size() + offHeap.size(), offHeap::weight);
+            } else {
+                this.offHeapCache = null;
+                this.stats = new Stats(NAME, maximumWeight, cache::size, () -> 0L);
+            }
         }
 
         /**
          * Removal handler called whenever an item is evicted from the cache.
+         * Evicted segments are moved to the off-heap cache if there is one.
          */
         private void onRemove(@NotNull RemovalNotification<SegmentId, Segment> notification) {
-            stats.evictionCount.incrementAndGet();
-            if (notification.getValue() != null) {
-                stats.currentWeight.addAndGet(-segmentWeight(notification.getValue()));
+            Segment segment = notification.getValue();
+            if (offHeapCache == null || segment == null || !notification.wasEvicted() || !offHeapCache.put(segment)) {
+                stats.evictionCount.incrementAndGet();
+            }
+            if (segment != null) {
+                stats.currentWeight.addAndGet(-segmentWeight(segment));
             }
             if (notification.getKey() != null) {
                 notification.getKey().unloaded();
@@ -159,11 +245,16 @@ public abstract class SegmentCache {
             if (id.isDataSegmentId()) {
                 return cache.get(id, () -> {
                     try {
-                        long t0 = System.nanoTime();
-                        Segment segment = loader.call();
-                        stats.loadSuccessCount.incrementAndGet();
-                        stats.loadTime.addAndGet(System.nanoTime() - t0);
-                        stats.missCount.incrementAndGet();
+                        Segment segment = getOffHeap(id);
+                        if (segment != null) {
+                            stats.hitCount.incrementAndGet();
+                        } else {
+                            long t0 = System.nanoTime();
+                            segment = loader.call();
+                            stats.loadSuccessCount.incrementAndGet();
+                            stats.loadTime.addAndGet(System.nanoTime() - t0);
+                            stats.missCount.incrementAndGet();
+                        }
                         stats.currentWeight.addAndGet(segmentWeight(segment));
                         id.loaded(segment);
                         return segment;
@@ -181,6 +272,26 @@ public abstract class SegmentCache {
             }
         }
 
+        /**
+         * Re-create a segment from the off-heap cache.
+         * @return  the segment or {@code null} if not in the off-heap cache.
+         */
+        @Nullable
+        private Segment getOffHeap(@NotNull SegmentId id) {
+            if (offHeapCache == null || segmentFactory == null) {
+                return null;
+            }
+            Buffer data = offHeapCache.get(id);
+            return data == null ? null : segmentFactory.apply(id, data);
+        }
+
+        /**
+         * Eviction handler called whenever a segment is evicted from the off-heap cache.
+         */
+        private void onOffHeapEvict() {
+            stats.evictionCount.incrementAndGet();
+        }
+
         @Override
         public void putSegment(@NotNull Segment segment) {
             SegmentId id = segment.getSegmentId();
@@ -201,6 +312,28 @@ public abstract class SegmentCache {
         @Override
         public void clear() {
             cache.invalidateAll();
+            if (offHeapCache != null) {
+                offHeapCache.clear();
+            }
+        }
+
+        @Override
+        @NotNull
+        public List<SegmentId> getSegmentIds(int limit) {
+            // Most accesses are served by the segments memoised in their ids
+            // and bypass the cache, so the cache's own LRU order is useless here.
+            // Access times keep changing concurrently, so sort a copy of them.
+            List<Entry<SegmentId, Long>> accesses = newArrayList();
+            for (SegmentId id : cache.asMap().keySet()) {
+                accesses.add(new SimpleImmutableEntry<>(id, id.getLastAccess()));
+            }
+            accesses.sort(Entry.<SegmentId, Long>comparingByValue().reversed());
+
+            List<SegmentId> ids = newArrayList();
+            for (Entry<SegmentId, Long> access : accesses.subList(0, Math.min(limit, accesses.size()))) {
+                ids.add(access.getKey());
+            }
+            return ids;
         }
 
         @Override
@@ -213,11 +346,17 @@ public abstract class SegmentCache {
         public void recordHit() {
             stats.hitCount.incrementAndGet();
         }
+
+        @Override
+        public void recordAccess(@NotNull SegmentId id) {
+            stats.hitCount.incrementAndGet();
+            id.accessed();
+        }
     }
 
     /** An always empty cache */
     private static class EmptyCache extends SegmentCache {
-        private final Stats stats = new Stats(NAME, 0, () -> 0L);
+        private final Stats stats = new Stats(NAME, 0, () -> 0L, () -> 0L);
 
         @NotNull
         @Override
@@ -245,6 +384,12 @@ public abstract class SegmentCache {
         @Override
         public void clear() {}
 
+        @Override
+        @NotNull
+        public List<SegmentId> getSegmentIds(int limit) {
+            return emptyList();
+        }
+
         @NotNull
         @Override
         public AbstractCacheStats getCacheStats() {
@@ -255,6 +400,11 @@ public abstract class SegmentCache {
         public void recordHit() {
             stats.hitCount.incrementAndGet();
         }
+
+        @Override
+        public void recordAccess(@NotNull SegmentId id) {
+            recordHit();
+        }
     }
 
     /**
@@ -268,6 +418,9 @@ public abstract class SegmentCache {
         @NotNull
         private final Supplier<Long> elementCount;
 
+        @NotNull
+        private final Supplier<Long> offHeapWeight;
+
         @NotNull
         final AtomicLong currentWeight = new AtomicLong();
 
@@ -289,10 +442,12 @@ public abstract class SegmentCache {
         @NotNull
         final AtomicLong missCount = new AtomicLong();
 
-        protected Stats(@NotNull String name, long maximumWeight, @NotNull Supplier<Long> elementCount) {
+        protected Stats(@NotNull String name, long maximumWeight, @NotNull Supplier<Long> elementCount,
+                @NotNull Supplier<Long> offHeapWeight) {
             super(name);
             this.maximumWeight = maximumWeight;
             this.elementCount = checkNotNull(elementCount);
+            this.offHeapWeight = checkNotNull(offHeapWeight);
         }
 
         @Override
@@ -319,7 +474,7 @@ public abstract class SegmentCache {
 
         @Override
         public long estimateCurrentWeight() {
-            return currentWeight.get();
+            return currentWeight.get() + offHeapWeight.get();
         }
     }
 }
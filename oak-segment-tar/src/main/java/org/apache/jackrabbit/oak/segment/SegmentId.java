@@ -22,6 +22,7 @@ import static org.apache.jackrabbit.oak.segment.CacheWeights.OBJECT_HEADER_SIZE;
 import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
 
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
@@ -64,7 +65,7 @@ public class SegmentId implements Comparable<SegmentId> {
     private final long creationTime;
 
     /** Callback called whenever an underlying and locally memoised segment is accessed */
-    private final Runnable onAccess;
+    private final Consumer<SegmentId> onAccess;
 
     /**
      * The gc generation of this segment or -1 if unknown.
@@ -84,6 +85,14 @@ public class SegmentId implements Comparable<SegmentId> {
      */
     private volatile Segment segment;
 
+    /**
+     * The value of {@link System#nanoTime()} when the segment was last loaded
+     * or, if access times are recorded, last accessed (see {@link #accessed()}).
+     * Not volatile as racy updates only affect the approximate access order of
+     * segments.
+     */
+    private long lastAccess;
+
     /**
      * Create a new segment id with access tracking.
      * @param store  store this is belongs to
@@ -92,6 +101,18 @@ public class SegmentId implements Comparable<SegmentId> {
      * @param onAccess  callback called whenever an underlying and locally memoised segment is accessed.
      */
     public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Runnable onAccess) {
+        this(store, msb, lsb, id -> onAccess.run());
+    }
+
+    /**
+     * Create a new segment id with access tracking.
+     * @param store  store this is belongs to
+     * @param msb    most significant bits of this id
+     * @param lsb    least significant bits of this id
+     * @param onAccess  callback called with this id whenever an underlying and locally
+     *                  memoised segment is accessed.
+     */
+    public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Consumer<SegmentId> onAccess) {
         this.store = store;
         this.msb = msb;
         this.lsb = lsb;
@@ -106,7 +127,7 @@ public class SegmentId implements Comparable<SegmentId> {
      * @param lsb    least significant bits of this id
      */
     public SegmentId(@NotNull SegmentStore store, long msb, long lsb) {
-        this(store, msb, lsb, () -> {});
+        this(store, msb, lsb, id -> {});
     }
 
     /**
@@ -154,10 +175,27 @@ public class SegmentId implements Comparable<SegmentId> {
                 }
             }
         }
-        onAccess.run();
+        onAccess.accept(this);
         return segment;
     }
 
+    /**
+     * Record the current time as the time of the last access to the segment
+     * of this id.
+     */
+    void accessed() {
+        lastAccess = System.nanoTime();
+    }
+
+    /**
+     * @return  the value of {@link System#nanoTime()} when the segment of this
+     *          id was last loaded or accessed.
+     * @see #accessed()
+     */
+    long getLastAccess() {
+        return lastAccess;
+    }
+
     /**
      * @return  garbage collection related information like the age of this segment
      *          id, the generation of its segment and information about its gc status.
@@ -202,6 +240,7 @@ public class SegmentId implements Comparable<SegmentId> {
     void loaded(@NotNull Segment segment) {
         this.segment = segment;
         this.gcGeneration = segment.getGcGeneration();
+        this.lastAccess = System.nanoTime();
     }
 
     /**
@@ -214,6 +253,16 @@ public class SegmentId implements Comparable<SegmentId> {
         this.segment = null;
     }
 
+    /**
+     * @return  {@code true} iff the segment identified by this instance is
+     *          currently memoised.
+     * @see #loaded(Segment)
+     * @see #unloaded()
+     */
+    public boolean isLoaded() {
+        return segment != null;
+    }
+
     /**
      * Determine whether this instance belongs to the passed {@code store}
      * @param store
@@ -284,7 +333,7 @@ public class SegmentId implements Comparable<SegmentId> {
 
     public int estimateMemoryUsage() {
         int size = OBJECT_HEADER_SIZE;
-        size += 48; // 6 fields x 8, ignoring 'gcInfo'
+        size += 56; // 7 fields x 8, ignoring 'gcInfo'
         size += StringUtils.estimateMemoryUsage(gcInfo);
         return size;
     }
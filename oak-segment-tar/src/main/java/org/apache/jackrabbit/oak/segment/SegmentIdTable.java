@@ -18,10 +18,9 @@
  */
 package org.apache.jackrabbit.oak.segment;
 
-import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
-import static java.util.Collections.nCopies;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -29,18 +28,28 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Hash table of weak references to segment identifiers.
+ * <p>
+ * Looking up an identifier that is already tracked by this table does not
+ * acquire any lock. Only adding a new identifier and rebuilding the table
+ * are synchronized. Rebuilding the table replaces the array of references
+ * with a new one, such that concurrent lookups still see a consistent,
+ * possibly outdated array. A lookup that fails on an outdated array falls
+ * back to the synchronized path, which never creates a second instance for
+ * the same identifier.
  */
 public class SegmentIdTable {
 
     /**
-     * The list of weak references to segment identifiers that are currently
+     * The array of weak references to segment identifiers that are currently
      * being accessed. This represents a hash table that uses open addressing
      * with linear probing. It is not a hash map, to speed up read access.
      * <p>
@@ -59,8 +68,15 @@ public class SegmentIdTable {
      * The array is not sorted (we could; lookup might be faster, but adding
      * entries would be slower).
      */
-    private final ArrayList<WeakReference<SegmentId>> references =
-            newArrayList(nCopies(1024, (WeakReference<SegmentId>) null));
+    private volatile AtomicReferenceArray<WeakReference<SegmentId>> references =
+            new AtomicReferenceArray<>(1024);
+
+    /**
+     * Queue of the references whose segment identifiers have been garbage
+     * collected. It is drained when adding new identifiers, which triggers a
+     * refresh of the table once enough references have been cleared.
+     */
+    private final ReferenceQueue<SegmentId> clearedReferences = new ReferenceQueue<>();
 
     private static final Logger LOG = LoggerFactory.getLogger(SegmentIdTable.class);
 
@@ -73,7 +89,13 @@ public class SegmentIdTable {
     /**
      * The number of used entries (WeakReferences) in this table.
      */
-    private int entryCount;
+    private volatile int entryCount;
+
+    /**
+     * The number of used entries whose segment identifier has been garbage
+     * collected since the last refresh.
+     */
+    private int clearedCount;
 
     /**
      * Get the segment id, and reference it in the weak references map. If the
@@ -87,9 +109,18 @@ public class SegmentIdTable {
      * @return the segment id
      */
     @NotNull
-    synchronized SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
-        int index = getIndex(lsb);
-        boolean shouldRefresh = false;
+    SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+        SegmentId id = findSegmentId(references, msb, lsb);
+        if (id != null) {
+            return id;
+        }
+        return addSegmentId(msb, lsb, maker);
+    }
+
+    @Nullable
+    private static SegmentId findSegmentId(AtomicReferenceArray<WeakReference<SegmentId>> references, long msb, long lsb) {
+        int length = references.length();
+        int index = getIndex(lsb, length);
 
         WeakReference<SegmentId> reference = references.get(index);
         while (reference != null) {
@@ -99,21 +130,45 @@ public class SegmentIdTable {
                     && id.getLeastSignificantBits() == lsb) {
                 return id;
             }
-            // shouldRefresh if we have a garbage collected entry
-            shouldRefresh = shouldRefresh || id == null;
             // open addressing / linear probing
-            index = (index + 1) % references.size();
+            index = (index + 1) & (length - 1);
             reference = references.get(index);
         }
+        return null;
+    }
+
+    @NotNull
+    private synchronized SegmentId addSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+        // the table might have been rebuilt or the id might have been added
+        // since the unsynchronized lookup
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
+        SegmentId existing = findSegmentId(references, msb, lsb);
+        if (existing != null) {
+            return existing;
+        }
+
+        int length = references.length();
+        int index = getIndex(lsb, length);
+        while (references.get(index) != null) {
+            // open addressing / linear probing
+            index = (index + 1) & (length - 1);
+        }
 
         SegmentId id = maker.newSegmentId(msb, lsb);
-        references.set(index, new WeakReference<SegmentId>(id));
+        references.set(index, new WeakReference<SegmentId>(id, clearedReferences));
         entryCount++;
-        if (entryCount > references.size() * 0.75) {
-            // more than 75% full            
-            shouldRefresh = true;
+
+        // count the garbage collected entries in batches, instead of
+        // checking for them on every lookup
+        while (clearedReferences.poll() != null) {
+            clearedCount++;
         }
-        if (shouldRefresh) {
+
+        if (entryCount > length * 0.75) {
+            // more than 75% full
+            refresh();
+        } else if (clearedCount > entryCount / 4) {
+            // more than 25% of the entries were garbage collected
             refresh();
         }
         return id;
@@ -129,19 +184,26 @@ public class SegmentIdTable {
     }
 
     private synchronized Collection<SegmentId> refresh() {
-        int size = references.size();
+        while (clearedReferences.poll() != null) {
+            // the entries are removed below
+        }
+        clearedCount = 0;
+
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
+        int size = references.length();
         Map<SegmentId, WeakReference<SegmentId>> ids =
                 newHashMapWithExpectedSize(size);
 
         boolean hashCollisions = false;
         boolean emptyReferences = false;
+        int entryCount = this.entryCount;
         for (int i = 0; i < size; i++) {
             WeakReference<SegmentId> reference = references.get(i);
             if (reference != null) {
                 SegmentId id = reference.get();
                 if (id != null) {
                     ids.put(id, reference);
-                    hashCollisions = hashCollisions || (i != getIndex(id));
+                    hashCollisions = hashCollisions || (i != getIndex(id, size));
                 } else {
                     references.set(i, null);
                     entryCount--;
@@ -167,35 +229,40 @@ public class SegmentIdTable {
         // we need to re-build the table if the new size is different,
         // but also if we removed some of the entries (because an entry was
         // garbage collected) and there is at least one entry at the "wrong"
-        // location (due to open addressing)
-        if ((hashCollisions && emptyReferences) || size != references.size()) {
+        // location (due to open addressing). The table is re-built into a
+        // new array, as concurrent lookups might still be reading the
+        // current one.
+        if ((hashCollisions && emptyReferences) || size != references.length()) {
             rebuildCount++;
-            references.clear();
-            references.addAll(nCopies(size, (WeakReference<SegmentId>) null));
+            AtomicReferenceArray<WeakReference<SegmentId>> rebuilt = new AtomicReferenceArray<>(size);
 
             for (Map.Entry<SegmentId, WeakReference<SegmentId>> entry
                     : ids.entrySet()) {
-                int index = getIndex(entry.getKey());
-                while (references.get(index) != null) {
-                    index = (index + 1) % size;
+                int index = getIndex(entry.getKey(), size);
+                while (rebuilt.get(index) != null) {
+                    index = (index + 1) & (size - 1);
                 }
-                references.set(index, entry.getValue());
+                rebuilt.set(index, entry.getValue());
             }
+            this.references = rebuilt;
         }
+        this.entryCount = entryCount;
 
         return ids.keySet();
     }
 
-    private int getIndex(SegmentId id) {
-        return getIndex(id.getLeastSignificantBits());
+    private static int getIndex(SegmentId id, int size) {
+        return getIndex(id.getLeastSignificantBits(), size);
     }
 
-    private int getIndex(long lsb) {
-        return ((int) lsb) & (references.size() - 1);
+    private static int getIndex(long lsb, int size) {
+        return ((int) lsb) & (size - 1);
     }
 
-    synchronized void clearSegmentIdTables(@NotNull Set<UUID> reclaimed, @NotNull String gcInfo) {
-        for (WeakReference<SegmentId> reference : references) {
+    void clearSegmentIdTables(@NotNull Set<UUID> reclaimed, @NotNull String gcInfo) {
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
+        for (int i = 0; i < references.length(); i++) {
+            WeakReference<SegmentId> reference = references.get(i);
             if (reference != null) {
                 SegmentId id = reference.get();
                 if (id != null && reclaimed.contains(id.asUUID())) {
@@ -210,7 +277,7 @@ public class SegmentIdTable {
      * 
      * @return the rebuild count
      */
-    int getMapRebuildCount() {
+    synchronized int getMapRebuildCount() {
         return rebuildCount;
     }
     
@@ -229,7 +296,7 @@ public class SegmentIdTable {
      * @return the map size
      */
     int getMapSize() {
-        return references.size();
+        return references.length();
     }
     
     /**
@@ -238,8 +305,10 @@ public class SegmentIdTable {
      * @return the raw list
      */
     List<SegmentId> getRawSegmentIdList() {
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
         ArrayList<SegmentId> list = new ArrayList<SegmentId>();
-        for (WeakReference<SegmentId> ref : references) {
+        for (int i = 0; i < references.length(); i++) {
+            WeakReference<SegmentId> ref = references.get(i);
             if (ref != null) {
                 SegmentId id = ref.get();
                 if (id != null) {
@@ -139,6 +139,10 @@ public class SegmentNodeState extends Record implements NodeState {
         long msb = buffer.getLong();
         long lsb = buffer.getLong();
         int offset = buffer.getInt();
+        return getStableId(msb, lsb, offset);
+    }
+
+    static String getStableId(long msb, long lsb, int offset) {
         return new UUID(msb, lsb) + ":" + offset;
     }
 
@@ -37,6 +37,7 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.segment.scheduler.Commit;
 import org.apache.jackrabbit.oak.segment.scheduler.LockBasedScheduler;
+import org.apache.jackrabbit.oak.segment.scheduler.OptimisticScheduler;
 import org.apache.jackrabbit.oak.segment.scheduler.Scheduler;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.commit.CommitHook;
@@ -81,6 +82,10 @@ public class SegmentNodeStore implements NodeStore, Observable {
         
         private boolean dispatchChanges = true;
 
+        private boolean optimisticCommits;
+
+        private boolean groupCommits;
+
         @NotNull
         private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
 
@@ -104,6 +109,35 @@ public class SegmentNodeStore implements NodeStore, Observable {
             return this;
         }
         
+        /**
+         * Use an {@link OptimisticScheduler} instead of the default
+         * {@link LockBasedScheduler} for scheduling commits. Commit hooks of
+         * concurrent commits are then run in parallel and only the update
+         * of the head state is serialized.
+         * @param optimisticCommits
+         * @return this instance
+         */
+        @NotNull
+        public SegmentNodeStoreBuilder withOptimisticCommits(boolean optimisticCommits) {
+            this.optimisticCommits = optimisticCommits;
+            return this;
+        }
+
+        /**
+         * Enable group commits on the default {@link LockBasedScheduler}.
+         * Commits waiting to be processed are then applied together and
+         * published with a single update of the head state. Has no effect
+         * when {@link #withOptimisticCommits(boolean) optimistic commits}
+         * are enabled.
+         * @param groupCommits
+         * @return this instance
+         */
+        @NotNull
+        public SegmentNodeStoreBuilder withGroupCommits(boolean groupCommits) {
+            this.groupCommits = groupCommits;
+            return this;
+        }
+
         /**
          * {@link StatisticsProvider} for collecting statistics related to SegmentStore
          * @param statisticsProvider
@@ -143,6 +177,8 @@ public class SegmentNodeStore implements NodeStore, Observable {
         public String toString() {
             return "SegmentNodeStoreBuilder{" +
                     getString(blobStore) +
+                    ", optimisticCommits=" + optimisticCommits +
+                    ", groupCommits=" + groupCommits +
                     '}';
         }
     }
@@ -178,9 +214,16 @@ public class SegmentNodeStore implements NodeStore, Observable {
         this.writer = builder.writer;
         this.blobStore = builder.blobStore;
         this.stats = new SegmentNodeStoreStats(builder.statsProvider);
-        this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
-                .dispatchChanges(builder.dispatchChanges)
-                .build();
+        if (builder.optimisticCommits) {
+            this.scheduler = OptimisticScheduler.builder(builder.revisions, builder.reader, stats)
+                    .dispatchChanges(builder.dispatchChanges)
+                    .build();
+        } else {
+            this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
+                    .dispatchChanges(builder.dispatchChanges)
+                    .groupCommit(builder.groupCommits)
+                    .build();
+        }
         this.loggingHook = builder.loggingHook;
     }
 
@@ -33,6 +33,7 @@ import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.PAUS
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.RETAINED_GENERATIONS_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.RETRY_COUNT_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.SIZE_DELTA_ESTIMATION_DEFAULT;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.DEFAULT_CACHE_WARM_UP_BANDWIDTH;
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.DEFAULT_MAX_FILE_SIZE;
 import static org.apache.jackrabbit.oak.spi.blob.osgi.SplitBlobStoreService.ONLY_STANDALONE_TARGET;
 
@@ -127,6 +128,35 @@ public class SegmentNodeStoreFactory {
         )
         int segmentCache_size() default DEFAULT_SEGMENT_CACHE_MB;
 
+        @AttributeDefinition(
+            name = "Off-heap segment cache size (MB)",
+            description = "Cache size for keeping segments evicted from the segment cache in direct memory " +
+                "outside of the heap in megabytes. Default value is '0', which disables the off-heap cache."
+        )
+        int segmentCache_offHeapSize() default 0;
+
+        @AttributeDefinition(
+            name = "Segment prefetch threads",
+            description = "Number of threads speculatively loading the segments referenced from segments read " +
+                "from disk. Default value is '0', which disables prefetching."
+        )
+        int segmentCache_prefetchThreads() default 0;
+
+        @AttributeDefinition(
+            name = "Cache snapshot interval (minutes)",
+            description = "Interval at which a snapshot of the segment, template and string caches is written. " +
+                "The snapshot is replayed in the background on startup to warm up the caches. " +
+                "Default value is '0', which disables cache snapshots."
+        )
+        int segmentCache_snapshotInterval() default 0;
+
+        @AttributeDefinition(
+            name = "Cache warm-up bandwidth (MB/s)",
+            description = "Maximum bandwidth used for reading segments when warming up the caches on startup. " +
+                "A value of '0' removes the limit. Default value is '" + DEFAULT_CACHE_WARM_UP_BANDWIDTH + "'."
+        )
+        int segmentCache_warmUpBandwidth() default DEFAULT_CACHE_WARM_UP_BANDWIDTH;
+
         @AttributeDefinition(
             name = "String cache size (MB)",
             description = "Cache size for storing most recently used strings in megabytes. " +
@@ -163,6 +193,21 @@ public class SegmentNodeStoreFactory {
         )
         int nodeDeduplicationCache_size() default DEFAULT_NODE_CACHE_SIZE_OSGi;
 
+        @AttributeDefinition(
+            name = "Node deduplication cache off-heap",
+            description = "When set to true the node deduplication cache is allocated off-heap. " +
+                "Default value is 'false'."
+        )
+        boolean nodeDeduplicationCache_offHeap() default false;
+
+        @AttributeDefinition(
+            name = "Deduplication index size",
+            description = "Number of strings and of templates per GC generation kept in the deduplication " +
+                "index, which survives restarts of the repository. A value of 0 disables the index. " +
+                "Default value is '0'."
+        )
+        int deduplicationIndex_size() default 0;
+
         @AttributeDefinition(
             name = "Pause compaction",
             description = "When set to true the compaction phase is skipped during garbage collection. " +
@@ -306,6 +351,24 @@ public class SegmentNodeStoreFactory {
                 description = "Enable support for observers on this factory instance"
         )
         boolean dispatchChanges() default false;
+
+        @AttributeDefinition(
+            name = "Optimistic commits",
+            description = "Boolean value indicating that commit hooks of concurrent commits are run in " +
+                "parallel and only the update of the head state is serialized. Commits losing the " +
+                "race are rebased and retried. " +
+                "Default value is 'false'."
+        )
+        boolean commit_optimistic() default false;
+
+        @AttributeDefinition(
+            name = "Group commits",
+            description = "Boolean value indicating that commits waiting to be processed are applied " +
+                "together and published with a single update of the head state. Ignored when " +
+                "optimistic commits are enabled. " +
+                "Default value is 'false'."
+        )
+        boolean commit_groupCommit() default false;
     }
 
     @Reference(
@@ -505,6 +568,26 @@ public class SegmentNodeStoreFactory {
                 return getCacheSize("segmentCache.size", configuration.segmentCache_size());
             }
 
+            @Override
+            public int getOffHeapSegmentCacheSize() {
+                return getCacheSize("segmentCache.offHeapSize", configuration.segmentCache_offHeapSize());
+            }
+
+            @Override
+            public int getSegmentPrefetchThreads() {
+                return configuration.segmentCache_prefetchThreads();
+            }
+
+            @Override
+            public int getCacheSnapshotInterval() {
+                return configuration.segmentCache_snapshotInterval();
+            }
+
+            @Override
+            public int getCacheWarmUpBandwidth() {
+                return configuration.segmentCache_warmUpBandwidth();
+            }
+
             @Override
             public int getStringCacheSize() {
                 return getCacheSize("stringCache.size", configuration.stringCache_size());
@@ -530,6 +613,16 @@ public class SegmentNodeStoreFactory {
                 return roundToNextPowerOfTwo(getCacheSize("nodeDeduplicationCache.size", configuration.nodeDeduplicationCache_size()));
             }
 
+            @Override
+            public boolean getNodeDeduplicationCacheOffHeap() {
+                return configuration.nodeDeduplicationCache_offHeap();
+            }
+
+            @Override
+            public int getDeduplicationIndexSize() {
+                return configuration.deduplicationIndex_size();
+            }
+
             @Override
             public int getMaxFileSize() {
                 return configuration.tarmk_size();
@@ -570,6 +663,16 @@ public class SegmentNodeStoreFactory {
                 return configuration.dispatchChanges();
             }
 
+            @Override
+            public boolean getOptimisticCommits() {
+                return configuration.commit_optimistic();
+            }
+
+            @Override
+            public boolean getGroupCommits() {
+                return configuration.commit_groupCommit();
+            }
+
             @Override
             public String getRepositoryHome() {
                 String repositoryHome = OsgiUtil.lookupConfigurationThenFramework(context, "repository.home");
@@ -125,6 +125,14 @@ class SegmentNodeStoreRegistrar {
 
         int getSegmentCacheSize();
 
+        int getOffHeapSegmentCacheSize();
+
+        int getSegmentPrefetchThreads();
+
+        int getCacheSnapshotInterval();
+
+        int getCacheWarmUpBandwidth();
+
         int getStringCacheSize();
 
         int getTemplateCacheSize();
@@ -135,6 +143,10 @@ class SegmentNodeStoreRegistrar {
 
         int getNodeDeduplicationCacheSize();
 
+        boolean getNodeDeduplicationCacheOffHeap();
+
+        int getDeduplicationIndexSize();
+
         int getMaxFileSize();
 
         boolean getMemoryMapping();
@@ -151,6 +163,10 @@ class SegmentNodeStoreRegistrar {
 
         boolean dispatchChanges();
 
+        boolean getOptimisticCommits();
+
+        boolean getGroupCommits();
+
         String getRepositoryHome();
 
         long getBlobSnapshotInterval();
@@ -225,11 +241,17 @@ class SegmentNodeStoreRegistrar {
         // Build the FileStore
         FileStoreBuilder builder = fileStoreBuilder(cfg.getSegmentDirectory())
             .withSegmentCacheSize(cfg.getSegmentCacheSize())
+            .withOffHeapSegmentCacheSize(cfg.getOffHeapSegmentCacheSize())
+            .withSegmentPrefetchThreads(cfg.getSegmentPrefetchThreads())
+            .withCacheSnapshotInterval(cfg.getCacheSnapshotInterval())
+            .withCacheWarmUpBandwidth(cfg.getCacheWarmUpBandwidth())
             .withStringCacheSize(cfg.getStringCacheSize())
             .withTemplateCacheSize(cfg.getTemplateCacheSize())
             .withStringDeduplicationCacheSize(cfg.getStringDeduplicationCacheSize())
             .withTemplateDeduplicationCacheSize(cfg.getTemplateDeduplicationCacheSize())
             .withNodeDeduplicationCacheSize(cfg.getNodeDeduplicationCacheSize())
+            .withNodeDeduplicationCacheOffHeap(cfg.getNodeDeduplicationCacheOffHeap())
+            .withDeduplicationIndexSize(cfg.getDeduplicationIndexSize())
             .withMaxFileSize(cfg.getMaxFileSize())
             .withMemoryMapping(cfg.getMemoryMapping())
             .withGCMonitor(gcMonitor)
@@ -378,6 +400,8 @@ class SegmentNodeStoreRegistrar {
 
         SegmentNodeStore.SegmentNodeStoreBuilder segmentNodeStoreBuilder = SegmentNodeStoreBuilders.builder(store).withStatisticsProvider(cfg.getStatisticsProvider());
         segmentNodeStoreBuilder.dispatchChanges(cfg.dispatchChanges());
+        segmentNodeStoreBuilder.withOptimisticCommits(cfg.getOptimisticCommits());
+        segmentNodeStoreBuilder.withGroupCommits(cfg.getGroupCommits());
 
         Logger log = LoggerFactory.getLogger(LoggingHook.class.getName() + ".writer");
         if (log.isTraceEnabled()) {
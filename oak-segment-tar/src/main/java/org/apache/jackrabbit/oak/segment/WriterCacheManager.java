@@ -24,6 +24,7 @@ import static com.google.common.base.Suppliers.memoize;
 import static com.google.common.collect.Iterators.transform;
 import static com.google.common.collect.Maps.newConcurrentMap;
 import static java.lang.Integer.getInteger;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
 import static org.apache.jackrabbit.oak.segment.RecordCache.newRecordCache;
 
 import java.util.Iterator;
@@ -34,7 +35,9 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.cache.CacheStats;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.file.GenerationalCache;
 import org.apache.jackrabbit.oak.segment.file.PriorityCache;
+import org.apache.jackrabbit.oak.segment.file.RecordIdPriorityCache;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -101,7 +104,7 @@ public abstract class WriterCacheManager {
      * @return  cache for node records of the given {@code generation} and {@code operation}.
      */
     @NotNull
-    public abstract Cache<String, RecordId> getNodeCache(int generation);
+    public abstract NodeCache getNodeCache(int generation);
 
     /**
      * Enable access statistics for this cache. The instance returned by from
@@ -150,6 +153,22 @@ public abstract class WriterCacheManager {
     @Nullable
     public String getNodeCacheOccupancyInfo() { return null; }
 
+    /**
+     * Get the memory footprint of the node deduplication cache indicating the number
+     * of its mappings and the memory it occupies on and off the heap.
+     * @return  memory footprint of the node deduplication cache or {@code null} if not available.
+     */
+    @Nullable
+    public String getNodeCacheFootprint() { return null; }
+
+    /**
+     * Get the index of strings and templates used to deduplicate records
+     * across restarts.
+     * @return  the deduplication index or {@code null} if not available.
+     */
+    @Nullable
+    public DeduplicationIndex getDeduplicationIndex() { return null; }
+
     /**
      * This implementation of {@link WriterCacheManager} returns empty caches
      * of size 0.
@@ -186,15 +205,18 @@ public abstract class WriterCacheManager {
         }
 
         /**
-         * @return  a {@code Cache} cache that is always empty
+         * @return  a {@code NodeCache} cache that is always empty
          */
         @NotNull
         @Override
-        public Cache<String, RecordId> getNodeCache(int generation) {
-            return new Cache<String, RecordId>() {
+        public NodeCache getNodeCache(int generation) {
+            return new NodeCache() {
                 @Override
                 public void put(@NotNull String stableId, @NotNull RecordId recordId, byte cost) { }
 
+                @Override
+                public void put(long msb, long lsb, int offset, @NotNull RecordId recordId, byte cost) { }
+
                 @Override
                 public void put(@NotNull String key, @NotNull RecordId value) {
                     throw new UnsupportedOperationException();
@@ -203,6 +225,10 @@ public abstract class WriterCacheManager {
                 @Nullable
                 @Override
                 public RecordId get(@NotNull String stableId) { return null; }
+
+                @Nullable
+                @Override
+                public RecordId get(long msb, long lsb, int offset) { return null; }
             };
         }
     }
@@ -229,7 +255,14 @@ public abstract class WriterCacheManager {
          * Cache of recently stored nodes to avoid duplicating linked nodes (i.e. checkpoints)
          * during compaction.
          */
-        private final Supplier<PriorityCache<String, RecordId>> nodeCache;
+        private final Supplier<? extends GenerationalCache<String, RecordId>> nodeCache;
+
+        /**
+         * Index of strings and templates surviving restarts, {@code null} if
+         * disabled.
+         */
+        @Nullable
+        private final DeduplicationIndex deduplicationIndex;
 
         /**
          * New instance using the passed factories for creating cache instances.
@@ -243,10 +276,29 @@ public abstract class WriterCacheManager {
         public Default(
                 @NotNull Supplier<RecordCache<String>> stringCacheFactory,
                 @NotNull Supplier<RecordCache<Template>> templateCacheFactory,
-                @NotNull Supplier<PriorityCache<String, RecordId>> nodeCacheFactory) {
+                @NotNull Supplier<? extends GenerationalCache<String, RecordId>> nodeCacheFactory) {
+            this(stringCacheFactory, templateCacheFactory, nodeCacheFactory, null);
+        }
+
+        /**
+         * New instance using the passed factories for creating cache instances
+         * and the passed deduplication index.
+         *
+         * @param stringCacheFactory       factory for the string cache
+         * @param templateCacheFactory     factory for the template cache
+         * @param nodeCacheFactory         factory for the node cache
+         * @param deduplicationIndex       index of strings and templates or
+         *                                 {@code null} to disable it
+         */
+        public Default(
+                @NotNull Supplier<RecordCache<String>> stringCacheFactory,
+                @NotNull Supplier<RecordCache<Template>> templateCacheFactory,
+                @NotNull Supplier<? extends GenerationalCache<String, RecordId>> nodeCacheFactory,
+                @Nullable DeduplicationIndex deduplicationIndex) {
             this.stringCaches = new Generations<>(stringCacheFactory);
             this.templateCaches = new Generations<>(templateCacheFactory);
             this.nodeCache = memoize(nodeCacheFactory);
+            this.deduplicationIndex = deduplicationIndex;
         }
 
         /**
@@ -310,19 +362,33 @@ public abstract class WriterCacheManager {
             return templateCaches.getGeneration(generation);
         }
 
-        private PriorityCache<String, RecordId> nodeCache() {
+        private GenerationalCache<String, RecordId> nodeCache() {
             return nodeCache.get();
         }
 
+        /**
+         * The node cache returned by this method passes stable ids as primitives
+         * to a {@link RecordIdPriorityCache} instead of formatting them.
+         */
         @Override
         @NotNull
-        public Cache<String, RecordId> getNodeCache(final int generation) {
-            return new Cache<String, RecordId>() {
+        public NodeCache getNodeCache(final int generation) {
+            return new NodeCache() {
                 @Override
                 public void put(@NotNull String stableId, @NotNull RecordId recordId, byte cost) {
                     nodeCache().put(stableId, recordId, generation, cost);
                 }
 
+                @Override
+                public void put(long msb, long lsb, int offset, @NotNull RecordId recordId, byte cost) {
+                    GenerationalCache<String, RecordId> cache = nodeCache();
+                    if (cache instanceof RecordIdPriorityCache) {
+                        ((RecordIdPriorityCache) cache).put(msb, lsb, offset, recordId, generation, cost);
+                    } else {
+                        NodeCache.super.put(msb, lsb, offset, recordId, cost);
+                    }
+                }
+
                 @Override
                 public void put(@NotNull String key, @NotNull RecordId value) {
                     throw new UnsupportedOperationException();
@@ -333,6 +399,17 @@ public abstract class WriterCacheManager {
                 public RecordId get(@NotNull String stableId) {
                     return nodeCache().get(stableId, generation);
                 }
+
+                @Nullable
+                @Override
+                public RecordId get(long msb, long lsb, int offset) {
+                    GenerationalCache<String, RecordId> cache = nodeCache();
+                    if (cache instanceof RecordIdPriorityCache) {
+                        return ((RecordIdPriorityCache) cache).get(msb, lsb, offset, generation);
+                    } else {
+                        return NodeCache.super.get(msb, lsb, offset);
+                    }
+                }
             };
         }
 
@@ -423,6 +500,15 @@ public abstract class WriterCacheManager {
                     });
         }
 
+        @NotNull
+        @Override
+        public String getNodeCacheFootprint() {
+            GenerationalCache<String, RecordId> cache = nodeCache();
+            return cache.size() + " entries, " +
+                humanReadableByteCount(cache.estimateCurrentWeight()) + " on heap, " +
+                humanReadableByteCount(cache.estimateOffHeapWeight()) + " off heap";
+        }
+
         /**
          * Remove all cache generations matching the passed {@code generations} predicate.
          * @param generations
@@ -431,6 +517,15 @@ public abstract class WriterCacheManager {
             stringCaches.evictGenerations(generations);
             templateCaches.evictGenerations(generations);
             nodeCache().purgeGenerations(generations);
+            if (deduplicationIndex != null) {
+                deduplicationIndex.purgeGenerations(generations);
+            }
+        }
+
+        @Nullable
+        @Override
+        public DeduplicationIndex getDeduplicationIndex() {
+            return deduplicationIndex;
         }
 
     }
@@ -504,11 +599,51 @@ public abstract class WriterCacheManager {
          */
         @NotNull
         @Override
-        public Cache<String, RecordId> getNodeCache(int generation) {
-            return new CacheAccessTracker<>(
+        public NodeCache getNodeCache(int generation) {
+            return new NodeCacheAccessTracker(
                     "oak.segment.node-deduplication-cache-" + name,
                     statisticsProvider, delegate.getNodeCache(generation)
             );
         }
+
+        @Nullable
+        @Override
+        public String getNodeCacheFootprint() {
+            return delegate.getNodeCacheFootprint();
+        }
+
+        @Nullable
+        @Override
+        public DeduplicationIndex getDeduplicationIndex() {
+            return delegate.getDeduplicationIndex();
+        }
+    }
+
+    /**
+     * {@link CacheAccessTracker} for {@link NodeCache} instances, which also
+     * tracks the accesses by primitive stable ids.
+     */
+    private static class NodeCacheAccessTracker extends CacheAccessTracker<String, RecordId> implements NodeCache {
+        @NotNull
+        private final NodeCache delegate;
+
+        NodeCacheAccessTracker(
+                @NotNull String name,
+                @NotNull StatisticsProvider statisticsProvider,
+                @NotNull NodeCache delegate) {
+            super(name, statisticsProvider, delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void put(long msb, long lsb, int offset, @NotNull RecordId recordId, byte cost) {
+            delegate.put(msb, lsb, offset, recordId, cost);
+        }
+
+        @Nullable
+        @Override
+        public RecordId get(long msb, long lsb, int offset) {
+            return recordAccess(delegate.get(msb, lsb, offset));
+        }
     }
 }
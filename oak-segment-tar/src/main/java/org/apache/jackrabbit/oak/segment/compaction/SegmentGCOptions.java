@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.segment.compaction;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -55,7 +57,13 @@ public class SegmentGCOptions {
         /**
          * Checkpoints aware compaction implementation
          */
-        CHECKPOINT_COMPACTOR("diff");
+        CHECKPOINT_COMPACTOR("diff"),
+
+        /**
+         * Checkpoints aware compaction implementation compacting independent
+         * subtrees concurrently. See {@link #getConcurrency()}.
+         */
+        PARALLEL_COMPACTOR("parallel");
 
         private final String description;
 
@@ -69,6 +77,8 @@ public class SegmentGCOptions {
                 return CLASSIC_COMPACTOR;
             case "diff":
                 return CHECKPOINT_COMPACTOR;
+            case "parallel":
+                return PARALLEL_COMPACTOR;
             default:
                 throw new IllegalArgumentException("Unrecongnized compactor type " + description);
             }
@@ -119,6 +129,11 @@ public class SegmentGCOptions {
      */
     public static final int MEMORY_THRESHOLD_DEFAULT = 15;
 
+    /**
+     * Default value for {@link #getConcurrency()}
+     */
+    public static final int CONCURRENCY_DEFAULT = 1;
+
     private boolean paused = PAUSE_DEFAULT;
 
     /**
@@ -151,6 +166,8 @@ public class SegmentGCOptions {
 
     private CompactorType compactorType = CompactorType.CHECKPOINT_COMPACTOR;
 
+    private int concurrency = CONCURRENCY_DEFAULT;
+
     public SegmentGCOptions(boolean paused, int retryCount, int forceTimeout) {
         this.paused = paused;
         this.retryCount = retryCount;
@@ -275,6 +292,7 @@ public class SegmentGCOptions {
                     "offline=" + offline +
                     ", retainedGenerations=" + retainedGenerations +
                     ", compactorType=" + compactorType +
+                    ", concurrency=" + concurrency +
                     "}";
         } else {
             return getClass().getSimpleName() + "{" +
@@ -286,6 +304,7 @@ public class SegmentGCOptions {
                     ", retainedGenerations=" + retainedGenerations +
                     ", gcType=" + gcType +
                     ", compactorType=" + compactorType +
+                    ", concurrency=" + concurrency +
                     "}";
         }
     }
@@ -398,4 +417,24 @@ public class SegmentGCOptions {
         this.compactorType = compactorType;
         return this;
     }
+
+    /**
+     * @return the number of threads used for compacting independent subtrees
+     * concurrently. Only used by the {@link CompactorType#PARALLEL_COMPACTOR}.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the number of threads used for compacting independent subtrees
+     * concurrently. Only used by the {@link CompactorType#PARALLEL_COMPACTOR}.
+     * @param concurrency  number of threads, must be positive
+     * @return this instance
+     */
+    public SegmentGCOptions setConcurrency(int concurrency) {
+        checkArgument(concurrency > 0, "concurrency must be positive");
+        this.concurrency = concurrency;
+        return this;
+    }
 }
@@ -32,6 +32,7 @@ import com.google.common.base.Function;
 import org.apache.jackrabbit.oak.segment.CheckpointCompactor;
 import org.apache.jackrabbit.oak.segment.ClassicCompactor;
 import org.apache.jackrabbit.oak.segment.Compactor;
+import org.apache.jackrabbit.oak.segment.ParallelCompactor;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
@@ -221,9 +222,11 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
                 writer.flush();
                 context.getFlusher().flush();
                 context.getGCListener().info("compaction succeeded in {}, after {} cycles", watch, cycles);
+                logNodeCacheFootprint(context);
                 return compactionSucceeded(context, nextGeneration, compacted.getRecordId());
             } else {
                 context.getGCListener().info("compaction failed after {}, and {} cycles", watch, cycles);
+                logNodeCacheFootprint(context);
                 return compactionAborted(context, nextGeneration);
             }
         } catch (InterruptedException e) {
@@ -236,6 +239,13 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
         }
     }
 
+    private static void logNodeCacheFootprint(Context context) {
+        String footprint = context.getCacheManager().getNodeCacheFootprint();
+        if (footprint != null) {
+            context.getGCListener().info("compaction node deduplication cache: {}", footprint);
+        }
+    }
+
     private Compactor newCompactor(Context context, SegmentWriter writer) {
         CompactorType compactorType = context.getGCOptions().getCompactorType();
         switch (compactorType) {
@@ -245,6 +255,9 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
         case CLASSIC_COMPACTOR:
             return new ClassicCompactor(context.getSegmentReader(), writer, context.getBlobStore(),
                     context.getCompactionMonitor());
+        case PARALLEL_COMPACTOR:
+            return new ParallelCompactor(context.getGCListener(), context.getSegmentReader(), writer,
+                    context.getBlobStore(), context.getCompactionMonitor(), context.getGCOptions().getConcurrency());
         default:
             throw new IllegalArgumentException("Unknown compactor type: " + compactorType);
         }
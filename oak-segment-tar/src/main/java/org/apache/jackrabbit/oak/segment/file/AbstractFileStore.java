@@ -24,7 +24,12 @@ import static org.apache.jackrabbit.oak.segment.data.SegmentData.newSegmentData;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -133,14 +138,17 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
 
     AbstractFileStore(final FileStoreBuilder builder) {
         this.directory = builder.getDirectory();
+        // Access times are only needed for ordering the entries of cache snapshots
+        Consumer<SegmentId> onAccess = builder.getCacheSnapshotInterval() > 0
+            ? id -> segmentCache.recordAccess(id)
+            : id -> segmentCache.recordHit();
         this.tracker = new SegmentTracker(new SegmentIdFactory() {
             @Override @NotNull
             public SegmentId newSegmentId(long msb, long lsb) {
-                return new SegmentId(AbstractFileStore.this, msb, lsb, segmentCache::recordHit);
+                return new SegmentId(AbstractFileStore.this, msb, lsb, onAccess);
             }
         });
         this.blobStore = builder.getBlobStore();
-        this.segmentCache = newSegmentCache(builder.getSegmentCacheSize());
         this.segmentReader = new CachingSegmentReader(
             this::getWriter,
             blobStore,
@@ -148,6 +156,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
             builder.getTemplateCacheSize(),
             builder.getStatsProvider().getMeter("oak.segment.reads", StatsOptions.DEFAULT)
         );
+        this.segmentCache = newSegmentCache(
+            builder.getSegmentCacheSize(),
+            builder.getOffHeapSegmentCacheSize(),
+            (id, data) -> new Segment(tracker, segmentReader, id, data)
+        );
         this.memoryMapping = builder.getMemoryMapping();
         this.offHeapAccess = builder.getOffHeapAccess();
         this.ioMonitor = builder.getIOMonitor();
@@ -190,6 +203,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return tracker;
     }
 
+    @NotNull
+    public SegmentBufferMonitor getSegmentBufferMonitor() {
+        return segmentBufferMonitor;
+    }
+
     /**
      * @return the {@link Revisions} object bound to the current store.
      */
@@ -291,6 +309,24 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return new Segment(tracker, segmentReader, id, buffer);
     }
 
+    /**
+     * Read several segments at once, bypassing the segment cache. Segments
+     * that are not found are skipped.
+     */
+    @NotNull
+    List<Segment> readSegmentsUncached(TarFiles tarFiles, Collection<SegmentId> ids) {
+        Map<UUID, SegmentId> idsByUUID = new HashMap<>();
+        for (SegmentId id : ids) {
+            idsByUUID.put(id.asUUID(), id);
+        }
+        List<Segment> segments = new ArrayList<>(idsByUUID.size());
+        for (Map.Entry<UUID, Buffer> entry : tarFiles.readSegments(idsByUUID.keySet()).entrySet()) {
+            segmentBufferMonitor.trackAllocation(entry.getValue());
+            segments.add(new Segment(tracker, segmentReader, idsByUUID.get(entry.getKey()), entry.getValue()));
+        }
+        return segments;
+    }
+
     /**
      * Finds all external blob references that are currently accessible
      * in this repository and adds them to the given collector. Useful
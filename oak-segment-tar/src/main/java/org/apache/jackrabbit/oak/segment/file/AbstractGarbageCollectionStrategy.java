@@ -30,6 +30,7 @@ import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
@@ -214,6 +215,11 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
                 return context.getSegmentWriterFactory();
             }
 
+            @Override
+            public WriterCacheManager getCacheManager() {
+                return context.getCacheManager();
+            }
+
             @Override
             public Revisions getRevisions() {
                 return context.getRevisions();
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.oak.segment.CachingSegmentReader;
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentCache;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
+import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the contents of the segment, template and string caches to a
+ * snapshot file and replays that snapshot after a restart to warm up the
+ * caches again.
+ * <p>
+ * The snapshot is a text file with one entry per line. An entry is either
+ * the id of a cached segment prefixed with {@code segment} or the id of a
+ * cached record prefixed with {@code template} or {@code string}. Segments
+ * are listed first such that the records can be read from the already loaded
+ * segments when the snapshot is replayed.
+ * <p>
+ * Replaying a snapshot runs in a background thread, reads segments in
+ * batches at a limited bandwidth and skips segments that do not exist any
+ * more, e.g. because they were reclaimed by cleanup. Records are only read from
+ * segments that are already loaded so reading them does not cause any
+ * additional I/O. Replaying is never interrupted as this would close the
+ * file channels it reads from.
+ */
+class CacheWarmUp implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmUp.class);
+
+    /**
+     * Name of the snapshot file in the directory of the file store
+     */
+    static final String SNAPSHOT_FILE_NAME = "cache.snapshot";
+
+    /**
+     * Maximum number of entries written to the snapshot for each cache
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger("oak.segment.cacheSnapshot.maxEntries", 100000);
+
+    /**
+     * Number of segments read at once when replaying a snapshot
+     */
+    private static final int BATCH_SIZE = 32;
+
+    private static final String SEGMENT = "segment";
+
+    private static final String TEMPLATE = "template";
+
+    private static final String STRING = "string";
+
+    @NotNull
+    private final File file;
+
+    @NotNull
+    private final Function<Collection<SegmentId>, List<Segment>> segmentLoader;
+
+    @NotNull
+    private final SegmentIdProvider idProvider;
+
+    @NotNull
+    private final SegmentCache segmentCache;
+
+    @NotNull
+    private final CachingSegmentReader reader;
+
+    private final long bytesPerSecond;
+
+    @NotNull
+    private final Scheduler scheduler = new Scheduler("TarMK cache warm-up");
+
+    private volatile boolean stopped;
+
+    /**
+     * Whether the snapshot has been replayed completely. The snapshot is not
+     * overwritten before as the caches would not yet reflect the working set.
+     */
+    private volatile boolean warmedUp;
+
+    /**
+     * Create a new instance.
+     *
+     * @param directory       directory of the file store
+     * @param segmentLoader   loader reading the segments with the given ids
+     *                        into the segment cache, skipping segments that
+     *                        do not exist
+     * @param idProvider      the segment id provider of the file store
+     * @param segmentCache    the segment cache of the file store
+     * @param reader          the segment reader of the file store
+     * @param bytesPerSecond  maximum number of bytes per second read when
+     *                        replaying a snapshot. There is no limit for
+     *                        values {@code <= 0}.
+     */
+    CacheWarmUp(
+            @NotNull File directory,
+            @NotNull Function<Collection<SegmentId>, List<Segment>> segmentLoader,
+            @NotNull SegmentIdProvider idProvider,
+            @NotNull SegmentCache segmentCache,
+            @NotNull CachingSegmentReader reader,
+            long bytesPerSecond) {
+        this.file = new File(checkNotNull(directory), SNAPSHOT_FILE_NAME);
+        this.segmentLoader = checkNotNull(segmentLoader);
+        this.idProvider = checkNotNull(idProvider);
+        this.segmentCache = checkNotNull(segmentCache);
+        this.reader = checkNotNull(reader);
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Start replaying the snapshot in the background.
+     */
+    void start() {
+        scheduler.execute("TarMK cache warm-up [" + file.getParent() + "]", this::warmUp);
+    }
+
+    /**
+     * Replay the snapshot in the calling thread. Does nothing if there is no
+     * snapshot.
+     */
+    void warmUp() {
+        if (!file.exists()) {
+            warmedUp = true;
+            return;
+        }
+
+        log.info("Warming up caches from {}", file);
+        Replay replay = new Replay();
+        try (BufferedReader snapshot = Files.newBufferedReader(file.toPath(), UTF_8)) {
+            String line = snapshot.readLine();
+            while (!stopped && line != null) {
+                replay.replay(line);
+                line = snapshot.readLine();
+            }
+            replay.loadSegments();
+            warmedUp = !stopped;
+        } catch (IOException e) {
+            log.warn("Unable to read cache snapshot {}", file, e);
+            warmedUp = true;
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while warming up caches");
+            Thread.currentThread().interrupt();
+        }
+        log.info("Cache warm-up {} after {} ms: loaded {} segments ({}) and {} records",
+                warmedUp ? "completed" : "stopped",
+                NANOSECONDS.toMillis(System.nanoTime() - replay.start),
+                replay.segments,
+                humanReadableByteCount(replay.bytes),
+                replay.records);
+    }
+
+    /**
+     * The state of replaying a snapshot. Segments are collected into batches,
+     * which are read with a single bulk read per TAR file.
+     */
+    private class Replay {
+        final long start = System.nanoTime();
+
+        final List<SegmentId> batch = new ArrayList<>(BATCH_SIZE);
+
+        long segments;
+
+        long bytes;
+
+        long records;
+
+        void replay(@NotNull String line) throws InterruptedException {
+            int k = line.indexOf(' ');
+            if (k < 0) {
+                log.debug("Skipping invalid cache snapshot entry {}", line);
+                return;
+            }
+
+            String type = line.substring(0, k);
+            String id = line.substring(k + 1);
+            try {
+                switch (type) {
+                    case SEGMENT:
+                        UUID uuid = UUID.fromString(id);
+                        batch.add(idProvider.newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+                        if (batch.size() >= BATCH_SIZE) {
+                            loadSegments();
+                        }
+                        break;
+                    case TEMPLATE:
+                        loadSegments();
+                        RecordId templateId = RecordId.fromString(idProvider, id);
+                        if (templateId.getSegmentId().isLoaded()) {
+                            reader.readTemplate(templateId);
+                            records++;
+                        }
+                        break;
+                    case STRING:
+                        loadSegments();
+                        RecordId stringId = RecordId.fromString(idProvider, id);
+                        if (stringId.getSegmentId().isLoaded()) {
+                            reader.readString(stringId);
+                            records++;
+                        }
+                        break;
+                    default:
+                        log.debug("Skipping invalid cache snapshot entry {}", line);
+                }
+            } catch (IllegalArgumentException | SegmentNotFoundException e) {
+                log.debug("Skipping cache snapshot entry {}", line, e);
+            }
+        }
+
+        void loadSegments() throws InterruptedException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (Segment segment : segmentLoader.apply(batch)) {
+                segments++;
+                bytes += segment.size();
+            }
+            batch.clear();
+            throttle(start, bytes);
+        }
+    }
+
+    /**
+     * Sleep until reading {@code bytes} since {@code start} does not exceed
+     * {@link #bytesPerSecond}.
+     */
+    private void throttle(long start, long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long expectedMillis = bytes * 1000 / bytesPerSecond;
+        long elapsedMillis = NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (expectedMillis > elapsedMillis) {
+            Thread.sleep(expectedMillis - elapsedMillis);
+        }
+    }
+
+    /**
+     * Write a snapshot of the current contents of the caches, replacing the
+     * previous snapshot. Does nothing while the previous snapshot has not
+     * been replayed completely.
+     *
+     * @throws IOException if writing the snapshot fails
+     */
+    void writeSnapshot() throws IOException {
+        if (!warmedUp) {
+            log.debug("Cache warm-up not completed, skipping cache snapshot");
+            return;
+        }
+
+        File tmp = new File(file.getParentFile(), SNAPSHOT_FILE_NAME + ".tmp");
+        int entries = 0;
+        try (Writer writer = Files.newBufferedWriter(tmp.toPath(), UTF_8)) {
+            for (SegmentId id : segmentCache.getSegmentIds(MAX_ENTRIES)) {
+                writeEntry(writer, SEGMENT, id.toString());
+                entries++;
+            }
+            for (RecordId id : reader.getCachedTemplateIds(idProvider, MAX_ENTRIES)) {
+                writeEntry(writer, TEMPLATE, id.toString());
+                entries++;
+            }
+            for (RecordId id : reader.getCachedStringIds(idProvider, MAX_ENTRIES)) {
+                writeEntry(writer, STRING, id.toString());
+                entries++;
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        log.debug("Written cache snapshot {} with {} entries", file, entries);
+    }
+
+    private static void writeEntry(@NotNull Writer writer, @NotNull String type, @NotNull String id) throws IOException {
+        writer.write(type);
+        writer.write(' ');
+        writer.write(id);
+        writer.write('\n');
+    }
+
+    /**
+     * Stop replaying the snapshot. A replay in progress is not interrupted
+     * but stops after the entry it is currently processing.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        scheduler.close();
+    }
+
+}
@@ -181,6 +181,11 @@ class CleanupFirstCompactionStrategy implements CompactionStrategy {
                 return !isDataSegmentId(to.getLeastSignificantBits());
             }
 
+            @Override
+            public boolean mightFollow(UUID to) {
+                return !isDataSegmentId(to.getLeastSignificantBits());
+            }
+
         };
     }
 
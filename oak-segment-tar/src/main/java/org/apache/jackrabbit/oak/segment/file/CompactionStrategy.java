@@ -24,6 +24,7 @@ import java.io.IOException;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
@@ -45,6 +46,8 @@ interface CompactionStrategy {
 
         SegmentWriterFactory getSegmentWriterFactory();
 
+        WriterCacheManager getCacheManager();
+
         Revisions getRevisions();
 
         TarFiles getTarFiles();
@@ -111,6 +111,11 @@ class DefaultCleanupStrategy implements CleanupStrategy {
                 return !isDataSegmentId(to.getLeastSignificantBits());
             }
 
+            @Override
+            public boolean mightFollow(UUID to) {
+                return !isDataSegmentId(to.getLeastSignificantBits());
+            }
+
         };
     }
 
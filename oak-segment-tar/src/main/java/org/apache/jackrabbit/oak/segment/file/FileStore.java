@@ -21,14 +21,18 @@ package org.apache.jackrabbit.oak.segment.file;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.CompactorType.PARALLEL_COMPACTOR;
 import static org.apache.jackrabbit.oak.segment.file.PrintableBytes.newPrintableBytes;
 import static org.apache.jackrabbit.oak.stats.StatsOptions.DEFAULT;
 import static org.apache.jackrabbit.oak.stats.StatsOptions.METRICS_ONLY;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -40,6 +44,8 @@ import com.google.common.io.Closer;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.segment.DeduplicationIndex;
+import org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.SegmentId;
@@ -61,6 +67,7 @@ import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.oak.stats.TimerStats.Context;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +97,10 @@ public class FileStore extends AbstractFileStore {
         return new SynchronizedGarbageCollectionStrategy(new CleanupFirstGarbageCollectionStrategy());
     }
 
+    private static boolean isParallelCompaction(SegmentGCOptions gcOptions) {
+        return gcOptions.getCompactorType() == PARALLEL_COMPACTOR && gcOptions.getConcurrency() > 1;
+    }
+
     @NotNull
     private final SegmentWriter segmentWriter;
 
@@ -98,6 +109,14 @@ public class FileStore extends AbstractFileStore {
 
     private final TarFiles tarFiles;
 
+    private final SegmentPrefetcher segmentPrefetcher;
+
+    /**
+     * Snapshots and warms up the caches or {@code null} if disabled
+     */
+    @Nullable
+    private final CacheWarmUp cacheWarmUp;
+
     private final RepositoryLock repositoryLock;
 
     private volatile TarRevisions revisions;
@@ -137,6 +156,9 @@ public class FileStore extends AbstractFileStore {
 
     private final boolean eagerSegmentCaching;
 
+    @Nullable
+    private final DeduplicationIndex deduplicationIndex;
+
     FileStore(final FileStoreBuilder builder) throws InvalidFileStoreVersionException, IOException {
         super(builder);
 
@@ -167,7 +189,9 @@ public class FileStore extends AbstractFileStore {
                 .withMaxFileSize(builder.getMaxFileSize() * MB)
                 .withPersistence(builder.getPersistence())
                 .withReaderCountStats(readerCountStats)
-                .withSegmentCountStats(segmentCountStats);
+                .withSegmentCountStats(segmentCountStats)
+                .withLookupCountStats(stats.getLookupCountStats())
+                .withLookupProbeCountStats(stats.getLookupProbeCountStats());
 
         this.tarFiles = tarFilesBuilder.build();
         long size = this.tarFiles.size();
@@ -175,6 +199,35 @@ public class FileStore extends AbstractFileStore {
 
         this.fileReaper = this.tarFiles.createFileReaper();
 
+        this.segmentPrefetcher = new SegmentPrefetcher(
+            builder.getSegmentPrefetchThreads(),
+            builder.getSegmentPrefetchBufferSize(),
+            this::prefetchSegment,
+            statsProvider
+        );
+
+        this.deduplicationIndex = builder.getCacheManager().getDeduplicationIndex();
+        if (deduplicationIndex != null) {
+            try {
+                deduplicationIndex.load(directory, tracker);
+            } catch (IOException e) {
+                log.warn("Unable to read the deduplication index", e);
+            }
+        }
+
+        if (builder.getCacheSnapshotInterval() > 0) {
+            this.cacheWarmUp = new CacheWarmUp(
+                directory,
+                this::loadSegments,
+                tracker,
+                segmentCache,
+                segmentReader,
+                (long) builder.getCacheWarmUpBandwidth() * MB
+            );
+        } else {
+            this.cacheWarmUp = null;
+        }
+
         this.garbageCollector = new GarbageCollector(
             builder.getGcOptions(),
             builder.getGcListener(),
@@ -194,12 +247,19 @@ public class FileStore extends AbstractFileStore {
                 .withCondition("not enough memory", () -> !sufficientMemory.get())
                 .withCondition("FileStore is shutting down", shutDown::isShutDown),
             this::flush,
-            generation ->
-                defaultSegmentWriterBuilder("c")
+            generation -> {
+                DefaultSegmentWriterBuilder compactionWriterBuilder = defaultSegmentWriterBuilder("c")
                     .with(builder.getCacheManager().withAccessTracking("COMPACT", statsProvider))
-                    .withGeneration(generation)
-                    .withoutWriterPool()
-                    .build(this)
+                    .withGeneration(generation);
+                // The parallel compactor writes from several threads and needs a thread safe writer
+                if (isParallelCompaction(builder.getGcOptions())) {
+                    compactionWriterBuilder.withWriterPool();
+                } else {
+                    compactionWriterBuilder.withoutWriterPool();
+                }
+                return compactionWriterBuilder.build(this);
+            },
+            builder.getCacheManager()
         );
 
         this.snfeListener = builder.getSnfeListener();
@@ -228,6 +288,12 @@ public class FileStore extends AbstractFileStore {
            }
         });
 
+        if (cacheWarmUp != null) {
+            cacheWarmUp.start();
+            fileStoreScheduler.scheduleWithFixedDelay(format("TarMK cache snapshot [%s]", directory),
+                builder.getCacheSnapshotInterval(), MINUTES, this::writeCacheSnapshot);
+        }
+
         log.info("TarMK opened at {}, mmap={}, offHeapAccess={}, size={}",
             directory,
             memoryMapping,
@@ -315,6 +381,14 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    /**
+     * @return  the number of bytes that were not written because records
+     *          were reused through the deduplication index
+     */
+    long getDeduplicationIndexBytesSaved() {
+        return deduplicationIndex == null ? 0 : deduplicationIndex.getBytesSaved();
+    }
+
     public FileStoreStats getStats() {
         return stats;
     }
@@ -465,17 +539,34 @@ public class FileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        // Stop prefetching and warming up the caches before shutting down as
+        // these keep the store alive
+        segmentPrefetcher.close();
+        if (cacheWarmUp != null) {
+            cacheWarmUp.close();
+        }
+
         try (ShutDownCloser ignored = shutDown.shutDown()) {
             // avoid deadlocks by closing (and joining) the background
             // thread before acquiring the synchronization lock
             fileStoreScheduler.close();
 
+            writeCacheSnapshot();
+
             try {
                 doFlush();
             } catch (IOException e) {
                 log.warn("Unable to flush the store", e);
             }
 
+            if (deduplicationIndex != null) {
+                try {
+                    deduplicationIndex.save(directory);
+                } catch (IOException e) {
+                    log.warn("Unable to write the deduplication index", e);
+                }
+            }
+
             Closer closer = Closer.create();
             closer.register(repositoryLock::unlock);
             closer.register(tarFiles) ;
@@ -491,6 +582,16 @@ public class FileStore extends AbstractFileStore {
         log.info("TarMK closed: {}", directory);
     }
 
+    private void writeCacheSnapshot() {
+        if (cacheWarmUp != null) {
+            try {
+                cacheWarmUp.writeSnapshot();
+            } catch (IOException e) {
+                log.warn("Unable to write the cache snapshot", e);
+            }
+        }
+    }
+
     @Override
     public boolean containsSegment(SegmentId id) {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
@@ -502,7 +603,7 @@ public class FileStore extends AbstractFileStore {
     @NotNull
     public Segment readSegment(final SegmentId id) {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
-            return segmentCache.getSegment(id, () -> readSegmentUncached(tarFiles, id));
+            return segmentCache.getSegment(id, () -> segmentPrefetcher.readSegment(id));
         } catch (ExecutionException | UncheckedExecutionException e) {
             if (e.getCause() instanceof RepositoryNotReachableException) {
                 RepositoryNotReachableException re = (RepositoryNotReachableException) e.getCause();
@@ -517,6 +618,34 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    /**
+     * Load those of the given segments into the segment cache that are not
+     * yet loaded, reading them with a bulk read per TAR file. Segments that
+     * are not found are skipped.
+     *
+     * @param ids the ids of the segments
+     * @return the segments read
+     */
+    @NotNull
+    List<Segment> loadSegments(@NotNull Collection<SegmentId> ids) {
+        try (ShutDownCloser ignored = shutDown.keepAlive()) {
+            List<SegmentId> missing = ids.stream()
+                .filter(id -> !id.isLoaded())
+                .collect(toList());
+            List<Segment> segments = readSegmentsUncached(tarFiles, missing);
+            for (Segment segment : segments) {
+                segmentCache.putSegment(segment);
+            }
+            return segments;
+        }
+    }
+
+    private Segment prefetchSegment(SegmentId id) {
+        try (ShutDownCloser ignored = shutDown.keepAlive()) {
+            return readSegmentUncached(tarFiles, id);
+        }
+    }
+
     @Override
     public void writeSegment(SegmentId id, byte[] buffer, int offset, int length) throws IOException {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
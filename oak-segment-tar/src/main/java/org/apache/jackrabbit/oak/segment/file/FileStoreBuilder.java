@@ -37,9 +37,9 @@ import java.io.IOException;
 import java.util.Set;
 
 import com.google.common.base.Predicate;
-import org.apache.jackrabbit.oak.segment.CacheWeights.NodeCacheWeigher;
 import org.apache.jackrabbit.oak.segment.CacheWeights.StringCacheWeigher;
 import org.apache.jackrabbit.oak.segment.CacheWeights.TemplateCacheWeigher;
+import org.apache.jackrabbit.oak.segment.DeduplicationIndex;
 import org.apache.jackrabbit.oak.segment.RecordCache;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundExceptionListener;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager;
@@ -72,6 +72,16 @@ public class FileStoreBuilder {
 
     public static final int DEFAULT_MAX_FILE_SIZE = 256;
 
+    /**
+     * Default maximum number of prefetched segments not yet read
+     */
+    public static final int DEFAULT_SEGMENT_PREFETCH_BUFFER_SIZE = 256;
+
+    /**
+     * Default maximum bandwidth in MB per second used for warming up the caches
+     */
+    public static final int DEFAULT_CACHE_WARM_UP_BANDWIDTH = 16;
+
     @NotNull
     private final File directory;
 
@@ -82,6 +92,18 @@ public class FileStoreBuilder {
 
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private int offHeapSegmentCacheSize;
+
+    private int segmentPrefetchThreads;
+
+    private int segmentPrefetchBufferSize = DEFAULT_SEGMENT_PREFETCH_BUFFER_SIZE;
+
+    private int cacheSnapshotInterval;
+
+    private int readOnlyRefreshInterval;
+
+    private int cacheWarmUpBandwidth = DEFAULT_CACHE_WARM_UP_BANDWIDTH;
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
@@ -92,6 +114,10 @@ public class FileStoreBuilder {
 
     private int nodeDeduplicationCacheSize = DEFAULT_NODE_CACHE_SIZE;
 
+    private boolean nodeDeduplicationCacheOffHeap;
+
+    private int deduplicationIndexSize;
+
     private boolean memoryMapping = MEMORY_MAPPING_DEFAULT;
 
     private boolean offHeapAccess = getBoolean("access.off.heap");
@@ -195,6 +221,96 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Size of the off-heap segment cache in MB. Segments evicted from the
+     * segment cache are kept in direct memory outside of the heap. The
+     * off-heap segment cache is disabled for sizes {@code <= 0}, which is
+     * the default.
+     *
+     * @param offHeapSegmentCacheSize off-heap cache size
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withOffHeapSegmentCacheSize(int offHeapSegmentCacheSize) {
+        this.offHeapSegmentCacheSize = offHeapSegmentCacheSize;
+        return this;
+    }
+
+    /**
+     * Number of threads speculatively loading the segments referenced from
+     * segments read from disk. Prefetching is disabled for values
+     * {@code <= 0}, which is the default.
+     *
+     * @param segmentPrefetchThreads number of prefetch threads
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchThreads(int segmentPrefetchThreads) {
+        this.segmentPrefetchThreads = segmentPrefetchThreads;
+        return this;
+    }
+
+    /**
+     * Maximum number of prefetched segments that have not yet been read.
+     * Defaults to {@link #DEFAULT_SEGMENT_PREFETCH_BUFFER_SIZE}.
+     *
+     * @param segmentPrefetchBufferSize maximum number of prefetched segments
+     * @return this instance
+     * @see #withSegmentPrefetchThreads(int)
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchBufferSize(int segmentPrefetchBufferSize) {
+        this.segmentPrefetchBufferSize = segmentPrefetchBufferSize;
+        return this;
+    }
+
+    /**
+     * Interval in minutes at which a snapshot of the segment, template and
+     * string caches is written to the directory of the file store. The
+     * snapshot is also written when the file store is closed and replayed in
+     * the background when the file store is opened, to warm up the caches.
+     * Snapshots are disabled for values {@code <= 0}, which is the default.
+     *
+     * @param cacheSnapshotInterval interval between snapshots in minutes
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withCacheSnapshotInterval(int cacheSnapshotInterval) {
+        this.cacheSnapshotInterval = cacheSnapshotInterval;
+        return this;
+    }
+
+    /**
+     * Interval in seconds at which a read only file store moves its head to
+     * the latest revision written to its directory by another file store,
+     * see {@link ReadOnlyFileStore#refreshHead()}. Only applies to
+     * {@link #buildReadOnly()}. The head is only moved explicitly for values
+     * {@code <= 0}, which is the default.
+     *
+     * @param readOnlyRefreshInterval interval between refreshes in seconds
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withReadOnlyRefreshInterval(int readOnlyRefreshInterval) {
+        this.readOnlyRefreshInterval = readOnlyRefreshInterval;
+        return this;
+    }
+
+    /**
+     * Maximum bandwidth in MB per second used for reading segments while
+     * warming up the caches. Defaults to {@link #DEFAULT_CACHE_WARM_UP_BANDWIDTH}.
+     * There is no limit for values {@code <= 0}.
+     *
+     * @param cacheWarmUpBandwidth maximum bandwidth in MB per second
+     * @return this instance
+     * @see #withCacheSnapshotInterval(int)
+     */
+    @NotNull
+    public FileStoreBuilder withCacheWarmUpBandwidth(int cacheWarmUpBandwidth) {
+        this.cacheWarmUpBandwidth = cacheWarmUpBandwidth;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      *
@@ -255,6 +371,33 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Allocate the node deduplication cache off-heap
+     *
+     * @param nodeDeduplicationCacheOffHeap {@code true} to allocate the node
+     *                                      deduplication cache off-heap
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withNodeDeduplicationCacheOffHeap(boolean nodeDeduplicationCacheOffHeap) {
+        this.nodeDeduplicationCacheOffHeap = nodeDeduplicationCacheOffHeap;
+        return this;
+    }
+
+    /**
+     * Number of strings and of templates to keep per generation in the
+     * deduplication index, which survives restarts of the store.
+     *
+     * @param deduplicationIndexSize None negative index size. {@code 0}
+     *                               disables the deduplication index.
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withDeduplicationIndexSize(int deduplicationIndexSize) {
+        this.deduplicationIndexSize = deduplicationIndexSize;
+        return this;
+    }
+
     /**
      * Turn memory mapping on or off
      *
@@ -498,6 +641,30 @@ public class FileStoreBuilder {
         return segmentCacheSize;
     }
 
+    int getOffHeapSegmentCacheSize() {
+        return offHeapSegmentCacheSize;
+    }
+
+    int getSegmentPrefetchThreads() {
+        return segmentPrefetchThreads;
+    }
+
+    int getSegmentPrefetchBufferSize() {
+        return segmentPrefetchBufferSize;
+    }
+
+    int getCacheSnapshotInterval() {
+        return cacheSnapshotInterval;
+    }
+
+    int getReadOnlyRefreshInterval() {
+        return readOnlyRefreshInterval;
+    }
+
+    int getCacheWarmUpBandwidth() {
+        return cacheWarmUpBandwidth;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -542,6 +709,8 @@ public class FileStoreBuilder {
      * @return creates or returns the {@code WriterCacheManager} this builder passes or
      * passed to the store on {@link #build()}.
      * @see #withNodeDeduplicationCacheSize(int)
+     * @see #withNodeDeduplicationCacheOffHeap(boolean)
+     * @see #withDeduplicationIndexSize(int)
      * @see #withStringDeduplicationCacheSize(int)
      * @see #withTemplateDeduplicationCacheSize(int)
      */
@@ -549,7 +718,8 @@ public class FileStoreBuilder {
     public WriterCacheManager getCacheManager() {
         if (cacheManager == null) {
             cacheManager = new EvictingWriteCacheManager(stringDeduplicationCacheSize,
-                    templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+                    templateDeduplicationCacheSize, nodeDeduplicationCacheSize, nodeDeduplicationCacheOffHeap,
+                    deduplicationIndexSize);
         }
         return cacheManager;
     }
@@ -583,11 +753,19 @@ public class FileStoreBuilder {
                 ", blobStore=" + blobStore +
                 ", maxFileSize=" + maxFileSize +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", offHeapSegmentCacheSize=" + offHeapSegmentCacheSize +
+                ", segmentPrefetchThreads=" + segmentPrefetchThreads +
+                ", segmentPrefetchBufferSize=" + segmentPrefetchBufferSize +
+                ", cacheSnapshotInterval=" + cacheSnapshotInterval +
+                ", readOnlyRefreshInterval=" + readOnlyRefreshInterval +
+                ", cacheWarmUpBandwidth=" + cacheWarmUpBandwidth +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
                 ", templateDeduplicationCacheSize=" + templateDeduplicationCacheSize +
                 ", nodeDeduplicationCacheSize=" + nodeDeduplicationCacheSize +
+                ", nodeDeduplicationCacheOffHeap=" + nodeDeduplicationCacheOffHeap +
+                ", deduplicationIndexSize=" + deduplicationIndexSize +
                 ", memoryMapping=" + memoryMapping +
                 ", offHeapAccess=" + offHeapAccess +
                 ", gcOptions=" + gcOptions +
@@ -598,10 +776,13 @@ public class FileStoreBuilder {
         public EvictingWriteCacheManager(
                 int stringCacheSize,
                 int templateCacheSize,
-                int nodeCacheSize) {
+                int nodeCacheSize,
+                boolean nodeCacheOffHeap,
+                int deduplicationIndexSize) {
             super(RecordCache.factory(stringCacheSize, new StringCacheWeigher()),
                     RecordCache.factory(templateCacheSize, new TemplateCacheWeigher()),
-                    PriorityCache.factory(nodeCacheSize, new NodeCacheWeigher()));
+                    RecordIdPriorityCache.factory(nodeCacheSize, nodeCacheOffHeap),
+                    deduplicationIndexSize > 0 ? new DeduplicationIndex(deduplicationIndexSize) : null);
         }
 
         void evictOldGeneration(final int newGeneration) {
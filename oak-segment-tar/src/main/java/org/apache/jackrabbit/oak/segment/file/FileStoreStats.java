@@ -39,6 +39,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
     public static final String SEGMENT_REPO_SIZE = "SEGMENT_REPO_SIZE";
     public static final String SEGMENT_WRITES = "SEGMENT_WRITES";
     public static final String JOURNAL_WRITES = "JOURNAL_WRITES";
+    public static final String SEGMENT_LOOKUPS = "SEGMENT_LOOKUPS";
+    public static final String SEGMENT_LOOKUP_PROBES = "SEGMENT_LOOKUP_PROBES";
     private static final String SNFE_COUNT = "SNFE_COUNT";
 
     private final StatisticsProvider statisticsProvider;
@@ -47,6 +49,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
     private final CounterStats repoSize;
     private final MeterStats journalWriteStats;
     private final CounterStats snfeCountStats;
+    private final CounterStats lookupCountStats;
+    private final CounterStats lookupProbeCountStats;
 
     public FileStoreStats(StatisticsProvider statisticsProvider, FileStore store, long initialSize) {
         this.statisticsProvider = statisticsProvider;
@@ -55,6 +59,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         this.repoSize = statisticsProvider.getCounterStats(SEGMENT_REPO_SIZE, StatsOptions.DEFAULT);
         this.journalWriteStats = statisticsProvider.getMeter(JOURNAL_WRITES, StatsOptions.DEFAULT);
         this.snfeCountStats = statisticsProvider.getCounterStats(SNFE_COUNT, StatsOptions.DEFAULT);
+        this.lookupCountStats = statisticsProvider.getCounterStats(SEGMENT_LOOKUPS, StatsOptions.DEFAULT);
+        this.lookupProbeCountStats = statisticsProvider.getCounterStats(SEGMENT_LOOKUP_PROBES, StatsOptions.DEFAULT);
         repoSize.inc(initialSize);
     }
 
@@ -62,6 +68,14 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         repoSize.inc(initialSize);
     }
 
+    CounterStats getLookupCountStats() {
+        return lookupCountStats;
+    }
+
+    CounterStats getLookupProbeCountStats() {
+        return lookupProbeCountStats;
+    }
+
     //~-----------------------------< SegmentNotFoundExceptionListener >
     @Override
     public void notify(@NotNull SegmentId id, @NotNull SegmentNotFoundException snfe) {
@@ -133,6 +147,21 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         return asCompositeData(getTimeSeries(JOURNAL_WRITES), JOURNAL_WRITES);
     }
 
+    @Override
+    public long getSegmentLookupCount() {
+        return lookupCountStats.getCount();
+    }
+
+    @Override
+    public long getSegmentLookupProbeCount() {
+        return lookupProbeCountStats.getCount();
+    }
+
+    @Override
+    public long getDeduplicationIndexBytesSaved() {
+        return store.getDeduplicationIndexBytesSaved();
+    }
+
     private TimeSeries getTimeSeries(String name) {
         return statisticsProvider.getStats().getTimeSeries(name, true);
     }
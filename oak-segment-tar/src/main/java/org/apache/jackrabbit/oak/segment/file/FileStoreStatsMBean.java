@@ -58,4 +58,21 @@ public interface FileStoreStatsMBean {
      * @return  time series of the writes to journal
      */
     CompositeData getJournalWriteStatsAsCompositeData();
+
+    /**
+     * @return  number of segments looked up in the tar files
+     */
+    long getSegmentLookupCount();
+
+    /**
+     * @return  number of tar files checked for containing a segment while
+     * looking up segments
+     */
+    long getSegmentLookupProbeCount();
+
+    /**
+     * @return  number of bytes not written because string and template
+     * records were reused through the deduplication index
+     */
+    long getDeduplicationIndexBytesSaved();
 }
@@ -27,6 +27,7 @@ import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
@@ -54,6 +55,8 @@ interface GarbageCollectionStrategy {
 
         SegmentWriterFactory getSegmentWriterFactory();
 
+        WriterCacheManager getCacheManager();
+
         GCNodeWriteMonitor getCompactionMonitor();
 
         BlobStore getBlobStore();
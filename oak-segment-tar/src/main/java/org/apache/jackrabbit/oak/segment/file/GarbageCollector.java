@@ -35,6 +35,7 @@ import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.GarbageCollectionStrategy.SuccessfulGarbageCollectionListener;
 import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
@@ -96,6 +97,8 @@ class GarbageCollector {
 
     private final SegmentWriterFactory segmentWriterFactory;
 
+    private final WriterCacheManager cacheManager;
+
     private final GCNodeWriteMonitor compactionMonitor;
 
     /**
@@ -130,7 +133,8 @@ class GarbageCollector {
         FileStoreStats stats,
         Canceller canceller,
         Flusher flusher,
-        SegmentWriterFactory segmentWriterFactory
+        SegmentWriterFactory segmentWriterFactory,
+        WriterCacheManager cacheManager
     ) {
         this.gcOptions = gcOptions;
         this.gcListener = new PrefixedGCListener(gcListener, GC_COUNT);
@@ -148,6 +152,7 @@ class GarbageCollector {
         this.cancel = canceller.withCondition("cancelled by user", () -> cancelRequested);
         this.flusher = flusher;
         this.segmentWriterFactory = segmentWriterFactory;
+        this.cacheManager = cacheManager;
         this.compactionMonitor = new GCNodeWriteMonitor(gcOptions.getGcLogInterval(), gcListener);
     }
 
@@ -192,6 +197,11 @@ class GarbageCollector {
                 return segmentWriterFactory;
             }
 
+            @Override
+            public WriterCacheManager getCacheManager() {
+                return cacheManager;
+            }
+
             @Override
             public GCNodeWriteMonitor getCompactionMonitor() {
                 return compactionMonitor;
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.segment.file;
 
 import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.apache.jackrabbit.oak.stats.TimerStats;
@@ -31,15 +32,21 @@ public class MetricsRemoteStoreMonitor extends RemoteStoreMonitorAdapter {
     public static final String REQUEST_COUNT = "REQUEST_COUNT";
     public static final String REQUEST_ERROR = "REQUEST_ERROR";
     public static final String REQUEST_DURATION = "REQUEST_DURATION";
+    public static final String SEGMENT_QUEUE_DEPTH = "SEGMENT_QUEUE_DEPTH";
+    public static final String SEGMENT_UPLOAD_LATENCY = "SEGMENT_UPLOAD_LATENCY";
 
     private final CounterStats requestCountStats;
     private final CounterStats requestErrorStats;
     private final TimerStats requestDurationStats;
+    private final HistogramStats segmentQueueDepthStats;
+    private final TimerStats segmentUploadLatencyStats;
 
     public MetricsRemoteStoreMonitor(@NotNull StatisticsProvider statisticsProvider) {
         requestCountStats = statisticsProvider.getCounterStats(REQUEST_COUNT, StatsOptions.DEFAULT);
         requestErrorStats = statisticsProvider.getCounterStats(REQUEST_ERROR, StatsOptions.DEFAULT);
         requestDurationStats = statisticsProvider.getTimer(REQUEST_DURATION, StatsOptions.METRICS_ONLY);
+        segmentQueueDepthStats = statisticsProvider.getHistogram(SEGMENT_QUEUE_DEPTH, StatsOptions.METRICS_ONLY);
+        segmentUploadLatencyStats = statisticsProvider.getTimer(SEGMENT_UPLOAD_LATENCY, StatsOptions.METRICS_ONLY);
     }
 
     @Override
@@ -55,4 +62,14 @@ public class MetricsRemoteStoreMonitor extends RemoteStoreMonitorAdapter {
     public void requestDuration(long duration, TimeUnit timeUnit) {
         requestDurationStats.update(duration, timeUnit);
     }
+
+    @Override
+    public void segmentQueueDepth(int depth) {
+        segmentQueueDepthStats.update(depth);
+    }
+
+    @Override
+    public void segmentUploadLatency(long duration, TimeUnit timeUnit) {
+        segmentUploadLatencyStats.update(duration, timeUnit);
+    }
 }
@@ -56,7 +56,7 @@ import com.google.common.cache.Weigher;
  * @param <K>  type of the keys
  * @param <V>  type of the values
  */
-public class PriorityCache<K, V> {
+public class PriorityCache<K, V> implements GenerationalCache<K, V> {
     private final int rehash;
     private final Entry<?,?>[] entries;
     private final int[] costs = new int[256];
@@ -185,6 +185,7 @@ public class PriorityCache<K, V> {
     /**
      * @return  the number of mappings in this cache.
      */
+    @Override
     public long size() {
         return size;
     }
@@ -197,6 +198,7 @@ public class PriorityCache<K, V> {
      * @param initialCost    the initial cost associated with this mapping
      * @return  {@code true} if the mapping has been added, {@code false} otherwise.
      */
+    @Override
     public synchronized boolean put(@NotNull K key, @NotNull V value, int generation, byte initialCost) {
         int hashCode = key.hashCode();
         byte cheapest = initialCost;
@@ -263,6 +265,7 @@ public class PriorityCache<K, V> {
      * @return  the mapping for {@code key} and {@code generation} or {@code null} if this
      *          cache does not contain such a mapping.
      */
+    @Override
     @SuppressWarnings("unchecked")
     @Nullable
     public synchronized V get(@NotNull K key, int generation) {
@@ -289,6 +292,7 @@ public class PriorityCache<K, V> {
      * passed {@code purge} predicate.
      * @param purge
      */
+    @Override
     public synchronized void purgeGenerations(@NotNull Predicate<Integer> purge) {
         for (int i = 0; i < entries.length; i++) {
             Entry<?, ?> entry = entries[i];
@@ -327,11 +331,13 @@ public class PriorityCache<K, V> {
     /**
      * @return  access statistics for this cache
      */
+    @Override
     @NotNull
     public CacheStats getStats() {
         return new CacheStats(hitCount, missCount, loadCount, loadExceptionCount, 0, evictionCount);
     }
 
+    @Override
     public long estimateCurrentWeight() {
         return weight;
     }
@@ -18,6 +18,8 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
 import static org.apache.jackrabbit.oak.segment.file.Reclaimers.newOldReclaimer;
 
@@ -40,6 +42,7 @@ import org.apache.jackrabbit.oak.segment.SegmentWriter;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,10 +59,21 @@ public class ReadOnlyFileStore extends AbstractFileStore {
 
     private final TarFiles tarFiles;
 
+    private final SegmentPrefetcher segmentPrefetcher;
+
     @NotNull
     private final SegmentWriter writer;
     private final int gcRetainedGenerations;
 
+    private final int refreshInterval;
+
+    /**
+     * Scheduler for refreshing the head, {@code null} if the head is only
+     * refreshed explicitly.
+     */
+    @Nullable
+    private Scheduler refreshScheduler;
+
     private ReadOnlyRevisions revisions;
 
     private RecordId currentHead;
@@ -79,8 +93,15 @@ public class ReadOnlyFileStore extends AbstractFileStore {
                 .withPersistence(builder.getPersistence())
                 .build();
 
+        segmentPrefetcher = new SegmentPrefetcher(
+                builder.getSegmentPrefetchThreads(),
+                builder.getSegmentPrefetchBufferSize(),
+                id -> readSegmentUncached(tarFiles, id),
+                builder.getStatsProvider());
+
         writer = defaultSegmentWriterBuilder("read-only").withoutCache().build(this);
         gcRetainedGenerations = builder.getGcOptions().getRetainedGenerations();
+        refreshInterval = builder.getReadOnlyRefreshInterval();
 
         log.info("TarMK ReadOnly opened: {} (mmap={})", directory,
                 memoryMapping);
@@ -90,6 +111,17 @@ public class ReadOnlyFileStore extends AbstractFileStore {
         this.revisions = revisions;
         this.revisions.bind(this, tracker);
         currentHead = revisions.getHead();
+        if (refreshInterval > 0) {
+            refreshScheduler = new Scheduler(format("TarMK read only refresh [%s]", directory));
+            refreshScheduler.scheduleWithFixedDelay(format("TarMK read only refresh [%s]", directory),
+                    refreshInterval, SECONDS, () -> {
+                        try {
+                            refreshHead();
+                        } catch (IOException e) {
+                            log.warn("Failed to refresh the head of {}", directory, e);
+                        }
+                    });
+        }
         return this;
     }
 
@@ -98,13 +130,32 @@ public class ReadOnlyFileStore extends AbstractFileStore {
      * 
      * @param revision
      */
-    public void setRevision(String revision) {
+    public synchronized void setRevision(String revision) {
         RecordId newHead = RecordId.fromString(tracker, revision);
         if (revisions.setHead(currentHead, newHead)) {
             currentHead = newHead;
         }
     }
 
+    /**
+     * Go to the latest revision appended to the journal since this store was
+     * opened or last refreshed, provided its segments are accessible from
+     * this store. The TAR files written by another file store since then are
+     * opened first. This is done regularly in the background if a refresh
+     * interval was set with {@link FileStoreBuilder#withReadOnlyRefreshInterval(int)}.
+     *
+     * @return {@code true} if the head changed
+     * @throws IOException if reading the journal or the TAR files fails
+     */
+    public synchronized boolean refreshHead() throws IOException {
+        tarFiles.refreshReaders();
+        if (revisions.refresh(this, tracker)) {
+            currentHead = revisions.getHead();
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public void writeSegment(SegmentId id, byte[] data, int offset, int length) {
         throw new UnsupportedOperationException("Read Only Store");
@@ -122,7 +173,7 @@ public class ReadOnlyFileStore extends AbstractFileStore {
             return segmentCache.getSegment(id, new Callable<Segment>() {
                 @Override
                 public Segment call() throws Exception {
-                    return readSegmentUncached(tarFiles, id);
+                    return segmentPrefetcher.readSegment(id);
                 }
             });
         } catch (ExecutionException | UncheckedExecutionException e) {
@@ -132,9 +183,13 @@ public class ReadOnlyFileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        if (refreshScheduler != null) {
+            refreshScheduler.close();
+        }
         Closer closer = Closer.create();
         closer.register(tarFiles);
         closer.register(revisions);
+        closer.register(segmentPrefetcher);
         closeAndLogOnFail(closer);
         System.gc(); // for any memory-mappings that are no longer used
         log.info("TarMK closed: {}", directory);
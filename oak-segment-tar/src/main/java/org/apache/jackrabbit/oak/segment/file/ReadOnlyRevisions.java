@@ -24,25 +24,55 @@ import static org.apache.jackrabbit.oak.segment.file.FileStoreUtil.findPersisted
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Function;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
+import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalFile;
+import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalTail;
 import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.SegmentStore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ReadOnlyRevisions implements Revisions, Closeable {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyRevisions.class);
+
+    /**
+     * Maximum number of revisions from the journal kept for a later
+     * {@link #refresh(SegmentStore, SegmentIdProvider)} when none of their
+     * segments are accessible yet.
+     */
+    private static final int MAX_PENDING_REVISIONS = 16;
+
     @NotNull
     private final AtomicReference<RecordId> head;
 
     @NotNull
     private final JournalFile journalFile;
 
+    /**
+     * Follows the revisions appended to a local journal, {@code null} for
+     * other journals, which are read backwards from their end instead.
+     */
+    @Nullable
+    private LocalJournalTail journalTail;
+
+    /**
+     * Revisions read from the journal whose segments were not accessible
+     * when last refreshing, ordered from the oldest to the newest.
+     */
+    @NotNull
+    private final List<String> pendingRevisions = new ArrayList<>();
+
     public ReadOnlyRevisions(@NotNull SegmentNodeStorePersistence persistence) {
         this.journalFile = checkNotNull(persistence).getJournalFile();
         this.head = new AtomicReference<>(null);
@@ -60,6 +90,11 @@ public class ReadOnlyRevisions implements Revisions, Closeable {
         if (head.get() != null) {
             return;
         }
+        if (journalFile instanceof LocalJournalFile && journalFile.exists()) {
+            // Open the tail before reading the head such that no revision
+            // appended in between is missed
+            journalTail = ((LocalJournalFile) journalFile).openJournalTail();
+        }
         RecordId persistedId = findPersistedRecordId(store, idProvider, journalFile);
         if (persistedId == null) {
             throw new IllegalStateException("Cannot start readonly store from empty journal");
@@ -67,6 +102,58 @@ public class ReadOnlyRevisions implements Revisions, Closeable {
         head.set(persistedId);
     }
 
+    /**
+     * Pick up the latest revision appended to the journal since this
+     * instance was bound or last refreshed. Only revisions whose segments
+     * are accessible through {@code store} are considered.
+     * <p>
+     * For a local journal only the appended entries are read, which makes
+     * this cheap enough to be called frequently, e.g. from the refresh loop
+     * of a read only replica.
+     *
+     * @param store       store the head must be accessible from
+     * @param idProvider  {@code SegmentIdProvider} of the {@code store}
+     * @return {@code true} if the head changed
+     * @throws IOException if reading the journal fails
+     */
+    synchronized boolean refresh(@NotNull SegmentStore store, @NotNull SegmentIdProvider idProvider)
+    throws IOException {
+        checkBound();
+        if (journalTail != null) {
+            for (String line : journalTail.readNewLines()) {
+                int k = line.indexOf(' ');
+                if (k != -1) {
+                    pendingRevisions.add(line.substring(0, k));
+                } else if (!line.isEmpty()) {
+                    LOG.warn("Skipping invalid journal entry: {}", line);
+                }
+            }
+        } else {
+            try (JournalReader journalReader = new JournalReader(journalFile)) {
+                if (journalReader.hasNext()) {
+                    pendingRevisions.add(journalReader.next().getRevision());
+                }
+            }
+        }
+
+        for (int i = pendingRevisions.size() - 1; i >= 0; i--) {
+            try {
+                RecordId id = RecordId.fromString(idProvider, pendingRevisions.get(i));
+                if (store.containsSegment(id.getSegmentId())) {
+                    pendingRevisions.subList(0, i + 1).clear();
+                    return !id.equals(head.getAndSet(id));
+                }
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Skipping invalid record id {}", pendingRevisions.get(i));
+            }
+        }
+
+        if (pendingRevisions.size() > MAX_PENDING_REVISIONS) {
+            pendingRevisions.subList(0, pendingRevisions.size() - MAX_PENDING_REVISIONS).clear();
+        }
+        return false;
+    }
+
     private void checkBound() {
         checkState(head.get() != null, "Revisions not bound to a store");
     }
@@ -99,7 +186,10 @@ public class ReadOnlyRevisions implements Revisions, Closeable {
     }
 
     @Override
-    public void close() throws IOException {
-        // do nothing
+    public synchronized void close() throws IOException {
+        if (journalTail != null) {
+            journalTail.close();
+            journalTail = null;
+        }
     }
 }
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Integer.bitCount;
+import static java.lang.Integer.numberOfTrailingZeros;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.cache.CacheStats;
+
+/**
+ * {@code RecordIdPriorityCache} is a {@link GenerationalCache} from the stable
+ * ids of nodes to their {@link RecordId}s with the same semantics as
+ * {@link PriorityCache}.
+ * <p>
+ * In contrast to {@code PriorityCache} this cache does not allocate any
+ * objects per mapping. The keys (the segment id and offset of the stable id),
+ * the record numbers of the values, the generations and the costs of all
+ * mappings are stored in a single buffer of primitive values, which can
+ * optionally be allocated off-heap. Only a reference to the (shared)
+ * {@link SegmentId} of each value is kept on the heap.
+ * <p>
+ * Stable ids are expected in the format returned by
+ * {@link org.apache.jackrabbit.oak.segment.SegmentNodeState#getStableId()}.
+ * <p>
+ * This cache is thread safe.
+ */
+public class RecordIdPriorityCache implements GenerationalCache<String, RecordId> {
+
+    /**
+     * Maximum size of the cache such that its buffer does not exceed 2GB.
+     */
+    static final int MAX_SIZE = 1 << 26;
+
+    private static final int KEY_MSB = 0;
+
+    private static final int KEY_LSB = 8;
+
+    private static final int KEY_OFFSET = 16;
+
+    private static final int RECORD_NUMBER = 20;
+
+    private static final int GENERATION = 24;
+
+    private static final int COST = 28;
+
+    private static final int SLOT_SIZE = 32;
+
+    private static final int EMPTY_GENERATION = -1;
+
+    private final int rehash;
+
+    private final int size;
+
+    private final boolean offHeap;
+
+    private final ByteBuffer slots;
+
+    private final SegmentId[] segmentIds;
+
+    private final int[] costs = new int[256];
+
+    private final int[] evictions = new int[256];
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long loadCount;
+
+    private long loadExceptionCount;
+
+    private long evictionCount;
+
+    private long count;
+
+    /**
+     * Static factory for creating new {@code RecordIdPriorityCache} instances.
+     * @param size     size of the cache. Must be a power of 2.
+     * @param offHeap  {@code true} to allocate the cache off-heap
+     * @return  a new {@code RecordIdPriorityCache} instance of the given {@code size}.
+     */
+    public static Supplier<RecordIdPriorityCache> factory(final int size, final boolean offHeap) {
+        checkArgument(bitCount(size) == 1);
+        checkArgument(size <= MAX_SIZE);
+        return new Supplier<RecordIdPriorityCache>() {
+            @Override
+            public RecordIdPriorityCache get() {
+                return new RecordIdPriorityCache(size, offHeap);
+            }
+        };
+    }
+
+    /**
+     * Create a new instance of the given {@code size}. {@code rehash} specifies the number
+     * of rehashes to resolve a clash.
+     * @param size      Size of the cache. Must be a power of {@code 2} not greater than
+     *                  {@link #MAX_SIZE}.
+     * @param rehash    Number of rehashes. Must be greater or equal to {@code 0} and
+     *                  smaller than {@code 32 - numberOfTrailingZeros(size)}.
+     * @param offHeap   {@code true} to allocate the cache off-heap
+     */
+    RecordIdPriorityCache(int size, int rehash, boolean offHeap) {
+        checkArgument(bitCount(size) == 1);
+        checkArgument(size <= MAX_SIZE);
+        checkArgument(rehash >= 0);
+        checkArgument(rehash < 32 - numberOfTrailingZeros(size));
+        this.rehash = rehash;
+        this.size = size;
+        this.offHeap = offHeap;
+        this.slots = offHeap
+            ? ByteBuffer.allocateDirect(size * SLOT_SIZE)
+            : ByteBuffer.allocate(size * SLOT_SIZE);
+        this.segmentIds = new SegmentId[size];
+        for (int i = 0; i < size; i++) {
+            clear(i);
+        }
+    }
+
+    /**
+     * Create a new instance of the given {@code size}. The number of rehashes is
+     * the maximum number allowed by the given {@code size}. ({@code 31 - numberOfTrailingZeros(size)}.
+     * @param size      Size of the cache. Must be a power of {@code 2} not greater than
+     *                  {@link #MAX_SIZE}.
+     * @param offHeap   {@code true} to allocate the cache off-heap
+     */
+    public RecordIdPriorityCache(int size, boolean offHeap) {
+        this(size, 31 - numberOfTrailingZeros(size), offHeap);
+    }
+
+    private void clear(int i) {
+        int base = i * SLOT_SIZE;
+        slots.putInt(base + GENERATION, EMPTY_GENERATION);
+        slots.put(base + COST, Byte.MIN_VALUE);
+        segmentIds[i] = null;
+    }
+
+    private static int hash(long msb, long lsb, int offset) {
+        long h = msb * 0x9e3779b97f4a7c15L + lsb;
+        h = h * 0x9e3779b97f4a7c15L + offset;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private int project(int hashCode, int iteration) {
+        return (hashCode >> iteration) & (size - 1);
+    }
+
+    private boolean matches(int i, long msb, long lsb, int offset) {
+        int base = i * SLOT_SIZE;
+        return slots.getLong(base + KEY_MSB) == msb
+            && slots.getLong(base + KEY_LSB) == lsb
+            && slots.getInt(base + KEY_OFFSET) == offset;
+    }
+
+    private int generation(int i) {
+        return slots.getInt(i * SLOT_SIZE + GENERATION);
+    }
+
+    private byte cost(int i) {
+        return slots.get(i * SLOT_SIZE + COST);
+    }
+
+    /**
+     * Parse a stable id of the form {@code <segment id>:<offset>}.
+     * @return  the offset, with the segment id stored in {@code uuid[0]}.
+     */
+    private static int parseStableId(String stableId, UUID[] uuid) {
+        int k = stableId.lastIndexOf(':');
+        checkArgument(k > 0, "Invalid stable id %s", stableId);
+        uuid[0] = UUID.fromString(stableId.substring(0, k));
+        return Integer.parseInt(stableId.substring(k + 1));
+    }
+
+    /**
+     * @return  the number of mappings in this cache.
+     */
+    @Override
+    public synchronized long size() {
+        return count;
+    }
+
+    /**
+     * @return  {@code true} if this cache is allocated off-heap.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    @Override
+    public boolean put(@NotNull String stableId, @NotNull RecordId recordId, int generation, byte initialCost) {
+        UUID[] uuid = new UUID[1];
+        int offset = parseStableId(stableId, uuid);
+        return put(uuid[0].getMostSignificantBits(), uuid[0].getLeastSignificantBits(), offset,
+            recordId, generation, initialCost);
+    }
+
+    /**
+     * Add a mapping to the cache.
+     * @param msb          the most significant bits of the segment id of the stable id
+     * @param lsb          the least significant bits of the segment id of the stable id
+     * @param offset       the offset of the stable id
+     * @param recordId     the value of the mapping
+     * @param generation   the generation of the mapping
+     * @param initialCost  the initial cost associated with this mapping
+     * @return  {@code true} if the mapping has been added, {@code false} otherwise.
+     */
+    public synchronized boolean put(long msb, long lsb, int offset, @NotNull RecordId recordId, int generation, byte initialCost) {
+        int hashCode = hash(msb, lsb, offset);
+        byte cheapest = initialCost;
+        int index = -1;
+        boolean eviction = false;
+        for (int k = 0; k <= rehash; k++) {
+            int i = project(hashCode, k);
+            int entryGeneration = generation(i);
+            if (entryGeneration == EMPTY_GENERATION) {
+                // Empty slot -> use this index
+                index = i;
+                eviction = false;
+                break;
+            } else if (entryGeneration <= generation && matches(i, msb, lsb, offset)) {
+                // Key exists and generation is greater or equal -> use this index and boost the cost
+                index = i;
+                initialCost = cost(i);
+                if (initialCost < Byte.MAX_VALUE) {
+                    initialCost++;
+                }
+                eviction = false;
+                break;
+            } else if (entryGeneration < generation) {
+                // Old generation -> use this index
+                index = i;
+                eviction = false;
+                break;
+            } else if (cost(i) < cheapest) {
+                // Candidate slot, keep on searching for even cheaper slots
+                cheapest = cost(i);
+                index = i;
+                eviction = true;
+            }
+        }
+
+        if (index >= 0) {
+            if (generation(index) != EMPTY_GENERATION) {
+                byte oldCost = cost(index);
+                costs[oldCost - Byte.MIN_VALUE]--;
+                if (eviction) {
+                    evictions[oldCost - Byte.MIN_VALUE]++;
+                    evictionCount++;
+                }
+            } else {
+                count++;
+            }
+            int base = index * SLOT_SIZE;
+            slots.putLong(base + KEY_MSB, msb);
+            slots.putLong(base + KEY_LSB, lsb);
+            slots.putInt(base + KEY_OFFSET, offset);
+            slots.putInt(base + RECORD_NUMBER, recordId.getRecordNumber());
+            slots.putInt(base + GENERATION, generation);
+            slots.put(base + COST, initialCost);
+            segmentIds[index] = recordId.getSegmentId();
+            loadCount++;
+            costs[initialCost - Byte.MIN_VALUE]++;
+            return true;
+        } else {
+            loadExceptionCount++;
+            return false;
+        }
+    }
+
+    @Nullable
+    @Override
+    public RecordId get(@NotNull String stableId, int generation) {
+        UUID[] uuid = new UUID[1];
+        int offset = parseStableId(stableId, uuid);
+        return get(uuid[0].getMostSignificantBits(), uuid[0].getLeastSignificantBits(), offset, generation);
+    }
+
+    /**
+     * Look up a mapping from this cache by its key and {@code generation}.
+     * @param msb         the most significant bits of the segment id of the stable id
+     * @param lsb         the least significant bits of the segment id of the stable id
+     * @param offset      the offset of the stable id
+     * @param generation  generation of the mapping to look up
+     * @return  the mapping for the key and {@code generation} or {@code null} if this
+     *          cache does not contain such a mapping.
+     */
+    @Nullable
+    public synchronized RecordId get(long msb, long lsb, int offset, int generation) {
+        int hashCode = hash(msb, lsb, offset);
+        for (int k = 0; k <= rehash; k++) {
+            int i = project(hashCode, k);
+            if (generation == generation(i) && matches(i, msb, lsb, offset)) {
+                byte cost = cost(i);
+                if (cost < Byte.MAX_VALUE) {
+                    costs[cost - Byte.MIN_VALUE]--;
+                    cost++;
+                    slots.put(i * SLOT_SIZE + COST, cost);
+                    costs[cost - Byte.MIN_VALUE]++;
+                }
+                hitCount++;
+                return new RecordId(segmentIds[i], slots.getInt(i * SLOT_SIZE + RECORD_NUMBER));
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    @Override
+    public synchronized void purgeGenerations(@NotNull Predicate<Integer> purge) {
+        for (int i = 0; i < size; i++) {
+            int generation = generation(i);
+            if (generation != EMPTY_GENERATION && purge.apply(generation)) {
+                costs[cost(i) - Byte.MIN_VALUE]--;
+                clear(i);
+                count--;
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RecordIdPriorityCache" +
+            "{ costs=" + toString(costs) +
+            ", evictions=" + toString(evictions) +
+            ", offHeap=" + offHeap + " }";
+    }
+
+    private static String toString(int[] ints) {
+        StringBuilder b = new StringBuilder("[");
+        String sep = "";
+        for (int i = 0; i < ints.length; i++) {
+            if (ints[i] > 0) {
+                b.append(sep).append(i).append("->").append(ints[i]);
+                sep = ",";
+            }
+        }
+        return b.append(']').toString();
+    }
+
+    @NotNull
+    @Override
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hitCount, missCount, loadCount, loadExceptionCount, 0, evictionCount);
+    }
+
+    /**
+     * The heap memory occupied by this cache does not depend on the number of
+     * mappings: it consists of the references to the segment ids of the values
+     * and, unless this cache is allocated off-heap, of its buffer.
+     */
+    @Override
+    public long estimateCurrentWeight() {
+        long references = (long) size * Integer.BYTES;
+        return offHeap ? references : references + (long) size * SLOT_SIZE;
+    }
+
+    @Override
+    public long estimateOffHeapWeight() {
+        return offHeap ? (long) size * SLOT_SIZE : 0;
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.jackrabbit.oak.stats.StatsOptions.METRICS_ONLY;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Speculatively loads the segments referenced from a segment when that
+ * segment is loaded.
+ * <p>
+ * Prefetched segments are kept in a bounded buffer until they are read
+ * through {@link #readSegment(SegmentId)}, at which point they are handed
+ * to the segment cache and the segments they reference are prefetched in
+ * turn. Prefetching is thus driven by the segments actually read and does
+ * not run ahead over the whole repository. Keeping prefetched segments out
+ * of the segment cache until they are read allows for accurate statistics:
+ * <ul>
+ *     <li>{@link #PREFETCH_COUNT}: number of segments loaded by the prefetcher.</li>
+ *     <li>{@link #PREFETCH_HIT_COUNT}: number of prefetched segments that were
+ *          subsequently read.</li>
+ *     <li>{@link #PREFETCH_WASTE_COUNT}: number of prefetched segments that
+ *          were discarded without being read.</li>
+ * </ul>
+ */
+class SegmentPrefetcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    /**
+     * Number of segments loaded by the prefetcher
+     */
+    static final String PREFETCH_COUNT = "oak.segment.prefetch-count";
+
+    /**
+     * Number of prefetched segments that were subsequently read
+     */
+    static final String PREFETCH_HIT_COUNT = "oak.segment.prefetch-hit-count";
+
+    /**
+     * Number of prefetched segments that were discarded without being read
+     */
+    static final String PREFETCH_WASTE_COUNT = "oak.segment.prefetch-waste-count";
+
+    /**
+     * Number of seconds after which a prefetched segment that has not been
+     * read is discarded.
+     */
+    private static final long PREFETCH_EXPIRY_SECONDS = Long.getLong("oak.segment.prefetch.expiry", 60);
+
+    @NotNull
+    private final Function<SegmentId, Segment> loader;
+
+    @Nullable
+    private final ThreadPoolExecutor executor;
+
+    @Nullable
+    private final Cache<SegmentId, FutureTask<Segment>> prefetched;
+
+    @NotNull
+    private final CounterStats prefetchCount;
+
+    @NotNull
+    private final CounterStats prefetchHitCount;
+
+    @NotNull
+    private final CounterStats prefetchWasteCount;
+
+    /**
+     * Create a new prefetcher.
+     *
+     * @param threads           number of threads loading segments. Prefetching
+     *                          is disabled for {@code threads <= 0}.
+     * @param bufferSize        maximum number of prefetched segments not yet read
+     * @param loader            loader reading a segment from the underlying store
+     * @param statsProvider     statistics provider for the prefetch statistics
+     */
+    SegmentPrefetcher(
+            int threads,
+            int bufferSize,
+            @NotNull Function<SegmentId, Segment> loader,
+            @NotNull StatisticsProvider statsProvider) {
+        this.loader = checkNotNull(loader);
+        this.prefetchCount = statsProvider.getCounterStats(PREFETCH_COUNT, METRICS_ONLY);
+        this.prefetchHitCount = statsProvider.getCounterStats(PREFETCH_HIT_COUNT, METRICS_ONLY);
+        this.prefetchWasteCount = statsProvider.getCounterStats(PREFETCH_WASTE_COUNT, METRICS_ONLY);
+
+        if (threads > 0 && bufferSize > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+                    new LinkedBlockingQueue<>(bufferSize),
+                    r -> {
+                        Thread thread = new Thread(r, "TarMK segment prefetch " + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+            this.prefetched = CacheBuilder.newBuilder()
+                    .maximumSize(bufferSize)
+                    .expireAfterWrite(PREFETCH_EXPIRY_SECONDS, SECONDS)
+                    .removalListener(this::onRemove)
+                    .build();
+        } else {
+            this.executor = null;
+            this.prefetched = null;
+        }
+    }
+
+    /**
+     * Read a segment, taking it from the prefetched segments if it was
+     * prefetched and loading it otherwise. Schedules the prefetching of
+     * the segments referenced from the returned segment.
+     *
+     * @param id  the id of the segment
+     * @return  the segment identified by {@code id}
+     */
+    @NotNull
+    Segment readSegment(@NotNull SegmentId id) {
+        if (executor == null || prefetched == null) {
+            return loader.apply(id);
+        }
+
+        Segment segment = takePrefetched(id);
+        if (segment == null) {
+            segment = loader.apply(id);
+        }
+        if (id.isDataSegmentId()) {
+            prefetchReferences(segment);
+        }
+        return segment;
+    }
+
+    @Nullable
+    private Segment takePrefetched(@NotNull SegmentId id) {
+        FutureTask<Segment> task = prefetched.asMap().remove(id);
+        if (task == null) {
+            return null;
+        }
+        if (!task.isDone() && executor.remove(task)) {
+            // Avoid waiting behind other queued prefetches: load the segment
+            // ourselves, unless the prefetch already started.
+            return null;
+        }
+        try {
+            Segment segment = task.get();
+            prefetchHitCount.inc();
+            return segment;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.debug("Prefetching segment {} failed", id, e.getCause());
+            return null;
+        }
+    }
+
+    private void prefetchReferences(@NotNull Segment segment) {
+        for (SegmentId reference : segment.getReferencedSegmentIds()) {
+            if (!reference.isDataSegmentId() || reference.isLoaded()) {
+                continue;
+            }
+            FutureTask<Segment> task = new PrefetchTask(reference);
+            if (prefetched.asMap().putIfAbsent(reference, task) != null) {
+                continue;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The prefetch queue is full or this prefetcher is closed
+                prefetched.asMap().remove(reference, task);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Task loading a segment, which only counts as prefetched once done.
+     */
+    private class PrefetchTask extends FutureTask<Segment> {
+        PrefetchTask(@NotNull SegmentId id) {
+            super(() -> loader.apply(id));
+        }
+
+        @Override
+        protected void set(Segment segment) {
+            super.set(segment);
+            prefetchCount.inc();
+        }
+    }
+
+    private void onRemove(@NotNull RemovalNotification<SegmentId, FutureTask<Segment>> notification) {
+        FutureTask<Segment> task = notification.getValue();
+        if (task == null || !notification.wasEvicted()) {
+            return;
+        }
+        if (task.isDone()) {
+            if (!task.isCancelled()) {
+                prefetchWasteCount.inc();
+            }
+        } else if (executor != null) {
+            executor.remove(task);
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Stop prefetching. Prefetches already in progress are not interrupted
+     * as this would close the file channels they read from.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor.getQueue().clear();
+        }
+        if (prefetched != null) {
+            prefetched.invalidateAll();
+        }
+    }
+
+    long getPrefetchCount() {
+        return prefetchCount.getCount();
+    }
+
+    long getPrefetchHitCount() {
+        return prefetchHitCount.getCount();
+    }
+
+    long getPrefetchWasteCount() {
+        return prefetchWasteCount.getCount();
+    }
+}
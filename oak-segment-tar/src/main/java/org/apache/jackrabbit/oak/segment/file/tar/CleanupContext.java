@@ -57,4 +57,23 @@ public interface CleanupContext {
      */
     boolean shouldFollow(UUID from, UUID to);
 
+    /**
+     * Determine if references to an entry might be followed at all, i.e. if
+     * {@link #shouldFollow(UUID, UUID)} might return {@code true} for any
+     * entry referencing it. The references of a TAR file to such entries are
+     * retained in memory once the TAR file has been marked, such that later
+     * cleanups do not have to load its graph again. Implementations must
+     * return the same value for an entry across cleanups.
+     * <p>
+     * The default implementation returns {@code true}, which retains all the
+     * references of every TAR file.
+     *
+     * @param to The identifier of the referenced entry.
+     * @return {@code false} if references to the entry are never followed,
+     * {@code true} otherwise.
+     */
+    default boolean mightFollow(UUID to) {
+        return true;
+    }
+
 }
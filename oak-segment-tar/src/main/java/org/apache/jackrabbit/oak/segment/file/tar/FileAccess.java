@@ -40,6 +40,32 @@ abstract class FileAccess {
 
     abstract Buffer read(int position, int length) throws IOException;
 
+    /**
+     * Read several ranges of the file with a single read of the region of
+     * {@code length} bytes starting at {@code position}, which must contain
+     * all the ranges.
+     *
+     * @param position the start of the region
+     * @param length   the length of the region
+     * @param offsets  the offsets of the ranges relative to {@code position}
+     * @param lengths  the lengths of the ranges
+     * @return a buffer for each range
+     */
+    Buffer[] read(int position, int length, int[] offsets, int[] lengths) throws IOException {
+        return slice(read(position, length), offsets, lengths);
+    }
+
+    static Buffer[] slice(Buffer region, int[] offsets, int[] lengths) {
+        Buffer[] ranges = new Buffer[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            Buffer range = region.duplicate();
+            range.position(offsets[i]);
+            range.limit(offsets[i] + lengths[i]);
+            ranges[i] = range.slice();
+        }
+        return ranges;
+    }
+
     abstract void close() throws IOException;
 
     //-----------------------------------------------------------< private >--
@@ -111,7 +137,33 @@ abstract class FileAccess {
 
         @Override
         public synchronized Buffer read(int position, int length) throws IOException {
-            Buffer entry = Buffer.allocate(length);
+            return readFully(allocate(length), position);
+        }
+
+        /**
+         * Reads the region into a temporary buffer and copies each range into
+         * a buffer of its own. Slices of the region would keep the whole region,
+         * including the gaps between the ranges, in memory.
+         */
+        @Override
+        Buffer[] read(int position, int length, int[] offsets, int[] lengths) throws IOException {
+            Buffer region;
+            synchronized (this) {
+                region = readFully(Buffer.allocate(length), position);
+            }
+            Buffer[] ranges = slice(region, offsets, lengths);
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = allocate(lengths[i]).put(ranges[i]).flip();
+            }
+            return ranges;
+        }
+
+        Buffer allocate(int length) {
+            return Buffer.allocate(length);
+        }
+
+        private Buffer readFully(Buffer entry, int position) throws IOException {
+            int length = entry.remaining();
             if (entry.readFully(channel, position) < length) {
                 throw new EOFException();
             }
@@ -137,13 +189,8 @@ abstract class FileAccess {
         }
 
         @Override
-        public synchronized Buffer read(int position, int length) throws IOException {
-            Buffer entry = Buffer.allocateDirect(length);
-            if (entry.readFully(channel, position) < length) {
-                throw new EOFException();
-            }
-            entry.flip();
-            return entry;
+        Buffer allocate(int length) {
+            return Buffer.allocateDirect(length);
         }
     }
 
@@ -52,6 +52,17 @@ public class LocalJournalFile implements JournalFile {
         return new LocalJournalFileWriter(journalFile);
     }
 
+    /**
+     * Open a reader following the lines appended to this journal, see
+     * {@link LocalJournalTail}.
+     *
+     * @return a reader positioned at the current end of the journal
+     * @throws IOException if the journal can not be opened
+     */
+    public LocalJournalTail openJournalTail() throws IOException {
+        return new LocalJournalTail(journalFile);
+    }
+
     @Override
     public String getName() {
         return journalFile.getName();
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Follows the tail of a local journal file. Instead of reading the journal
+ * backwards from its end every time, this reader remembers the offset up to
+ * which the journal has been read and only memory maps and parses the lines
+ * appended since then. Checking for new lines costs a single call for the
+ * size of the file when nothing was appended.
+ * <p>
+ * A line is only returned once it has been completely written, i.e. is
+ * terminated by a line separator. If the journal is truncated, it is read
+ * again from its beginning.
+ */
+public class LocalJournalTail implements Closeable {
+
+    private final FileChannel channel;
+
+    private long offset;
+
+    /**
+     * Open a reader positioned at the current end of the journal.
+     *
+     * @param file the journal file
+     * @throws IOException if the journal can not be opened
+     */
+    LocalJournalTail(@NotNull File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.offset = lineEnd(channel.size());
+    }
+
+    /**
+     * Read the lines appended to the journal since the last call, or since
+     * this reader was opened.
+     *
+     * @return the new lines in the order they were appended. Never
+     * {@code null}.
+     * @throws IOException if reading the journal fails
+     */
+    @NotNull
+    public synchronized List<String> readNewLines() throws IOException {
+        long size = channel.size();
+        if (size < offset) {
+            offset = 0;
+        }
+        if (size == offset) {
+            return Collections.emptyList();
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, Integer.MAX_VALUE));
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                byte[] line = new byte[i - start];
+                for (int j = 0; j < line.length; j++) {
+                    line[j] = buffer.get(start + j);
+                }
+                lines.add(new String(line, ISO_8859_1).trim());
+                start = i + 1;
+            }
+        }
+        offset += start;
+        return lines;
+    }
+
+    /**
+     * @return the offset in the journal up to which lines have been read.
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Find the end of the last complete line before {@code size}.
+     */
+    private long lineEnd(long size) throws IOException {
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - 4096);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
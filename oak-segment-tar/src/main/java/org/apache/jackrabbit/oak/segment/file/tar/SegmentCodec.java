@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Codecs for compressing the data segments stored in a TAR file.
+ * <p>
+ * Only data segments are ever compressed. Bulk segments have no header and
+ * may start with any bytes, so they are always stored and read as they are.
+ * A compressed data segment is stored with a header identifying the codec
+ * used to compress it, followed by the compressed data. File format:
+ * <ul>
+ * <li>The magic bytes {@code 0aZ}. Uncompressed data segments start with
+ * the magic bytes {@code 0aK} instead, which allows for reading compressed
+ * and uncompressed data segments from the same TAR file.</li>
+ * <li>The id of the codec (1 byte).</li>
+ * <li>The length of the uncompressed segment (4 bytes).</li>
+ * <li>The compressed segment.</li>
+ * </ul>
+ * The index of the TAR file records the position and length of the stored,
+ * i.e. compressed data.
+ */
+enum SegmentCodec {
+
+    /**
+     * Segments are stored uncompressed.
+     */
+    NONE(0) {
+        @Override
+        byte[] compress(byte[] data, int offset, int size) {
+            return Arrays.copyOfRange(data, offset, offset + size);
+        }
+
+        @Override
+        byte[] decompress(byte[] data, int offset, int size, int length) {
+            return Arrays.copyOfRange(data, offset, offset + size);
+        }
+    },
+
+    /**
+     * Segments are compressed with DEFLATE at its fastest compression level.
+     */
+    DEFLATE(1) {
+        @Override
+        byte[] compress(byte[] data, int offset, int size) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data, offset, size);
+                deflater.finish();
+                byte[] buffer = new byte[size + size / 16 + 64];
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    }
+                    length += deflater.deflate(buffer, length, buffer.length - length);
+                }
+                return Arrays.copyOf(buffer, length);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        byte[] decompress(byte[] data, int offset, int size, int length) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data, offset, size);
+                byte[] buffer = new byte[length];
+                int n = 0;
+                while (n < length && !inflater.finished()) {
+                    int k = inflater.inflate(buffer, n, length - n);
+                    if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += k;
+                }
+                if (n != length) {
+                    throw new IOException("Invalid compressed segment: expected " + length + " bytes, got " + n);
+                }
+                return buffer;
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid compressed segment", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentCodec.class);
+
+    /**
+     * Size of the header preceding a compressed segment.
+     */
+    static final int HEADER_SIZE = 8;
+
+    private static final byte[] MAGIC = {'0', 'a', 'Z'};
+
+    private final byte id;
+
+    SegmentCodec(int id) {
+        this.id = (byte) id;
+    }
+
+    abstract byte[] compress(byte[] data, int offset, int size);
+
+    abstract byte[] decompress(byte[] data, int offset, int size, int length) throws IOException;
+
+    /**
+     * Encode a segment with this codec.
+     *
+     * @param data   the array containing the segment
+     * @param offset the offset of the segment in {@code data}
+     * @param size   the size of the segment
+     * @return the header followed by the compressed segment
+     */
+    @NotNull
+    byte[] encode(byte[] data, int offset, int size) {
+        byte[] compressed = compress(data, offset, size);
+        Buffer encoded = Buffer.allocate(HEADER_SIZE + compressed.length);
+        encoded.put(MAGIC);
+        encoded.put(id);
+        encoded.putInt(size);
+        encoded.put(compressed);
+        return encoded.array();
+    }
+
+    /**
+     * @param lsb the least significant bits of the segment id
+     * @return {@code true} if the segment with the given id may be stored
+     * compressed, i.e. if it is a data segment.
+     */
+    static boolean isEncodable(long lsb) {
+        return isDataSegmentId(lsb);
+    }
+
+    /**
+     * Decode a segment stored in a TAR file. Bulk segments and data
+     * segments that are not compressed are returned as they are.
+     *
+     * @param lsb    the least significant bits of the segment id
+     * @param buffer the segment as stored in the TAR file
+     * @return the uncompressed segment
+     * @throws IOException if the segment is compressed with an unknown
+     *                     codec or its compressed data is invalid
+     */
+    @NotNull
+    static Buffer decode(long lsb, @NotNull Buffer buffer) throws IOException {
+        if (!isEncodable(lsb) || !isEncoded(buffer)) {
+            return buffer;
+        }
+
+        int position = buffer.position();
+        SegmentCodec codec = forId(buffer.get(position + MAGIC.length));
+        if (codec == null) {
+            throw new IOException("Unknown segment codec " + buffer.get(position + MAGIC.length));
+        }
+        int length = buffer.getInt(position + MAGIC.length + 1);
+        if (length < 0) {
+            throw new IOException("Invalid compressed segment length " + length);
+        }
+
+        byte[] data = new byte[buffer.remaining() - HEADER_SIZE];
+        Buffer compressed = buffer.duplicate();
+        compressed.position(position + HEADER_SIZE);
+        compressed.get(data);
+        return Buffer.wrap(codec.decompress(data, 0, data.length, length));
+    }
+
+    /**
+     * Decode a segment stored in a TAR file, see {@link #decode(long, Buffer)}.
+     */
+    @NotNull
+    static byte[] decode(long lsb, @NotNull byte[] data) throws IOException {
+        Buffer buffer = Buffer.wrap(data);
+        if (!isEncodable(lsb) || !isEncoded(buffer)) {
+            return data;
+        }
+        return decode(lsb, buffer).array();
+    }
+
+    /**
+     * @return {@code true} if {@code buffer} starts with the header of a
+     * compressed segment.
+     */
+    static boolean isEncoded(@NotNull Buffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int position = buffer.position();
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(position + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static SegmentCodec forId(byte id) {
+        for (SegmentCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse the name of a codec, falling back to {@link #NONE} for unknown
+     * names.
+     *
+     * @param name the name of the codec, case insensitive
+     * @return the codec with the given name or {@link #NONE}
+     */
+    @NotNull
+    static SegmentCodec fromName(@NotNull String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown segment codec {}, storing segments uncompressed", name);
+            return NONE;
+        }
+    }
+
+}
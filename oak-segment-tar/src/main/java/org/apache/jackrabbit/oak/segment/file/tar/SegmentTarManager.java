@@ -270,7 +270,11 @@ public class SegmentTarManager implements SegmentArchiveManager {
                         }
                     }
 
-                    entries.put(id, data);
+                    try {
+                        entries.put(id, SegmentCodec.decode(id.getLeastSignificantBits(), data));
+                    } catch (IOException e) {
+                        log.warn("Unable to decode entry {} of tar file {}, skipping...", name, file, e);
+                    }
                 }
             } else if (!name.equals(file.getName() + ".idx")) {
                 log.warn("Unexpected entry {} in tar file {}, skipping...",
@@ -25,8 +25,13 @@ import static org.apache.jackrabbit.oak.segment.file.tar.index.IndexLoader.newIn
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
@@ -42,6 +47,7 @@ import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.util.ReaderAtEnd;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +57,17 @@ public class SegmentTarReader implements SegmentArchiveReader {
 
     private static final IndexLoader indexLoader = newIndexLoader(BLOCK_SIZE);
 
+    /**
+     * Maximum number of bytes between two segments for reading both segments
+     * with a single read in {@link #readSegments(Collection)}.
+     */
+    private static final int MAX_READ_GAP = Integer.getInteger("oak.segment.tar.readSegments.maxGap", 64 * 1024);
+
+    /**
+     * Maximum number of bytes read with a single read in {@link #readSegments(Collection)}.
+     */
+    private static final int MAX_READ_LENGTH = Integer.getInteger("oak.segment.tar.readSegments.maxLength", 4 * 1024 * 1024);
+
     private final FileAccess access;
 
     private final File file;
@@ -83,7 +100,65 @@ public class SegmentTarReader implements SegmentArchiveReader {
         Buffer buffer = access.read(indexEntry.getPosition(), indexEntry.getLength());
         long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
         ioMonitor.afterSegmentRead(file, msb, lsb, indexEntry.getLength(), elapsed);
-        return buffer;
+        return SegmentCodec.decode(lsb, buffer);
+    }
+
+    /**
+     * Reads the segments in the order of their position in this archive.
+     * Segments not further apart than {@link #MAX_READ_GAP} bytes are read
+     * with a single read of at most {@link #MAX_READ_LENGTH} bytes.
+     */
+    @Override
+    @NotNull
+    public Map<UUID, Buffer> readSegments(@NotNull Collection<UUID> ids) throws IOException {
+        List<IndexEntry> entries = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            int i = index.findEntry(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (i != -1) {
+                entries.add(index.entry(i));
+            }
+        }
+        entries.sort(IndexEntry.POSITION_ORDER);
+
+        Map<UUID, Buffer> segments = new HashMap<>();
+        int start = 0;
+        while (start < entries.size()) {
+            int position = entries.get(start).getPosition();
+            int end = position + entries.get(start).getLength();
+            int next = start + 1;
+            while (next < entries.size()) {
+                IndexEntry entry = entries.get(next);
+                int entryEnd = entry.getPosition() + entry.getLength();
+                if (entry.getPosition() - end > MAX_READ_GAP || entryEnd - position > MAX_READ_LENGTH) {
+                    break;
+                }
+                end = Math.max(end, entryEnd);
+                next++;
+            }
+            readSegments(entries.subList(start, next), position, end - position, segments);
+            start = next;
+        }
+        return segments;
+    }
+
+    private void readSegments(List<IndexEntry> entries, int position, int length, Map<UUID, Buffer> segments) throws IOException {
+        int[] offsets = new int[entries.size()];
+        int[] lengths = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            IndexEntry entry = entries.get(i);
+            offsets[i] = entry.getPosition() - position;
+            lengths[i] = entry.getLength();
+            ioMonitor.beforeSegmentRead(file, entry.getMsb(), entry.getLsb(), entry.getLength());
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Buffer[] buffers = access.read(position, length, offsets, lengths);
+        long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        for (int i = 0; i < entries.size(); i++) {
+            IndexEntry entry = entries.get(i);
+            // Attribute the time of the read to the segments in proportion to their length
+            ioMonitor.afterSegmentRead(file, entry.getMsb(), entry.getLsb(), entry.getLength(), elapsed * lengths[i] / length);
+            segments.put(new UUID(entry.getMsb(), entry.getLsb()), SegmentCodec.decode(entry.getLsb(), buffers[i]));
+        }
     }
 
     @Override
@@ -52,6 +52,13 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     private static final byte[] ZERO_BYTES = new byte[BLOCK_SIZE];
 
+    /**
+     * Codec for compressing the segments written to new TAR files, see
+     * {@link SegmentCodec}. Segments are stored uncompressed by default.
+     */
+    private static final SegmentCodec DEFAULT_CODEC =
+            SegmentCodec.fromName(System.getProperty("oak.segment.tar.compression", SegmentCodec.NONE.name()));
+
     private final FileStoreMonitor monitor;
 
     /**
@@ -64,6 +71,8 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     private final IOMonitor ioMonitor;
 
+    private final SegmentCodec codec;
+
     /**
      * Map of the entries that have already been written. Used by the
      * {@link #containsSegment(long, long)} and {@link #readSegment(long, long)}
@@ -87,13 +96,29 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
     private volatile long length;
 
     public SegmentTarWriter(File file, FileStoreMonitor monitor, IOMonitor ioMonitor) {
+        this(file, monitor, ioMonitor, DEFAULT_CODEC);
+    }
+
+    SegmentTarWriter(File file, FileStoreMonitor monitor, IOMonitor ioMonitor, SegmentCodec codec) {
         this.file = file;
         this.monitor = monitor;
         this.ioMonitor = ioMonitor;
+        this.codec = codec;
     }
 
     @Override
     public void writeSegment(long msb, long lsb, byte[] data, int offset, int size, int generation, int fullGeneration, boolean compacted) throws IOException {
+        // Bulk segments are never compressed, see SegmentCodec
+        if (codec != SegmentCodec.NONE && SegmentCodec.isEncodable(lsb)) {
+            byte[] encoded = codec.encode(data, offset, size);
+            // Only store the compressed segment if it occupies fewer blocks
+            if (encoded.length + getPaddingSize(encoded.length) < size + getPaddingSize(size)) {
+                data = encoded;
+                offset = 0;
+                size = encoded.length;
+            }
+        }
+
         UUID uuid = new UUID(msb, lsb);
         CRC32 checksum = new CRC32();
         checksum.update(data, offset, size);
@@ -144,7 +169,7 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
             throw new EOFException();
         }
         data.rewind();
-        return data;
+        return SegmentCodec.decode(lsb, data);
     }
 
     @Override
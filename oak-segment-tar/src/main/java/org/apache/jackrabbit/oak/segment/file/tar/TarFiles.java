@@ -30,6 +30,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -136,6 +138,10 @@ public class TarFiles implements Closeable {
 
         private CounterStats segmentCountStats = NoopStats.INSTANCE;
 
+        private CounterStats lookupCountStats = NoopStats.INSTANCE;
+
+        private CounterStats lookupProbeCountStats = NoopStats.INSTANCE;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -201,6 +207,16 @@ public class TarFiles implements Closeable {
             return this;
         }
 
+        public Builder withLookupCountStats(CounterStats lookupCountStats) {
+            this.lookupCountStats = lookupCountStats;
+            return this;
+        }
+
+        public Builder withLookupProbeCountStats(CounterStats lookupProbeCountStats) {
+            this.lookupProbeCountStats = lookupProbeCountStats;
+            return this;
+        }
+
         public TarFiles build() throws IOException {
             checkState(directory != null, "Directory not specified");
             checkState(tarRecovery != null, "TAR recovery strategy not specified");
@@ -327,8 +343,17 @@ public class TarFiles implements Closeable {
 
     private final long maxFileSize;
 
+    private final boolean readOnly;
+
     private SegmentArchiveManager archiveManager;
 
+    /**
+     * The TAR readers of a read only instance by the index of their TAR
+     * file. Only used by {@link #refreshReaders()}, which is guarded by
+     * the monitor of this map.
+     */
+    private final Map<Integer, TarReader> readOnlyReaders = newHashMap();
+
     /**
      * Guards access to the {@link #readers} and {@link #writer} references.
      */
@@ -369,15 +394,30 @@ public class TarFiles implements Closeable {
      */
     private final CounterStats segmentCount;
 
+    /**
+     * Counter exposing the number of segment lookups in the {@link
+     * TarReader} instances.
+     */
+    private final CounterStats lookupCount;
+
+    /**
+     * Counter exposing the number of {@link TarReader} instances checked
+     * for containing a segment during segment lookups.
+     */
+    private final CounterStats lookupProbeCount;
+
     private static int getSegmentCount(TarReader reader) {
         return reader.getEntries().length;
     }
 
     private TarFiles(Builder builder) throws IOException {
         maxFileSize = builder.maxFileSize;
+        readOnly = builder.readOnly;
         archiveManager = builder.buildArchiveManager();
         readerCount = builder.readerCountStats;
         segmentCount = builder.segmentCountStats;
+        lookupCount = builder.lookupCountStats;
+        lookupProbeCount = builder.lookupProbeCountStats;
 
         Map<Integer, Map<Character, String>> map = collectFiles(archiveManager);
         Integer[] indices = map.keySet().toArray(new Integer[map.size()]);
@@ -398,6 +438,9 @@ public class TarFiles implements Closeable {
             segmentCount.inc(getSegmentCount(r));
             readers = new Node(r, readers);
             readerCount.inc();
+            if (builder.readOnly) {
+                readOnlyReaders.put(index, r);
+            }
         }
         if (builder.readOnly) {
             return;
@@ -538,6 +581,75 @@ public class TarFiles implements Closeable {
         }
     }
 
+    /**
+     * Open the TAR files written to the directory of a read only instance
+     * since it was opened or last refreshed. TAR readers are replaced when a
+     * newer generation of their TAR file is available, or when the TAR file
+     * was recovered because it was still being written and now has an
+     * index. TAR files without an index are skipped until a later refresh.
+     *
+     * @return {@code true} if TAR readers were added or replaced
+     * @throws IOException if listing the TAR files fails
+     */
+    public boolean refreshReaders() throws IOException {
+        checkState(readOnly, "TAR readers can only be refreshed in read only mode");
+        synchronized (readOnlyReaders) {
+            List<TarReader> replaced = new ArrayList<>();
+            boolean changed = false;
+            for (Entry<Integer, Map<Character, String>> entry : collectFiles(archiveManager).entrySet()) {
+                Map<Character, String> files = entry.getValue();
+                String file = files.get(Collections.max(files.keySet()));
+                TarReader current = readOnlyReaders.get(entry.getKey());
+                if (current != null && current.getFileName().equals(file)) {
+                    continue;
+                }
+                TarReader reader;
+                try {
+                    reader = TarReader.open(file, archiveManager);
+                } catch (IOException e) {
+                    log.debug("Skipping tar file {} without a valid index", file);
+                    continue;
+                }
+                readOnlyReaders.put(entry.getKey(), reader);
+                readerCount.inc();
+                segmentCount.inc(getSegmentCount(reader));
+                if (current != null) {
+                    replaced.add(current);
+                }
+                changed = true;
+            }
+            if (!changed) {
+                return false;
+            }
+
+            // Rebuild the list of TAR readers in descending index order
+            Integer[] indices = readOnlyReaders.keySet().toArray(new Integer[0]);
+            Arrays.sort(indices);
+            Node head = null;
+            for (Integer index : indices) {
+                head = new Node(readOnlyReaders.get(index), head);
+            }
+
+            lock.writeLock().lock();
+            try {
+                readers = head;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            for (TarReader reader : replaced) {
+                readerCount.dec();
+                segmentCount.dec(getSegmentCount(reader));
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.warn("Unable to close replaced TAR reader", e);
+                }
+            }
+            return true;
+        }
+    }
+
     public boolean containsSegment(long msb, long lsb) {
         Node head;
 
@@ -553,12 +665,20 @@ public class TarFiles implements Closeable {
             lock.readLock().unlock();
         }
 
-        for (TarReader reader : iterable(head)) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
+        lookupCount.inc();
+        UUID id = new UUID(msb, lsb);
+        int probes = 0;
+        try {
+            for (TarReader reader : iterable(head)) {
+                probes++;
+                if (reader.containsEntry(id)) {
+                    return true;
+                }
             }
+            return false;
+        } finally {
+            lookupProbeCount.inc(probes);
         }
-        return false;
     }
 
     public Buffer readSegment(long msb, long lsb) {
@@ -578,11 +698,22 @@ public class TarFiles implements Closeable {
                 lock.readLock().unlock();
             }
 
-            for (TarReader reader : iterable(head)) {
-                Buffer b = reader.readEntry(msb, lsb);
-                if (b != null) {
-                    return b;
+            lookupCount.inc();
+            UUID id = new UUID(msb, lsb);
+            int probes = 0;
+            try {
+                for (TarReader reader : iterable(head)) {
+                    probes++;
+                    if (!reader.containsEntry(id)) {
+                        continue;
+                    }
+                    Buffer b = reader.readEntry(msb, lsb);
+                    if (b != null) {
+                        return b;
+                    }
                 }
+            } finally {
+                lookupProbeCount.inc(probes);
             }
         } catch (IOException e) {
             log.warn("Unable to read from TAR file", e);
@@ -591,6 +722,69 @@ public class TarFiles implements Closeable {
         return null;
     }
 
+    /**
+     * Read several segments at once. The segments are read with a single
+     * bulk read per TAR file, see {@link TarReader#readEntries(Collection)}.
+     *
+     * @param ids the ids of the segments
+     * @return map from the ids of the segments found to their byte buffers.
+     */
+    @NotNull
+    public Map<UUID, Buffer> readSegments(@NotNull Collection<UUID> ids) {
+        Map<UUID, Buffer> segments = newHashMap();
+        Set<UUID> remaining = newHashSet(ids);
+        try {
+            Node head;
+
+            lock.readLock().lock();
+            try {
+                if (writer != null) {
+                    Iterator<UUID> iterator = remaining.iterator();
+                    while (iterator.hasNext()) {
+                        UUID id = iterator.next();
+                        Buffer b = writer.readEntry(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                        if (b != null) {
+                            segments.put(id, b);
+                            iterator.remove();
+                        }
+                    }
+                }
+                head = readers;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lookupCount.inc(remaining.size());
+            int probes = 0;
+            try {
+                for (TarReader reader : iterable(head)) {
+                    if (remaining.isEmpty()) {
+                        break;
+                    }
+                    probes += remaining.size();
+                    List<UUID> candidates = new ArrayList<>(remaining.size());
+                    for (UUID id : remaining) {
+                        if (reader.containsEntry(id)) {
+                            candidates.add(id);
+                        }
+                    }
+                    if (candidates.isEmpty()) {
+                        continue;
+                    }
+                    Map<UUID, Buffer> found = reader.readEntries(candidates);
+                    segments.putAll(found);
+                    remaining.removeAll(found.keySet());
+                }
+            } finally {
+                lookupProbeCount.inc(probes);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read from TAR file", e);
+        }
+
+        return segments;
+    }
+
     public void writeSegment(UUID id, byte[] buffer, int offset, int length, GCGeneration generation, Set<UUID> references, Set<String> binaryReferences) throws IOException {
         lock.writeLock().lock();
         try {
@@ -681,15 +875,21 @@ public class TarFiles implements Closeable {
         }
 
         Set<UUID> reclaim = newHashSet();
+        int loadedGraphs = 0;
 
         for (TarReader reader : cleaned.keySet()) {
             if (shutdown) {
                 result.interrupted = true;
                 return result;
             }
+            if (!reader.hasFollowableReferences()) {
+                loadedGraphs++;
+            }
             reader.mark(references, reclaim, context);
         }
 
+        log.debug("Marked {} TAR files, loaded the graph of {} of them", cleaned.size(), loadedGraphs);
+
         for (TarReader reader : cleaned.keySet()) {
             if (shutdown) {
                 result.interrupted = true;
@@ -29,7 +29,10 @@ import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGener
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -255,6 +258,15 @@ public class TarReader implements Closeable {
 
     private volatile boolean hasGraph;
 
+    /**
+     * The references between the entries of this TAR file and the entries
+     * that references might be followed to when marking, see {@link
+     * CleanupContext#mightFollow(UUID)}. Loaded from the graph when this TAR
+     * file is marked for the first time and retained afterwards, as the
+     * graph of a TAR file never changes. {@code null} if not yet loaded.
+     */
+    private volatile Map<UUID, List<UUID>> followableReferences;
+
     private TarReader(SegmentArchiveManager archiveManager, SegmentArchiveReader archive) {
         this.archiveManager = archiveManager;
         this.archive = archive;
@@ -290,6 +302,18 @@ public class TarReader implements Closeable {
         return archive.containsSegment(msb, lsb);
     }
 
+    /**
+     * Check if the requested entry exists in this TAR file without looking
+     * it up in the index of the archive.
+     *
+     * @param id The entry identifier.
+     * @return {@code true} if the entry exists in this TAR file, {@code false}
+     * otherwise.
+     */
+    boolean containsEntry(UUID id) {
+        return segmentUUIDs.contains(id);
+    }
+
     /**
      * If the given segment is in this file, get the byte buffer that allows
      * reading it.
@@ -305,6 +329,20 @@ public class TarReader implements Closeable {
         return archive.readSegment(msb, lsb);
     }
 
+    /**
+     * Get the byte buffers that allow reading those of the given segments
+     * that are in this file.
+     *
+     * @param ids the ids of the segments
+     * @return map from the ids of the segments in this file to their byte
+     * buffers.
+     * @see SegmentArchiveReader#readSegments(Collection)
+     */
+    @NotNull
+    Map<UUID, Buffer> readEntries(@NotNull Collection<UUID> ids) throws IOException {
+        return archive.readSegments(ids);
+    }
+
     /**
      * Read the entries in this TAR file.
      *
@@ -400,7 +438,7 @@ public class TarReader implements Closeable {
      * @param context     An instance of {@link CleanupContext}.
      */
     void mark(Set<UUID> references, Set<UUID> reclaimable, CleanupContext context) throws IOException {
-        Map<UUID, List<UUID>> graph = getGraph();
+        Map<UUID, List<UUID>> graph = getFollowableReferences(context);
         SegmentArchiveEntry[] entries = getEntries();
         for (int i = entries.length - 1; i >= 0; i--) {
             // A bulk segments is *always* written before any data segment referencing it.
@@ -423,6 +461,56 @@ public class TarReader implements Closeable {
         }
     }
 
+    /**
+     * @return {@code true} if the references retained for marking this TAR
+     * file are already loaded, i.e. marking it does not need to load its
+     * graph.
+     */
+    boolean hasFollowableReferences() {
+        return followableReferences != null;
+    }
+
+    /**
+     * Read the references of the entries in this TAR file that might be
+     * followed when marking. The references are loaded from the graph of this
+     * TAR file and retained on the first invocation.
+     *
+     * @param context An instance of {@link CleanupContext}.
+     * @return The references, or {@code null} if this TAR file has no graph.
+     */
+    private Map<UUID, List<UUID>> getFollowableReferences(CleanupContext context) throws IOException {
+        Map<UUID, List<UUID>> references = followableReferences;
+
+        if (references != null) {
+            return references;
+        }
+
+        Map<UUID, List<UUID>> graph = getGraph();
+
+        if (graph == null) {
+            return null;
+        }
+
+        references = new HashMap<>();
+
+        for (Entry<UUID, List<UUID>> e : graph.entrySet()) {
+            List<UUID> vertices = new ArrayList<>();
+
+            for (UUID vertex : e.getValue()) {
+                if (context.mightFollow(vertex)) {
+                    vertices.add(vertex);
+                }
+            }
+
+            if (!vertices.isEmpty()) {
+                references.put(e.getKey(), vertices);
+            }
+        }
+
+        followableReferences = references;
+        return references;
+    }
+
     /**
      * Try to remove every segment contained in a user-provided set.
      * <p>
@@ -513,11 +601,11 @@ public class TarReader implements Closeable {
             if (entry != null) {
                 long msb = entry.getMsb();
                 long lsb = entry.getLsb();
-                int size = entry.getLength();
                 GCGeneration gen = GCGeneration.newGCGeneration(entry);
-                byte[] data = new byte[size];
-                archive.readSegment(msb, lsb).get(data);
-                writer.writeEntry(msb, lsb, data, 0, size, gen);
+                Buffer buffer = archive.readSegment(msb, lsb);
+                byte[] data = new byte[buffer.remaining()];
+                buffer.get(data);
+                writer.writeEntry(msb, lsb, data, 0, data.length, gen);
             }
         }
 
@@ -562,6 +650,7 @@ public class TarReader implements Closeable {
 
         TarReader reader = openFirstFileWithValidIndex(singletonList(newFile), archiveManager);
         if (reader != null) {
+            reader.followableReferences = withoutEntries(followableReferences, cleaned);
             reclaimed.addAll(cleaned);
             return reader;
         } else {
@@ -570,6 +659,40 @@ public class TarReader implements Closeable {
         }
     }
 
+    /**
+     * Remove the references from and to the given entries.
+     *
+     * @return The remaining references, or {@code null} if {@code
+     * references} is {@code null}.
+     */
+    private static Map<UUID, List<UUID>> withoutEntries(Map<UUID, List<UUID>> references, Set<UUID> entries) {
+        if (references == null) {
+            return null;
+        }
+
+        Map<UUID, List<UUID>> remaining = new HashMap<>();
+
+        for (Entry<UUID, List<UUID>> e : references.entrySet()) {
+            if (entries.contains(e.getKey())) {
+                continue;
+            }
+
+            List<UUID> vertices = new ArrayList<>();
+
+            for (UUID vertex : e.getValue()) {
+                if (!entries.contains(vertex)) {
+                    vertices.add(vertex);
+                }
+            }
+
+            if (!vertices.isEmpty()) {
+                remaining.put(e.getKey(), vertices);
+            }
+        }
+
+        return remaining;
+    }
+
     @Override
     public void close() throws IOException {
         archive.close();
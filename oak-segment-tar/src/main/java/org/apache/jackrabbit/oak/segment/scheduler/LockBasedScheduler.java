@@ -26,17 +26,21 @@ import static org.apache.jackrabbit.oak.api.Type.LONG;
 
 import java.io.Closeable;
 import java.text.MessageFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.UniformReservoir;
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.segment.Revisions;
@@ -71,6 +75,8 @@ public class LockBasedScheduler implements Scheduler {
 
         private boolean dispatchChanges = true;
 
+        private boolean groupCommit;
+
         private LockBasedSchedulerBuilder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
                 @NotNull SegmentNodeStoreStats stats) {
             this.revisions = revisions;
@@ -84,6 +90,19 @@ public class LockBasedScheduler implements Scheduler {
             return this;
         }
 
+        /**
+         * Enable group commits. When enabled, the commits waiting for the
+         * commit lock are applied in order by a single thread and published
+         * with a single update of the head state.
+         * @param groupCommit
+         * @return this instance
+         */
+        @NotNull
+        public LockBasedSchedulerBuilder groupCommit(boolean groupCommit) {
+            this.groupCommit = groupCommit;
+            return this;
+        }
+
         @NotNull
         public LockBasedScheduler build() {
             if (dispatchChanges) {
@@ -127,6 +146,12 @@ public class LockBasedScheduler implements Scheduler {
      * head state after a successful commit, provided a concurrent head state update happens.
      */
     private static final long MAXIMUM_BACKOFF = MILLISECONDS.convert(10, SECONDS);
+
+    /**
+     * Maximum number of commits applied together when group commits are enabled.
+     */
+    private static final int GROUP_COMMIT_MAX_SIZE = Integer
+            .getInteger("oak.segmentNodeStore.groupCommitMaxSize", 64);
     
     /**
      * Sets the number of seconds to wait for the attempt to grab the lock to
@@ -159,6 +184,52 @@ public class LockBasedScheduler implements Scheduler {
 
     private final CommitSemaphoreLogging commitSemaphoreLogging = new CommitSemaphoreLogging();
 
+    private final boolean groupCommit;
+
+    /**
+     * Commits waiting to be applied as part of a group. Only used when
+     * group commits are enabled.
+     */
+    private final Queue<QueuedCommit> commitQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A commit waiting in the {@link #commitQueue}. The thread applying
+     * the group this commit belongs to sets either {@link #result} or
+     * {@link #failure} before marking it {@link #done}.
+     */
+    private static class QueuedCommit {
+
+        @NotNull
+        final Commit commit;
+
+        @NotNull
+        final Thread thread;
+
+        final long queuedTime;
+
+        volatile SegmentNodeState result;
+
+        volatile CommitFailedException failure;
+
+        volatile boolean done;
+
+        QueuedCommit(@NotNull Commit commit, @NotNull Thread thread, long queuedTime) {
+            this.commit = commit;
+            this.thread = thread;
+            this.queuedTime = queuedTime;
+        }
+
+        void succeeded(@NotNull SegmentNodeState result) {
+            this.result = result;
+            this.done = true;
+        }
+
+        void failed(@NotNull CommitFailedException failure) {
+            this.failure = failure;
+            this.done = true;
+        }
+    }
+
     /*
      * Logging of commits that are either blocked for longer than COMMIT_WAIT_WARN_MILLIS
      * or on a commit that crossed the gc boundary. See OAK-8071.
@@ -205,10 +276,14 @@ public class LockBasedScheduler implements Scheduler {
         if (COMMIT_FAIR_LOCK) {
             log.info("Initializing SegmentNodeStore with the commitFairLock option enabled.");
         }
+        if (builder.groupCommit) {
+            log.info("Initializing SegmentNodeStore with group commits enabled.");
+        }
 
         this.reader = builder.reader;
         this.revisions = builder.revisions;
         this.stats = builder.stats;
+        this.groupCommit = builder.groupCommit;
         this.head = new AtomicReference<SegmentNodeState>(reader.readHeadState(revisions));
     }
 
@@ -253,6 +328,10 @@ public class LockBasedScheduler implements Scheduler {
     @Override
     public NodeState schedule(@NotNull Commit commit, SchedulerOption... schedulingOptions)
             throws CommitFailedException {
+        if (groupCommit) {
+            return scheduleInGroup(commit);
+        }
+
         try {
             commitSemaphoreLogging.warnOnBlockingCommit();
 
@@ -287,6 +366,154 @@ public class LockBasedScheduler implements Scheduler {
         }
     }
 
+    /**
+     * Schedule a commit as part of a group. The commit is added to the
+     * {@link #commitQueue}. The first thread acquiring the commit lock applies
+     * all queued commits in order and publishes them with a single update of
+     * the head state. Threads whose commit has already been applied as part of
+     * such a group only pick up their result.
+     */
+    private NodeState scheduleInGroup(@NotNull Commit commit) throws CommitFailedException {
+        commitSemaphoreLogging.warnOnBlockingCommit();
+
+        QueuedCommit queued = new QueuedCommit(commit, currentThread(), System.nanoTime());
+        stats.onCommitQueued(queued.thread, commit::getGCGeneration);
+        commitQueue.add(queued);
+
+        boolean interrupted = false;
+        try {
+            commitSemaphore.acquire();
+        } catch (InterruptedException e) {
+            if (commitQueue.remove(queued)) {
+                stats.onCommitDequeued(queued.thread, System.nanoTime() - queued.queuedTime);
+                currentThread().interrupt();
+                throw new CommitFailedException("Segment", 2, "Merge interrupted", e);
+            }
+            // The commit is already being applied as part of a group
+            interrupted = true;
+            commitSemaphore.acquireUninterruptibly();
+        }
+
+        try {
+            while (!queued.done) {
+                commitSemaphoreLogging.commitStarted(commit);
+                executeGroup();
+            }
+        } finally {
+            commitSemaphoreLogging.commitEnded();
+            commitSemaphore.release();
+            if (interrupted) {
+                currentThread().interrupt();
+            }
+        }
+
+        if (queued.failure != null) {
+            throw queued.failure;
+        }
+        commit.applied(queued.result);
+        return queued.result;
+    }
+
+    /**
+     * Apply the commits currently waiting in the {@link #commitQueue} as a
+     * single group. Should only be called while holding a permit from the
+     * {@link #commitSemaphore}.
+     */
+    private void executeGroup() {
+        List<QueuedCommit> group = Lists.newArrayList();
+        QueuedCommit next;
+        while (group.size() < GROUP_COMMIT_MAX_SIZE && (next = commitQueue.poll()) != null) {
+            stats.onCommitDequeued(next.thread, System.nanoTime() - next.queuedTime);
+            group.add(next);
+        }
+
+        long beforeCommitTime = System.nanoTime();
+        try {
+            executeGroup(group);
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            failGroup(group, new CommitFailedException("Segment", 2, "Merge interrupted", e));
+        } catch (SegmentOverflowException e) {
+            failGroup(group, new CommitFailedException("Segment", 3, "Merge failed", e));
+        } catch (CommitFailedException e) {
+            failGroup(group, e);
+        }
+        long afterCommitTime = System.nanoTime();
+
+        commitTimeHistogram.update(afterCommitTime - beforeCommitTime);
+        for (QueuedCommit queued : group) {
+            if (queued.failure == null) {
+                stats.onCommit(queued.thread, afterCommitTime - beforeCommitTime);
+            }
+        }
+    }
+
+    private static void failGroup(List<QueuedCommit> group, CommitFailedException failure) {
+        for (QueuedCommit queued : group) {
+            if (!queued.done) {
+                queued.failed(failure);
+            }
+        }
+    }
+
+    private void executeGroup(List<QueuedCommit> group) throws CommitFailedException, InterruptedException {
+        long start = System.nanoTime();
+
+        int count = 0;
+        for (long backoff = 1; backoff < MAXIMUM_BACKOFF; backoff *= 2) {
+            refreshHead(true);
+            SegmentNodeState before = head.get();
+            SegmentNodeState after = before;
+
+            // Apply each commit on top of the previous one. A failing
+            // commit is excluded from the group without affecting the others.
+            SegmentNodeState[] states = new SegmentNodeState[group.size()];
+            CommitFailedException[] failures = new CommitFailedException[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                Commit commit = group.get(i).commit;
+                if (commit.hasChanges()) {
+                    try {
+                        after = commit.apply(after);
+                    } catch (CommitFailedException e) {
+                        failures[i] = e;
+                    }
+                }
+                states[i] = after;
+            }
+
+            if (after == before || revisions.setHead(before.getRecordId(), after.getRecordId())) {
+                head.set(after);
+                SegmentNodeState previous = before;
+                for (int i = 0; i < group.size(); i++) {
+                    QueuedCommit queued = group.get(i);
+                    if (failures[i] != null) {
+                        queued.failed(failures[i]);
+                        continue;
+                    }
+                    if (states[i] != previous) {
+                        contentChanged(states[i].getChildNode(ROOT), queued.commit.info());
+                        previous = states[i];
+                    }
+                    queued.succeeded((SegmentNodeState) states[i].getChildNode(ROOT));
+                }
+                return;
+            }
+
+            count++;
+            int randNs = random.nextInt(1_000_000);
+            log.info("Scheduler detected concurrent commits. Retrying group of {} commits after {} ms and {} ns",
+                    group.size(), backoff, randNs);
+            Thread.sleep(backoff, randNs);
+        }
+
+        long finish = System.nanoTime();
+
+        String message = MessageFormat.format(
+                "The commit could not be executed after {0} attempts. Total wait time: {1} ms",
+                count, NANOSECONDS.toMillis(finish - start));
+        throw new CommitFailedException("Segment", 3, message);
+    }
+
     private NodeState execute(Commit commit) throws CommitFailedException, InterruptedException {
         // only do the merge if there are some changes to commit
         if (commit.hasChanges()) {
@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.jackrabbit.oak.api.Type.LONG;
+
+import java.io.Closeable;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.SegmentOverflowException;
+import org.apache.jackrabbit.oak.segment.SegmentReader;
+import org.apache.jackrabbit.oak.spi.commit.ChangeDispatcher;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Observable;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Scheduler} that applies commits optimistically. Each commit is
+ * rebased onto the current head and its commit hooks are run without holding
+ * any lock, so independent commits are processed in parallel. Only the final
+ * compare-and-set of the head in {@link Revisions} and the dispatching of the
+ * resulting change are serialized. A commit losing the race is rebased onto
+ * the new head and retried. After {@code maxRetries} unsuccessful attempts the
+ * commit is applied while holding the commit lock, which guarantees progress
+ * under heavy contention.
+ */
+public class OptimisticScheduler implements Scheduler {
+
+    public static class OptimisticSchedulerBuilder {
+        @NotNull
+        private final SegmentReader reader;
+
+        @NotNull
+        private final Revisions revisions;
+
+        @NotNull
+        private final SegmentNodeStoreStats stats;
+
+        private boolean dispatchChanges = true;
+
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+
+        private OptimisticSchedulerBuilder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+                @NotNull SegmentNodeStoreStats stats) {
+            this.revisions = revisions;
+            this.reader = reader;
+            this.stats = stats;
+        }
+
+        @NotNull
+        public OptimisticSchedulerBuilder dispatchChanges(boolean dispatchChanges) {
+            this.dispatchChanges = dispatchChanges;
+            return this;
+        }
+
+        /**
+         * Number of optimistic attempts after which a commit is applied while
+         * holding the commit lock.
+         * @param maxRetries  number of optimistic attempts, must not be negative
+         * @return this instance
+         */
+        @NotNull
+        public OptimisticSchedulerBuilder withMaxRetries(int maxRetries) {
+            checkArgument(maxRetries >= 0);
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        @NotNull
+        public OptimisticScheduler build() {
+            if (dispatchChanges) {
+                return new ObservableOptimisticScheduler(this);
+            } else {
+                return new OptimisticScheduler(this);
+            }
+        }
+    }
+
+    public static OptimisticSchedulerBuilder builder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+            @NotNull SegmentNodeStoreStats stats) {
+        return new OptimisticSchedulerBuilder(checkNotNull(revisions), checkNotNull(reader), checkNotNull(stats));
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticScheduler.class);
+
+    /**
+     * Default number of optimistic attempts before falling back to applying
+     * a commit while holding the commit lock.
+     */
+    public static final int DEFAULT_MAX_RETRIES = Integer
+            .getInteger("oak.segmentNodeStore.optimisticScheduler.maxRetries", 5);
+
+    /**
+     * Number of attempts to update the head while holding the commit lock.
+     * These can only fail when the head is changed from outside this scheduler
+     * (e.g. by compaction).
+     */
+    private static final int LOCKED_ATTEMPTS = 5;
+
+    /**
+     * Sets the number of seconds to wait for the attempt to grab the lock to
+     * create a checkpoint
+     */
+    private final int checkpointsLockWaitTime = Integer.getInteger("oak.checkpoints.lockWaitTime", 10);
+
+    static final String ROOT = "root";
+
+    /**
+     * Lock serializing the updates of the head in {@link #revisions}
+     * together with the updates of {@link #head} and the dispatching of
+     * the corresponding changes. Commit hooks are never run while holding
+     * this lock, except for commits that exhausted their optimistic attempts.
+     */
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    @NotNull
+    private final SegmentReader reader;
+
+    @NotNull
+    private final Revisions revisions;
+
+    protected final AtomicReference<SegmentNodeState> head;
+
+    private final SegmentNodeStoreStats stats;
+
+    private final int maxRetries;
+
+    public OptimisticScheduler(OptimisticSchedulerBuilder builder) {
+        this.reader = builder.reader;
+        this.revisions = builder.revisions;
+        this.stats = builder.stats;
+        this.maxRetries = builder.maxRetries;
+        this.head = new AtomicReference<SegmentNodeState>(reader.readHeadState(revisions));
+    }
+
+    @Override
+    public NodeState getHeadNodeState() {
+        if (commitLock.tryLock()) {
+            try {
+                refreshHead(true);
+            } finally {
+                commitLock.unlock();
+            }
+        }
+        return head.get();
+    }
+
+    /**
+     * Refreshes the head state. Should only be called while holding the
+     * {@link #commitLock}.
+     *
+     * @param dispatchChanges
+     *            if set to true the changes would also be dispatched
+     */
+    private void refreshHead(boolean dispatchChanges) {
+        SegmentNodeState state = reader.readHeadState(revisions);
+        if (!state.getRecordId().equals(head.get().getRecordId())) {
+            head.set(state);
+            if (dispatchChanges) {
+                contentChanged(state.getChildNode(ROOT), CommitInfo.EMPTY_EXTERNAL);
+            }
+        }
+    }
+
+    protected void contentChanged(NodeState root, CommitInfo info) {
+        // do nothing without a change dispatcher
+    }
+
+    @Override
+    public NodeState schedule(@NotNull Commit commit, SchedulerOption... schedulingOptions)
+            throws CommitFailedException {
+        long queuedTime = System.nanoTime();
+        stats.onCommitQueued(currentThread(), commit::getGCGeneration);
+        boolean dequeued = false;
+        try {
+            if (!commit.hasChanges()) {
+                dequeued = onCommitDequeued(queuedTime);
+                SegmentNodeState merged = (SegmentNodeState) head.get().getChildNode(ROOT);
+                commit.applied(merged);
+                return merged;
+            }
+
+            long start = System.nanoTime();
+            for (int attempt = 0; attempt < maxRetries; attempt++) {
+                SegmentNodeState before = reader.readHeadState(revisions);
+                SegmentNodeState after = commit.apply(before);
+
+                commitLock.lock();
+                try {
+                    if (setHead(before, after, commit.info())) {
+                        dequeued = onCommitDequeued(queuedTime);
+                        return onCommitApplied(commit, after, start);
+                    }
+                } finally {
+                    commitLock.unlock();
+                }
+                log.debug("Scheduler detected concurrent commits. Rebasing and retrying ({} attempts so far)",
+                        attempt + 1);
+            }
+
+            // Optimistic attempts exhausted: apply the commit while holding the lock.
+            // Only changes from outside this scheduler can cause further failures.
+            commitLock.lockInterruptibly();
+            try {
+                dequeued = onCommitDequeued(queuedTime);
+                for (int attempt = 0; attempt < LOCKED_ATTEMPTS; attempt++) {
+                    SegmentNodeState before = reader.readHeadState(revisions);
+                    SegmentNodeState after = commit.apply(before);
+                    if (setHead(before, after, commit.info())) {
+                        return onCommitApplied(commit, after, start);
+                    }
+                }
+            } finally {
+                commitLock.unlock();
+            }
+
+            String message = MessageFormat.format(
+                    "The commit could not be executed after {0} attempts. Total time: {1} ms",
+                    maxRetries + LOCKED_ATTEMPTS, NANOSECONDS.toMillis(System.nanoTime() - start));
+            throw new CommitFailedException("Segment", 3, message);
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new CommitFailedException("Segment", 2, "Merge interrupted", e);
+        } catch (SegmentOverflowException e) {
+            throw new CommitFailedException("Segment", 3, "Merge failed", e);
+        } finally {
+            if (!dequeued) {
+                onCommitDequeued(queuedTime);
+            }
+        }
+    }
+
+    private boolean onCommitDequeued(long queuedTime) {
+        stats.onCommitDequeued(currentThread(), System.nanoTime() - queuedTime);
+        return true;
+    }
+
+    private NodeState onCommitApplied(Commit commit, SegmentNodeState after, long start) {
+        SegmentNodeState merged = (SegmentNodeState) after.getChildNode(ROOT);
+        commit.applied(merged);
+        stats.onCommit(currentThread(), System.nanoTime() - start);
+        return merged;
+    }
+
+    /**
+     * Atomically sets the head in {@link #revisions} from {@code before} to
+     * {@code after}. On success any external changes preceding {@code before}
+     * are dispatched first, followed by the changes of this commit. Must be
+     * called while holding the {@link #commitLock}.
+     */
+    private boolean setHead(SegmentNodeState before, SegmentNodeState after, CommitInfo info) {
+        if (revisions.setHead(before.getRecordId(), after.getRecordId())) {
+            if (!before.getRecordId().equals(head.get().getRecordId())) {
+                contentChanged(before.getChildNode(ROOT), CommitInfo.EMPTY_EXTERNAL);
+            }
+            head.set(after);
+            contentChanged(after.getChildNode(ROOT), info);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String checkpoint(long lifetime, @NotNull Map<String, String> properties) {
+        checkArgument(lifetime > 0);
+        checkNotNull(properties);
+        String name = UUID.randomUUID().toString();
+        try {
+            if (commitLock.tryLock(checkpointsLockWaitTime, TimeUnit.SECONDS)) {
+                try {
+                    if (createCheckpoint(name, lifetime, properties)) {
+                        return name;
+                    }
+                } finally {
+                    // Explicitly give up reference to the previous root state
+                    // otherwise they would block cleanup. See OAK-3347
+                    refreshHead(true);
+                    commitLock.unlock();
+                }
+            }
+            log.warn("Failed to create checkpoint {} in {} seconds.", name, checkpointsLockWaitTime);
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            log.error("Failed to create checkpoint {}.", name, e);
+        } catch (Exception e) {
+            log.error("Failed to create checkpoint {}.", name, e);
+        }
+        return name;
+    }
+
+    private boolean createCheckpoint(String name, long lifetime, Map<String, String> properties) {
+        long now = System.currentTimeMillis();
+
+        refreshHead(true);
+
+        SegmentNodeState state = head.get();
+        SegmentNodeBuilder builder = state.builder();
+
+        NodeBuilder checkpoints = builder.child("checkpoints");
+        for (String n : checkpoints.getChildNodeNames()) {
+            NodeBuilder cp = checkpoints.getChildNode(n);
+            PropertyState ts = cp.getProperty("timestamp");
+            if (ts == null || ts.getType() != LONG || now > ts.getValue(LONG)) {
+                cp.remove();
+            }
+        }
+
+        NodeBuilder cp = checkpoints.child(name);
+        if (Long.MAX_VALUE - now > lifetime) {
+            cp.setProperty("timestamp", now + lifetime);
+        } else {
+            cp.setProperty("timestamp", Long.MAX_VALUE);
+        }
+        cp.setProperty("created", now);
+
+        NodeBuilder props = cp.setChildNode("properties");
+        for (Entry<String, String> p : properties.entrySet()) {
+            props.setProperty(p.getKey(), p.getValue());
+        }
+        cp.setChildNode(ROOT, state.getChildNode(ROOT));
+
+        SegmentNodeState newState = builder.getNodeState();
+        if (revisions.setHead(state.getRecordId(), newState.getRecordId())) {
+            refreshHead(false);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeCheckpoint(String name) {
+        checkNotNull(name);
+
+        // try 5 times
+        for (int i = 0; i < 5; i++) {
+            if (commitLock.tryLock()) {
+                try {
+                    refreshHead(true);
+
+                    SegmentNodeState state = head.get();
+                    SegmentNodeBuilder builder = state.builder();
+
+                    NodeBuilder cp = builder.child("checkpoints").child(name);
+                    if (cp.exists()) {
+                        cp.remove();
+                        SegmentNodeState newState = builder.getNodeState();
+                        if (revisions.setHead(state.getRecordId(), newState.getRecordId())) {
+                            refreshHead(false);
+                            return true;
+                        }
+                    }
+                } finally {
+                    commitLock.unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class ObservableOptimisticScheduler extends OptimisticScheduler implements Observable {
+        private final ChangeDispatcher changeDispatcher;
+
+        public ObservableOptimisticScheduler(OptimisticSchedulerBuilder builder) {
+            super(builder);
+            this.changeDispatcher = new ChangeDispatcher(head.get().getChildNode(ROOT));
+        }
+
+        @Override
+        protected void contentChanged(NodeState root, CommitInfo info) {
+            changeDispatcher.contentChanged(root, info);
+        }
+
+        @Override
+        public Closeable addObserver(Observer observer) {
+            return changeDispatcher.addObserver(observer);
+        }
+    }
+}
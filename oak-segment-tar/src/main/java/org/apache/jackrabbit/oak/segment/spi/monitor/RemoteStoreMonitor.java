@@ -28,4 +28,22 @@ public interface RemoteStoreMonitor {
 
     public void requestDuration(long duration, TimeUnit timeUnit);
 
+    /**
+     * Called whenever the number of segments waiting to be uploaded to the
+     * remote store changes.
+     * @param depth the number of segments waiting to be uploaded
+     */
+    public default void segmentQueueDepth(int depth) {
+        // Intentionally left blank
+    }
+
+    /**
+     * Called after a segment has been uploaded to the remote store.
+     * @param duration the time elapsed between queuing and completing the upload
+     * @param timeUnit the unit of {@code duration}
+     */
+    public default void segmentUploadLatency(long duration, TimeUnit timeUnit) {
+        // Intentionally left blank
+    }
+
 }
@@ -20,7 +20,11 @@ package org.apache.jackrabbit.oak.segment.spi.persistence;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
 import org.jetbrains.annotations.NotNull;
@@ -42,6 +46,32 @@ public interface SegmentArchiveReader extends Closeable {
     @Nullable
     Buffer readSegment(long msb, long lsb) throws IOException;
 
+    /**
+     * Read several segments at once.
+     * <p>
+     * Implementations should override this method if they can read several
+     * segments more efficiently than one by one, e.g. by ordering the reads by
+     * their position in the archive and coalescing adjacent reads, or by
+     * issuing ranged multi-gets against a remote storage. The default
+     * implementation reads the segments one by one.
+     *
+     * @param ids the identifiers of the segments
+     * @return map from the identifiers of the segments in this archive to
+     * byte buffers containing the segment data. Identifiers of segments not in
+     * this archive are not contained in the map.
+     */
+    @NotNull
+    default Map<UUID, Buffer> readSegments(@NotNull Collection<UUID> ids) throws IOException {
+        Map<UUID, Buffer> segments = new HashMap<>();
+        for (UUID id : ids) {
+            Buffer buffer = readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (buffer != null) {
+                segments.put(id, buffer);
+            }
+        }
+        return segments;
+    }
+
     /**
      * Check if the segment exists.
      *
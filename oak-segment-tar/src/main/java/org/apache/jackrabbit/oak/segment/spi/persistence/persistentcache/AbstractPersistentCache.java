@@ -47,12 +47,22 @@ public abstract class AbstractPersistentCache implements PersistentCache, Closea
     protected ExecutorService executor;
     protected AtomicLong cacheSize = new AtomicLong(0);
     protected PersistentCache nextCache;
+    protected AdmissionFilter admissionFilter;
     protected final Set<String> writesPending;
 
     protected SegmentCacheStats segmentCacheStats;
 
     public AbstractPersistentCache() {
-        executor = Executors.newFixedThreadPool(THREADS);
+        this(THREADS);
+    }
+
+    /**
+     * @param threads number of threads of the {@link #executor} for writing
+     *                segments asynchronously. No executor is created for
+     *                {@code threads <= 0}.
+     */
+    protected AbstractPersistentCache(int threads) {
+        executor = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
         writesPending = ConcurrentHashMap.newKeySet();
     }
 
@@ -61,8 +71,22 @@ public abstract class AbstractPersistentCache implements PersistentCache, Closea
         return nextCache;
     }
 
+    /**
+     * Only admit segments loaded after a cache miss that are accepted by
+     * the given filter. All segments are admitted if no filter is set.
+     *
+     * @param admissionFilter the admission filter or {@code null}
+     */
+    public void setAdmissionFilter(AdmissionFilter admissionFilter) {
+        this.admissionFilter = admissionFilter;
+    }
+
     @Override
     public Buffer readSegment(long msb, long lsb, @NotNull Callable<Buffer> loader) {
+        if (admissionFilter != null) {
+            admissionFilter.record(msb, lsb);
+        }
+
         Buffer segment = readSegmentInternal(msb, lsb);
         if (segment != null) {
             segmentCacheStats.hitCount.incrementAndGet();
@@ -81,7 +105,11 @@ public abstract class AbstractPersistentCache implements PersistentCache, Closea
 
             if (segment != null) {
                 recordCacheLoadTimeInternal(stopwatch.elapsed(TimeUnit.NANOSECONDS), true);
-                writeSegment(msb, lsb, segment);
+                if (admit(msb, lsb)) {
+                    writeSegment(msb, lsb, segment);
+                } else {
+                    segmentCacheStats.admissionRejectCount.incrementAndGet();
+                }
             }
 
             return segment;
@@ -107,6 +135,18 @@ public abstract class AbstractPersistentCache implements PersistentCache, Closea
      */
     protected abstract Buffer readSegmentInternal(long msb, long lsb);
 
+    /**
+     * Determine whether a segment loaded after a cache miss should be
+     * written to this cache.
+     *
+     * @param msb the most significant bits of the identifier of the segment
+     * @param lsb the least significant bits of the identifier of the segment
+     * @return {@code true} if the segment should be written to the cache
+     */
+    protected boolean admit(long msb, long lsb) {
+        return admissionFilter == null || admissionFilter.admit(msb, lsb);
+    }
+
     /**
      * Records time spent to load data from external source, after cache miss.
      *
@@ -132,6 +172,9 @@ public abstract class AbstractPersistentCache implements PersistentCache, Closea
 
     @Override
     public void close() {
+        if (executor == null) {
+            return;
+        }
         try {
             executor.shutdown();
             if (executor.awaitTermination(60, SECONDS)) {
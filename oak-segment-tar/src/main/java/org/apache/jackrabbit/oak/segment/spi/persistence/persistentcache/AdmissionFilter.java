@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A TinyLFU style admission filter for segment caches. The filter keeps
+ * an approximate access frequency of recently read segments in a count-min
+ * sketch of 4 bit counters and only admits segments that are read
+ * frequently enough. This prevents a single large traversal, which reads
+ * many segments exactly once, from evicting the frequently used segments
+ * from a cache.
+ * <p>
+ * The counters are halved periodically such that the frequencies reflect
+ * the recent workload.
+ */
+public class AdmissionFilter {
+
+    /**
+     * Number of segments read at least twice before being admitted by
+     * default.
+     */
+    public static final int DEFAULT_MIN_FREQUENCY = 2;
+
+    private static final int DEPTH = 4;
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long MAX_COUNTER = 15;
+
+    private final long[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private final int minFrequency;
+
+    private int additions;
+
+    /**
+     * Create a new filter.
+     *
+     * @param expectedEntries number of distinct segments the filter should
+     *                        track the frequency of. This is usually the
+     *                        maximum number of segments in the cache.
+     * @param minFrequency    the minimum number of recent reads of a segment
+     *                        for it to be admitted by {@link #admit(long, long)}
+     */
+    public AdmissionFilter(int expectedEntries, int minFrequency) {
+        checkArgument(expectedEntries > 0, "expectedEntries must be positive");
+        checkArgument(minFrequency > 0, "minFrequency must be positive");
+        int counters = Integer.highestOneBit(Math.min(expectedEntries, 1 << 26) - 1) << 1;
+        this.table = new long[Math.max(1, counters / 16)];
+        this.mask = table.length * 16 - 1;
+        this.sampleSize = 10 * Math.max(16, counters);
+        this.minFrequency = minFrequency;
+    }
+
+    /**
+     * Record a read of the segment with the given id.
+     */
+    public synchronized void record(long msb, long lsb) {
+        long hash = hash(msb, lsb);
+        for (int i = 0; i < DEPTH; i++) {
+            increment(index(hash, i));
+        }
+        if (++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @return the estimated number of recent reads of the segment with the
+     * given id.
+     */
+    public synchronized int frequency(long msb, long lsb) {
+        long hash = hash(msb, lsb);
+        long frequency = MAX_COUNTER;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counter(index(hash, i)));
+        }
+        return (int) frequency;
+    }
+
+    /**
+     * Determine whether a segment should be admitted to a cache that
+     * evicts segments by its own policy.
+     *
+     * @return {@code true} if the segment with the given id was read at
+     * least {@code minFrequency} times recently.
+     */
+    public boolean admit(long msb, long lsb) {
+        return frequency(msb, lsb) >= minFrequency;
+    }
+
+    /**
+     * Determine whether a segment should be admitted to a cache at the
+     * expense of evicting another segment.
+     *
+     * @return {@code true} if the candidate segment was read more often
+     * recently than the victim segment.
+     */
+    public boolean admit(long candidateMsb, long candidateLsb, long victimMsb, long victimLsb) {
+        return frequency(candidateMsb, candidateLsb) > frequency(victimMsb, victimLsb);
+    }
+
+    private static long hash(long msb, long lsb) {
+        long hash = msb * 0x9e3779b97f4a7c15L ^ lsb;
+        return hash ^ (hash >>> 29);
+    }
+
+    private int index(long hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    private long counter(int index) {
+        return (table[index >>> 4] >>> ((index & 15) << 2)) & MAX_COUNTER;
+    }
+
+    private void increment(int index) {
+        int shift = (index & 15) << 2;
+        if (((table[index >>> 4] >>> shift) & MAX_COUNTER) < MAX_COUNTER) {
+            table[index >>> 4] += 1L << shift;
+        }
+    }
+
+    /**
+     * Halve all counters to age the recorded frequencies. This happens
+     * after every {@code 10 * width} reads.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+        }
+        additions = 0;
+    }
+
+}
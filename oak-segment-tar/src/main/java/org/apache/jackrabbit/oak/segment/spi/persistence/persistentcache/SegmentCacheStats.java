@@ -54,6 +54,9 @@ public class SegmentCacheStats extends AbstractCacheStats {
     @NotNull
     final AtomicLong missCount = new AtomicLong();
 
+    @NotNull
+    final AtomicLong admissionRejectCount = new AtomicLong();
+
     public SegmentCacheStats(@NotNull String name,
                              @NotNull Supplier<Long> maximumWeight,
                              @NotNull Supplier<Long> elementCount,
@@ -78,6 +81,21 @@ public class SegmentCacheStats extends AbstractCacheStats {
         );
     }
 
+    /**
+     * @return number of segments loaded after a cache miss that were not
+     * written to the cache because they were rejected by its admission
+     * filter.
+     */
+    public long getAdmissionRejectCount() {
+        return admissionRejectCount.get();
+    }
+
+    @Override
+    public String cacheInfoAsString() {
+        String info = super.cacheInfoAsString();
+        return info.substring(0, info.length() - 1) + ", admissionRejectCount=" + getAdmissionRejectCount() + "}";
+    }
+
     @Override
     public long getElementCount() {
         return elementCount.get();
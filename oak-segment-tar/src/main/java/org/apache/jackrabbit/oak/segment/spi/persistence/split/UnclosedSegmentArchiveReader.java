@@ -17,7 +17,10 @@
 package org.apache.jackrabbit.oak.segment.spi.persistence.split;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
 import org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndexWriter;
@@ -41,6 +44,11 @@ class UnclosedSegmentArchiveReader implements SegmentArchiveReader {
         return delegate.readSegment(msb, lsb);
     }
 
+    @Override
+    public @NotNull Map<UUID, Buffer> readSegments(@NotNull Collection<UUID> ids) throws IOException {
+        return delegate.readSegments(ids);
+    }
+
     @Override
     public boolean containsSegment(long msb, long lsb) {
         return delegate.containsSegment(msb, lsb);
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.segment.standby.client;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
@@ -47,12 +48,16 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesBatchRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesBatchRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.ResponseDecoder;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -113,8 +118,10 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new StringEncoder(CharsetUtil.UTF_8));
                     p.addLast(new GetHeadRequestEncoder());
                     p.addLast(new GetSegmentRequestEncoder());
+                    p.addLast(new GetSegmentsRequestEncoder());
                     p.addLast(new GetBlobRequestEncoder());
                     p.addLast(new GetReferencesRequestEncoder());
+                    p.addLast(new GetReferencesBatchRequestEncoder());
 
                     // Handlers
 
@@ -171,6 +178,34 @@ class StandbyClient implements AutoCloseable {
         return response.getSegmentData();
     }
 
+    /**
+     * Request segments from the primary without waiting for the responses.
+     * The responses are received through {@link #receiveSegment()} in the
+     * order the segments were requested. Segments not found on the primary
+     * are not answered at all.
+     *
+     * @param segmentIds the ids of the segments to request
+     */
+    void requestSegments(List<String> segmentIds) {
+        if (segmentIds.size() == 1) {
+            channel.writeAndFlush(new GetSegmentRequest(clientId, segmentIds.get(0)));
+        } else {
+            channel.writeAndFlush(new GetSegmentsRequest(clientId, segmentIds));
+        }
+    }
+
+    /**
+     * Wait for the next segment requested through {@link
+     * #requestSegments(List)}.
+     *
+     * @return the next segment or {@code null} if no segment was received
+     * within the read timeout
+     */
+    @Nullable
+    GetSegmentResponse receiveSegment() throws InterruptedException {
+        return segmentQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
     @Nullable
     InputStream getBlob(String blobId) throws InterruptedException {
         channel.writeAndFlush(new GetBlobRequest(clientId, blobId));
@@ -197,6 +232,34 @@ class StandbyClient implements AutoCloseable {
         return response.getReferences();
     }
 
+    /**
+     * Request the references of segments from the primary without waiting
+     * for the responses. The responses are received through {@link
+     * #receiveReferences()} in the order the segments were requested.
+     * Segments not found on the primary are not answered at all.
+     *
+     * @param segmentIds the ids of the segments whose references to request
+     */
+    void requestReferences(List<String> segmentIds) {
+        if (segmentIds.size() == 1) {
+            channel.writeAndFlush(new GetReferencesRequest(clientId, segmentIds.get(0)));
+        } else {
+            channel.writeAndFlush(new GetReferencesBatchRequest(clientId, segmentIds));
+        }
+    }
+
+    /**
+     * Wait for the next references requested through {@link
+     * #requestReferences(List)}.
+     *
+     * @return the next references or {@code null} if no references were
+     * received within the read timeout
+     */
+    @Nullable
+    GetReferencesResponse receiveReferences() throws InterruptedException {
+        return referencesQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
     public int getReadTimeoutMs() {
         return readTimeoutMs;
     }
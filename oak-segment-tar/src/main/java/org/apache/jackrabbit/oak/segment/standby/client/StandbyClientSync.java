@@ -47,6 +47,14 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
     public static final String CLIENT_ID_PROPERTY_NAME = "standbyID";
 
+    /**
+     * Default maximum number of segments requested from the primary and not
+     * yet received. Segments are requested one at a time by default, as
+     * primaries not supporting the 'get segments' and 'get references batch'
+     * requests ignore them.
+     */
+    public static final int DEFAULT_SEGMENT_TRANSFER_WINDOW = 1;
+
     private static final Logger log = LoggerFactory.getLogger(StandbyClientSync.class);
 
     private static final AtomicInteger standbyRunCounter = new AtomicInteger();
@@ -96,6 +104,17 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
     }
 
     public StandbyClientSync(String host, int port, FileStore store, boolean secure, int readTimeoutMs, boolean autoClean, File spoolFolder) {
+        this(host, port, store, secure, readTimeoutMs, autoClean, spoolFolder, DEFAULT_SEGMENT_TRANSFER_WINDOW);
+    }
+
+    /**
+     * @param segmentTransferWindow maximum number of segments requested from
+     *                              the primary and not yet received. A
+     *                              window of 1 requests one segment at a
+     *                              time, which is also supported by older
+     *                              primaries.
+     */
+    public StandbyClientSync(String host, int port, FileStore store, boolean secure, int readTimeoutMs, boolean autoClean, File spoolFolder, int segmentTransferWindow) {
         this.state = STATUS_INITIALIZING;
         this.lastSuccessfulRequest = -1;
         this.syncStartTimestamp = -1;
@@ -109,7 +128,7 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
         this.fileStore = store;
         this.observer = new CommunicationObserver(clientId());
         this.group = new NioEventLoopGroup(0, new NamedThreadFactory("standby"));
-        this.execution = new StandbyClientSyncExecution(fileStore, () -> running);
+        this.execution = new StandbyClientSyncExecution(fileStore, () -> running, segmentTransferWindow);
         this.spoolFolder = spoolFolder;
         try {
             ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, ClientStandbyStatusMBean.class), new ObjectName(this.getMBeanName()));
@@ -268,6 +287,26 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
         return syncEndTimestamp;
     }
 
+    @Override
+    public int getInFlightSegmentCount() {
+        return execution.getInFlightSegmentCount();
+    }
+
+    @Override
+    public long getTransferredSegmentCount() {
+        return execution.getTransferredSegmentCount();
+    }
+
+    @Override
+    public long getTransferredSegmentBytes() {
+        return execution.getTransferredSegmentBytes();
+    }
+
+    @Override
+    public double getSegmentTransferRate() {
+        return execution.getSegmentTransferRate();
+    }
+
     private void closeGroup() {
         if (group == null) {
             return;
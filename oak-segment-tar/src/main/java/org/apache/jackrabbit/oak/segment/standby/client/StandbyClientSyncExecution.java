@@ -17,11 +17,22 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -32,6 +43,8 @@ import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,16 +59,47 @@ class StandbyClientSyncExecution {
 
     private static final Logger log = LoggerFactory.getLogger(StandbyClientSyncExecution.class);
 
+    /**
+     * Maximum number of segments requested with a single 'get segments'
+     * request. Requests are limited in length by the frame decoder of the
+     * primary.
+     */
+    private static final int MAX_SEGMENTS_PER_REQUEST = 128;
+
     private final FileStore store;
 
     private final SegmentIdProvider idProvider;
 
     private final Supplier<Boolean> running;
 
+    private final int segmentTransferWindow;
+
+    private final AtomicLong transferredSegments = new AtomicLong();
+
+    private final AtomicLong transferredSegmentBytes = new AtomicLong();
+
+    private volatile int inFlightSegments;
+
+    private volatile long transferStartNanos = -1;
+
+    private volatile long transferEndNanos = -1;
+
+    private volatile long transferBytes;
+
     StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running) {
+        this(store, running, 1);
+    }
+
+    /**
+     * @param segmentTransferWindow maximum number of segments, or references
+     *                              of segments, requested from the primary
+     *                              and not yet received
+     */
+    StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running, int segmentTransferWindow) {
         this.store = store;
         this.idProvider = store.getSegmentIdProvider();
         this.running = running;
+        this.segmentTransferWindow = Math.max(1, segmentTransferWindow);
     }
 
     void execute(StandbyClient client) throws Exception {
@@ -105,25 +149,93 @@ class StandbyClientSyncExecution {
     }
 
     private void copySegmentHierarchyFromPrimary(StandbyClient client, UUID segmentId) throws Exception {
+        Map<UUID, List<UUID>> graph = readMissingSegmentGraph(client, segmentId);
+
         Set<UUID> visited = new HashSet<>();
         List<UUID> bulk = new LinkedList<>();
         List<UUID> data = new LinkedList<>();
 
-        deriveTopologicalOrder(client, segmentId, visited, data, bulk);
+        deriveTopologicalOrder(graph, segmentId, visited, data, bulk);
 
-        for (UUID id : bulk) {
-            log.info("Copying bulk segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+        List<UUID> segments = new ArrayList<>(bulk.size() + data.size());
+        segments.addAll(bulk);
+        segments.addAll(data);
+        copySegmentsFromPrimary(client, segments);
+    }
+
+    /**
+     * Discover the segments reachable from {@code segmentId} that are missing
+     * locally, together with the segments they reference. The graph is
+     * explored breadth first, keeping up to {@link #segmentTransferWindow}
+     * reference requests outstanding at a time, instead of waiting for the
+     * primary to answer for each missing segment in turn. Segments already
+     * present locally are neither inspected nor part of the graph. This
+     * matters after a compaction on the primary, when a whole new generation
+     * of segments has to be discovered.
+     *
+     * @return the missing segments mapped to the segments they reference.
+     * Bulk segments are mapped to an empty list.
+     */
+    private Map<UUID, List<UUID>> readMissingSegmentGraph(StandbyClient client, UUID segmentId) throws Exception {
+        Map<UUID, List<UUID>> graph = new HashMap<>();
+        Set<UUID> visited = new HashSet<>();
+        Deque<UUID> pending = new ArrayDeque<>();
+        Set<String> inFlight = new LinkedHashSet<>();
+
+        addMissingSegment(segmentId, visited, graph, pending);
+
+        while (!pending.isEmpty() || !inFlight.isEmpty()) {
+            while (!pending.isEmpty() && inFlight.size() < segmentTransferWindow) {
+                List<String> request = new ArrayList<>();
+                while (!pending.isEmpty() && inFlight.size() < segmentTransferWindow && request.size() < MAX_SEGMENTS_PER_REQUEST) {
+                    String id = pending.removeFirst().toString();
+                    request.add(id);
+                    inFlight.add(id);
+                }
+                client.requestReferences(request);
+            }
+
+            GetReferencesResponse response = client.receiveReferences();
+
+            if (response == null) {
+                throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", inFlight.iterator().next()));
+            }
+
+            if (!inFlight.remove(response.getSegmentId())) {
+                log.debug("Ignoring unexpected references of segment {}", response.getSegmentId());
+                continue;
+            }
+
+            UUID id = UUID.fromString(response.getSegmentId());
+            List<UUID> references = new ArrayList<>();
+            for (String s : response.getReferences()) {
+                UUID referenced = UUID.fromString(s);
+                log.debug("Found reference from {} to {}", id, referenced);
+                references.add(referenced);
+                addMissingSegment(referenced, visited, graph, pending);
+            }
+            graph.put(id, references);
         }
 
-        for (UUID id : data) {
-            log.info("Copying data segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+        return graph;
+    }
+
+    private void addMissingSegment(UUID id, Set<UUID> visited, Map<UUID, List<UUID>> graph, Deque<UUID> pending) {
+        if (!visited.add(id) || isLocal(id)) {
+            return;
+        }
+
+        log.debug("Inspecting segment {}", id);
+
+        if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
+            pending.addLast(id);
+        } else {
+            graph.put(id, Collections.<UUID>emptyList());
         }
     }
 
-    private void deriveTopologicalOrder(StandbyClient client, UUID id, Set<UUID> visited, List<UUID> data, List<UUID> bulk) throws Exception {
-        if (visited.contains(id) || isLocal(id)) {
+    private static void deriveTopologicalOrder(Map<UUID, List<UUID>> graph, UUID id, Set<UUID> visited, List<UUID> data, List<UUID> bulk) {
+        if (!graph.containsKey(id) || !visited.add(id)) {
             return;
         }
 
@@ -131,14 +243,9 @@ class StandbyClientSyncExecution {
         // to add each data segment to the data list only
         // after all its references were already added
 
-        log.debug("Inspecting segment {}", id);
-        visited.add(id);
-
         if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
-            for (String s : readReferences(client, id)) {
-                UUID referenced = UUID.fromString(s);
-                log.debug("Found reference from {} to {}", id, referenced);
-                deriveTopologicalOrder(client, referenced, visited, data, bulk);
+            for (UUID referenced : graph.get(id)) {
+                deriveTopologicalOrder(graph, referenced, visited, data, bulk);
             }
 
             data.add(id);
@@ -147,16 +254,6 @@ class StandbyClientSyncExecution {
         }
     }
 
-    private Iterable<String> readReferences(StandbyClient client, UUID id) throws InterruptedException {
-        Iterable<String> references = client.getReferences(id.toString());
-
-        if (references == null) {
-            throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", id));
-        }
-
-        return references;
-    }
-
     private boolean isLocal(UUID id) {
         return store.containsSegment(idProvider.newSegmentId(
                 id.getMostSignificantBits(),
@@ -164,17 +261,106 @@ class StandbyClientSyncExecution {
         ));
     }
 
-    private void copySegmentFromPrimary(StandbyClient client, UUID uuid) throws Exception {
-        byte[] data = client.getSegment(uuid.toString());
+    /**
+     * Copy segments from the primary, keeping up to {@link
+     * #segmentTransferWindow} segments requested at a time. Segments are
+     * persisted in the order given by {@code ids} as they arrive, such that
+     * a segment is never persisted before the segments it references.
+     */
+    void copySegmentsFromPrimary(StandbyClient client, List<UUID> ids) throws Exception {
+        Deque<UUID> pending = new ArrayDeque<>(ids);
+        Map<String, byte[]> inFlight = new LinkedHashMap<>();
+
+        transferStartNanos = System.nanoTime();
+        transferEndNanos = -1;
+        transferBytes = 0;
+        try {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                while (!pending.isEmpty() && inFlight.size() < segmentTransferWindow) {
+                    List<String> request = new ArrayList<>();
+                    while (!pending.isEmpty() && inFlight.size() < segmentTransferWindow && request.size() < MAX_SEGMENTS_PER_REQUEST) {
+                        String id = pending.removeFirst().toString();
+                        request.add(id);
+                        inFlight.put(id, null);
+                    }
+                    client.requestSegments(request);
+                }
+                inFlightSegments = inFlight.size();
+
+                GetSegmentResponse response = client.receiveSegment();
+
+                if (response == null) {
+                    throw new IllegalStateException("Unable to read segment " + inFlight.keySet().iterator().next());
+                }
+
+                if (!inFlight.containsKey(response.getSegmentId())) {
+                    log.debug("Ignoring unexpected segment {}", response.getSegmentId());
+                    continue;
+                }
+
+                inFlight.put(response.getSegmentId(), response.getSegmentData());
+
+                Iterator<Entry<String, byte[]>> iterator = inFlight.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Entry<String, byte[]> segment = iterator.next();
+                    if (segment.getValue() == null) {
+                        break;
+                    }
+                    writeSegment(UUID.fromString(segment.getKey()), segment.getValue());
+                    iterator.remove();
+                }
+                inFlightSegments = inFlight.size();
+            }
+        } finally {
+            inFlightSegments = 0;
+            transferEndNanos = System.nanoTime();
+        }
+    }
 
-        if (data == null) {
-            throw new IllegalStateException("Unable to read segment " + uuid);
+    private void writeSegment(UUID uuid, byte[] data) throws Exception {
+        if (SegmentId.isDataSegmentId(uuid.getLeastSignificantBits())) {
+            log.info("Copying data segment {} from primary", uuid);
+        } else {
+            log.info("Copying bulk segment {} from primary", uuid);
         }
 
         long msb = uuid.getMostSignificantBits();
         long lsb = uuid.getLeastSignificantBits();
         SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
         store.writeSegment(segmentId, data, 0, data.length);
+
+        transferredSegments.incrementAndGet();
+        transferredSegmentBytes.addAndGet(data.length);
+        transferBytes += data.length;
+    }
+
+    int getInFlightSegmentCount() {
+        return inFlightSegments;
+    }
+
+    long getTransferredSegmentCount() {
+        return transferredSegments.get();
+    }
+
+    long getTransferredSegmentBytes() {
+        return transferredSegmentBytes.get();
+    }
+
+    /**
+     * @return the number of bytes per second transferred by the current or,
+     * if there is none, the most recent segment transfer
+     */
+    double getSegmentTransferRate() {
+        long start = transferStartNanos;
+        if (start < 0) {
+            return 0;
+        }
+        long end = transferEndNanos;
+        long elapsed = (end < start ? System.nanoTime() : end) - start;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return transferBytes * 1e9 / elapsed;
     }
 
 }
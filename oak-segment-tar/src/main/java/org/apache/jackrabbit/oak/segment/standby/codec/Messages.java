@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import java.util.List;
+
 final class Messages {
 
     static final byte HEADER_RECORD = 0x00;
@@ -33,10 +35,16 @@ final class Messages {
 
     static final String GET_SEGMENT = "s.";
 
+    static final String GET_SEGMENTS = "ss.";
+
+    static final String SEGMENT_ID_SEPARATOR = ",";
+
     static final String GET_BLOB = "b.";
 
     static final String GET_REFERENCES = "r.";
 
+    static final String GET_REFERENCES_BATCH = "rb.";
+
     private static final String MAGIC = "Standby-CMD@";
 
     private static final String SEPARATOR = ":";
@@ -76,6 +84,14 @@ final class Messages {
         return newGetSegmentRequest(clientId, segmentId, true);
     }
 
+    static String newGetSegmentsRequest(String clientId, List<String> segmentIds, boolean delimited) {
+        return newRequest(clientId, GET_SEGMENTS + String.join(SEGMENT_ID_SEPARATOR, segmentIds), delimited);
+    }
+
+    static String newGetSegmentsRequest(String clientId, List<String> segmentIds) {
+        return newGetSegmentsRequest(clientId, segmentIds, true);
+    }
+
     static String newGetReferencesRequest(String clientId, String segmentId, boolean delimited) {
         return newRequest(clientId, GET_REFERENCES + segmentId, delimited);
     }
@@ -84,6 +100,14 @@ final class Messages {
         return newGetReferencesRequest(clientId, segmentId, true);
     }
 
+    static String newGetReferencesBatchRequest(String clientId, List<String> segmentIds, boolean delimited) {
+        return newRequest(clientId, GET_REFERENCES_BATCH + String.join(SEGMENT_ID_SEPARATOR, segmentIds), delimited);
+    }
+
+    static String newGetReferencesBatchRequest(String clientId, List<String> segmentIds) {
+        return newGetReferencesBatchRequest(clientId, segmentIds, true);
+    }
+
     static String newGetBlobRequest(String clientId, String blobId, boolean delimited) {
         return newRequest(clientId, GET_BLOB + blobId, delimited);
     }
@@ -17,6 +17,8 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
+
 import java.util.List;
 
 import io.netty.channel.ChannelHandlerContext;
@@ -41,9 +43,17 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         } else if (request.equalsIgnoreCase(Messages.GET_HEAD)) {
             log.debug("Parsed 'get head' message");
             out.add(new GetHeadRequest(Messages.extractClientFrom(msg)));
+        } else if (request.startsWith(Messages.GET_SEGMENTS)) {
+            log.debug("Parsed 'get segments' message");
+            String segmentIds = request.substring(Messages.GET_SEGMENTS.length());
+            out.add(new GetSegmentsRequest(Messages.extractClientFrom(msg), asList(segmentIds.split(Messages.SEGMENT_ID_SEPARATOR))));
         } else if (request.startsWith(Messages.GET_SEGMENT)) {
             log.debug("Parsed 'get segment' message");
             out.add(new GetSegmentRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_SEGMENT.length())));
+        } else if (request.startsWith(Messages.GET_REFERENCES_BATCH)) {
+            log.debug("Parsed 'get references batch' message");
+            String segmentIds = request.substring(Messages.GET_REFERENCES_BATCH.length());
+            out.add(new GetReferencesBatchRequest(Messages.extractClientFrom(msg), asList(segmentIds.split(Messages.SEGMENT_ID_SEPARATOR))));
         } else if (request.startsWith(Messages.GET_REFERENCES)) {
             log.debug("Parsed 'get references' message");
             out.add(new GetReferencesRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_REFERENCES.length())));
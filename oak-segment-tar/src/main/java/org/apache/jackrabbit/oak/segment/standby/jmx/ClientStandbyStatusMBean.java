@@ -33,6 +33,18 @@ public interface ClientStandbyStatusMBean extends StandbyStatusMBean {
     @Description("Local timestamp of the moment when the last sync cycle ended")
     long getSyncEndTimestamp();
 
+    @Description("number of segments requested from the primary and not yet received")
+    int getInFlightSegmentCount();
+
+    @Description("number of segments transferred from the primary")
+    long getTransferredSegmentCount();
+
+    @Description("number of segment bytes transferred from the primary")
+    long getTransferredSegmentBytes();
+
+    @Description("bytes per second transferred by the current or most recent segment transfer")
+    double getSegmentTransferRate();
+
     // expose the informations as operations, too
 
     @Description("number of consecutive failed requests")
@@ -236,8 +236,10 @@ class StandbyServer implements AutoCloseable {
 
                 p.addLast(new GetHeadRequestHandler(builder.standbyHeadReader));
                 p.addLast(new GetSegmentRequestHandler(builder.standbySegmentReader));
+                p.addLast(new GetSegmentsRequestHandler(builder.standbySegmentReader));
                 p.addLast(new GetBlobRequestHandler(builder.standbyBlobReader));
                 p.addLast(new GetReferencesRequestHandler(builder.standbyReferencesReader));
+                p.addLast(new GetReferencesBatchRequestHandler(builder.standbyReferencesReader));
 
                 // Exception handler
 
@@ -117,6 +117,13 @@ public class StandbyStoreService {
         )
         boolean standby_autoclean() default true;
 
+        @AttributeDefinition(
+            name = "Standby Segment Transfer Window",
+            description = "Maximum number of segments, or references of segments, requested from the primary and not yet received. " +
+                "Values greater than 1 require a primary that supports requesting several segments at once."
+        )
+        int standby_segmentwindow() default StandbyClientSync.DEFAULT_SEGMENT_TRANSFER_WINDOW;
+
     }
 
     @Reference(policy = STATIC, policyOption = GREEDY)
@@ -180,8 +187,9 @@ public class StandbyStoreService {
         boolean secure = config.secure();
         int readTimeout = config.standby_readtimeout();
         boolean clean = config.standby_autoclean();
+        int segmentWindow = config.standby_segmentwindow();
 
-        StandbyClientSync standbyClientSync = new StandbyClientSync(host, port, fileStore, secure, readTimeout, clean, new File(StandardSystemProperty.JAVA_IO_TMPDIR.value()));
+        StandbyClientSync standbyClientSync = new StandbyClientSync(host, port, fileStore, secure, readTimeout, clean, new File(StandardSystemProperty.JAVA_IO_TMPDIR.value()), segmentWindow);
         closer.register(standbyClientSync);
 
         Dictionary<Object, Object> dictionary = new Hashtable<Object, Object>();
@@ -86,6 +86,8 @@ public class Check {
 
         private boolean ioStatistics;
 
+        private int prefetchThreads;
+
         private RepositoryStatistics repoStatistics;
 
         private PrintWriter outWriter;
@@ -223,6 +225,19 @@ public class Check {
             return this;
         }
 
+        /**
+         * Number of threads speculatively loading the segments referenced
+         * from the segments being checked. This parameter is not required and
+         * defaults to {@code 0}, which disables prefetching.
+         *
+         * @param prefetchThreads number of prefetch threads
+         * @return this builder.
+         */
+        public Builder withPrefetchThreads(int prefetchThreads) {
+            this.prefetchThreads = prefetchThreads;
+            return this;
+        }
+
         /**
          * Attach a repository statistics instance to collect info on nodes
          * and properties checked on head.
@@ -319,6 +334,8 @@ public class Check {
 
     private final boolean ioStatistics;
 
+    private final int prefetchThreads;
+
     private RepositoryStatistics repoStatistics;
 
     private final PrintWriter out;
@@ -344,6 +361,7 @@ public class Check {
         this.requestedCheckpoints = builder.checkpoints;
         this.filterPaths = builder.filterPaths;
         this.ioStatistics = builder.ioStatistics;
+        this.prefetchThreads = builder.prefetchThreads;
         this.repoStatistics = builder.repoStatistics;
         this.out = builder.outWriter;
         this.err = builder.errWriter;
@@ -367,6 +385,7 @@ public class Check {
 
         FileStoreBuilder builder = fileStoreBuilder(path)
             .withMemoryMapping(mmap)
+            .withSegmentPrefetchThreads(prefetchThreads)
             .withCustomPersistence(new TarPersistence(this.path, this.journal));
 
         if (ioStatistics) {
@@ -80,6 +80,8 @@ public class Compact {
 
         private CompactorType compactorType = CompactorType.CHECKPOINT_COMPACTOR;
 
+        private int concurrency = 1;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -173,6 +175,21 @@ public class Compact {
             return this;
         }
 
+        /**
+         * The number of threads to be used by the "parallel" compactor. If not
+         * specified it defaults to 1.
+         *
+         * @param concurrency number of threads
+         * @return this builder
+         * @throws IllegalArgumentException if {@code concurrency} is not a
+         *                                  positive integer.
+         */
+        public Builder withConcurrency(int concurrency) {
+            checkArgument(concurrency > 0, "concurrency must be strictly positive");
+            this.concurrency = concurrency;
+            return this;
+        }
+
         /**
          * Create an executable version of the {@link Compact} command.
          *
@@ -267,6 +284,8 @@ public class Compact {
 
     private final CompactorType compactorType;
 
+    private final int concurrency;
+
     private Compact(Builder builder) {
         this.path = builder.path;
         this.journal = new File(builder.path, "journal.log");
@@ -275,6 +294,7 @@ public class Compact {
         this.strictVersionCheck = !builder.force;
         this.gcLogInterval = builder.gcLogInterval;
         this.compactorType = builder.compactorType;
+        this.concurrency = builder.concurrency;
     }
 
     public int run() {
@@ -330,7 +350,8 @@ public class Compact {
             .withGCOptions(defaultGCOptions()
                 .setOffline()
                 .setGCLogInterval(gcLogInterval)
-                .setCompactorType(compactorType));
+                .setCompactorType(compactorType)
+                .setConcurrency(concurrency));
         if (fileAccessMode.memoryMapped != null) {
             builder.withMemoryMapping(fileAccessMode.memoryMapped);
         }
@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.tool.iotrace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
+import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This utility class replays IO traces collected by an {@link IOTracer} or
+ * an {@link IOTraceLogWriter} against a segment store.
+ * <p>
+ * The trace is read line by line and the segment of each entry is read again
+ * from the {@link FileStore} created by the passed factory. This allows to
+ * compare the effect of different segment cache sizes, memory mapping and
+ * concurrency on the access pattern of a captured trace. The segment id is
+ * taken from the first UUID of a line so that traces written through a logger
+ * can be replayed without removing the prefix added by the logger. Lines
+ * without a segment id like the header of the trace are skipped.
+ * <p>
+ * Entries are read in the order of the trace but are not paced according to
+ * their timestamps. With a concurrency greater than one, entries are
+ * distributed across the threads as they become available.
+ */
+public class IOTraceReplay {
+    private static final Logger LOG = LoggerFactory.getLogger(IOTraceReplay.class);
+
+    private static final Pattern SEGMENT_ID = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    /**
+     * Marker signalling the end of the trace to the replaying threads.
+     */
+    private static final UUID END = new UUID(0, 0);
+
+    @NotNull
+    private final Function<IOMonitor, FileStore> fileStoreFactory;
+
+    private final int concurrency;
+
+    private IOTraceReplay(@NotNull Function<IOMonitor, FileStore> fileStoreFactory, int concurrency) {
+        checkArgument(concurrency > 0, "concurrency must be positive");
+        this.fileStoreFactory = checkNotNull(fileStoreFactory);
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Create a new {@code IOTraceReplay} instance.
+     * @param fileStoreFactory  A factory for creating a {@link FileStore} with the
+     *                          passed {@link IOMonitor} for monitoring segment IO.
+     * @param concurrency       The number of threads reading segments concurrently.
+     * @return A new {@code IOTraceReplay} instance.
+     */
+    @NotNull
+    public static IOTraceReplay newIOTraceReplay(
+            @NotNull Function<IOMonitor, FileStore> fileStoreFactory,
+            int concurrency) {
+        return new IOTraceReplay(fileStoreFactory, concurrency);
+    }
+
+    /**
+     * Replay an IO trace.
+     * @param trace  the IO trace in the CSV format written by {@link IOTracer}
+     * @return  the result of replaying the trace
+     * @throws IOException  if reading the trace fails
+     * @throws InterruptedException  if interrupted while replaying the trace
+     */
+    @NotNull
+    public Result replay(@NotNull Reader trace) throws IOException, InterruptedException {
+        ReadMonitor reads = new ReadMonitor();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try (FileStore fileStore = checkNotNull(fileStoreFactory).apply(reads)) {
+            CacheStatsMBean cacheStats = fileStore.getSegmentCacheStats();
+            long hits = cacheStats.getHitCount();
+            long misses = cacheStats.getMissCount();
+            reads.reset();
+
+            BlockingQueue<UUID> queue = new ArrayBlockingQueue<>(1024 * concurrency);
+            List<Future<Worker>> workers = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(new Worker(fileStore.getSegmentIdProvider(), queue)));
+            }
+
+            long start = System.nanoTime();
+            try {
+                BufferedReader lines = new BufferedReader(trace);
+                for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                    UUID id = parseSegmentId(line);
+                    if (id != null) {
+                        queue.put(id);
+                    }
+                }
+            } finally {
+                for (int i = 0; i < concurrency; i++) {
+                    queue.put(END);
+                }
+            }
+
+            Result result = new Result();
+            try {
+                for (Future<Worker> worker : workers) {
+                    result.add(worker.get());
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to replay IO trace", e.getCause());
+            }
+            result.elapsed = System.nanoTime() - start;
+            Arrays.sort(result.latencies);
+            result.cacheHits = cacheStats.getHitCount() - hits;
+            result.cacheMisses = cacheStats.getMissCount() - misses;
+            result.diskReads = reads.count.get();
+            result.diskBytes = reads.bytes.get();
+            result.diskTime = reads.time.get();
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the id of the segment read by an entry of an IO trace or
+     * {@code null} if the line does not contain a segment id.
+     */
+    @Nullable
+    static UUID parseSegmentId(@NotNull String line) {
+        Matcher matcher = SEGMENT_ID.matcher(line);
+        if (matcher.find()) {
+            return UUID.fromString(matcher.group());
+        }
+        return null;
+    }
+
+    private static class ReadMonitor extends IOMonitorAdapter {
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong bytes = new AtomicLong();
+
+        final AtomicLong time = new AtomicLong();
+
+        /**
+         * Discard the reads of opening the file store.
+         */
+        void reset() {
+            count.set(0);
+            bytes.set(0);
+            time.set(0);
+        }
+
+        @Override
+        public void afterSegmentRead(File file, long msb, long lsb, int length, long elapsed) {
+            count.incrementAndGet();
+            bytes.addAndGet(length);
+            time.addAndGet(elapsed);
+        }
+    }
+
+    /**
+     * Reads the segments taken from a queue until it encounters {@link #END},
+     * recording the latency of each read.
+     */
+    private static class Worker implements Callable<Worker> {
+        @NotNull
+        private final SegmentIdProvider idProvider;
+
+        @NotNull
+        private final BlockingQueue<UUID> queue;
+
+        private long[] latencies = new long[1024];
+
+        private int reads;
+
+        private long missing;
+
+        private long failed;
+
+        Worker(@NotNull SegmentIdProvider idProvider, @NotNull BlockingQueue<UUID> queue) {
+            this.idProvider = idProvider;
+            this.queue = queue;
+        }
+
+        @Override
+        public Worker call() throws InterruptedException {
+            for (UUID id = queue.take(); id != END; id = queue.take()) {
+                SegmentId segmentId = idProvider.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                long start = System.nanoTime();
+                try {
+                    segmentId.getSegment();
+                } catch (SegmentNotFoundException e) {
+                    missing++;
+                } catch (RuntimeException e) {
+                    LOG.debug("Failed to read segment {}", id, e);
+                    failed++;
+                }
+                if (reads == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+                }
+                latencies[reads++] = System.nanoTime() - start;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The result of replaying an IO trace.
+     */
+    public static class Result {
+        private long[] latencies = new long[0];
+
+        private long missing;
+
+        private long failed;
+
+        private long elapsed;
+
+        private long cacheHits;
+
+        private long cacheMisses;
+
+        private long diskReads;
+
+        private long diskBytes;
+
+        private long diskTime;
+
+        private void add(Worker worker) {
+            int n = latencies.length;
+            latencies = Arrays.copyOf(latencies, n + worker.reads);
+            System.arraycopy(worker.latencies, 0, latencies, n, worker.reads);
+            missing += worker.missing;
+            failed += worker.failed;
+        }
+
+        /**
+         * @return the number of segment reads replayed
+         */
+        public long getReads() {
+            return latencies.length;
+        }
+
+        /**
+         * @return the number of replayed reads of segments that do not exist
+         * in the segment store
+         */
+        public long getMissingSegments() {
+            return missing;
+        }
+
+        /**
+         * @return the number of replayed reads that failed for other reasons
+         * than a missing segment
+         */
+        public long getFailedReads() {
+            return failed;
+        }
+
+        /**
+         * @return the time it took to replay the trace in nanoseconds
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @param percentile  the percentile between 0 and 100
+         * @return the latency in nanoseconds below which {@code percentile}
+         * percent of the reads completed, or 0 if no reads were replayed
+         */
+        public long getLatency(double percentile) {
+            checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+        }
+
+        /**
+         * @return the number of reads served by the segment cache
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * @return the number of reads not served by the segment cache
+         */
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * @return the ratio of reads served by the segment cache or 0 if the
+         * cache was not accessed
+         */
+        public double getCacheHitRatio() {
+            long requests = cacheHits + cacheMisses;
+            return requests == 0 ? 0 : (double) cacheHits / requests;
+        }
+
+        /**
+         * @return the number of segments read from the TAR files
+         */
+        public long getDiskReads() {
+            return diskReads;
+        }
+
+        /**
+         * @return the number of bytes read from the TAR files
+         */
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        /**
+         * @return the total time spent reading segments from the TAR files
+         * in nanoseconds
+         */
+        public long getDiskTime() {
+            return diskTime;
+        }
+
+        @Override
+        public String toString() {
+            return format("reads=%d, missing=%d, failed=%d, elapsed=%d ms, " +
+                            "latency p50=%.1f us, p90=%.1f us, p99=%.1f us, p99.9=%.1f us, max=%.1f us, " +
+                            "cache hits=%d, cache misses=%d, cache hit ratio=%.3f, " +
+                            "disk reads=%d (%s), disk time=%d ms",
+                    getReads(), missing, failed, NANOSECONDS.toMillis(elapsed),
+                    getLatency(50) / 1000.0, getLatency(90) / 1000.0, getLatency(99) / 1000.0,
+                    getLatency(99.9) / 1000.0, getLatency(100) / 1000.0,
+                    cacheHits, cacheMisses, getCacheHitRatio(),
+                    diskReads, humanReadableByteCount(diskBytes), NANOSECONDS.toMillis(diskTime));
+        }
+    }
+
+}
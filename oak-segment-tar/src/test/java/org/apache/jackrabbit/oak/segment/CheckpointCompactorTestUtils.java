@@ -99,6 +99,23 @@ public class CheckpointCompactorTestUtils {
                 GCNodeWriteMonitor.EMPTY);
     }
 
+    @NotNull
+    public static ParallelCompactor createParallelCompactor(@NotNull FileStore fileStore, @NotNull GCGeneration generation,
+                                                            int concurrency) {
+        SegmentWriter writer = defaultSegmentWriterBuilder("c")
+                .withGeneration(generation)
+                .withWriterPool()
+                .build(fileStore);
+
+        return new ParallelCompactor(
+                GCMonitor.EMPTY,
+                fileStore.getReader(),
+                writer,
+                fileStore.getBlobStore(),
+                GCNodeWriteMonitor.EMPTY,
+                concurrency);
+    }
+
     public static void addTestContent(@NotNull String parent, @NotNull NodeStore nodeStore, int binPropertySize)
             throws CommitFailedException, IOException {
         NodeBuilder rootBuilder = nodeStore.getRoot().builder();
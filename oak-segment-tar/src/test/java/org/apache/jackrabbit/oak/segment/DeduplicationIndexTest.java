@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import com.google.common.base.Strings;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeduplicationIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        MemoryStore store = new MemoryStore();
+        RecordId string = RecordId.fromString(store.getSegmentIdProvider(), "00000000-0000-4000-8000-000000000001:10");
+        RecordId template = RecordId.fromString(store.getSegmentIdProvider(), "00000000-0000-4000-8000-000000000002:20");
+        long hash = DeduplicationIndex.hash("test".getBytes(UTF_8));
+
+        DeduplicationIndex index = new DeduplicationIndex(10);
+        index.putString(1, hash, string);
+        index.putTemplate(2, 42, template);
+        File directory = folder.newFolder();
+        index.save(directory);
+        assertTrue(new File(directory, DeduplicationIndex.FILE_NAME).exists());
+
+        DeduplicationIndex loaded = new DeduplicationIndex(10);
+        loaded.load(directory, store.getSegmentIdProvider());
+        assertEquals(2, loaded.size());
+        assertEquals(string, loaded.getString(1, hash));
+        assertEquals(template, loaded.getTemplate(2, 42));
+        assertNull(loaded.getString(2, hash));
+        assertNull(loaded.getTemplate(1, 42));
+    }
+
+    @Test
+    public void purgeAndInvalidate() throws Exception {
+        MemoryStore store = new MemoryStore();
+        RecordId id = RecordId.fromString(store.getSegmentIdProvider(), "00000000-0000-4000-8000-000000000001:10");
+
+        DeduplicationIndex index = new DeduplicationIndex(10);
+        index.putString(1, 1, id);
+        index.putString(2, 2, id);
+        index.putString(3, 3, id);
+        index.purgeGenerations(generation -> generation < 3);
+        assertNull(index.getString(1, 1));
+        assertNull(index.getString(2, 2));
+        assertEquals(id, index.getString(3, 3));
+
+        index.invalidate(3, 3, false);
+        assertNull(index.getString(3, 3));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void reuseRecordsAfterRestart() throws Exception {
+        File directory = folder.newFolder();
+        String value = Strings.repeat("deduplicated", 100);
+
+        try (FileStore store = fileStoreBuilder(directory).withDeduplicationIndexSize(100).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder root = nodeStore.getRoot().builder();
+            root.child("a").setProperty("p", value);
+            nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            store.flush();
+        }
+        assertTrue(new File(directory, DeduplicationIndex.FILE_NAME).exists());
+
+        try (FileStore store = fileStoreBuilder(directory).withDeduplicationIndexSize(100).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder root = nodeStore.getRoot().builder();
+            root.child("b").setProperty("p", value);
+            nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            assertTrue(store.getStats().getDeduplicationIndexBytesSaved() >= value.length());
+            assertEquals(value, nodeStore.getRoot().getChildNode("b").getString("p"));
+        }
+    }
+
+}
@@ -189,7 +189,7 @@ public class NodeRecordTest {
 
             @NotNull
             @Override
-            public Cache<String, RecordId> getNodeCache(int generation) {
+            public NodeCache getNodeCache(int generation) {
                 return defaultCache.getNodeCache(generation);
             }
         };
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.segment.Segment.MAX_SEGMENT_SIZE;
+import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.junit.Test;
+
+public class OffHeapSegmentCacheTest {
+    private static final int SEGMENT_SIZE = MAX_SEGMENT_SIZE / 2;
+
+    private final AtomicInteger evictions = new AtomicInteger();
+
+    // Two slabs, each holding two segments
+    private final OffHeapSegmentCache cache =
+            new OffHeapSegmentCache(2L * MAX_SEGMENT_SIZE, MAX_SEGMENT_SIZE, evictions::incrementAndGet);
+
+    private static Segment newSegment(long lsb, int size) throws IOException {
+        SegmentId id = new SegmentId(EMPTY_STORE, 0x0000000000000001L, lsb);
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) lsb);
+
+        Segment segment = mock(Segment.class);
+        when(segment.getSegmentId()).thenReturn(id);
+        when(segment.size()).thenReturn(size);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(data);
+            return null;
+        }).when(segment).writeTo(any(OutputStream.class));
+        return segment;
+    }
+
+    private static void assertCached(OffHeapSegmentCache cache, Segment segment) {
+        Buffer data = cache.get(segment.getSegmentId());
+        assertNotNull(data);
+
+        byte[] expected = new byte[segment.size()];
+        Arrays.fill(expected, (byte) segment.getSegmentId().getLeastSignificantBits());
+        byte[] actual = new byte[data.remaining()];
+        data.get(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void putAndGet() throws IOException {
+        Segment segment = newSegment(1, SEGMENT_SIZE);
+        assertNull(cache.get(segment.getSegmentId()));
+
+        assertTrue(cache.put(segment));
+        assertCached(cache, segment);
+        assertEquals(1, cache.size());
+        assertEquals(SEGMENT_SIZE, cache.weight());
+
+        // Putting the same segment again does not copy it again
+        assertTrue(cache.put(segment));
+        assertEquals(1, cache.size());
+        assertEquals(SEGMENT_SIZE, cache.weight());
+    }
+
+    @Test
+    public void tooLargeSegmentIsNotCached() throws IOException {
+        Segment segment = newSegment(1, MAX_SEGMENT_SIZE + 1);
+        assertFalse(cache.put(segment));
+        assertNull(cache.get(segment.getSegmentId()));
+    }
+
+    @Test
+    public void referencedSegmentsSurviveReclaim() throws IOException {
+        Segment s1 = newSegment(1, SEGMENT_SIZE);
+        Segment s2 = newSegment(2, SEGMENT_SIZE);
+        Segment s3 = newSegment(3, SEGMENT_SIZE);
+        Segment s4 = newSegment(4, SEGMENT_SIZE);
+        Segment s5 = newSegment(5, SEGMENT_SIZE);
+
+        assertTrue(cache.put(s1));
+        assertTrue(cache.put(s2));
+        assertTrue(cache.put(s3));
+        assertTrue(cache.put(s4));
+        assertEquals(0, evictions.get());
+
+        // Accessing s1 gives it a second chance when its slab is reclaimed
+        assertCached(cache, s1);
+
+        assertTrue(cache.put(s5));
+        assertEquals(1, evictions.get());
+        assertNull(cache.get(s2.getSegmentId()));
+        assertCached(cache, s1);
+        assertCached(cache, s3);
+        assertCached(cache, s4);
+        assertCached(cache, s5);
+        assertEquals(4, cache.size());
+        assertEquals(4 * SEGMENT_SIZE, cache.weight());
+    }
+
+    @Test
+    public void capacityDoesNotExceedMaximumSize() throws IOException {
+        assertEquals(0, new OffHeapSegmentCache(MAX_SEGMENT_SIZE - 1, MAX_SEGMENT_SIZE, () -> {}).capacity());
+        assertEquals(MAX_SEGMENT_SIZE, new OffHeapSegmentCache(2L * MAX_SEGMENT_SIZE - 1, MAX_SEGMENT_SIZE, () -> {}).capacity());
+        assertEquals(2L * MAX_SEGMENT_SIZE, cache.capacity());
+        assertEquals(64L * MAX_SEGMENT_SIZE, new OffHeapSegmentCache(64L * MAX_SEGMENT_SIZE, MAX_SEGMENT_SIZE, () -> {}).capacity());
+
+        // Each of the 16 stripes gets the same number of slabs
+        assertEquals(64L * MAX_SEGMENT_SIZE, new OffHeapSegmentCache(70L * MAX_SEGMENT_SIZE, MAX_SEGMENT_SIZE, () -> {}).capacity());
+
+        // A cache smaller than a slab caches nothing
+        OffHeapSegmentCache empty = new OffHeapSegmentCache(MAX_SEGMENT_SIZE - 1, MAX_SEGMENT_SIZE, () -> {});
+        Segment segment = newSegment(1, SEGMENT_SIZE);
+        assertFalse(empty.put(segment));
+        assertNull(empty.get(segment.getSegmentId()));
+    }
+
+    @Test
+    public void singleSlabIsReclaimedInPlace() throws IOException {
+        OffHeapSegmentCache cache = new OffHeapSegmentCache(MAX_SEGMENT_SIZE, MAX_SEGMENT_SIZE, evictions::incrementAndGet);
+        Segment s1 = newSegment(1, SEGMENT_SIZE);
+        Segment s2 = newSegment(2, SEGMENT_SIZE);
+        Segment s3 = newSegment(3, SEGMENT_SIZE);
+
+        assertTrue(cache.put(s1));
+        assertTrue(cache.put(s2));
+        assertCached(cache, s2);
+
+        // s2 survives and is moved to the front of the slab
+        assertTrue(cache.put(s3));
+        assertEquals(1, evictions.get());
+        assertNull(cache.get(s1.getSegmentId()));
+        assertCached(cache, s2);
+        assertCached(cache, s3);
+        assertEquals(2 * SEGMENT_SIZE, cache.weight());
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        OffHeapSegmentCache cache = new OffHeapSegmentCache(16L * MAX_SEGMENT_SIZE, MAX_SEGMENT_SIZE, evictions::incrementAndGet);
+        List<List<Segment>> segments = newArrayList();
+        for (int t = 0; t < 8; t++) {
+            List<Segment> threadSegments = newArrayList();
+            for (int k = 0; k < 32; k++) {
+                threadSegments.add(newSegment((t << 8) | k, SEGMENT_SIZE / 4));
+            }
+            segments.add(threadSegments);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> results = newArrayList();
+            for (List<Segment> threadSegments : segments) {
+                results.add(executor.submit((Callable<Void>) () -> {
+                    for (int k = 0; k < threadSegments.size(); k++) {
+                        Segment segment = threadSegments.get(k);
+                        assertTrue(cache.put(segment));
+                        Buffer data = cache.get(segment.getSegmentId());
+                        if (data != null) {
+                            assertEquals(segment.size(), data.remaining());
+                            byte[] bytes = new byte[data.remaining()];
+                            data.get(bytes);
+                            for (byte b : bytes) {
+                                assertEquals((byte) k, b);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(8 * 32 - evictions.get(), cache.size());
+        assertEquals(cache.size() * (SEGMENT_SIZE / 4), cache.weight());
+        assertTrue(cache.weight() <= cache.capacity());
+    }
+
+    @Test
+    public void clear() throws IOException {
+        Segment s1 = newSegment(1, SEGMENT_SIZE);
+        Segment s2 = newSegment(2, SEGMENT_SIZE);
+        assertTrue(cache.put(s1));
+        assertTrue(cache.put(s2));
+
+        cache.clear();
+        assertNull(cache.get(s1.getSegmentId()));
+        assertNull(cache.get(s2.getSegmentId()));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+
+        // Slabs are reused after clearing the cache
+        assertTrue(cache.put(s1));
+        assertCached(cache, s1);
+    }
+}
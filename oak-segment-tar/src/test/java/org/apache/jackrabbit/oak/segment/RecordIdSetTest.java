@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Test;
+
+public class RecordIdSetTest {
+
+    private static List<RecordId> newRecordIds(int segments, int records) throws Exception {
+        MemoryStore store = new MemoryStore();
+        List<RecordId> ids = new ArrayList<>();
+        for (int i = 0; i < segments; i++) {
+            SegmentId segmentId = store.getSegmentIdProvider().newDataSegmentId();
+            for (int j = 0; j < records; j++) {
+                ids.add(new RecordId(segmentId, j));
+            }
+        }
+        return ids;
+    }
+
+    private static void addAndCheck(RecordIdSet set, List<RecordId> ids) {
+        for (RecordId id : ids) {
+            assertFalse(set.contains(id));
+            assertTrue(set.addIfNotPresent(id));
+            assertTrue(set.contains(id));
+            assertFalse(set.addIfNotPresent(id));
+        }
+        assertEquals(ids.size(), set.size());
+        for (RecordId id : ids) {
+            assertTrue(set.contains(id));
+        }
+    }
+
+    @Test
+    public void empty() {
+        RecordIdSet set = new RecordIdSet();
+        assertFalse(set.contains(0, 0, 0));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void add() throws Exception {
+        addAndCheck(new RecordIdSet(), newRecordIds(100, 100));
+    }
+
+    @Test
+    public void addPrimitive() {
+        RecordIdSet set = new RecordIdSet();
+        Random random = new Random(42);
+        long msb = random.nextLong();
+        long lsb = random.nextLong();
+        assertTrue(set.addIfNotPresent(msb, lsb, 0));
+        assertTrue(set.contains(msb, lsb, 0));
+        assertFalse(set.contains(msb, lsb, 1));
+        assertFalse(set.contains(lsb, msb, 0));
+        assertFalse(set.addIfNotPresent(msb, lsb, 0));
+    }
+
+    @Test
+    public void memoryUsageGrowsWithSize() throws Exception {
+        RecordIdSet set = new RecordIdSet();
+        long initial = set.estimateMemoryUsage();
+        addAndCheck(set, newRecordIds(10, 1000));
+        assertTrue(set.estimateMemoryUsage() > initial);
+    }
+
+}
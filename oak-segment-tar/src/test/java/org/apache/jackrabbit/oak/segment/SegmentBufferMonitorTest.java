@@ -23,6 +23,7 @@ import static org.apache.jackrabbit.oak.segment.SegmentBufferMonitor.DIRECT_BUFF
 import static org.apache.jackrabbit.oak.segment.SegmentBufferMonitor.DIRECT_BUFFER_COUNT;
 import static org.apache.jackrabbit.oak.segment.SegmentBufferMonitor.HEAP_BUFFER_CAPACITY;
 import static org.apache.jackrabbit.oak.segment.SegmentBufferMonitor.HEAP_BUFFER_COUNT;
+import static org.apache.jackrabbit.oak.segment.SegmentBufferMonitor.WRITER_POOL_CONTENTION_COUNT;
 import static org.apache.jackrabbit.oak.stats.SimpleStats.Type.COUNTER;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -80,6 +81,15 @@ public class SegmentBufferMonitorTest {
         assertEquals(0, stats.get(DIRECT_BUFFER_CAPACITY).getCount());
         assertEquals(0, stats.get(HEAP_BUFFER_COUNT).getCount());
         assertEquals(0, stats.get(HEAP_BUFFER_CAPACITY).getCount());
+        assertEquals(0, stats.get(WRITER_POOL_CONTENTION_COUNT).getCount());
+    }
+
+    @Test
+    public void writerPoolContention() {
+        segmentBufferMonitor.trackWriterPoolContention();
+        segmentBufferMonitor.trackWriterPoolContention();
+
+        assertEquals(2, stats.get(WRITER_POOL_CONTENTION_COUNT).getCount());
     }
 
     @Test
@@ -23,14 +23,23 @@ import static com.google.common.collect.Maps.newConcurrentMap;
 import static com.google.common.collect.Sets.intersection;
 import static com.google.common.collect.Sets.newHashSet;
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -39,6 +48,7 @@ import java.util.concurrent.TimeoutException;
 import org.apache.jackrabbit.oak.segment.WriteOperationHandler.WriteOperation;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.After;
@@ -203,6 +213,190 @@ public class SegmentBufferWriterPoolTest {
         assertTrue(intersection(newHashSet(map1.values()), newHashSet(map3.values())).isEmpty());
     }
 
+    private SegmentBufferWriterPool newPool(int stripeCount) {
+        return new SegmentBufferWriterPool(
+                store.getSegmentIdProvider(),
+                store.getReader(),
+                "",
+                () -> gcGeneration,
+                new SegmentBufferMonitor(StatisticsProvider.NOOP),
+                stripeCount);
+    }
+
+    private static ExecutorService[] newExecutors(int count) {
+        ExecutorService[] executors = new ExecutorService[count];
+        for (int k = 0; k < count; k++) {
+            executors[k] = newSingleThreadExecutor();
+        }
+        return executors;
+    }
+
+    private static void shutdown(ExecutorService[] executors) {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStripeCount() {
+        assertEquals(1, newPool(0).getStripeCount());
+        assertEquals(1, newPool(1).getStripeCount());
+        assertEquals(4, newPool(3).getStripeCount());
+        assertEquals(4, newPool(4).getStripeCount());
+        assertEquals(8, newPool(5).getStripeCount());
+    }
+
+    @Test
+    public void testStripeSelection() {
+        SegmentBufferWriterPool pool = newPool(8);
+        GCGeneration gen = pool.getGCGeneration();
+        Set<Integer> stripes = newHashSet();
+        for (int k = 0; k < 64; k++) {
+            Thread thread = new Thread();
+            int stripe = pool.stripeIndex(new SimpleImmutableEntry<>(thread, gen));
+            assertTrue(stripe >= 0 && stripe < 8);
+
+            // The same thread and generation always select the same stripe
+            assertEquals(stripe, pool.stripeIndex(new SimpleImmutableEntry<>(thread, gen)));
+            stripes.add(stripe);
+        }
+
+        // Different threads are spread over several stripes
+        assertTrue(stripes.size() > 1);
+    }
+
+    @Test
+    public void testFlushAcrossStripes() throws ExecutionException, InterruptedException, IOException {
+        SegmentBufferWriterPool pool = newPool(8);
+        GCGeneration gen = pool.getGCGeneration();
+        ExecutorService[] executors = newExecutors(16);
+        try {
+            ConcurrentMap<Thread, SegmentBufferWriter> writers1 = newConcurrentMap();
+            ConcurrentMap<Thread, SegmentBufferWriter> writers2 = newConcurrentMap();
+            WriteOperation op1 = writer -> {
+                writers1.put(currentThread(), writer);
+                return rootId;
+            };
+            WriteOperation op2 = writer -> {
+                writers2.put(currentThread(), writer);
+                return rootId;
+            };
+
+            for (ExecutorService executor : executors) {
+                assertEquals(rootId, executor.submit(() -> pool.execute(gen, op1)).get());
+            }
+            Set<Integer> stripes = newHashSet();
+            for (Thread thread : writers1.keySet()) {
+                stripes.add(pool.stripeIndex(new SimpleImmutableEntry<>(thread, gen)));
+            }
+            assertEquals(16, writers1.size());
+            assertTrue(stripes.size() > 1);
+
+            pool.flush(store);
+
+            // Flushing retired the writers of all stripes
+            for (ExecutorService executor : executors) {
+                assertEquals(rootId, executor.submit(() -> pool.execute(gen, op2)).get());
+            }
+            assertEquals(16, writers2.size());
+            assertTrue(intersection(newHashSet(writers1.values()), newHashSet(writers2.values())).isEmpty());
+        } finally {
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testFlushWaitsForWritersOfAllStripes() throws Exception {
+        SegmentBufferWriterPool pool = newPool(8);
+        GCGeneration gen = pool.getGCGeneration();
+        ExecutorService[] executors = newExecutors(8);
+        ExecutorService flusher = newSingleThreadExecutor();
+        try {
+            CountDownLatch borrowed = new CountDownLatch(executors.length);
+            CountDownLatch release = new CountDownLatch(1);
+            ConcurrentMap<Thread, SegmentBufferWriter> writers1 = newConcurrentMap();
+            WriteOperation blocking = writer -> {
+                writers1.put(currentThread(), writer);
+                borrowed.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    currentThread().interrupt();
+                }
+                return rootId;
+            };
+
+            List<Future<RecordId>> results = newArrayList();
+            for (ExecutorService executor : executors) {
+                results.add(executor.submit(() -> pool.execute(gen, blocking)));
+            }
+            borrowed.await();
+
+            Future<Void> flush = flusher.submit(() -> {
+                pool.flush(store);
+                return null;
+            });
+            try {
+                flush.get(100, MILLISECONDS);
+                fail("Flush must wait for the borrowed writers to be returned");
+            } catch (TimeoutException expected) {
+                // expected
+            }
+
+            release.countDown();
+            for (Future<RecordId> result : results) {
+                assertEquals(rootId, result.get());
+            }
+            flush.get();
+
+            // Writers returned while flushing are disposed and not reused
+            ConcurrentMap<Thread, SegmentBufferWriter> writers2 = newConcurrentMap();
+            for (ExecutorService executor : executors) {
+                assertEquals(rootId, executor.submit(() -> pool.execute(gen, writer -> {
+                    writers2.put(currentThread(), writer);
+                    return rootId;
+                })).get());
+            }
+            assertTrue(intersection(newHashSet(writers1.values()), newHashSet(writers2.values())).isEmpty());
+        } finally {
+            shutdown(executors);
+            flusher.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowAndReturn() throws Exception {
+        SegmentBufferWriterPool pool = newPool(4);
+        GCGeneration gen = pool.getGCGeneration();
+        Set<SegmentBufferWriter> inUse = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = newFixedThreadPool(16);
+        try {
+            List<Future<Void>> results = newArrayList();
+            for (int t = 0; t < 16; t++) {
+                results.add(executor.submit(() -> {
+                    for (int k = 0; k < 1000; k++) {
+                        pool.execute(gen, writer -> {
+                            // A writer is never handed out to two threads at once
+                            assertTrue(inUse.add(writer));
+                            inUse.remove(writer);
+                            return rootId;
+                        });
+                        if (k % 100 == 0) {
+                            pool.flush(store);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            assertTrue(inUse.isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testFlushBlocks() throws ExecutionException, InterruptedException {
         GCGeneration gcGeneration = pool.getGCGeneration();
@@ -18,6 +18,8 @@
  */
 package org.apache.jackrabbit.oak.segment;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.DEFAULT_SEGMENT_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.newSegmentCache;
 import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
@@ -37,11 +39,11 @@ import org.junit.Test;
 public class SegmentCacheTest {
     private final SegmentCache cache = newSegmentCache(DEFAULT_SEGMENT_CACHE_MB);
 
-    private final SegmentId id1 = new SegmentId(EMPTY_STORE, 0x0000000000000001L, 0xa000000000000001L, cache::recordHit);
+    private final SegmentId id1 = new SegmentId(EMPTY_STORE, 0x0000000000000001L, 0xa000000000000001L, cache::recordAccess);
     private final Segment segment1 = mock(Segment.class);
-    private final SegmentId id2 = new SegmentId(EMPTY_STORE, 0x0000000000000002L, 0xa000000000000002L, cache::recordHit);
+    private final SegmentId id2 = new SegmentId(EMPTY_STORE, 0x0000000000000002L, 0xa000000000000002L, cache::recordAccess);
     private final Segment segment2 = mock(Segment.class);
-    private final SegmentId id3 = new SegmentId(EMPTY_STORE, 0x0000000000000003L, 0xa000000000000003L, cache::recordHit);
+    private final SegmentId id3 = new SegmentId(EMPTY_STORE, 0x0000000000000003L, 0xa000000000000003L, cache::recordAccess);
     private final Segment segment3 = mock(Segment.class);
 
     {
@@ -70,6 +72,39 @@ public class SegmentCacheTest {
         assertEquals(segment1, cache.getSegment(id1, () -> failToLoad(id1)));
     }
 
+    @Test
+    public void segmentIdsInAccessOrder() throws InterruptedException {
+        cache.putSegment(segment1);
+        cache.putSegment(segment2);
+        Thread.sleep(1);
+        assertEquals(segment1, id1.getSegment());
+
+        assertEquals(asList(id1, id2), cache.getSegmentIds(10));
+        assertEquals(singletonList(id1), cache.getSegmentIds(1));
+
+        Thread.sleep(1);
+        assertEquals(segment2, id2.getSegment());
+        assertEquals(singletonList(id2), cache.getSegmentIds(1));
+    }
+
+    @Test
+    public void accessTimesOnlyRecordedOnRequest() throws InterruptedException {
+        SegmentId id4 = new SegmentId(EMPTY_STORE, 0x0000000000000004L, 0xa000000000000004L, cache::recordHit);
+        Segment segment4 = mock(Segment.class);
+        when(segment4.getSegmentId()).thenReturn(id4);
+        when(segment4.estimateMemoryUsage()).thenReturn(4);
+
+        cache.putSegment(segment4);
+        Thread.sleep(1);
+        cache.putSegment(segment1);
+        Thread.sleep(1);
+
+        // Accessing segment4 only records a hit, so it keeps its load time
+        assertEquals(segment4, id4.getSegment());
+        assertEquals(asList(id1, id4), cache.getSegmentIds(10));
+        assertEquals(1, cache.getCacheStats().getHitCount());
+    }
+
     @Test
     public void invalidateTests() throws ExecutionException {
         cache.putSegment(segment1);
@@ -20,7 +20,13 @@ package org.apache.jackrabbit.oak.segment;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
 import org.jetbrains.annotations.NotNull;
@@ -39,13 +45,17 @@ public class SegmentIdTableBenchmark {
         };
     }
 
-    public static void main(String... args) throws IOException {
+    public static void main(String... args) throws Exception {
         test();
         test();
         test();
         test();
         test();
         test();
+
+        for (int threads : new int[] {1, 8, 32, 64}) {
+            testConcurrent(threads);
+        }
     }
 
     private static void test() throws IOException {
@@ -95,6 +105,65 @@ public class SegmentIdTableBenchmark {
 //        System.out.println("WeakHashMap: " + time);
     }
     
+    /**
+     * Look up the same segment ids from many threads, once through a
+     * {@link SegmentIdTable} and once through a table where every lookup
+     * synchronizes on the table, as all lookups used to do.
+     */
+    private static void testConcurrent(int threads) throws Exception {
+        int repeat = 1000;
+        int count = 10000;
+
+        long[] array = new long[count];
+        Random r = new Random(1);
+        for (int i = 0; i < array.length; i++) {
+            array[i] = r.nextLong();
+        }
+
+        MemoryStore store = new MemoryStore();
+        SegmentIdFactory maker = newSegmentIdMaker(store);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            SegmentIdTable tbl = new SegmentIdTable();
+            long time = runConcurrent(executor, threads, () -> {
+                for (int i = 0; i < repeat; i++) {
+                    for (int j = 0; j < count; j++) {
+                        tbl.newSegmentId(j, array[j], maker);
+                    }
+                }
+                return null;
+            });
+            System.out.println("SegmentIdTable, " + threads + " threads: " + time);
+
+            SegmentIdTable synchronizedTbl = new SegmentIdTable();
+            time = runConcurrent(executor, threads, () -> {
+                for (int i = 0; i < repeat; i++) {
+                    for (int j = 0; j < count; j++) {
+                        synchronized (synchronizedTbl) {
+                            synchronizedTbl.newSegmentId(j, array[j], maker);
+                        }
+                    }
+                }
+                return null;
+            });
+            System.out.println("Synchronized SegmentIdTable, " + threads + " threads: " + time);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long runConcurrent(ExecutorService executor, int threads, Callable<Void> task) throws Exception {
+        long time = System.currentTimeMillis();
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        return System.currentTimeMillis() - time;
+    }
+
     static class ConcurrentTable {
         private final SegmentStore store;
         volatile WeakReference<SegmentId>[] map;
@@ -32,6 +32,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -91,6 +92,44 @@ public class SegmentIdTableTest {
         assertEquals(1, s.getLeastSignificantBits());
     }
     
+    @Test
+    public void concurrentLookupsReturnSameInstance() throws Exception {
+        final SegmentIdFactory maker = newSegmentIdMaker();
+        final SegmentIdTable tbl = new SegmentIdTable();
+        final int count = 16 * 1024;
+
+        Callable<List<SegmentId>> c = new Callable<List<SegmentId>>() {
+
+            @Override
+            public List<SegmentId> call() throws Exception {
+                List<SegmentId> ids = new ArrayList<SegmentId>();
+                Random r = new Random(1);
+                for (int i = 0; i < count; i++) {
+                    ids.add(tbl.newSegmentId(r.nextLong(), r.nextLong(), maker));
+                }
+                return ids;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<SegmentId>>> futures = new ArrayList<Future<List<SegmentId>>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(c));
+            }
+            List<SegmentId> expected = futures.get(0).get();
+            for (Future<List<SegmentId>> future : futures) {
+                List<SegmentId> ids = future.get();
+                for (int i = 0; i < count; i++) {
+                    assertTrue(expected.get(i) == ids.get(i));
+                }
+            }
+            assertEquals(count, tbl.getEntryCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void randomized() throws IOException {
         SegmentIdFactory maker = newSegmentIdMaker();
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.segment.file.CacheWarmUp.SNAPSHOT_FILE_NAME;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheWarmUpTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File getSnapshotFile() {
+        return new File(folder.getRoot(), SNAPSHOT_FILE_NAME);
+    }
+
+    private static CacheWarmUp newCacheWarmUp(FileStore fileStore) {
+        return new CacheWarmUp(fileStore.directory, fileStore::loadSegments, fileStore.tracker,
+                fileStore.segmentCache, fileStore.segmentReader, 0);
+    }
+
+    @Test
+    public void snapshotIsWrittenOnClose() throws Exception {
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).withCacheSnapshotInterval(60).build()) {
+            SegmentNodeState head = fileStore.getHead();
+            SegmentNodeBuilder builder = head.builder();
+            builder.setProperty("a", "value of a");
+            fileStore.getRevisions().setHead(head.getRecordId(), builder.getNodeState().getRecordId());
+            fileStore.flush();
+            assertEquals("value of a", fileStore.getHead().getString("a"));
+        }
+
+        List<String> entries = Files.readAllLines(getSnapshotFile().toPath(), UTF_8);
+        assertTrue(entries.stream().anyMatch(entry -> entry.startsWith("segment ")));
+        assertTrue(entries.stream().anyMatch(entry -> entry.startsWith("template ")));
+        assertTrue(entries.stream().anyMatch(entry -> entry.startsWith("string ")));
+    }
+
+    @Test
+    public void warmUpLoadsSnapshot() throws Exception {
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).withCacheSnapshotInterval(60).build()) {
+            SegmentNodeState head = fileStore.getHead();
+            SegmentNodeBuilder builder = head.builder();
+            for (int k = 0; k < 100; k++) {
+                builder.child("c" + k).setProperty("p", "value " + k);
+            }
+            fileStore.getRevisions().setHead(head.getRecordId(), builder.getNodeState().getRecordId());
+            fileStore.flush();
+            for (int k = 0; k < 100; k++) {
+                assertEquals("value " + k, fileStore.getHead().getChildNode("c" + k).getString("p"));
+            }
+        }
+
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).build();
+             CacheWarmUp cacheWarmUp = newCacheWarmUp(fileStore)) {
+            long strings = fileStore.segmentReader.getStringCacheStats().getElementCount();
+            cacheWarmUp.warmUp();
+
+            for (String entry : Files.readAllLines(getSnapshotFile().toPath(), UTF_8)) {
+                if (entry.startsWith("segment ")) {
+                    UUID uuid = UUID.fromString(entry.substring("segment ".length()));
+                    SegmentId id = fileStore.tracker.newSegmentId(
+                            uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+                    assertTrue(id.isLoaded());
+                }
+            }
+            assertTrue(fileStore.segmentReader.getStringCacheStats().getElementCount() > strings);
+        }
+    }
+
+    @Test
+    public void invalidEntriesAreSkipped() throws Exception {
+        List<String> entries = asList(
+                "segment " + new UUID(0x0000000000000001L, 0xa000000000000001L),
+                "string " + new UUID(0x0000000000000001L, 0xa000000000000001L) + ".00000010",
+                "segment not-a-uuid",
+                "unknown entry",
+                "garbage");
+        Files.write(getSnapshotFile().toPath(), entries, UTF_8);
+
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).build();
+             CacheWarmUp cacheWarmUp = newCacheWarmUp(fileStore)) {
+            cacheWarmUp.warmUp();
+
+            cacheWarmUp.writeSnapshot();
+            List<String> snapshot = Files.readAllLines(getSnapshotFile().toPath(), UTF_8);
+            assertFalse(snapshot.contains("garbage"));
+        }
+    }
+
+    @Test
+    public void snapshotIsNotOverwrittenBeforeWarmUp() throws Exception {
+        List<String> entries = asList("garbage");
+        Files.write(getSnapshotFile().toPath(), entries, UTF_8);
+
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).build();
+             CacheWarmUp cacheWarmUp = newCacheWarmUp(fileStore)) {
+            cacheWarmUp.writeSnapshot();
+            assertEquals(entries, Files.readAllLines(getSnapshotFile().toPath(), UTF_8));
+        }
+    }
+}
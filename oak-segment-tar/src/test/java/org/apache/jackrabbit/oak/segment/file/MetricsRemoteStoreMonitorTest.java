@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.segment.file;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.stats.CounterStats;
 import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.junit.After;
@@ -40,6 +41,8 @@ public class MetricsRemoteStoreMonitorTest {
     private CounterStats requestCount;
     private CounterStats requestErrorCount;
     private TimerStats requestDuration;
+    private HistogramStats segmentQueueDepth;
+    private TimerStats segmentUploadLatency;
 
     private int requestCountExpected = 3;
     private int requestErrorCountExpected = 2;
@@ -61,6 +64,11 @@ public class MetricsRemoteStoreMonitorTest {
         }
         requestDuration.update(100, TimeUnit.MILLISECONDS);
 
+        segmentQueueDepth = statisticsProvider.getHistogram(SEGMENT_QUEUE_DEPTH, StatsOptions.METRICS_ONLY);
+        segmentUploadLatency = statisticsProvider.getTimer(SEGMENT_UPLOAD_LATENCY, StatsOptions.METRICS_ONLY);
+        remoteStoreMonitor.segmentQueueDepth(5);
+        remoteStoreMonitor.segmentQueueDepth(4);
+        remoteStoreMonitor.segmentUploadLatency(10, TimeUnit.MILLISECONDS);
     }
 
     @After
@@ -73,5 +81,7 @@ public class MetricsRemoteStoreMonitorTest {
         assertEquals(requestCountExpected, requestCount.getCount());
         assertEquals(requestErrorCountExpected, requestErrorCount.getCount());
         assertEquals(1, requestDuration.getCount());
+        assertEquals(2, segmentQueueDepth.getCount());
+        assertEquals(1, segmentUploadLatency.getCount());
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for a {@link ReadOnlyFileStore} following the revisions written to
+ * its directory by another {@link FileStore}.
+ */
+public class ReadOnlyFileStoreRefreshTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File directory;
+
+    private ReadOnlyFileStore readOnlyStore;
+
+    @Before
+    public void setup() throws Exception {
+        directory = folder.newFolder();
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            commit(store, "a");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (readOnlyStore != null) {
+            readOnlyStore.close();
+        }
+    }
+
+    private static String commit(FileStore store, String name) throws IOException {
+        RecordId headId = store.getRevisions().getHead();
+        SegmentNodeBuilder builder = store.getReader().readNode(headId).builder();
+        builder.setChildNode(name);
+        SegmentNodeState newRoot = builder.getNodeState();
+        assertTrue(store.getRevisions().setHead(headId, newRoot.getRecordId()));
+        store.flush();
+        return newRoot.getRecordId().toString();
+    }
+
+    private String readOnlyHead() {
+        return readOnlyStore.getRevisions().getHead().toString();
+    }
+
+    private boolean readOnlyHeadHasChild(String name) {
+        return readOnlyStore.getReader().readNode(readOnlyStore.getRevisions().getHead()).hasChildNode(name);
+    }
+
+    @Test
+    public void refreshOpensNewTarFiles() throws Exception {
+        readOnlyStore = fileStoreBuilder(directory).buildReadOnly();
+        assertTrue(readOnlyHeadHasChild("a"));
+        assertFalse(readOnlyStore.refreshHead());
+
+        String b;
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            b = commit(store, "b");
+
+            // The segments of b are in a TAR file without an index yet
+            assertFalse(readOnlyStore.refreshHead());
+            assertTrue(readOnlyHeadHasChild("a"));
+            assertFalse(readOnlyHeadHasChild("b"));
+        }
+
+        assertTrue(readOnlyStore.refreshHead());
+        assertEquals(b, readOnlyHead());
+        assertTrue(readOnlyHeadHasChild("b"));
+        assertFalse(readOnlyStore.refreshHead());
+
+        String c;
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            c = commit(store, "c");
+        }
+
+        assertTrue(readOnlyStore.refreshHead());
+        assertEquals(c, readOnlyHead());
+        assertTrue(readOnlyHeadHasChild("b"));
+        assertTrue(readOnlyHeadHasChild("c"));
+    }
+
+    @Test
+    public void refreshReplacesRecoveredTarFile() throws Exception {
+        String c;
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            String b = commit(store, "b");
+
+            // The TAR file written by store has no index and is recovered
+            readOnlyStore = fileStoreBuilder(directory).buildReadOnly();
+            assertEquals(b, readOnlyHead());
+
+            c = commit(store, "c");
+            assertFalse(readOnlyStore.refreshHead());
+            assertEquals(b, readOnlyHead());
+        }
+
+        assertTrue(readOnlyStore.refreshHead());
+        assertEquals(c, readOnlyHead());
+        assertTrue(readOnlyHeadHasChild("c"));
+    }
+
+    @Test
+    public void refreshInBackground() throws Exception {
+        readOnlyStore = fileStoreBuilder(directory)
+                .withReadOnlyRefreshInterval(1)
+                .buildReadOnly();
+
+        String b;
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            b = commit(store, "b");
+        }
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!b.equals(readOnlyHead()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(b, readOnlyHead());
+        assertTrue(readOnlyHeadHasChild("b"));
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFileWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReadOnlyRevisionsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private FileStore store;
+
+    private ReadOnlyRevisions revisions;
+
+    @Before
+    public void setup() throws Exception {
+        store = FileStoreBuilder.fileStoreBuilder(folder.getRoot()).build();
+        store.flush();
+        revisions = new ReadOnlyRevisions(new TarPersistence(folder.getRoot()));
+        revisions.bind(store, store.getSegmentIdProvider());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        revisions.close();
+        store.close();
+    }
+
+    private RecordId commit(String name) throws IOException {
+        RecordId headId = store.getRevisions().getHead();
+        SegmentNodeBuilder builder = store.getReader().readNode(headId).builder();
+        builder.setChildNode(name);
+        SegmentNodeState newRoot = builder.getNodeState();
+        assertTrue(store.getRevisions().setHead(headId, newRoot.getRecordId()));
+        store.flush();
+        return newRoot.getRecordId();
+    }
+
+    @Test
+    public void refreshWithoutNewRevisions() throws IOException {
+        RecordId head = revisions.getHead();
+        assertFalse(revisions.refresh(store, store.getSegmentIdProvider()));
+        assertEquals(head, revisions.getHead());
+    }
+
+    @Test
+    public void refreshPicksUpLatestRevision() throws IOException {
+        commit("a");
+        RecordId b = commit("b");
+
+        assertTrue(revisions.refresh(store, store.getSegmentIdProvider()));
+        assertEquals(b, revisions.getHead());
+        assertFalse(revisions.refresh(store, store.getSegmentIdProvider()));
+
+        RecordId c = commit("c");
+        assertTrue(revisions.refresh(store, store.getSegmentIdProvider()));
+        assertEquals(c, revisions.getHead());
+    }
+
+    @Test
+    public void refreshSkipsInaccessibleRevisions() throws IOException {
+        RecordId a = commit("a");
+        try (JournalFileWriter writer = new TarPersistence(folder.getRoot()).getJournalFile().openJournalWriter()) {
+            writer.writeLine("00000000-0000-0000-0000-000000000000:0 root " + System.currentTimeMillis());
+            writer.writeLine("invalid");
+        }
+
+        assertTrue(revisions.refresh(store, store.getSegmentIdProvider()));
+        assertEquals(a, revisions.getHead());
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.UUID;
+
+import com.google.common.base.Predicate;
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordIdPriorityCacheTest {
+
+    private SegmentId segmentId;
+
+    @Before
+    public void setup() throws Exception {
+        segmentId = new MemoryStore().getSegmentIdProvider().newDataSegmentId();
+    }
+
+    private static String stableId(int k) {
+        return new UUID(k, k) + ":" + k;
+    }
+
+    private RecordId recordId(int k) {
+        return new RecordId(segmentId, k);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalSize() {
+        new RecordIdPriorityCache(42, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLarge() {
+        RecordIdPriorityCache.factory(2 * RecordIdPriorityCache.MAX_SIZE, true);
+    }
+
+    @Test
+    public void readWrite() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            RecordIdPriorityCache cache = new RecordIdPriorityCache(128, offHeap);
+            for (int k = 0; k < 128; k++) {
+                if (cache.put(stableId(k), recordId(k), 0, (byte) 0)) {
+                    assertEquals(recordId(k), cache.get(stableId(k), 0));
+                } else {
+                    assertNull(cache.get(stableId(k), 0));
+                }
+            }
+            assertNull(cache.get(stableId(0), 1));
+            assertNull(cache.get(stableId(1000), 0));
+        }
+    }
+
+    @Test
+    public void updateKey() {
+        RecordIdPriorityCache cache = new RecordIdPriorityCache(1, 0, false);
+
+        assertTrue(cache.put(stableId(1), recordId(1), 0, (byte) 0));
+
+        // Cache is full -> cannot put another key of the same cost
+        assertFalse(cache.put(stableId(2), recordId(2), 0, (byte) 0));
+
+        // But updating an existing key works and boosts its cost to 1
+        assertTrue(cache.put(stableId(1), recordId(1), 0, (byte) 0));
+
+        // such that adding another key only works at cost 2 and greater
+        assertFalse(cache.put(stableId(2), recordId(2), 0, (byte) 1));
+        assertTrue(cache.put(stableId(2), recordId(2), 0, (byte) 2));
+        assertEquals(recordId(2), cache.get(stableId(2), 0));
+        assertEquals(1, cache.getStats().evictionCount());
+    }
+
+    @Test
+    public void updateWithNewGeneration() {
+        RecordIdPriorityCache cache = new RecordIdPriorityCache(1, 0, true);
+        assertTrue(cache.put(stableId(1), recordId(1), 0, (byte) 0));
+
+        // Cache is full but we can still put a key of a higher generation
+        assertTrue(cache.put(stableId(2), recordId(2), 1, (byte) 0));
+        assertNull(cache.get(stableId(1), 0));
+
+        // Cannot put a key of a lower generation
+        assertFalse(cache.put(stableId(2), recordId(2), 0, (byte) 0));
+
+        // But one of the same generation
+        assertTrue(cache.put(stableId(2), recordId(2), 1, (byte) 0));
+    }
+
+    @Test
+    public void generationPurge() {
+        RecordIdPriorityCache cache = new RecordIdPriorityCache(65536, false);
+
+        for (int gen = 4; gen >= 0; gen--) {
+            // Backward iteration avoids earlier generations are replaced with later ones
+            for (int k = 0; k < 100; k++) {
+                if (!cache.put(stableId(gen * 100 + k), recordId(k), gen, (byte) 0)) {
+                    assumeTrue("All test keys are in the cache", false);
+                }
+            }
+        }
+
+        assertEquals(500, cache.size());
+        cache.purgeGenerations(new Predicate<Integer>() {
+            @Override
+            public boolean apply(Integer generation) {
+                return generation <= 2;
+            }
+        });
+        assertEquals(200, cache.size());
+        assertNull(cache.get(stableId(0), 0));
+        assertEquals(recordId(0), cache.get(stableId(400), 4));
+    }
+
+    @Test
+    public void weight() {
+        RecordIdPriorityCache onHeap = new RecordIdPriorityCache(1024, false);
+        RecordIdPriorityCache offHeap = new RecordIdPriorityCache(1024, true);
+        assertEquals(0, onHeap.estimateOffHeapWeight());
+        assertTrue(offHeap.estimateOffHeapWeight() > 0);
+        assertTrue(onHeap.estimateCurrentWeight() > offHeap.estimateCurrentWeight());
+        assertEquals(onHeap.estimateCurrentWeight(),
+            offHeap.estimateCurrentWeight() + offHeap.estimateOffHeapWeight());
+    }
+
+}
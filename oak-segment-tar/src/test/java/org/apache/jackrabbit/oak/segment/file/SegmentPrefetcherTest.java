@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongSupplier;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentPrefetcherTest {
+    private ScheduledExecutorService executor;
+
+    private DefaultStatisticsProvider statisticsProvider;
+
+    private final Map<SegmentId, Segment> segments = new ConcurrentHashMap<>();
+
+    private final Map<SegmentId, Integer> loads = new ConcurrentHashMap<>();
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        statisticsProvider = new DefaultStatisticsProvider(executor);
+    }
+
+    @After
+    public void tearDown() {
+        new ExecutorCloser(executor).close();
+    }
+
+    private static SegmentId newSegmentId(long lsb) {
+        return new SegmentId(EMPTY_STORE, 0x0000000000000001L, 0xa000000000000000L | lsb);
+    }
+
+    private Segment newSegment(SegmentId id, SegmentId... references) {
+        Segment segment = mock(Segment.class);
+        when(segment.getSegmentId()).thenReturn(id);
+        when(segment.getReferencedSegmentIds()).thenReturn(asList(references));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment load(SegmentId id) {
+        loads.merge(id, 1, Integer::sum);
+        return segments.get(id);
+    }
+
+    private SegmentPrefetcher newPrefetcher(int threads, int bufferSize) {
+        return new SegmentPrefetcher(threads, bufferSize, this::load, statisticsProvider);
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        for (int k = 0; k < 100 && count.getAsLong() < expected; k++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+
+    @Test
+    public void disabledPrefetcherOnlyLoads() {
+        SegmentId a = newSegmentId(1);
+        SegmentId b = newSegmentId(2);
+        Segment segmentA = newSegment(a, b);
+        newSegment(b);
+
+        try (SegmentPrefetcher prefetcher = newPrefetcher(0, 16)) {
+            assertSame(segmentA, prefetcher.readSegment(a));
+            assertEquals(1, (int) loads.get(a));
+            assertNull(loads.get(b));
+            assertEquals(0, prefetcher.getPrefetchCount());
+        }
+    }
+
+    @Test
+    public void prefetchedSegmentIsHit() throws InterruptedException {
+        SegmentId a = newSegmentId(1);
+        SegmentId b = newSegmentId(2);
+        SegmentId c = newSegmentId(3);
+        Segment segmentA = newSegment(a, b, c);
+        Segment segmentB = newSegment(b);
+        newSegment(c);
+
+        try (SegmentPrefetcher prefetcher = newPrefetcher(2, 16)) {
+            assertSame(segmentA, prefetcher.readSegment(a));
+            awaitCount(prefetcher::getPrefetchCount, 2);
+
+            assertSame(segmentB, prefetcher.readSegment(b));
+            assertEquals(1, prefetcher.getPrefetchHitCount());
+            assertEquals(1, (int) loads.get(b));
+            assertEquals(0, prefetcher.getPrefetchWasteCount());
+        }
+    }
+
+    @Test
+    public void evictedPrefetchedSegmentIsWaste() throws InterruptedException {
+        SegmentId a = newSegmentId(1);
+        SegmentId b = newSegmentId(2);
+        SegmentId c = newSegmentId(3);
+        SegmentId d = newSegmentId(4);
+        newSegment(a, b);
+        newSegment(b);
+        newSegment(c, d);
+        newSegment(d);
+
+        try (SegmentPrefetcher prefetcher = newPrefetcher(1, 1)) {
+            prefetcher.readSegment(a);
+            awaitCount(prefetcher::getPrefetchCount, 1);
+
+            // Prefetching d evicts the unread prefetched b
+            prefetcher.readSegment(c);
+            awaitCount(prefetcher::getPrefetchCount, 2);
+            assertEquals(1, prefetcher.getPrefetchWasteCount());
+
+            prefetcher.readSegment(b);
+            assertEquals(2, (int) loads.get(b));
+            assertEquals(0, prefetcher.getPrefetchHitCount());
+        }
+    }
+
+    @Test
+    public void bulkSegmentsAreNotPrefetched() throws InterruptedException {
+        SegmentId a = newSegmentId(1);
+        SegmentId bulk = new SegmentId(EMPTY_STORE, 0x0000000000000001L, 0xb000000000000002L);
+        newSegment(a, bulk);
+
+        try (SegmentPrefetcher prefetcher = newPrefetcher(1, 16)) {
+            prefetcher.readSegment(a);
+            Thread.sleep(50);
+            assertEquals(0, prefetcher.getPrefetchCount());
+            assertFalse(loads.containsKey(bulk));
+        }
+    }
+}
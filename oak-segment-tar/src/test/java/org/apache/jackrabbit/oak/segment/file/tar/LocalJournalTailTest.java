@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFileWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalJournalTailTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private LocalJournalFile newJournal(String... lines) throws IOException {
+        LocalJournalFile journal = new LocalJournalFile(folder.getRoot(), "journal.log");
+        try (JournalFileWriter writer = journal.openJournalWriter()) {
+            writer.batchWriteLines(asList(lines));
+        }
+        return journal;
+    }
+
+    private static void append(LocalJournalFile journal, String... lines) throws IOException {
+        try (JournalFileWriter writer = journal.openJournalWriter()) {
+            writer.batchWriteLines(asList(lines));
+        }
+    }
+
+    @Test
+    public void startsAtEndOfJournal() throws IOException {
+        LocalJournalFile journal = newJournal("a root 1", "b root 2");
+        try (LocalJournalTail tail = journal.openJournalTail()) {
+            assertEquals(emptyList(), tail.readNewLines());
+            assertEquals(new File(folder.getRoot(), "journal.log").length(), tail.getOffset());
+        }
+    }
+
+    @Test
+    public void readsAppendedLines() throws IOException {
+        LocalJournalFile journal = newJournal("a root 1");
+        try (LocalJournalTail tail = journal.openJournalTail()) {
+            append(journal, "b root 2", "c root 3");
+            assertEquals(asList("b root 2", "c root 3"), tail.readNewLines());
+            assertEquals(emptyList(), tail.readNewLines());
+
+            append(journal, "d root 4");
+            assertEquals(asList("d root 4"), tail.readNewLines());
+        }
+    }
+
+    @Test
+    public void skipsIncompleteLines() throws IOException {
+        LocalJournalFile journal = newJournal("a root 1");
+        File file = new File(folder.getRoot(), "journal.log");
+        try (LocalJournalTail tail = journal.openJournalTail()) {
+            Files.write(file.toPath(), "b ro".getBytes(ISO_8859_1), StandardOpenOption.APPEND);
+            assertEquals(emptyList(), tail.readNewLines());
+
+            Files.write(file.toPath(), "ot 2\n".getBytes(ISO_8859_1), StandardOpenOption.APPEND);
+            assertEquals(asList("b root 2"), tail.readNewLines());
+        }
+    }
+
+    @Test
+    public void rereadsTruncatedJournal() throws IOException {
+        LocalJournalFile journal = newJournal("a root 1", "b root 2");
+        try (LocalJournalTail tail = journal.openJournalTail()) {
+            try (RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), "journal.log"), "rw")) {
+                file.setLength(0);
+            }
+            append(journal, "c root 3");
+            assertEquals(asList("c root 3"), tail.readNewLines());
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Measures the space saved by each {@link SegmentCodec} against the latency
+ * of reading the segments back. The segments of a generated repository are
+ * rewritten into one TAR file per codec, which are then read in random order.
+ */
+public class SegmentCodecBenchmark {
+
+    private static final int NODES = 100000;
+
+    private static final int READS = 100000;
+
+    public static void main(String... args) throws Exception {
+        File directory = Files.createTempDirectory("segment-codec-benchmark").toFile();
+        try {
+            File store = new File(directory, "store");
+            createRepository(store);
+
+            SegmentTarManager source = newManager(store);
+            List<SegmentArchiveEntry> entries = new ArrayList<>();
+            List<byte[]> segments = new ArrayList<>();
+            for (String name : source.listArchives()) {
+                try (SegmentArchiveReader reader = source.open(name)) {
+                    if (reader == null) {
+                        continue;
+                    }
+                    for (SegmentArchiveEntry entry : reader.listSegments()) {
+                        entries.add(entry);
+                        Buffer segment = reader.readSegment(entry.getMsb(), entry.getLsb());
+                        byte[] data = new byte[segment.remaining()];
+                        segment.get(data);
+                        segments.add(data);
+                    }
+                }
+            }
+
+            for (int i = 0; i < 3; i++) {
+                for (SegmentCodec codec : SegmentCodec.values()) {
+                    test(new File(directory, codec.name().toLowerCase()), codec, entries, segments);
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private static void createRepository(File directory) throws Exception {
+        Random random = new Random(1);
+        try (FileStore fileStore = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            NodeBuilder root = nodeStore.getRoot().builder();
+            for (int i = 0; i < NODES; i++) {
+                NodeBuilder node = root.child("content").child("folder-" + i / 1000).child("node-" + i);
+                node.setProperty("jcr:primaryType", "nt:unstructured");
+                node.setProperty("jcr:title", "Title of node " + i);
+                node.setProperty("sling:resourceType", "components/page/" + random.nextInt(20));
+                node.setProperty("count", random.nextInt(1000));
+                if (i % 10000 == 0) {
+                    nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                    root = nodeStore.getRoot().builder();
+                }
+            }
+            nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            fileStore.flush();
+        }
+    }
+
+    private static SegmentTarManager newManager(File directory) {
+        return new SegmentTarManager(directory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), true, false);
+    }
+
+    private static void test(File directory, SegmentCodec codec, List<SegmentArchiveEntry> entries, List<byte[]> segments) throws IOException {
+        FileUtils.deleteQuietly(directory);
+        directory.mkdirs();
+        String name = "data00000a.tar";
+
+        long rawBytes = 0;
+        long time = System.nanoTime();
+        SegmentTarWriter writer = new SegmentTarWriter(new File(directory, name), new FileStoreMonitorAdapter(), new IOMonitorAdapter(), codec);
+        for (int i = 0; i < entries.size(); i++) {
+            SegmentArchiveEntry entry = entries.get(i);
+            byte[] data = segments.get(i);
+            rawBytes += data.length;
+            writer.writeSegment(entry.getMsb(), entry.getLsb(), data, 0, data.length,
+                    entry.getGeneration(), entry.getFullGeneration(), entry.isCompacted());
+        }
+        writer.close();
+        long writeTime = System.nanoTime() - time;
+
+        List<SegmentArchiveEntry> order = new ArrayList<>(entries);
+        Collections.shuffle(order, new Random(1));
+
+        long readBytes = 0;
+        try (SegmentArchiveReader reader = newManager(directory).open(name)) {
+            time = System.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                SegmentArchiveEntry entry = order.get(i % order.size());
+                readBytes += reader.readSegment(entry.getMsb(), entry.getLsb()).remaining();
+            }
+        }
+        long readTime = System.nanoTime() - time;
+
+        System.out.printf("%-8s segments: %d, raw: %s, stored: %s (%.2fx), write: %d ms, read: %.1f us/segment (%s)%n",
+                codec,
+                entries.size(),
+                humanReadableByteCount(rawBytes),
+                humanReadableByteCount(new File(directory, name).length()),
+                (double) rawBytes / new File(directory, name).length(),
+                writeTime / 1000000,
+                readTime / 1000.0 / READS,
+                humanReadableByteCount(readBytes));
+    }
+
+}
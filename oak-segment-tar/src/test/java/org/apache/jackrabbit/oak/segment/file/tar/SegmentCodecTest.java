@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentCodecTest {
+
+    private static final String ARCHIVE_NAME = "data00000a.tar";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private static final Random RANDOM = new Random(42);
+
+    private static UUID dataSegmentId() {
+        return new UUID(RANDOM.nextLong(), (RANDOM.nextLong() & 0x0FFFFFFFFFFFFFFFL) | 0xA000000000000000L);
+    }
+
+    private static UUID bulkSegmentId() {
+        return new UUID(RANDOM.nextLong(), (RANDOM.nextLong() & 0x0FFFFFFFFFFFFFFFL) | 0xB000000000000000L);
+    }
+
+    private static byte[] compressibleData() {
+        return compressibleData("0aK");
+    }
+
+    private static byte[] compressibleData(String prefix) {
+        StringBuilder builder = new StringBuilder(prefix);
+        for (int i = 0; i < 1000; i++) {
+            builder.append("jcr:primaryType nt:unstructured ").append(i % 10);
+        }
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] randomData() {
+        byte[] data = new byte[4096];
+        new Random(42).nextBytes(data);
+        data[0] = '0';
+        data[1] = 'a';
+        data[2] = 'K';
+        return data;
+    }
+
+    private static byte[] toArray(Buffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Test
+    public void encodeAndDecode() throws IOException {
+        byte[] data = compressibleData();
+        byte[] encoded = SegmentCodec.DEFLATE.encode(data, 0, data.length);
+        assertTrue(encoded.length < data.length);
+        assertTrue(SegmentCodec.isEncoded(Buffer.wrap(encoded)));
+        assertArrayEquals(data, SegmentCodec.decode(dataSegmentId().getLeastSignificantBits(), encoded));
+    }
+
+    @Test
+    public void uncompressedSegmentIsNotDecoded() throws IOException {
+        byte[] data = randomData();
+        Buffer buffer = Buffer.wrap(data);
+        long lsb = dataSegmentId().getLeastSignificantBits();
+        assertSame(buffer, SegmentCodec.decode(lsb, buffer));
+        assertSame(data, SegmentCodec.decode(lsb, data));
+    }
+
+    @Test
+    public void bulkSegmentIsNotDecoded() throws IOException {
+        long lsb = bulkSegmentId().getLeastSignificantBits();
+        assertFalse(SegmentCodec.isEncodable(lsb));
+
+        // A bulk segment starting with the magic bytes and an unknown codec id
+        byte[] data = compressibleData("0aZ\u007f");
+        Buffer buffer = Buffer.wrap(data);
+        assertTrue(SegmentCodec.isEncoded(buffer));
+        assertSame(buffer, SegmentCodec.decode(lsb, buffer));
+        assertSame(data, SegmentCodec.decode(lsb, data));
+
+        // A bulk segment that happens to look like a compressed segment
+        byte[] encoded = SegmentCodec.DEFLATE.encode(data, 0, data.length);
+        assertSame(encoded, SegmentCodec.decode(lsb, encoded));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidCompressedSegment() throws IOException {
+        byte[] data = compressibleData();
+        byte[] encoded = SegmentCodec.DEFLATE.encode(data, 0, data.length);
+        encoded[encoded.length / 2] ^= 0xff;
+        SegmentCodec.decode(dataSegmentId().getLeastSignificantBits(), encoded);
+    }
+
+    @Test
+    public void fromName() {
+        assertEquals(SegmentCodec.DEFLATE, SegmentCodec.fromName("deflate"));
+        assertEquals(SegmentCodec.NONE, SegmentCodec.fromName("none"));
+        assertEquals(SegmentCodec.NONE, SegmentCodec.fromName("unknown"));
+    }
+
+    @Test
+    public void readCompressedAndUncompressedSegments() throws IOException {
+        File directory = folder.newFolder();
+        UUID compressible = dataSegmentId();
+        UUID incompressible = dataSegmentId();
+        UUID bulk = bulkSegmentId();
+        Map<UUID, byte[]> segments = new LinkedHashMap<>();
+        segments.put(compressible, compressibleData());
+        segments.put(incompressible, randomData());
+        // A compressible bulk segment starting with the magic bytes
+        segments.put(bulk, compressibleData("0aZ\u007f"));
+
+        SegmentTarWriter writer = new SegmentTarWriter(new File(directory, ARCHIVE_NAME),
+                new FileStoreMonitorAdapter(), new IOMonitorAdapter(), SegmentCodec.DEFLATE);
+        for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+            UUID id = segment.getKey();
+            byte[] data = segment.getValue();
+            writer.writeSegment(id.getMostSignificantBits(), id.getLeastSignificantBits(), data, 0, data.length, 0, 0, false);
+        }
+        for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+            UUID id = segment.getKey();
+            Buffer buffer = writer.readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            assertArrayEquals(segment.getValue(), toArray(buffer));
+        }
+        writer.close();
+
+        SegmentTarManager manager = new SegmentTarManager(directory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, false);
+        try (SegmentArchiveReader reader = manager.open(ARCHIVE_NAME)) {
+            for (SegmentArchiveEntry entry : reader.listSegments()) {
+                UUID id = new UUID(entry.getMsb(), entry.getLsb());
+                byte[] data = segments.get(id);
+                if (id.equals(compressible)) {
+                    assertTrue(entry.getLength() < data.length);
+                } else {
+                    // neither incompressible nor bulk segments are compressed
+                    assertEquals(data.length, entry.getLength());
+                }
+                assertArrayEquals(data, toArray(reader.readSegment(entry.getMsb(), entry.getLsb())));
+            }
+
+            Map<UUID, Buffer> read = reader.readSegments(asList(compressible, incompressible, bulk));
+            for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+                assertArrayEquals(segment.getValue(), toArray(read.get(segment.getKey())));
+            }
+        }
+
+        LinkedHashMap<UUID, byte[]> recovered = new LinkedHashMap<>();
+        manager.recoverEntries(ARCHIVE_NAME, recovered);
+        for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+            assertArrayEquals(segment.getValue(), recovered.get(segment.getKey()));
+        }
+    }
+
+    @Test
+    public void readBulkSegmentStartingWithMagicFromUncompressedArchive() throws IOException {
+        File directory = folder.newFolder();
+        UUID bulk = bulkSegmentId();
+        byte[] data = compressibleData("0aZ\u007f");
+
+        SegmentTarWriter writer = new SegmentTarWriter(new File(directory, ARCHIVE_NAME),
+                new FileStoreMonitorAdapter(), new IOMonitorAdapter(), SegmentCodec.NONE);
+        writer.writeSegment(bulk.getMostSignificantBits(), bulk.getLeastSignificantBits(), data, 0, data.length, 0, 0, false);
+        assertArrayEquals(data, toArray(writer.readSegment(bulk.getMostSignificantBits(), bulk.getLeastSignificantBits())));
+        writer.close();
+
+        SegmentTarManager manager = new SegmentTarManager(directory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, false);
+        try (SegmentArchiveReader reader = manager.open(ARCHIVE_NAME)) {
+            assertArrayEquals(data, toArray(reader.readSegment(bulk.getMostSignificantBits(), bulk.getLeastSignificantBits())));
+        }
+
+        LinkedHashMap<UUID, byte[]> recovered = new LinkedHashMap<>();
+        manager.recoverEntries(ARCHIVE_NAME, recovered);
+        assertArrayEquals(data, recovered.get(bulk));
+    }
+
+}
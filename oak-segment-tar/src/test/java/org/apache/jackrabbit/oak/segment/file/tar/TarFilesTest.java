@@ -24,9 +24,11 @@ import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static java.util.UUID.randomUUID;
 import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.apache.jackrabbit.oak.stats.SimpleStats.Type.COUNTER;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -39,12 +41,14 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles.CleanupResult;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.stats.SimpleStats;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -221,6 +225,85 @@ public class TarFilesTest {
         assertArrayEquals(data, readSegment(id));
     }
 
+    @Test
+    public void testReadSegments() throws Exception {
+        Map<UUID, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            UUID id = randomUUID();
+            byte[] data = randomData();
+            writeSegment(id, data);
+            expected.put(id, data);
+            if (i % 2 == 1) {
+                tarFiles.newWriter();
+            }
+        }
+        UUID id = randomUUID();
+        byte[] data = randomData();
+        writeSegment(id, data);
+        expected.put(id, data);
+
+        Set<UUID> ids = new HashSet<>(expected.keySet());
+        ids.add(randomUUID());
+        Map<UUID, Buffer> segments = tarFiles.readSegments(ids);
+
+        assertEquals(expected.keySet(), segments.keySet());
+        for (Map.Entry<UUID, Buffer> segment : segments.entrySet()) {
+            byte[] actual = new byte[segment.getValue().remaining()];
+            segment.getValue().get(actual);
+            assertArrayEquals(expected.get(segment.getKey()), actual);
+        }
+    }
+
+    @Test
+    public void testLookupCount() throws Exception {
+        SimpleStats lookups = new SimpleStats(new AtomicLong(), COUNTER);
+        SimpleStats probes = new SimpleStats(new AtomicLong(), COUNTER);
+
+        tarFiles.close();
+        tarFiles = TarFiles.builder()
+            .withDirectory(folder.getRoot())
+            .withTarRecovery((id, data, recovery) -> {
+                // Intentionally left blank
+            })
+            .withIOMonitor(new IOMonitorAdapter())
+            .withFileStoreMonitor(new FileStoreMonitorAdapter())
+            .withMaxFileSize(MAX_FILE_SIZE)
+            .withRemoteStoreMonitor(new RemoteStoreMonitorAdapter())
+            .withLookupCountStats(lookups)
+            .withLookupProbeCountStats(probes)
+            .build();
+
+        UUID first = randomUUID();
+        writeSegment(first);
+        tarFiles.newWriter();
+        for (int i = 0; i < 3; i++) {
+            writeSegment(randomUUID());
+            tarFiles.newWriter();
+        }
+
+        // The readers are checked newest first, so finding the first
+        // segment checks all four readers
+        assertTrue(containsSegment(first));
+        assertEquals(1, lookups.getCount());
+        assertEquals(4, probes.getCount());
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(containsSegment(randomUUID()));
+        }
+        assertEquals(101, lookups.getCount());
+        assertEquals(404, probes.getCount());
+
+        assertNotNull(tarFiles.readSegment(first.getMostSignificantBits(), first.getLeastSignificantBits()));
+        assertEquals(102, lookups.getCount());
+        assertEquals(408, probes.getCount());
+
+        UUID missing = randomUUID();
+        Map<UUID, Buffer> segments = tarFiles.readSegments(asList(first, missing));
+        assertEquals(singleton(first), segments.keySet());
+        assertEquals(104, lookups.getCount());
+        assertEquals(416, probes.getCount());
+    }
+
     @Test
     public void testGetIndices() throws Exception {
         UUID a = randomUUID();
@@ -391,4 +474,57 @@ public class TarFilesTest {
         assertTrue(result.getReclaimedSegmentIds().isEmpty());
         assertEquals(0, result.getReclaimedSize());
     }
+
+    @Test
+    public void testCleanupRetainsFollowableReferences() throws Exception {
+        UUID a = randomUUID();
+        UUID b = randomUUID();
+        UUID c = randomUUID();
+
+        writeSegment(a);
+        writeSegmentWithReferences(b, a);
+        writeSegmentWithReferences(c, b);
+
+        AtomicLong mightFollow = new AtomicLong();
+
+        CleanupContext context = new CleanupContext() {
+
+            @Override
+            public Collection<UUID> initialReferences() {
+                return singletonList(c);
+            }
+
+            @Override
+            public boolean shouldReclaim(UUID id, GCGeneration generation, boolean referenced) {
+                return !referenced;
+            }
+
+            @Override
+            public boolean shouldFollow(UUID from, UUID to) {
+                return true;
+            }
+
+            @Override
+            public boolean mightFollow(UUID to) {
+                mightFollow.incrementAndGet();
+                return true;
+            }
+
+        };
+
+        // The first cleanup loads the graph of the TAR file and retains the
+        // references that might be followed.
+
+        CleanupResult result = tarFiles.cleanup(context);
+        assertTrue(result.getReclaimedSegmentIds().isEmpty());
+        assertEquals(2, mightFollow.get());
+
+        // The second cleanup marks the TAR file again using the retained
+        // references, without loading its graph.
+
+        mightFollow.set(0);
+        result = tarFiles.cleanup(context);
+        assertTrue(result.getReclaimedSegmentIds().isEmpty());
+        assertEquals(0, mightFollow.get());
+    }
 }
@@ -45,6 +45,22 @@ public class SegmentNodeStoreServiceTest {
             .withIntegerType()
             .withValue("256")
             .check());
+        assertTrue(cd.hasProperty("segmentCache.offHeapSize")
+            .withIntegerType()
+            .withValue("0")
+            .check());
+        assertTrue(cd.hasProperty("segmentCache.prefetchThreads")
+            .withIntegerType()
+            .withValue("0")
+            .check());
+        assertTrue(cd.hasProperty("segmentCache.snapshotInterval")
+            .withIntegerType()
+            .withValue("0")
+            .check());
+        assertTrue(cd.hasProperty("segmentCache.warmUpBandwidth")
+            .withIntegerType()
+            .withValue("16")
+            .check());
         assertTrue(cd.hasProperty("stringCache.size")
             .withIntegerType()
             .withValue("256")
@@ -65,6 +81,14 @@ public class SegmentNodeStoreServiceTest {
             .withIntegerType()
             .withValue("1048576")
             .check());
+        assertTrue(cd.hasProperty("nodeDeduplicationCache.offHeap")
+            .withBooleanType()
+            .withValue("false")
+            .check());
+        assertTrue(cd.hasProperty("deduplicationIndex.size")
+            .withIntegerType()
+            .withValue("0")
+            .check());
         assertTrue(cd.hasProperty("pauseCompaction")
             .withBooleanType()
             .withValue("false")
@@ -117,6 +141,14 @@ public class SegmentNodeStoreServiceTest {
             .withLongType()
             .withValue("43200")
             .check());
+        assertTrue(cd.hasProperty("commit.optimistic")
+            .withBooleanType()
+            .withValue("false")
+            .check());
+        assertTrue(cd.hasProperty("commit.groupCommit")
+            .withBooleanType()
+            .withValue("false")
+            .check());
         assertTrue(cd.hasReference("blobStore")
             .withInterface("org.apache.jackrabbit.oak.spi.blob.BlobStore")
             .withOptionalUnaryCardinality()
@@ -163,6 +195,22 @@ public class SegmentNodeStoreServiceTest {
             .withIntegerType()
             .withDefaultValue("256")
             .check());
+        assertTrue(ocd.hasAttributeDefinition("segmentCache.offHeapSize")
+            .withIntegerType()
+            .withDefaultValue("0")
+            .check());
+        assertTrue(ocd.hasAttributeDefinition("segmentCache.prefetchThreads")
+            .withIntegerType()
+            .withDefaultValue("0")
+            .check());
+        assertTrue(ocd.hasAttributeDefinition("segmentCache.snapshotInterval")
+            .withIntegerType()
+            .withDefaultValue("0")
+            .check());
+        assertTrue(ocd.hasAttributeDefinition("segmentCache.warmUpBandwidth")
+            .withIntegerType()
+            .withDefaultValue("16")
+            .check());
         assertTrue(ocd.hasAttributeDefinition("stringCache.size")
             .withIntegerType()
             .withDefaultValue("256")
@@ -183,6 +231,14 @@ public class SegmentNodeStoreServiceTest {
             .withIntegerType()
             .withDefaultValue("1048576")
             .check());
+        assertTrue(ocd.hasAttributeDefinition("nodeDeduplicationCache.offHeap")
+            .withBooleanType()
+            .withDefaultValue("false")
+            .check());
+        assertTrue(ocd.hasAttributeDefinition("deduplicationIndex.size")
+            .withIntegerType()
+            .withDefaultValue("0")
+            .check());
         assertTrue(ocd.hasAttributeDefinition("pauseCompaction")
             .withBooleanType()
             .withDefaultValue("false")
@@ -238,6 +294,14 @@ public class SegmentNodeStoreServiceTest {
             .withLongType()
             .withDefaultValue("43200")
             .check());
+        assertTrue(ocd.hasAttributeDefinition("commit.optimistic")
+            .withBooleanType()
+            .withDefaultValue("false")
+            .check());
+        assertTrue(ocd.hasAttributeDefinition("commit.groupCommit")
+            .withBooleanType()
+            .withDefaultValue("false")
+            .check());
     }
 
 }
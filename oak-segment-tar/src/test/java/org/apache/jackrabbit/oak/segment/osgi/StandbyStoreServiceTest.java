@@ -65,6 +65,10 @@ public class StandbyStoreServiceTest {
             .withBooleanType()
             .withValue("true")
             .check());
+        assertTrue(cd.hasProperty("standby.segmentwindow")
+            .withIntegerType()
+            .withValue("1")
+            .check());
         assertTrue(cd.hasReference("storeProvider")
             .withInterface("org.apache.jackrabbit.oak.segment.SegmentStoreProvider")
             .withMandatoryUnaryCardinality()
@@ -116,6 +120,10 @@ public class StandbyStoreServiceTest {
             .withBooleanType()
             .withDefaultValue("true")
             .check());
+        assertTrue(ocd.hasAttributeDefinition("standby.segmentwindow")
+            .withIntegerType()
+            .withDefaultValue("1")
+            .check());
         assertTrue(ocd.hasAttributeDefinition("primary.allowed-client-ip-ranges")
             .withStringType()
             .withCardinality("2147483647")
@@ -21,7 +21,10 @@ package org.apache.jackrabbit.oak.segment.scheduler;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.List;
 import java.util.Random;
@@ -30,6 +33,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.segment.RecordId;
@@ -37,6 +41,7 @@ import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -108,6 +113,71 @@ public class LockBasedSchedulerTest {
         }
     }
 
+    @Test
+    public void testGroupCommit() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        LockBasedScheduler scheduler = LockBasedScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .groupCommit(true)
+                .build();
+
+        ExecutorService executorService = newFixedThreadPool(10);
+        AtomicInteger count = new AtomicInteger();
+
+        try {
+            Callable<PropertyState> commitTask = () -> {
+                String property = "prop" + count.incrementAndGet();
+                Commit commit = createCommit(scheduler, property, "value");
+                SegmentNodeState result = (SegmentNodeState) scheduler.schedule(commit);
+                return result.getProperty(property);
+            };
+
+            List<Future<PropertyState>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                results.add(executorService.submit(commitTask));
+            }
+
+            for (Future<PropertyState> result : results) {
+                assertNotNull(result.get());
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(root.hasProperty("prop" + i));
+        }
+    }
+
+    @Test
+    public void testGroupCommitWithFailingCommit() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        LockBasedScheduler scheduler = LockBasedScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .groupCommit(true)
+                .build();
+
+        NodeBuilder builder = getRoot(scheduler).builder();
+        builder.setProperty("failing", "value");
+        CommitHook failingHook = (before, after, info) -> {
+            throw new CommitFailedException("Test", 1, "failing commit");
+        };
+
+        try {
+            scheduler.schedule(new Commit(builder, failingHook, CommitInfo.EMPTY));
+            fail("Expected CommitFailedException");
+        } catch (CommitFailedException e) {
+            assertTrue(e.isOfType("Test"));
+        }
+
+        scheduler.schedule(createCommit(scheduler, "succeeding", "value"));
+
+        NodeState root = getRoot(scheduler);
+        assertFalse(root.hasProperty("failing"));
+        assertTrue(root.hasProperty("succeeding"));
+    }
+
     private Commit createCommit(final Scheduler scheduler, final String property, String value) {
         NodeBuilder a = getRoot(scheduler).builder();
         a.setProperty(property, value);
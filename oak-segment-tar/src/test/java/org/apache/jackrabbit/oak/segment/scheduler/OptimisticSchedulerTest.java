@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.jackrabbit.oak.api.Type.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.Test;
+
+public class OptimisticSchedulerTest {
+
+    private static NodeState getRoot(Scheduler scheduler) {
+        return scheduler.getHeadNodeState().getChildNode("root");
+    }
+
+    private static Commit createCommit(Scheduler scheduler, String property, String value) {
+        NodeBuilder builder = getRoot(scheduler).builder();
+        builder.setProperty(property, value);
+        return new Commit(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    @Test
+    public void concurrentCommitsAreNotLost() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        OptimisticScheduler scheduler = OptimisticScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .build();
+
+        ExecutorService executorService = newFixedThreadPool(10);
+        AtomicInteger count = new AtomicInteger();
+
+        try {
+            Callable<PropertyState> commitTask = () -> {
+                String property = "prop" + count.incrementAndGet();
+                Commit commit = createCommit(scheduler, property, "value");
+                SegmentNodeState result = (SegmentNodeState) scheduler.schedule(commit);
+                return result.getProperty(property);
+            };
+
+            List<Future<PropertyState>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                results.add(executorService.submit(commitTask));
+            }
+
+            for (Future<PropertyState> result : results) {
+                assertNotNull(result.get());
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(root.hasProperty("prop" + i));
+        }
+    }
+
+    @Test
+    public void commitIsRebasedOnConcurrentChange() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        OptimisticScheduler scheduler = OptimisticScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .withMaxRetries(0)
+                .build();
+
+        Commit first = createCommit(scheduler, "a", "1");
+        Commit second = createCommit(scheduler, "b", "2");
+
+        scheduler.schedule(first);
+        NodeState root = scheduler.schedule(second);
+
+        assertEquals("1", root.getProperty("a").getValue(STRING));
+        assertEquals("2", root.getProperty("b").getValue(STRING));
+    }
+
+    @Test
+    public void commitIsRetriedOptimisticallyOnConcurrentChange() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        OptimisticScheduler scheduler = OptimisticScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .withMaxRetries(2)
+                .build();
+
+        ExecutorService executorService = newSingleThreadExecutor();
+        AtomicInteger applied = new AtomicInteger();
+
+        try {
+            NodeBuilder builder = getRoot(scheduler).builder();
+            builder.setProperty("a", "1");
+            Commit commit = new Commit(builder, (before, after, info) -> {
+                if (applied.incrementAndGet() == 1) {
+                    // Change the head from another thread while this commit is
+                    // applied. This would time out if the hook ran while holding
+                    // the commit lock.
+                    try {
+                        executorService.submit(() -> scheduler.schedule(createCommit(scheduler, "b", "2")))
+                                .get(10, SECONDS);
+                    } catch (Exception e) {
+                        throw new CommitFailedException("Segment", 0, "Concurrent commit failed", e);
+                    }
+                }
+                return after;
+            }, CommitInfo.EMPTY);
+
+            NodeState root = scheduler.schedule(commit);
+
+            // The first attempt lost the race against the concurrent commit and the
+            // first retry succeeded. Falling back to the commit lock would only have
+            // happened after a second failed attempt, applying the commit a third time.
+            assertEquals(2, applied.get());
+            assertEquals("1", root.getProperty("a").getValue(STRING));
+            assertEquals("2", root.getProperty("b").getValue(STRING));
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        assertEquals("1", root.getProperty("a").getValue(STRING));
+        assertEquals("2", root.getProperty("b").getValue(STRING));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.oak.segment.spi.persistence.persistentcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdmissionFilterTest {
+
+    @Test
+    public void testFrequency() {
+        AdmissionFilter filter = new AdmissionFilter(1024, 2);
+        assertEquals(0, filter.frequency(1, 1));
+
+        filter.record(1, 1);
+        assertEquals(1, filter.frequency(1, 1));
+        assertFalse(filter.admit(1, 1));
+
+        filter.record(1, 1);
+        assertEquals(2, filter.frequency(1, 1));
+        assertTrue(filter.admit(1, 1));
+        assertFalse(filter.admit(2, 2));
+    }
+
+    @Test
+    public void testFrequencySaturates() {
+        AdmissionFilter filter = new AdmissionFilter(1024, 2);
+        for (int i = 0; i < 100; i++) {
+            filter.record(1, 1);
+        }
+        assertEquals(15, filter.frequency(1, 1));
+    }
+
+    @Test
+    public void testAdmitAgainstVictim() {
+        AdmissionFilter filter = new AdmissionFilter(1024, 1);
+        filter.record(1, 1);
+        filter.record(1, 1);
+        filter.record(2, 2);
+
+        assertTrue(filter.admit(1, 1, 2, 2));
+        assertFalse(filter.admit(2, 2, 1, 1));
+        assertFalse(filter.admit(3, 3, 2, 2));
+    }
+
+    @Test
+    public void testAging() {
+        AdmissionFilter filter = new AdmissionFilter(1024, 2);
+        for (int i = 0; i < 8; i++) {
+            filter.record(1, 1);
+        }
+        assertEquals(8, filter.frequency(1, 1));
+
+        // The counters are halved after 10 * 1024 reads
+        for (int i = 8; i < 10 * 1024; i++) {
+            filter.record(i, i);
+        }
+        assertTrue(filter.frequency(1, 1) < 8);
+    }
+
+}
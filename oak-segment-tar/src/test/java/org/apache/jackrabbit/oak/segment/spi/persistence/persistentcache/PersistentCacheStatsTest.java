@@ -21,6 +21,7 @@ import org.apache.jackrabbit.oak.commons.Buffer;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -166,6 +167,30 @@ public class PersistentCacheStatsTest {
         cache1.close();
     }
 
+    @Test
+    public void testAdmissionFilter() {
+        AbstractPersistentCache cache = new PersistentCacheImpl();
+        cache.setAdmissionFilter(new AdmissionFilter(1024, 2));
+
+        //segment read once is not admitted
+        Buffer segment = cache.readSegment(1, 1, () -> Buffer.wrap(new byte[]{1}));
+        assertNotNull(segment);
+        assertFalse(cache.containsSegment(1, 1));
+        assertEquals(1, cache.segmentCacheStats.getAdmissionRejectCount());
+
+        //segment read twice is admitted
+        segment = cache.readSegment(1, 1, () -> Buffer.wrap(new byte[]{1}));
+        assertNotNull(segment);
+        assertTrue(cache.containsSegment(1, 1));
+        assertEquals(1, cache.segmentCacheStats.getAdmissionRejectCount());
+        assertEquals(2, cache.getCacheStats().getMissCount());
+
+        cache.readSegment(1, 1, () -> null);
+        assertEquals(1, cache.getCacheStats().getHitCount());
+
+        cache.close();
+    }
+
     class PersistentCacheImpl extends AbstractPersistentCache {
         HashMap<UUID, Buffer> segments = new HashMap<>();
 
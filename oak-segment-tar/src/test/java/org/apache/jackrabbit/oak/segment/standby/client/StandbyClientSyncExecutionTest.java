@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StandbyClientSyncExecutionTest {
+
+    private static final Random RANDOM = new Random(42);
+
+    private FileStore store;
+
+    private final List<UUID> written = new ArrayList<>();
+
+    private final List<List<String>> requests = new ArrayList<>();
+
+    /**
+     * Segments requested and not yet answered, the most recently requested
+     * segment first.
+     */
+    private final Deque<String> outstanding = new LinkedList<>();
+
+    private int maxOutstanding;
+
+    private StandbyClient client;
+
+    private static UUID dataSegmentId() {
+        return new UUID(RANDOM.nextLong(), (RANDOM.nextLong() & 0x0FFFFFFFFFFFFFFFL) | 0xA000000000000000L);
+    }
+
+    private static UUID bulkSegmentId() {
+        return new UUID(RANDOM.nextLong(), (RANDOM.nextLong() & 0x0FFFFFFFFFFFFFFFL) | 0xB000000000000000L);
+    }
+
+    private static List<UUID> segmentIds(int bulk, int data) {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < bulk; i++) {
+            ids.add(bulkSegmentId());
+        }
+        for (int i = 0; i < data; i++) {
+            ids.add(dataSegmentId());
+        }
+        return ids;
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        store = mock(FileStore.class);
+        SegmentIdProvider idProvider = mock(SegmentIdProvider.class);
+        when(idProvider.newSegmentId(anyLong(), anyLong())).thenAnswer(invocation ->
+                new SegmentId(store, invocation.<Long>getArgument(0), invocation.<Long>getArgument(1)));
+        when(store.getSegmentIdProvider()).thenReturn(idProvider);
+        doAnswer(invocation -> {
+            SegmentId id = invocation.getArgument(0);
+            written.add(id.asUUID());
+            return null;
+        }).when(store).writeSegment(any(SegmentId.class), any(byte[].class), anyInt(), anyInt());
+
+        client = mock(StandbyClient.class);
+        doAnswer(invocation -> {
+            List<String> ids = new ArrayList<>((List<String>) invocation.getArgument(0));
+            requests.add(ids);
+            for (String id : ids) {
+                outstanding.addFirst(id);
+            }
+            maxOutstanding = Math.max(maxOutstanding, outstanding.size());
+            return null;
+        }).when(client).requestSegments(anyList());
+        // Answer the most recently requested segment first, i.e. out of order
+        when(client.receiveSegment()).thenAnswer(invocation -> {
+            String id = outstanding.pollFirst();
+            if (id == null) {
+                return null;
+            }
+            return new GetSegmentResponse("client", id, id.getBytes());
+        });
+    }
+
+    private StandbyClientSyncExecution newExecution(int segmentTransferWindow) {
+        return new StandbyClientSyncExecution(store, () -> true, segmentTransferWindow);
+    }
+
+    @Test
+    public void segmentsArePersistedInOrder() throws Exception {
+        List<UUID> ids = segmentIds(3, 20);
+        StandbyClientSyncExecution execution = newExecution(4);
+        execution.copySegmentsFromPrimary(client, ids);
+
+        assertEquals(ids, written);
+        assertEquals(4, maxOutstanding);
+        assertTrue(requests.size() > 1);
+        assertEquals(ids.size(), execution.getTransferredSegmentCount());
+        assertEquals(0, execution.getInFlightSegmentCount());
+    }
+
+    @Test
+    public void windowOfOneRequestsSegmentsOneAtATime() throws Exception {
+        List<UUID> ids = segmentIds(2, 5);
+        newExecution(1).copySegmentsFromPrimary(client, ids);
+
+        assertEquals(ids, written);
+        assertEquals(1, maxOutstanding);
+        assertEquals(ids.size(), requests.size());
+        for (List<String> request : requests) {
+            assertEquals(1, request.size());
+        }
+    }
+
+    @Test
+    public void unexpectedSegmentsAreIgnored() throws Exception {
+        List<UUID> ids = segmentIds(1, 4);
+        String unexpected = dataSegmentId().toString();
+        when(client.receiveSegment())
+                .thenReturn(new GetSegmentResponse("client", unexpected, new byte[0]))
+                .thenAnswer(invocation -> {
+                    String id = outstanding.pollFirst();
+                    return id == null ? null : new GetSegmentResponse("client", id, id.getBytes());
+                });
+
+        newExecution(2).copySegmentsFromPrimary(client, ids);
+
+        assertEquals(ids, written);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingSegmentFailsTransfer() throws Exception {
+        List<UUID> ids = segmentIds(0, 4);
+        when(client.receiveSegment()).thenReturn(null);
+
+        try {
+            newExecution(4).copySegmentsFromPrimary(client, ids);
+        } finally {
+            assertTrue(written.isEmpty());
+        }
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -51,6 +52,24 @@ public class RequestDecoderTest {
         assertEquals("segmentId", request.getSegmentId());
     }
 
+    @Test
+    public void shouldDecodeValidGetSegmentsRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetSegmentsRequest("clientId", asList("segmentId1", "segmentId2"), false));
+        GetSegmentsRequest request = (GetSegmentsRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+        assertEquals(asList("segmentId1", "segmentId2"), request.getSegmentIds());
+    }
+
+    @Test
+    public void shouldDecodeValidGetReferencesBatchRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetReferencesBatchRequest("clientId", asList("segmentId1", "segmentId2"), false));
+        GetReferencesBatchRequest request = (GetReferencesBatchRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+        assertEquals(asList("segmentId1", "segmentId2"), request.getSegmentIds());
+    }
+
     @Test
     public void shouldDecodeValidGetReferencesRequests() throws Exception {
         EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
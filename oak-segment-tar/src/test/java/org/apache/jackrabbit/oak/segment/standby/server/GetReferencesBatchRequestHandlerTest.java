@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesBatchRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.junit.Test;
+
+public class GetReferencesBatchRequestHandlerTest {
+
+    @Test
+    public void successfulReadsShouldGenerateResponsesInOrder() throws Exception {
+        StandbyReferencesReader reader = mock(StandbyReferencesReader.class);
+        when(reader.readReferences("segmentId1")).thenReturn(asList("a", "b"));
+        when(reader.readReferences("segmentId2")).thenReturn(null);
+        when(reader.readReferences("segmentId3")).thenReturn(asList("c"));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetReferencesBatchRequestHandler(reader));
+        channel.writeInbound(new GetReferencesBatchRequest("clientId", asList("segmentId1", "segmentId2", "segmentId3")));
+
+        GetReferencesResponse response = (GetReferencesResponse) channel.readOutbound();
+        assertEquals("clientId", response.getClientId());
+        assertEquals("segmentId1", response.getSegmentId());
+        assertEquals(asList("a", "b"), response.getReferences());
+
+        response = (GetReferencesResponse) channel.readOutbound();
+        assertEquals("segmentId3", response.getSegmentId());
+        assertEquals(asList("c"), response.getReferences());
+
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void unrecognizedMessagesShouldBeIgnored() throws Exception {
+        StandbyReferencesReader reader = mock(StandbyReferencesReader.class);
+        EmbeddedChannel channel = new EmbeddedChannel(new GetReferencesBatchRequestHandler(reader));
+        channel.writeInbound("unrecognized");
+        assertEquals("unrecognized", channel.readInbound());
+    }
+
+}
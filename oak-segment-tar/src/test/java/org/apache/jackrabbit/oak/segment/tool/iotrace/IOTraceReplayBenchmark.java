@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.tool.iotrace;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplay.newIOTraceReplay;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTracer.newIOTracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Replays an IO trace with different segment cache sizes, with and without
+ * memory mapping and with different numbers of threads. Pass the path to a
+ * segment store and to an IO trace collected from it to replay a production
+ * trace. Otherwise a repository is generated and a random access trace is
+ * collected from it.
+ */
+public class IOTraceReplayBenchmark {
+
+    private static final int NODES = 100000;
+
+    private static final int PATHS = 10000;
+
+    private static final int[] SEGMENT_CACHE_SIZES = {0, 16, 64, 256};
+
+    private static final int[] THREADS = {1, 4};
+
+    public static void main(String... args) throws Exception {
+        if (args.length == 2) {
+            run(new File(args[0]), new File(args[1]));
+            return;
+        }
+
+        File directory = Files.createTempDirectory("iotrace-replay-benchmark").toFile();
+        try {
+            File store = new File(directory, "store");
+            File trace = new File(directory, "iotrace.csv");
+            List<String> paths = createRepository(store);
+            try (Writer out = Files.newBufferedWriter(trace.toPath())) {
+                IOTracer ioTracer = newIOTracer(monitor -> newFileStore(store, false, 0, monitor), out,
+                        RandomAccessTrace.CONTEXT_SPEC);
+                ioTracer.collectTrace(new RandomAccessTrace(paths, 1, PATHS, ioTracer::setContext));
+            }
+            run(store, trace);
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private static List<String> createRepository(File directory) throws Exception {
+        Random random = new Random(1);
+        List<String> paths = new ArrayList<>();
+        try (FileStore fileStore = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            NodeBuilder root = nodeStore.getRoot().builder();
+            for (int i = 0; i < NODES; i++) {
+                String folder = "folder-" + i / 1000;
+                String name = "node-" + i;
+                NodeBuilder node = root.child("content").child(folder).child(name);
+                node.setProperty("jcr:primaryType", "nt:unstructured");
+                node.setProperty("jcr:title", "Title of node " + i);
+                node.setProperty("count", random.nextInt(1000));
+                paths.add("/root/content/" + folder + "/" + name + "/jcr:title");
+                if (i % 10000 == 0) {
+                    nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                    root = nodeStore.getRoot().builder();
+                }
+            }
+            nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            fileStore.flush();
+        }
+        return paths;
+    }
+
+    private static FileStore newFileStore(File directory, boolean mmap, int segmentCacheSize,
+                                          IOMonitor monitor) {
+        try {
+            return fileStoreBuilder(directory)
+                    .withMemoryMapping(mmap)
+                    .withSegmentCacheSize(segmentCacheSize)
+                    .withIOMonitor(monitor)
+                    .build();
+        } catch (InvalidFileStoreVersionException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void run(File store, File trace) throws Exception {
+        for (boolean mmap : new boolean[] {true, false}) {
+            for (int segmentCacheSize : SEGMENT_CACHE_SIZES) {
+                for (int threads : THREADS) {
+                    try (Reader in = Files.newBufferedReader(trace.toPath())) {
+                        IOTraceReplay.Result result = newIOTraceReplay(
+                                monitor -> newFileStore(store, mmap, segmentCacheSize, monitor), threads)
+                                .replay(in);
+                        System.out.printf("mmap=%-5b cache=%4d MB threads=%d: %s%n",
+                                mmap, segmentCacheSize, threads, result);
+                    }
+                }
+            }
+        }
+    }
+
+}
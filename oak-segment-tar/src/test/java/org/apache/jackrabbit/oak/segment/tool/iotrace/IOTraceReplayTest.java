@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.tool.iotrace;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplay.newIOTraceReplay;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplay.parseSegmentId;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTracer.newIOTracer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplay.Result;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IOTraceReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Before
+    public void setup() throws IOException, InvalidFileStoreVersionException {
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).build()) {
+            SegmentNodeState currentHead = fileStore.getHead();
+            SegmentNodeBuilder root = currentHead.builder();
+            NodeBuilder builder = root.setChildNode("1a");
+            for (int i = 0; i < 10; i++) {
+                builder.setChildNode("2" + i).setProperty("p", i);
+            }
+            root.setChildNode("1b");
+            SegmentNodeState newHead = root.getNodeState();
+            fileStore.getRevisions().setHead(currentHead.getRecordId(), newHead.getRecordId());
+        }
+    }
+
+    @NotNull
+    private FileStore createFileStore(IOMonitor ioMonitor, int segmentCacheSize) {
+        try {
+            return fileStoreBuilder(folder.getRoot())
+                    .withSegmentCacheSize(segmentCacheSize)
+                    .withIOMonitor(ioMonitor).build();
+        } catch (InvalidFileStoreVersionException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull
+    private String collectTrace() throws IOException {
+        try (StringWriter out = new StringWriter()) {
+            IOTracer ioTracer = newIOTracer(monitor -> createFileStore(monitor, 0), out, DepthFirstTrace.CONTEXT_SPEC);
+            ioTracer.collectTrace(new DepthFirstTrace(3, "/", ioTracer::setContext));
+            return out.toString();
+        }
+    }
+
+    @Test
+    public void parseSegmentIds() {
+        UUID id = UUID.randomUUID();
+        assertNull(parseSegmentId("timestamp,file,segmentId,length,elapsed"));
+        assertEquals(id, parseSegmentId("1522147945084,data00000a.tar," + id + ",181328,171849"));
+        assertEquals(id, parseSegmentId("27.03.2018 12:52:25.084 *DEBUG* [main] iotrace 1522147945084,data00000a.tar," + id + ",181328,171849,/a/b"));
+    }
+
+    @Test
+    public void replayWithoutCache() throws Exception {
+        String trace = collectTrace();
+        long entries = trace.split("\n").length - 1;
+        assertTrue(entries > 0);
+
+        Result result = newIOTraceReplay(monitor -> createFileStore(monitor, 0), 1)
+                .replay(new StringReader(trace));
+        assertEquals(entries, result.getReads());
+        assertEquals(0, result.getMissingSegments());
+        assertEquals(0, result.getFailedReads());
+        assertEquals(entries, result.getDiskReads());
+        assertTrue(result.getLatency(50) <= result.getLatency(100));
+    }
+
+    @Test
+    public void replayWithCache() throws Exception {
+        String trace = collectTrace();
+        long entries = trace.split("\n").length - 1;
+
+        Result result = newIOTraceReplay(monitor -> createFileStore(monitor, 16), 4)
+                .replay(new StringReader(trace));
+        assertEquals(entries, result.getReads());
+        assertTrue(entries > 1);
+        assertTrue(result.getCacheHits() > 0);
+        assertTrue(result.getDiskReads() < entries);
+    }
+
+    @Test
+    public void replayMissingSegment() throws Exception {
+        String trace = "timestamp,file,segmentId,length,elapsed\n" +
+                "1522147945084,data00000a.tar," + new UUID(42, 42) + ",181328,171849\n";
+
+        Result result = newIOTraceReplay(monitor -> createFileStore(monitor, 16), 1)
+                .replay(new StringReader(trace));
+        assertEquals(1, result.getReads());
+        assertEquals(1, result.getMissingSegments());
+        assertEquals(0, result.getDiskReads());
+    }
+
+}
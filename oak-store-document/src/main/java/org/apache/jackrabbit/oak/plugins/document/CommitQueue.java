@@ -19,19 +19,20 @@ package org.apache.jackrabbit.oak.plugins.document;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-
-import com.google.common.collect.Maps;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
@@ -41,6 +42,13 @@ import org.slf4j.LoggerFactory;
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * The commits are kept in a concurrent skip list ordered by revision. Only
+ * the creation of a new revision and its entry in the queue is serialized,
+ * which guarantees that entries are always added at the tail of the queue.
+ * A commit that is done waits until it is the head of the queue by parking
+ * its thread. A commit that leaves the queue unparks the thread of the new
+ * head, if there is one.
  */
 final class CommitQueue {
 
@@ -51,12 +59,20 @@ final class CommitQueue {
      */
     static final long DEFAULT_SUSPEND_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
 
-    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+    private final ConcurrentNavigableMap<Revision, Entry> commits =
+            new ConcurrentSkipListMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+
+    /**
+     * The number of commits in {@link #commits}. Tracked separately, because
+     * the size of a concurrent skip list is expensive to compute.
+     */
+    private final AtomicInteger numCommits = new AtomicInteger();
 
     /**
      * Map of currently suspended commits until a given Revision is visible.
      */
-    private final Map<Semaphore, SuspendedCommit> suspendedCommits = Maps.newIdentityHashMap();
+    private final ConcurrentMap<Semaphore, SuspendedCommit> suspendedCommits =
+            new ConcurrentHashMap<Semaphore, SuspendedCommit>();
 
     private final RevisionContext context;
 
@@ -86,6 +102,9 @@ final class CommitQueue {
         checkArgument(num > 0);
         SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
         Revision rev = null;
+        // new revisions must be added to the queue in the order they are
+        // created, otherwise a later revision may become the head of the
+        // queue before an earlier one is added
         synchronized (this) {
             for (int i = 0; i < num; i++) {
                 rev = context.newRevision();
@@ -93,6 +112,7 @@ final class CommitQueue {
             }
             commits.put(rev, new Entry(rev));
         }
+        numCommits.incrementAndGet();
         LOG.debug("created commit {}", rev);
         return revs;
     }
@@ -108,9 +128,7 @@ final class CommitQueue {
     }
 
     boolean contains(@NotNull Revision revision) {
-        synchronized (this) {
-            return commits.containsKey(checkNotNull(revision));
-        }
+        return commits.containsKey(checkNotNull(revision));
     }
 
     /**
@@ -149,27 +167,30 @@ final class CommitQueue {
      */
     void suspendUntilAll(@NotNull Set<Revision> revisions, long suspendTimeoutMillis) 
             throws InterruptedException {
-        Semaphore s;
-        int addedRevisions;
-        synchronized (suspendedCommits) {
-            RevisionVector headRevision = context.getHeadRevision();
-            Set<Revision> afterHead = new HashSet<Revision>(revisions.size());
-            for (Revision r : revisions) {
-                if (headRevision.isRevisionNewer(r)) {
-                    afterHead.add(r);
-                }
+        long start = System.nanoTime();
+        RevisionVector headRevision = context.getHeadRevision();
+        Set<Revision> afterHead = Collections.newSetFromMap(
+                new ConcurrentHashMap<Revision, Boolean>(revisions.size()));
+        for (Revision r : revisions) {
+            if (headRevision.isRevisionNewer(r)) {
+                afterHead.add(r);
             }
-
-            s = new Semaphore(0);
-            suspendedCommits.put(s, new SuspendedCommit(s, afterHead));
-            addedRevisions = afterHead.size();
         }
+
+        Semaphore s = new Semaphore(0);
+        SuspendedCommit suspended = new SuspendedCommit(s, afterHead);
+        int addedRevisions = afterHead.size();
+        suspendedCommits.put(s, suspended);
         try {
+            // the head revision may have changed before the suspended
+            // commit was registered and the change was not seen by
+            // notifySuspendedCommits()
+            suspended.removeRevisionsVisibleFrom(context.getHeadRevision());
             s.tryAcquire(addedRevisions, suspendTimeoutMillis, TimeUnit.MILLISECONDS);
         } finally {
-            synchronized (suspendedCommits) {
-                suspendedCommits.remove(s);
-            }
+            suspendedCommits.remove(s);
+            statsCollector.doneSuspendUntilAll(
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
         }
     }
 
@@ -185,9 +206,7 @@ final class CommitQueue {
      * @return the number of suspended threads on this commit queue.
      */
     int numSuspendedThreads() {
-        synchronized (suspendedCommits) {
-            return suspendedCommits.size();
-        }
+        return suspendedCommits.size();
     }
 
     /**
@@ -208,85 +227,110 @@ final class CommitQueue {
     //------------------------< internal >--------------------------------------
 
     private void notifySuspendedCommits() {
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            RevisionVector headRevision = context.getHeadRevision();
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        RevisionVector headRevision = context.getHeadRevision();
+        Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
+        while (it.hasNext()) {
+            SuspendedCommit suspended = it.next();
+            if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
+                it.remove();
             }
         }
     }
 
     private void notifySuspendedCommits(@NotNull Revision revision) {
         checkNotNull(revision);
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
+        while (it.hasNext()) {
+            SuspendedCommit suspended = it.next();
+            if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
+                it.remove();
             }
         }
     }
 
     private void removeCommit(@NotNull Revision rev) {
         // simply remove and notify next head if any
-        synchronized (this) {
-            boolean wasHead = commits.firstKey().equals(rev);
-            commits.remove(rev);
-            LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
-                notifyHead();
-            }
+        boolean wasHead = isHead(rev);
+        if (commits.remove(rev) != null) {
+            numCommits.decrementAndGet();
         }
+        LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
+        // always notify the head, the commit may have become
+        // the head after the check above
+        notifyHead();
     }
 
     private void waitUntilHeadOfQueue(@NotNull Revision rev,
                                       @NotNull Callback c) {
         assert !commits.isEmpty();
 
-        boolean isHead;
-        Entry commitEntry;
-        synchronized (this) {
-            isHead = commits.firstKey().equals(rev);
-            commitEntry = commits.get(rev);
-        }
-        if (isHead) {
+        Entry commitEntry = commits.get(rev);
+        statsCollector.doneCommitQueued(numCommits.get());
+        if (isHead(rev)) {
             statsCollector.doneWaitUntilHead(0);
         } else {
             LOG.debug("not head: {}, waiting...", rev);
-            statsCollector.doneWaitUntilHead(commitEntry.await());
+            statsCollector.doneWaitUntilHead(await(commitEntry));
         }
         try {
             c.headOfQueue(rev);
         } finally {
-            synchronized (this) {
-                commits.remove(rev);
-                try {
-                    LOG.debug("removed {}, head is now {}", rev, commits.isEmpty() ? null : commits.firstKey());
-                } finally {
-                    // notify next if there is any
-                    notifyHead();
+            if (commits.remove(rev) != null) {
+                numCommits.decrementAndGet();
+            }
+            try {
+                if (LOG.isDebugEnabled()) {
+                    Map.Entry<Revision, Entry> head = commits.firstEntry();
+                    LOG.debug("removed {}, head is now {}", rev, head == null ? null : head.getKey());
                 }
+            } finally {
+                // notify next if there is any
+                notifyHead();
             }
         }
     }
 
+    private boolean isHead(@NotNull Revision rev) {
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        return head != null && head.getKey().equals(rev);
+    }
+
     private void notifyHead() {
-        if (!commits.isEmpty()) {
-            LOG.debug("release {}", commits.firstKey());
-            commits.get(commits.firstKey()).release();
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        if (head != null) {
+            LOG.debug("release {}", head.getKey());
+            head.getValue().release();
+        }
+    }
+
+    /**
+     * Wait until the given entry is the head of the queue.
+     *
+     * @return the number of microseconds this method waited.
+     */
+    private long await(@NotNull Entry entry) {
+        long start = System.nanoTime();
+        // publish the waiting thread before checking the head of the
+        // queue, so that either this thread sees the new head or the
+        // thread removing the previous head sees the waiting thread
+        entry.waiter = Thread.currentThread();
+        try {
+            LOG.debug("awaiting {}", entry.revision);
+            while (!isHead(entry.revision)) {
+                LockSupport.park(this);
+                // retry when interrupted
+                Thread.interrupted();
+            }
+        } finally {
+            entry.waiter = null;
         }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
     }
 
     /**
@@ -295,44 +339,28 @@ final class CommitQueue {
     private static final class Entry {
 
         /**
-         * The revision of the commit (used for debugging).
+         * The revision of the commit.
          */
         private final Revision revision;
 
         /**
-         * The latch. Initially set to 1, so that release() needs to be called
-         * once for await() to continue.
+         * The thread waiting for this entry to become the head of the queue
+         * or {@code null} if there is none.
          */
-        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Thread waiter;
 
         Entry(Revision revision) {
             this.revision = revision;
         }
 
         /**
-         * Release all threads that are waiting.
+         * Release the thread that is waiting, if there is one.
          */
         void release() {
-            latch.countDown();
-        }
-
-        /**
-         * Wait for the latch to be released.
-         *
-         * @return the number of microseconds this method waited.
-         */
-        long await() {
-            long start = System.nanoTime();
-            for (;;) {
-                try {
-                    LOG.debug("awaiting {}", revision);
-                    latch.await();
-                    break;
-                } catch (InterruptedException e) {
-                    // retry
-                }
+            Thread t = waiter;
+            if (t != null) {
+                LockSupport.unpark(t);
             }
-            return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
         }
     }
 
@@ -340,6 +368,10 @@ final class CommitQueue {
 
         private final Semaphore semaphore;
 
+        /**
+         * The revisions this commit waits for. Revisions are removed
+         * concurrently, but each of them releases the semaphore only once.
+         */
         private final Set<Revision> revisions;
 
         private SuspendedCommit(Semaphore semaphore, Set<Revision> revisions) {
@@ -348,11 +380,9 @@ final class CommitQueue {
         }
 
         private boolean removeRevisionsVisibleFrom(RevisionVector revision) {
-            Iterator<Revision> it = revisions.iterator();
             boolean removed = false;
-            while (it.hasNext()) {
-                if (!revision.isRevisionNewer(it.next())) {
-                    it.remove();
+            for (Revision r : revisions) {
+                if (!revision.isRevisionNewer(r) && revisions.remove(r)) {
                     semaphore.release();
                     removed = true;
                 }
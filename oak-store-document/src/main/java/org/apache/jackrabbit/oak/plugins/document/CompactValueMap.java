@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.commons.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * An immutable, compact representation of a sealed value map of a
+ * {@link NodeDocument}. Instead of a tree of map entries with a
+ * {@link Revision} object per key, the revisions are stored in sorted arrays
+ * of primitives and the {@link Revision} keys are only created when they are
+ * accessed. Short values are interned, because the same values (e.g. commit
+ * values or {@code true} in {@link NodeDocument#DELETED}) are repeated across
+ * many documents.
+ * <p>
+ * Only maps with non-branch revision keys, string values and a
+ * {@link StableRevisionComparator} ordering can be represented in this form,
+ * see {@link #compact(SortedMap)}.
+ */
+final class CompactValueMap extends AbstractMap<Revision, String>
+        implements SortedMap<Revision, String>, CacheValue {
+
+    /**
+     * Values up to this length are interned.
+     */
+    private static final int INTERN_MAX_LENGTH = 32;
+
+    private static final Interner<String> VALUES = Interners.newWeakInterner();
+
+    private final Comparator<? super Revision> comparator;
+
+    /**
+     * Whether the revisions are stored in reverse order.
+     */
+    private final boolean reverse;
+
+    private final long[] timestamps;
+
+    /**
+     * The counter in the upper and the cluster id in the lower 32 bits.
+     */
+    private final long[] counterAndClusterIds;
+
+    private final String[] values;
+
+    /**
+     * The range of this map within the arrays, which are shared with the
+     * map this view was created from.
+     */
+    private final int from, to;
+
+    private CompactValueMap(Comparator<? super Revision> comparator,
+                            long[] timestamps,
+                            long[] counterAndClusterIds,
+                            String[] values,
+                            int from, int to) {
+        this.comparator = comparator;
+        this.reverse = comparator == StableRevisionComparator.REVERSE;
+        this.timestamps = timestamps;
+        this.counterAndClusterIds = counterAndClusterIds;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Creates a compact copy of the given value map.
+     *
+     * @param map the map to copy.
+     * @return the compact copy or {@code null} if the map cannot be
+     *          represented in compact form.
+     */
+    @Nullable
+    static CompactValueMap compact(@NotNull SortedMap<?, ?> map) {
+        Comparator<?> c = map.comparator();
+        if (c != StableRevisionComparator.REVERSE
+                && c != StableRevisionComparator.INSTANCE) {
+            return null;
+        }
+        int size = map.size();
+        long[] timestamps = new long[size];
+        long[] counterAndClusterIds = new long[size];
+        String[] values = new String[size];
+        int i = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (!(key instanceof Revision)
+                    || ((Revision) key).isBranch()
+                    || (value != null && !(value instanceof String))) {
+                return null;
+            }
+            Revision r = (Revision) key;
+            timestamps[i] = r.getTimestamp();
+            counterAndClusterIds[i] = ((long) r.getCounter() << 32)
+                    | (r.getClusterId() & 0xFFFFFFFFL);
+            values[i] = intern((String) value);
+            i++;
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<? super Revision> comparator = (Comparator<? super Revision>) c;
+        return new CompactValueMap(comparator, timestamps,
+                counterAndClusterIds, values, 0, size);
+    }
+
+    //-----------------------------< CacheValue >-------------------------------
+
+    /**
+     * Estimates the memory used by the arrays and values of this map. The
+     * values are counted in full even when interned, because they may not be
+     * shared with any other map.
+     */
+    @Override
+    public int getMemory() {
+        int size = to - from;
+        // object header and fields
+        long memory = 48;
+        // three arrays with 16 bytes overhead each
+        memory += 48 + (long) size * (8 + 8 + 8);
+        for (int i = from; i < to; i++) {
+            String v = values[i];
+            if (v != null) {
+                memory += StringUtils.estimateMemoryUsage(v);
+            }
+        }
+        return (int) Math.min(memory, Integer.MAX_VALUE);
+    }
+
+    //------------------------------< SortedMap >-------------------------------
+
+    @Override
+    public Comparator<? super Revision> comparator() {
+        return comparator;
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<Revision, String> subMap(Revision fromKey, Revision toKey) {
+        if (comparator.compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return range(lowerBound(fromKey), lowerBound(toKey));
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<Revision, String> headMap(Revision toKey) {
+        return range(from, lowerBound(toKey));
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<Revision, String> tailMap(Revision fromKey) {
+        return range(lowerBound(fromKey), to);
+    }
+
+    @Override
+    public Revision firstKey() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return revisionAt(from);
+    }
+
+    @Override
+    public Revision lastKey() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return revisionAt(to - 1);
+    }
+
+    //--------------------------------< Map >-----------------------------------
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<Revision, String>> entrySet() {
+        return new AbstractSet<Entry<Revision, String>>() {
+            @NotNull
+            @Override
+            public Iterator<Entry<Revision, String>> iterator() {
+                return new Iterator<Entry<Revision, String>>() {
+                    private int next = from;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < to;
+                    }
+
+                    @Override
+                    public Entry<Revision, String> next() {
+                        if (next >= to) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = next++;
+                        return new SimpleImmutableEntry<Revision, String>(
+                                revisionAt(i), values[i]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    //------------------------------< internal >--------------------------------
+
+    @Nullable
+    private static String intern(@Nullable String value) {
+        if (value == null || value.length() > INTERN_MAX_LENGTH) {
+            return value;
+        }
+        return VALUES.intern(value);
+    }
+
+    private SortedMap<Revision, String> range(int fromIndex, int toIndex) {
+        if (fromIndex == from && toIndex == to) {
+            return this;
+        }
+        return new CompactValueMap(comparator, timestamps,
+                counterAndClusterIds, values, fromIndex, Math.max(fromIndex, toIndex));
+    }
+
+    private Revision revisionAt(int i) {
+        long cc = counterAndClusterIds[i];
+        return new Revision(timestamps[i], (int) (cc >>> 32), (int) cc);
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof Revision)) {
+            return -1;
+        }
+        Revision r = (Revision) key;
+        int i = lowerBound(r);
+        if (i < to && compareTo(r, i) == 0) {
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first entry that is greater or equal to the
+     *          given revision in the order of this map.
+     */
+    private int lowerBound(Revision r) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTo(r, mid) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the given revision with the revision at index {@code i} in the
+     * same way as the {@link #comparator()} of this map, but without creating
+     * a {@link Revision} object for the entry.
+     */
+    private int compareTo(Revision r, int i) {
+        long timestamp = timestamps[i];
+        long cc = counterAndClusterIds[i];
+        int counter = (int) (cc >>> 32);
+        int clusterId = (int) cc;
+        int comp;
+        if (r.getTimestamp() != timestamp) {
+            comp = r.getTimestamp() < timestamp ? -1 : 1;
+        } else if (r.getCounter() != counter) {
+            comp = r.getCounter() < counter ? -1 : 1;
+        } else if (r.getClusterId() != clusterId) {
+            comp = r.getClusterId() < clusterId ? -1 : 1;
+        } else {
+            // entries are never branch revisions, which sort
+            // before the trunk revision with the same time
+            comp = r.isBranch() ? -1 : 0;
+        }
+        return reverse ? -comp : comp;
+    }
+}
@@ -189,6 +189,15 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilde
                     "The default value is " + DocumentNodeStoreService.DEFAULT_RGC_DELAY_FACTOR)
     double versionGCDelayFactor() default DocumentNodeStoreService.DEFAULT_RGC_DELAY_FACTOR;
 
+    @AttributeDefinition(
+            name = "Parallelism for a Version GC run",
+            description = "The number of threads collecting deleted documents in parallel. " +
+                    "With a value greater than 1, a Version GC run processes shards of " +
+                    "its time interval concurrently and can resume from the completed " +
+                    "shards when it is canceled. The default value is " +
+                    DocumentNodeStoreService.DEFAULT_RGC_PARALLELISM)
+    int versionGCParallelism() default DocumentNodeStoreService.DEFAULT_RGC_PARALLELISM;
+
     @AttributeDefinition(
             name = "Blob GC Max Age (in secs)",
             description = "Blob Garbage Collector (GC) logic will only consider those blobs for GC which " +
@@ -46,6 +46,7 @@ import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -121,6 +122,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
 import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
@@ -134,7 +136,8 @@ import org.slf4j.LoggerFactory;
  * Implementation of a NodeStore on {@link DocumentStore}.
  */
 public final class DocumentNodeStore
-        implements NodeStore, RevisionContext, Observable, Clusterable, NodeStateDiffer {
+        implements NodeStore, RevisionContext, Observable, Clusterable, NodeStateDiffer,
+        PrefetchNodeStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(DocumentNodeStore.class);
 
@@ -1284,6 +1287,38 @@ public final class DocumentNodeStore
         }
     }
 
+    /**
+     * Reads the documents for the given paths that are not in the document
+     * cache yet with a single call to the {@link DocumentStore}. The node
+     * states are not computed here, because the node cache is keyed by the
+     * last revision of the parent, which is only known when the node is read.
+     * Reading the node later on is served from the document cache instead of
+     * causing a round trip to the backend per node.
+     *
+     * @param paths the paths of the nodes that will be read soon.
+     */
+    @Override
+    public void prefetch(@NotNull Iterable<String> paths) {
+        List<String> ids = new ArrayList<>();
+        for (String path : paths) {
+            String id = getIdFromPath(path);
+            if (store.getIfCached(Collection.NODES, id) == null) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        final long start = PERFLOG.start();
+        try {
+            store.findAll(Collection.NODES, ids, Integer.MAX_VALUE);
+        } catch (DocumentStoreException e) {
+            // the nodes are read again individually
+            LOG.debug("Prefetching {} documents failed", ids.size(), e);
+        }
+        PERFLOG.end(start, 1, "prefetch: documents={}", ids.size());
+    }
+
     @NotNull
     DocumentNodeState.Children getChildren(@NotNull final AbstractDocumentNodeState parent,
                                            @NotNull final String name,
@@ -2505,42 +2540,49 @@ public final class DocumentNodeStore
         // phase2 contains main document updateOps.
         List<UpdateOp> splitOpsPhase2 = new ArrayList<>(initialCapacity);
         List<String> removeCandidates = new ArrayList<>(initialCapacity);
-        for (String id : splitCandidates.keySet()) {
-            removeCandidates.add(id);
-            NodeDocument doc = store.find(Collection.NODES, id);
-            if (doc == null) {
-                continue;
-            }
-            cleanCollisions(doc, collisionGarbageBatchSize);
-            Iterator<UpdateOp> it = doc.split(this, head, binarySize).iterator();
-            while(it.hasNext()) {
-                UpdateOp op = it.next();
-                Path path = doc.getPath();
-                // add an invalidation journal entry, unless the path
-                // already has a pending _lastRev update or an invalidation
-                // entry was already added in this backgroundSplit() call
-                if (unsavedLastRevisions.get(path) == null && !invalidatedPaths.contains(path)) {
-                    pathsToInvalidate.add(path);
+        // read the documents of the split candidates in batches
+        for (List<String> ids : partition(new ArrayList<>(splitCandidates.keySet()), getCreateOrUpdateBatchSize())) {
+            Map<String, NodeDocument> docs = new HashMap<>();
+            for (NodeDocument doc : store.findAll(Collection.NODES, ids, Integer.MAX_VALUE)) {
+                docs.put(doc.getId(), doc);
+            }
+            for (String id : ids) {
+                removeCandidates.add(id);
+                NodeDocument doc = docs.get(id);
+                if (doc == null) {
+                    continue;
                 }
-                // the last entry is the main document update
-                // (as per updated NodeDocument.split documentation).
-                if (it.hasNext()) {
-                    splitOpsPhase1.add(op);
-                } else {
-                    splitOpsPhase2.add(op);
+                cleanCollisions(doc, collisionGarbageBatchSize);
+                Iterator<UpdateOp> it = doc.split(this, head, binarySize).iterator();
+                while(it.hasNext()) {
+                    UpdateOp op = it.next();
+                    Path path = doc.getPath();
+                    // add an invalidation journal entry, unless the path
+                    // already has a pending _lastRev update or an invalidation
+                    // entry was already added in this backgroundSplit() call
+                    if (unsavedLastRevisions.get(path) == null && !invalidatedPaths.contains(path)) {
+                        pathsToInvalidate.add(path);
+                    }
+                    // the last entry is the main document update
+                    // (as per updated NodeDocument.split documentation).
+                    if (it.hasNext()) {
+                        splitOpsPhase1.add(op);
+                    } else {
+                        splitOpsPhase2.add(op);
+                    }
+                }
+                if (splitOpsPhase1.size() >= getCreateOrUpdateBatchSize()
+                        || splitOpsPhase2.size() >= getCreateOrUpdateBatchSize()) {
+                    invalidatePaths(pathsToInvalidate);
+                    batchSplit(splitOpsPhase1);
+                    batchSplit(splitOpsPhase2);
+                    invalidatedPaths.addAll(pathsToInvalidate);
+                    pathsToInvalidate.clear();
+                    splitOpsPhase1.clear();
+                    splitOpsPhase2.clear();
+                    splitCandidates.keySet().removeAll(removeCandidates);
+                    removeCandidates.clear();
                 }
-            }
-            if (splitOpsPhase1.size() >= getCreateOrUpdateBatchSize()
-                    || splitOpsPhase2.size() >= getCreateOrUpdateBatchSize()) {
-                invalidatePaths(pathsToInvalidate);
-                batchSplit(splitOpsPhase1);
-                batchSplit(splitOpsPhase2);
-                invalidatedPaths.addAll(pathsToInvalidate);
-                pathsToInvalidate.clear();
-                splitOpsPhase1.clear();
-                splitOpsPhase2.clear();
-                splitCandidates.keySet().removeAll(removeCandidates);
-                removeCandidates.clear();
             }
         }
 
@@ -140,6 +140,7 @@ public class DocumentNodeStoreService {
     public static final String CLASSIC_RGC_EXPR = "0 0 2 * * ?";
     public static final long DEFAULT_RGC_TIME_LIMIT_SECS = 3*60*60; // default is 3 hours
     public static final double DEFAULT_RGC_DELAY_FACTOR = 0;
+    public static final int DEFAULT_RGC_PARALLELISM = 1;
     private static final String DESCRIPTION = "oak.nodestore.description";
     static final long DEFAULT_JOURNAL_GC_INTERVAL_MILLIS = 5*60*1000; // default is 5min
     static final long DEFAULT_JOURNAL_GC_MAX_AGE_MILLIS = 24*60*60*1000; // default is 24hours
@@ -758,7 +759,8 @@ public class DocumentNodeStoreService {
                     BlobGCMBean.TYPE, "Document node store blob garbage collection"));
         }
 
-        Runnable startGC = new RevisionGCJob(store, versionGcMaxAgeInSecs, 0, DEFAULT_RGC_DELAY_FACTOR);
+        Runnable startGC = new RevisionGCJob(store, versionGcMaxAgeInSecs, 0,
+                DEFAULT_RGC_DELAY_FACTOR, config.versionGCParallelism());
         Runnable cancelGC = () -> store.getVersionGarbageCollector().cancel();
         Supplier<String> status = () -> store.getVersionGarbageCollector().getStatus();
         RevisionGC revisionGC = new RevisionGC(startGC, cancelGC, status, executor);
@@ -819,9 +821,11 @@ public class DocumentNodeStoreService {
         long versionGcMaxAgeInSecs = config.versionGcMaxAgeInSecs();
         long versionGCTimeLimitInSecs = config.versionGCTimeLimitInSecs();
         double versionGCDelayFactor = config.versionGCDelayFactor();
+        int versionGCParallelism = config.versionGCParallelism();
         addRegistration(scheduleWithFixedDelay(whiteboard,
                 new RevisionGCJob(nodeStore, versionGcMaxAgeInSecs,
-                        versionGCTimeLimitInSecs, versionGCDelayFactor),
+                        versionGCTimeLimitInSecs, versionGCDelayFactor,
+                        versionGCParallelism),
                 props, MODIFIED_IN_SECS_RESOLUTION, true, true));
     }
 
@@ -902,6 +906,7 @@ public class DocumentNodeStoreService {
         private final long versionGCMaxAgeInSecs;
         private final long versionGCTimeLimitInSecs;
         private final double versionGCDelayFactor;
+        private final int versionGCParallelism;
         private volatile Object lastResult = "";
         private long lastLogTime;
         private VersionGCStats stats;
@@ -909,18 +914,21 @@ public class DocumentNodeStoreService {
         RevisionGCJob(DocumentNodeStore ns,
                       long versionGcMaxAgeInSecs,
                       long versionGCTimeLimitInSecs,
-                      double versionGCDelayFactor) {
+                      double versionGCDelayFactor,
+                      int versionGCParallelism) {
             this.nodeStore = ns;
             this.versionGCMaxAgeInSecs = versionGcMaxAgeInSecs;
             this.versionGCTimeLimitInSecs = versionGCTimeLimitInSecs;
             this.versionGCDelayFactor = versionGCDelayFactor;
+            this.versionGCParallelism = Math.max(1, versionGCParallelism);
             resetStats();
         }
 
         @Override
         public void run() {
             VersionGarbageCollector gc = nodeStore.getVersionGarbageCollector();
-            gc.setOptions(gc.getOptions().withMaxDuration(TimeUnit.SECONDS, versionGCTimeLimitInSecs).withDelayFactor(versionGCDelayFactor));
+            gc.setOptions(gc.getOptions().withMaxDuration(TimeUnit.SECONDS, versionGCTimeLimitInSecs).withDelayFactor(versionGCDelayFactor)
+                    .withParallelism(versionGCParallelism));
             try {
                 VersionGCStats s = gc.gc(versionGCMaxAgeInSecs, TimeUnit.SECONDS);
                 stats.addRun(s);
@@ -57,6 +57,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     static final String MERGE_FAILED_EXCLUSIVE = "DOCUMENT_NS_MERGE_FAILED_EXCLUSIVE";
     private static final String HEAD_OF_QUEUE_WAIT_TIME = "DOCUMENT_NS_HEAD_OF_QUEUE_WAIT_TIME";
     private static final String MERGE_SUSPEND_TIME = "DOCUMENT_NS_MERGE_SUSPEND_TIME";
+    static final String COMMIT_QUEUE_SIZE = "DOCUMENT_NS_COMMIT_QUEUE_SIZE";
+    static final String COMMIT_QUEUE_CONTENDED = "DOCUMENT_NS_COMMIT_QUEUE_CONTENDED";
+    static final String COMMIT_QUEUE_SUSPEND_TIME = "DOCUMENT_NS_COMMIT_QUEUE_SUSPEND_TIME";
     private static final String MERGE_LOCK_TIME = "DOCUMENT_NS_MERGE_LOCK_TIME";
     private static final String MERGE_COMMIT_HOOK_TIME = "DOCUMENT_NS_MERGE_COMMIT_HOOK_TIME";
     private static final String MERGE_CHANGES_APPLIED_TIME = "DOCUMENT_NS_MERGE_CHANGES_APPLIED_TIME";
@@ -98,6 +101,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final MeterStats mergeFailedExclusive;
     private final TimerStats headOfQueueWaitTime;
     private final TimerStats mergeSuspendTime;
+    private final HistogramStats commitQueueSize;
+    private final MeterStats commitQueueContended;
+    private final TimerStats commitQueueSuspendTime;
     private final TimerStats mergeLockTime;
     private final TimerStats mergeCommitHookTime;
     private final TimerStats mergeChangesApplied;
@@ -138,6 +144,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         mergeFailedExclusive = sp.getMeter(MERGE_FAILED_EXCLUSIVE, StatsOptions.DEFAULT); //Enable time series
         headOfQueueWaitTime = sp.getTimer(HEAD_OF_QUEUE_WAIT_TIME, StatsOptions.METRICS_ONLY);
         mergeSuspendTime = sp.getTimer(MERGE_SUSPEND_TIME, StatsOptions.METRICS_ONLY);
+        commitQueueSize = sp.getHistogram(COMMIT_QUEUE_SIZE, StatsOptions.METRICS_ONLY);
+        commitQueueContended = sp.getMeter(COMMIT_QUEUE_CONTENDED, StatsOptions.METRICS_ONLY);
+        commitQueueSuspendTime = sp.getTimer(COMMIT_QUEUE_SUSPEND_TIME, StatsOptions.METRICS_ONLY);
         mergeLockTime = sp.getTimer(MERGE_LOCK_TIME, StatsOptions.METRICS_ONLY);
         mergeCommitHookTime = sp.getTimer(MERGE_COMMIT_HOOK_TIME, StatsOptions.METRICS_ONLY);
         mergeChangesApplied = sp.getTimer(MERGE_CHANGES_APPLIED_TIME, StatsOptions.METRICS_ONLY);
@@ -231,6 +240,19 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         headOfQueueWaitTime.update(waitMicros, TimeUnit.MICROSECONDS);
     }
 
+    @Override
+    public void doneCommitQueued(int numCommits) {
+        commitQueueSize.update(numCommits);
+        if (numCommits > 1) {
+            commitQueueContended.mark();
+        }
+    }
+
+    @Override
+    public void doneSuspendUntilAll(long waitMicros) {
+        commitQueueSuspendTime.update(waitMicros, TimeUnit.MICROSECONDS);
+    }
+
     @Override
     public void doneMergeLockAcquired(long timeMicros) {
         mergeLockTime.update(timeMicros, TimeUnit.MICROSECONDS);
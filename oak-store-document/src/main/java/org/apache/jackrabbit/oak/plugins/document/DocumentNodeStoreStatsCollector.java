@@ -91,6 +91,25 @@ public interface DocumentNodeStoreStatsCollector {
      */
     void doneWaitUntilHead(long waitMicros);
 
+    /**
+     * Reports to the collector the number of commits in the commit queue
+     * when a commit is done and about to wait until it becomes the head of
+     * the queue. A number greater than one means the commit contends with
+     * other commits for the head of the queue.
+     *
+     * @param numCommits the number of commits in the queue, including the
+     *         commit that is done.
+     */
+    void doneCommitQueued(int numCommits);
+
+    /**
+     * Reports to the collector that a commit finished waiting in the commit
+     * queue for revisions to become visible.
+     *
+     * @param waitMicros the time in microseconds the commit was suspended.
+     */
+    void doneSuspendUntilAll(long waitMicros);
+
     /**
      * Reports to the collector that the commit acquired the merge lock in the
      * given time.
@@ -81,6 +81,28 @@ public interface DocumentStore {
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge)
             throws DocumentStoreException;
 
+    /**
+     * Get the documents with the given {@code keys}. This method is
+     * equivalent to calling {@link #find(Collection, String, int)} for each
+     * of the keys, but an implementation should serve documents from its
+     * cache when possible and read the remaining documents with as few calls
+     * to the underlying storage as possible.
+     * <p>
+     * The returned documents are in the order of the given keys and are
+     * immutable. Documents that do not exist are not included in the list.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys
+     * @param maxCacheAge the maximum age of the cached documents (in ms)
+     * @return the list of documents found (possibly empty)
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @NotNull
+    <T extends Document> List<T> findAll(Collection<T> collection, List<String> keys, int maxCacheAge)
+            throws DocumentStoreException;
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value.
@@ -47,6 +47,7 @@ import org.apache.jackrabbit.oak.commons.json.JsopReader;
 import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
 import org.apache.jackrabbit.oak.commons.json.JsopWriter;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -139,6 +140,13 @@ public final class NodeDocument extends Document {
      */
     static final int MODIFIED_IN_SECS_RESOLUTION = 5;
 
+    /**
+     * Whether the value maps of sealed documents are replaced with a
+     * {@link CompactValueMap}.
+     */
+    private static final boolean COMPACT_VALUE_MAPS = SystemPropertySupplier
+            .create("oak.documentMK.compactValueMaps", Boolean.TRUE).loggingTo(LOG).get();
+
     private static final NavigableMap<Revision, Range> EMPTY_RANGE_MAP =
             Maps.unmodifiableNavigableMap(new TreeMap<Revision, Range>(REVERSE));
 
@@ -1874,6 +1882,27 @@ public final class NodeDocument extends Document {
                 revision.toString());
     }
 
+    //-----------------------------< Document >---------------------------------
+
+    /**
+     * Replaces the value maps of this document with a {@link CompactValueMap}
+     * when the document is sealed. This considerably reduces the memory used
+     * by documents in the cache.
+     */
+    @NotNull
+    @Override
+    protected Map<?, ?> transformAndSeal(@NotNull Map<Object, Object> map,
+                                         @Nullable String key,
+                                         int level) {
+        if (COMPACT_VALUE_MAPS && level == 1 && map instanceof SortedMap) {
+            CompactValueMap compact = CompactValueMap.compact((SortedMap<?, ?>) map);
+            if (compact != null) {
+                return compact;
+            }
+        }
+        return super.transformAndSeal(map, key, level);
+    }
+
     //----------------------------< internal >----------------------------------
 
     private void previousDocumentNotFound(String prevId, Revision rev) {
@@ -21,6 +21,8 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class VersionGCOptions {
 
     public final int overflowToDiskThreshold;
@@ -29,20 +31,25 @@ public class VersionGCOptions {
     public final int maxIterations;
     public final long maxDurationMs;
     public final double delayFactor;
+    public final int parallelism;
+    public final double rateLimit;
 
     public VersionGCOptions() {
         this(100000, 100000, TimeUnit.MINUTES.toMillis(1),
-                0, TimeUnit.HOURS.toMillis(0), 0);
+                0, TimeUnit.HOURS.toMillis(0), 0, 1, 0);
     }
 
     private VersionGCOptions(int overflow, long collectLimit, long precisionMs,
-                             int maxIterations, long maxDurationMs, double delayFactor) {
+                             int maxIterations, long maxDurationMs, double delayFactor,
+                             int parallelism, double rateLimit) {
         this.overflowToDiskThreshold = overflow;
         this.collectLimit = collectLimit;
         this.precisionMs = precisionMs;
         this.maxIterations = maxIterations;
         this.maxDurationMs = maxDurationMs;
         this.delayFactor = delayFactor;
+        this.parallelism = parallelism;
+        this.rateLimit = rateLimit;
     }
 
     /**
@@ -52,7 +59,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withOverflowToDiskThreshold(int overflowToDiskThreshold) {
         return new VersionGCOptions(overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit);
     }
 
     /**
@@ -65,7 +73,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withCollectLimit(long limit) {
         return new VersionGCOptions(this.overflowToDiskThreshold, limit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit);
     }
 
     /**
@@ -79,7 +88,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withPrecisionMs(TimeUnit unit, long t) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                unit.toMillis(t), this.maxIterations, this.maxDurationMs, this.delayFactor);
+                unit.toMillis(t), this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, this.rateLimit);
     }
 
     /**
@@ -93,7 +103,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withMaxDuration(TimeUnit unit, long t) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, unit.toMillis(t), this.delayFactor);
+                this.precisionMs, this.maxIterations, unit.toMillis(t), this.delayFactor,
+                this.parallelism, this.rateLimit);
     }
 
     /**
@@ -106,7 +117,8 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withMaxIterations(int max) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, max, this.delayFactor);
+                this.precisionMs, this.maxIterations, max, this.delayFactor,
+                this.parallelism, this.rateLimit);
     }
 
     /**
@@ -122,7 +134,44 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withDelayFactor(double f) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, f);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, f,
+                this.parallelism, this.rateLimit);
+    }
+
+    /**
+     * Set the number of threads that collect deleted documents in parallel. With a value
+     * of 1, the default, documents are collected sequentially in a single pass. With a
+     * higher value, the time interval of a collection run is split into shards of about
+     * the same number of candidate documents, which are processed concurrently by at most
+     * this number of threads. Each completed shard is recorded in the settings collection,
+     * so that a run that is canceled or fails does not repeat the shards it already
+     * completed when it is resumed.
+     * <p>
+     * Note that each thread keeps its own set of candidate ids, hence up to
+     * {@link #overflowToDiskThreshold} ids per thread are held in memory.
+     *
+     * @param parallelism the number of threads collecting deleted documents
+     */
+    public VersionGCOptions withParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be greater than 0");
+        return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                parallelism, this.rateLimit);
+    }
+
+    /**
+     * Set a limit on the number of documents removed or updated per second. The limit
+     * applies to all modifications of a garbage collection run, irrespective of the number
+     * of threads doing them, and is applied in addition to the {@link #delayFactor}.
+     * 0, e.g. no limit, is the default.
+     *
+     * @param documentsPerSecond the maximum number of documents modified per second
+     */
+    public VersionGCOptions withRateLimit(double documentsPerSecond) {
+        checkArgument(documentsPerSecond >= 0, "rate limit must not be negative");
+        return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor,
+                this.parallelism, documentsPerSecond);
     }
 
 }
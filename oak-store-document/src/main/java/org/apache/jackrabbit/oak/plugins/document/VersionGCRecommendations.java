@@ -182,7 +182,16 @@ public class VersionGCRecommendations {
             stats.needRepeat = true;
         } else if (!stats.canceled && !stats.ignoredGCDueToCheckPoint) {
             // success, we would not expect to encounter revisions older than this in the future
-            setLongSetting(VersionGarbageCollector.SETTINGS_COLLECTION_OLDEST_TIMESTAMP_PROP, scope.toMs);
+            UpdateOp updateOp = new UpdateOp(VersionGarbageCollector.SETTINGS_COLLECTION_ID, true);
+            updateOp.set(VersionGarbageCollector.SETTINGS_COLLECTION_OLDEST_TIMESTAMP_PROP, scope.toMs);
+            // shards completed by a parallel run within the scope are not needed anymore
+            for (Map.Entry<String, Long> setting : getLongSettings().entrySet()) {
+                if (setting.getKey().startsWith(VersionGarbageCollector.SETTINGS_COLLECTION_COMPLETED_SHARD_PREFIX)
+                        && setting.getValue() <= scope.toMs) {
+                    updateOp.remove(setting.getKey());
+                }
+            }
+            vgc.getDocumentStore().createOrUpdate(Collection.SETTINGS, updateOp);
 
             int count = stats.deletedDocGCCount - stats.deletedLeafDocGCCount;
             double usedFraction;
@@ -24,10 +24,15 @@ import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.getModifie
 import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getAllDocuments;
 import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getSelectedDocuments;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument.SplitDocType;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
+import org.apache.jackrabbit.oak.plugins.document.util.TimeInterval;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.jetbrains.annotations.NotNull;
@@ -36,6 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 public class VersionGCSupport {
 
@@ -83,6 +89,78 @@ public class VersionGCSupport {
         });
     }
 
+    /**
+     * Returns the number of documents {@link #getPossiblyDeletedDocs(long, long)}
+     * would return for the given range. The default implementation does not
+     * support counting the documents and returns {@code -1}.
+     *
+     * @param fromModified the lower bound modified timestamp (inclusive)
+     * @param toModified the upper bound modified timestamp (exclusive)
+     * @return the number of matching documents or {@code -1} if the
+     *          implementation cannot count the documents.
+     */
+    public long getPossiblyDeletedDocsCount(long fromModified, long toModified) {
+        return -1;
+    }
+
+    /**
+     * Splits the given range into at most {@code numShards} adjacent time
+     * intervals, which can be passed to {@link #getPossiblyDeletedDocs(long, long)}
+     * independently. The boundaries between the intervals are at the
+     * granularity of the {@link NodeDocument#MODIFIED_IN_SECS} field, hence
+     * every possibly deleted document in the range is returned for exactly one
+     * of the intervals.
+     * <p>
+     * If the implementation supports {@link #getPossiblyDeletedDocsCount(long, long)},
+     * the intervals are chosen such that they contain about the same number of
+     * documents. Otherwise the intervals have about the same duration.
+     *
+     * @param fromModified the lower bound modified timestamp (inclusive)
+     * @param toModified the upper bound modified timestamp (exclusive)
+     * @param numShards the maximum number of intervals.
+     * @return the intervals in ascending order. The first interval starts at
+     *          {@code fromModified} and the last interval ends at
+     *          {@code toModified}.
+     */
+    @NotNull
+    public List<TimeInterval> getPossiblyDeletedDocsShards(long fromModified,
+                                                           long toModified,
+                                                           int numShards) {
+        long count = getPossiblyDeletedDocsCount(fromModified, toModified);
+        boolean counted = count >= 0;
+        long weight = counted ? count : toModified - fromModified;
+        // split the shard with the highest weight at the
+        // middle until there are enough shards
+        PriorityQueue<Shard> shards = new PriorityQueue<>(Math.max(1, numShards),
+                Comparator.comparingLong((Shard s) -> s.weight).reversed());
+        List<TimeInterval> result = Lists.newArrayList();
+        shards.add(new Shard(new TimeInterval(fromModified, toModified), weight));
+        while (!shards.isEmpty() && shards.size() + result.size() < numShards) {
+            Shard s = shards.poll();
+            long mid = getModifiedInMillis(s.interval.fromMs + s.interval.getDurationMs() / 2);
+            if (s.weight <= 1
+                    || getModifiedInSecs(mid) <= getModifiedInSecs(s.interval.fromMs)
+                    || mid >= s.interval.toMs) {
+                // cannot be split any further
+                result.add(s.interval);
+                continue;
+            }
+            long lowerWeight = counted ?
+                    getPossiblyDeletedDocsCount(s.interval.fromMs, mid) :
+                    mid - s.interval.fromMs;
+            shards.add(new Shard(new TimeInterval(s.interval.fromMs, mid), lowerWeight));
+            shards.add(new Shard(new TimeInterval(mid, s.interval.toMs),
+                    Math.max(0, s.weight - lowerWeight)));
+        }
+        for (Shard s : shards) {
+            result.add(s.interval);
+        }
+        result.sort(Comparator.comparingLong(i -> i.fromMs));
+        LOG.debug("Split {} into {} shards (by {})", new TimeInterval(fromModified, toModified),
+                result.size(), counted ? "count" : "duration");
+        return result;
+    }
+
     /**
      * Returns the underlying document store.
      *
@@ -164,6 +242,21 @@ public class VersionGCSupport {
         throw new UnsupportedOperationException("getDeletedOnceCount()");
     }
 
+    private static long getModifiedInMillis(long timestamp) {
+        return TimeUnit.SECONDS.toMillis(getModifiedInSecs(timestamp));
+    }
+
+    private static final class Shard {
+
+        final TimeInterval interval;
+        final long weight;
+
+        Shard(TimeInterval interval, long weight) {
+            this.interval = interval;
+            this.weight = weight;
+        }
+    }
+
     /**
      * Returns {@code true} if the given document is of type
      * {@link SplitDocType#DEFAULT_NO_BRANCH} and the most recent change on the
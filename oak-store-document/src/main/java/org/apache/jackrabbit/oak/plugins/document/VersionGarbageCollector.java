@@ -27,8 +27,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Function;
@@ -40,6 +46,8 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.apache.jackrabbit.oak.commons.sort.StringSort;
 import org.apache.jackrabbit.oak.plugins.document.util.TimeInterval;
@@ -74,6 +82,9 @@ public class VersionGarbageCollector {
     private static final int DELETE_BATCH_SIZE = 450;
     private static final int UPDATE_BATCH_SIZE = 450;
     private static final int PROGRESS_BATCH_SIZE = 10000;
+    // number of shards per thread of a parallel run, more shards than threads
+    // balance the load when some shards take longer than others
+    private static final int SHARDS_PER_THREAD = 4;
     private static final String STATUS_IDLE = "IDLE";
     private static final String STATUS_INITIALIZING = "INITIALIZING";
     private static final Logger log = LoggerFactory.getLogger(VersionGarbageCollector.class);
@@ -99,6 +110,13 @@ public class VersionGarbageCollector {
      */
     static final String SETTINGS_COLLECTION_REC_INTERVAL_PROP = "recommendedIntervalMs";
 
+    /**
+     * Prefix of the property names for shards completed by a parallel run. The
+     * prefix is followed by the start of the shard and the property value is
+     * the end of the shard.
+     */
+    static final String SETTINGS_COLLECTION_COMPLETED_SHARD_PREFIX = "completedShard-";
+
     private final DocumentNodeStore nodeStore;
     private final DocumentStore ds;
     private final VersionGCSupport versionStore;
@@ -313,6 +331,18 @@ public class VersionGarbageCollector {
                     ", " + timings + "}";
         }
 
+        /**
+         * Adds the document counts of a shard collected as part of this run.
+         * The timings of this run are tracked separately, because shards
+         * are collected concurrently.
+         */
+        void addShard(VersionGCStats shard) {
+            this.deletedDocGCCount += shard.deletedDocGCCount;
+            this.deletedLeafDocGCCount += shard.deletedLeafDocGCCount;
+            this.splitDocGCCount += shard.splitDocGCCount;
+            this.updateResurrectedGCCount += shard.updateResurrectedGCCount;
+        }
+
         void addRun(VersionGCStats run) {
             ++iterationCount;
             this.ignoredGCDueToCheckPoint = run.ignoredGCDueToCheckPoint;
@@ -504,7 +534,13 @@ public class VersionGarbageCollector {
                     final RevisionVector sweepRevisions = nodeStore.getSweepRevisions();
                     monitor.info("Looking at revisions in {}", rec.scope);
 
-                    collectDeletedDocuments(phases, headRevision, rec);
+                    RateLimit rateLimit = new RateLimit(options.rateLimit);
+                    if (options.parallelism > 1) {
+                        collectDeletedDocumentsInShards(phases, headRevision, rec, rateLimit);
+                    } else {
+                        collectDeletedDocuments(phases, headRevision, rec.scope,
+                                rec.maxCollect, new AtomicLong(), rateLimit);
+                    }
                     collectSplitDocuments(phases, sweepRevisions, rec);
                 }
             } catch (LimitExceededException ex) {
@@ -536,13 +572,16 @@ public class VersionGarbageCollector {
 
         private void collectDeletedDocuments(GCPhases phases,
                                              RevisionVector headRevision,
-                                             VersionGCRecommendations rec)
+                                             TimeInterval scope,
+                                             long maxCollect,
+                                             AtomicLong collected,
+                                             RateLimit rateLimit)
                 throws IOException, LimitExceededException {
             int docsTraversed = 0;
-            DeletedDocsGC gc = new DeletedDocsGC(headRevision, cancel, options, monitor);
+            DeletedDocsGC gc = new DeletedDocsGC(headRevision, cancel, options, monitor, collected, rateLimit);
             try {
                 if (phases.start(GCPhase.COLLECTING)) {
-                    Iterable<NodeDocument> itr = versionStore.getPossiblyDeletedDocs(rec.scope.fromMs, rec.scope.toMs);
+                    Iterable<NodeDocument> itr = versionStore.getPossiblyDeletedDocs(scope.fromMs, scope.toMs);
                     try {
                         for (NodeDocument doc : itr) {
                             // continue with GC?
@@ -562,7 +601,7 @@ public class VersionGarbageCollector {
                                 gc.possiblyDeleted(doc);
                                 phases.stop(GCPhase.CHECKING);
                             }
-                            if (rec.maxCollect > 0 && gc.docIdsToDelete.getSize() > rec.maxCollect) {
+                            if (maxCollect > 0 && collected.get() > maxCollect) {
                                 throw new LimitExceededException();
                             }
                             if (gc.hasLeafBatch()) {
@@ -609,6 +648,247 @@ public class VersionGarbageCollector {
                 gc.close();
             }
         }
+
+        /**
+         * Collects deleted documents in shards of the scope. The shards are
+         * processed concurrently by at most {@link VersionGCOptions#parallelism}
+         * threads, each with its own {@link DeletedDocsGC}. Shards completed
+         * by a previous run, which was canceled or failed, are skipped.
+         */
+        private void collectDeletedDocumentsInShards(GCPhases phases,
+                                                     RevisionVector headRevision,
+                                                     VersionGCRecommendations rec,
+                                                     RateLimit rateLimit)
+                throws IOException, LimitExceededException {
+            if (!phases.start(GCPhase.COLLECTING)) {
+                return;
+            }
+            List<TimeInterval> shards = getShards(rec.scope);
+            if (shards.isEmpty()) {
+                monitor.info("All shards in {} already completed", rec.scope);
+                phases.stop(GCPhase.COLLECTING);
+                return;
+            }
+            int numThreads = Math.min(options.parallelism, shards.size());
+            monitor.info("Collecting deleted documents in {} shards with {} threads",
+                    shards.size(), numThreads);
+            AtomicLong collected = new AtomicLong();
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                    new ThreadFactoryBuilder().setDaemon(true)
+                            .setNameFormat("oak-version-gc-%d").build());
+            List<Future<VersionGCStats>> results = Lists.newArrayList();
+            // a shard is claimed either by the thread starting it or, after
+            // a failure, by this thread to cancel it before it is started
+            List<AtomicBoolean> claims = Lists.newArrayList();
+            boolean limitExceeded = false;
+            Throwable failure = null;
+            try {
+                for (TimeInterval shard : shards) {
+                    AtomicBoolean claim = new AtomicBoolean();
+                    claims.add(claim);
+                    results.add(executor.submit(() -> {
+                        if (!claim.compareAndSet(false, true)) {
+                            // canceled before it was started
+                            return new VersionGCStats();
+                        }
+                        return collectShard(headRevision, shard,
+                                rec.maxCollect, collected, rateLimit);
+                    }));
+                }
+                // wait for all shards, even after a failure, because
+                // running shards must not outlive this run
+                for (int i = 0; i < results.size(); i++) {
+                    try {
+                        VersionGCStats stats = Uninterruptibles.getUninterruptibly(results.get(i));
+                        phases.stats.addShard(stats);
+                        limitExceeded |= stats.limitExceeded;
+                    } catch (CancellationException e) {
+                        // shard was not started after a failure
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                            // running shards stop when they see the cancel
+                            // flag, shards not yet started are canceled
+                            cancel.set(true);
+                            for (int j = i + 1; j < results.size(); j++) {
+                                if (claims.get(j).compareAndSet(false, true)) {
+                                    results.get(j).cancel(false);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                executor.shutdown();
+                awaitTermination(executor);
+                phases.stop(GCPhase.COLLECTING);
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new IOException(failure);
+            }
+            if (limitExceeded) {
+                throw new LimitExceededException();
+            }
+        }
+
+        /**
+         * Waits until all shards submitted to the given executor, which must
+         * already be shut down, completed.
+         */
+        private void awaitTermination(ExecutorService executor) {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                            return;
+                        }
+                        log.info("Waiting for running shards to complete");
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private VersionGCStats collectShard(RevisionVector headRevision,
+                                            TimeInterval shard,
+                                            long maxCollect,
+                                            AtomicLong collected,
+                                            RateLimit rateLimit)
+                throws IOException {
+            VersionGCStats stats = new VersionGCStats();
+            // shards do not report their phases, the
+            // status of the overall run is COLLECTING
+            GCPhases phases = new GCPhases(cancel, stats, GCMonitor.EMPTY);
+            try {
+                collectDeletedDocuments(phases, headRevision, shard,
+                        maxCollect, collected, rateLimit);
+                if (!cancel.get()) {
+                    shardCompleted(shard);
+                }
+            } catch (LimitExceededException e) {
+                stats.limitExceeded = true;
+            } finally {
+                phases.close();
+            }
+            return stats;
+        }
+
+        /**
+         * Splits the parts of the given scope that were not yet completed
+         * by a previous run into shards.
+         */
+        private List<TimeInterval> getShards(TimeInterval scope) {
+            List<TimeInterval> remaining = Lists.newArrayList();
+            long start = scope.fromMs;
+            for (TimeInterval completed : getCompletedShards()) {
+                if (completed.toMs <= start) {
+                    continue;
+                } else if (completed.fromMs >= scope.toMs) {
+                    break;
+                }
+                if (completed.fromMs > start) {
+                    remaining.add(new TimeInterval(start, completed.fromMs));
+                }
+                start = Math.max(start, completed.toMs);
+            }
+            if (start < scope.toMs) {
+                remaining.add(new TimeInterval(start, scope.toMs));
+            }
+            long remainingMs = 0;
+            for (TimeInterval i : remaining) {
+                remainingMs += i.getDurationMs();
+            }
+            if (remainingMs < scope.getDurationMs()) {
+                monitor.info("Resuming collection of {}, {} ms of {} ms remaining",
+                        scope, remainingMs, scope.getDurationMs());
+            }
+            int numShards = options.parallelism * SHARDS_PER_THREAD;
+            List<TimeInterval> shards = Lists.newArrayList();
+            for (TimeInterval i : remaining) {
+                int n = (int) Math.ceil(numShards * (double) i.getDurationMs() / remainingMs);
+                shards.addAll(versionStore.getPossiblyDeletedDocsShards(i.fromMs, i.toMs, n));
+            }
+            return shards;
+        }
+    }
+
+    /**
+     * @return the shards completed by previous parallel runs, ordered by the
+     *          start of the shard.
+     */
+    private List<TimeInterval> getCompletedShards() {
+        List<TimeInterval> shards = Lists.newArrayList();
+        Document settings = ds.find(SETTINGS, SETTINGS_COLLECTION_ID, 0);
+        if (settings != null) {
+            for (String k : settings.keySet()) {
+                Object value = settings.get(k);
+                if (k.startsWith(SETTINGS_COLLECTION_COMPLETED_SHARD_PREFIX)
+                        && value instanceof Number) {
+                    try {
+                        long from = Long.parseLong(k.substring(
+                                SETTINGS_COLLECTION_COMPLETED_SHARD_PREFIX.length()));
+                        shards.add(new TimeInterval(from, ((Number) value).longValue()));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Ignoring invalid shard {}={}", k, value);
+                    }
+                }
+            }
+        }
+        shards.sort((a, b) -> Long.compare(a.fromMs, b.fromMs));
+        return shards;
+    }
+
+    private void shardCompleted(TimeInterval shard) {
+        UpdateOp op = new UpdateOp(SETTINGS_COLLECTION_ID, true);
+        op.set(SETTINGS_COLLECTION_COMPLETED_SHARD_PREFIX + shard.fromMs, shard.toMs);
+        ds.createOrUpdate(SETTINGS, op);
+    }
+
+    /**
+     * Limits the rate at which documents are modified by a garbage collection
+     * run. Permits are reserved ahead for all threads of a run and a thread
+     * waits until its permits are due.
+     */
+    private class RateLimit {
+
+        private final double documentsPerMs;
+        private long nextFreeMs;
+
+        RateLimit(double documentsPerSecond) {
+            this.documentsPerMs = documentsPerSecond / 1000;
+        }
+
+        void acquire(int documents) {
+            if (documentsPerMs <= 0 || documents <= 0) {
+                return;
+            }
+            Clock clock = nodeStore.getClock();
+            long now = clock.getTime();
+            long dueMs;
+            synchronized (this) {
+                dueMs = Math.max(now, nextFreeMs);
+                nextFreeMs = dueMs + (long) Math.ceil(documents / documentsPerMs);
+            }
+            if (dueMs > now) {
+                try {
+                    clock.waitUntil(dueMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
     }
 
     /**
@@ -627,16 +907,22 @@ public class VersionGarbageCollector {
         private final Stopwatch timer;
         private final VersionGCOptions options;
         private final GCMonitor monitor;
+        private final AtomicLong collected;
+        private final RateLimit rateLimit;
 
         public DeletedDocsGC(@NotNull RevisionVector headRevision,
                              @NotNull AtomicBoolean cancel,
                              @NotNull VersionGCOptions options,
-                             @NotNull GCMonitor monitor) {
+                             @NotNull GCMonitor monitor,
+                             @NotNull AtomicLong collected,
+                             @NotNull RateLimit rateLimit) {
             this.headRevision = checkNotNull(headRevision);
             this.cancel = checkNotNull(cancel);
             this.timer = Stopwatch.createUnstarted();
             this.options = options;
             this.monitor = monitor;
+            this.collected = checkNotNull(collected);
+            this.rateLimit = checkNotNull(rateLimit);
             this.docIdsToDelete = newStringSort(options);
             this.prevDocIdsToDelete = newStringSort(options);
         }
@@ -789,6 +1075,7 @@ public class VersionGarbageCollector {
 
         private void addDocument(String id) throws IOException {
             docIdsToDelete.add(id);
+            collected.incrementAndGet();
         }
 
         private void addLeafDocument(String id) throws IOException {
@@ -876,6 +1163,7 @@ public class VersionGarbageCollector {
                     log.trace(sb.toString());
                 }
 
+                rateLimit.acquire(deletionBatch.size());
                 timer.reset().start();
                 try {
                     int nRemoved = ds.remove(NODES, deletionBatch);
@@ -917,6 +1205,7 @@ public class VersionGarbageCollector {
             monitor.info("Proceeding to reset [{}] _deletedOnce flags", resurrectedDocuments.size());
 
             int updateCount = 0;
+            rateLimit.acquire(resurrectedDocuments.size());
             timer.reset().start();
             try {
                 for (String s : resurrectedDocuments) {
@@ -966,6 +1255,7 @@ public class VersionGarbageCollector {
                     log.debug(sb.toString());
                 }
 
+                rateLimit.acquire(deletionBatch.size());
                 ds.remove(NODES, deletionBatch);
 
                 log.debug("Deleted [{}] previous documents so far", deletedCount);
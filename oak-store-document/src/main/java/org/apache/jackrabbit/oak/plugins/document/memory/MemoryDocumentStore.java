@@ -126,6 +126,19 @@ public class MemoryDocumentStore implements DocumentStore {
         }
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection, List<String> keys, int maxCacheAge) {
+        List<T> result = new ArrayList<T>(keys.size());
+        for (String key : keys) {
+            T doc = find(collection, key, maxCacheAge);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
     @Override
     @NotNull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -439,6 +440,149 @@ public class MongoDocumentStore implements DocumentStore {
         return result;
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                List<String> keys,
+                                                int maxCacheAge) {
+        log("findAll", keys, maxCacheAge);
+        final long start = PERFLOG.start();
+        Map<String, T> docs = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String key : keys) {
+            T doc = null;
+            if (collection == Collection.NODES && maxCacheAge > 0) {
+                doc = getIfCachedWithin(key, maxCacheAge);
+            }
+            if (doc != null) {
+                stats.doneFindCached(collection, key);
+                if (doc != NodeDocument.NULL) {
+                    docs.put(key, doc);
+                }
+            } else {
+                missing.add(key);
+            }
+        }
+        for (List<String> keyBatch : Iterables.partition(missing, IN_CLAUSE_BATCH_SIZE)) {
+            docs.putAll(findUncachedBatchWithRetry(collection, keyBatch, maxCacheAge));
+        }
+        List<T> result = new ArrayList<>(docs.size());
+        for (String key : keys) {
+            T doc = docs.get(key);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        PERFLOG.end(start, 1, "findAll: keys={}, cached={}", keys.size(), keys.size() - missing.size());
+        return result;
+    }
+
+    /**
+     * @return the cached document with the given {@code key} if it is not
+     * older than {@code maxCacheAge}, otherwise {@code null}. The returned
+     * document may be {@link NodeDocument#NULL}.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private <T extends Document> T getIfCachedWithin(String key, int maxCacheAge) {
+        NodeDocument doc = nodesCache.getIfPresent(key);
+        if (doc != null && (maxCacheAge == Integer.MAX_VALUE
+                || getTime() - doc.getCreated() < maxCacheAge)) {
+            return (T) doc;
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #findUncachedBatch(Collection, List, int)}, but retries
+     * the query up to {@link #queryRetries} times on a {@link MongoException}.
+     */
+    @NotNull
+    private <T extends Document> Map<String, T> findUncachedBatchWithRetry(Collection<T> collection,
+                                                                           List<String> keys,
+                                                                           int maxCacheAge) {
+        int numAttempts = queryRetries + 1;
+        MongoException ex = null;
+        for (int i = 0; i < numAttempts; i++) {
+            if (i > 0) {
+                LOG.warn("Retrying read of " + keys.size() + " documents");
+            }
+            try {
+                return findUncachedBatch(collection, keys, maxCacheAge);
+            } catch (MongoException e) {
+                ex = e;
+            }
+        }
+        if (ex != null) {
+            throw handleException(ex, collection, keys);
+        } else {
+            // impossible to get here
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Reads the documents with the given keys with a single query and puts
+     * them into the cache, unless the cache was changed for a key while the
+     * query was running. Cache entries of documents that do not exist are
+     * invalidated.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private <T extends Document> Map<String, T> findUncachedBatch(Collection<T> collection,
+                                                                  List<String> keys,
+                                                                  int maxCacheAge) {
+        Map<String, T> docs = new HashMap<>();
+        if (keys.isEmpty()) {
+            return docs;
+        }
+        final Stopwatch watch = startWatch();
+        boolean isSlaveOk = false;
+        CacheChangesTracker tracker = null;
+        if (collection == Collection.NODES) {
+            tracker = nodesCache.registerTracker(new HashSet<>(keys));
+        }
+        try {
+            DocumentReadPreference docReadPref = collection == Collection.NODES
+                    ? getReadPreference(maxCacheAge) : DocumentReadPreference.PRIMARY;
+            ReadPreference readPreference = getMongoReadPreference(collection, null, docReadPref);
+            isSlaveOk = readPreference.isSlaveOk();
+            MongoCollection<BasicDBObject> dbCollection = getDBCollection(collection, readPreference);
+            Bson query = Filters.in(Document.ID, keys);
+            execute(session -> {
+                FindIterable<BasicDBObject> result;
+                if (session != null) {
+                    result = dbCollection.find(session, query);
+                } else {
+                    result = dbCollection.find(query);
+                }
+                for (BasicDBObject o : result) {
+                    T doc = convertFromDBObject(collection, o);
+                    if (doc != null) {
+                        doc.seal();
+                        docs.put(doc.getId(), doc);
+                    }
+                }
+                return null;
+            });
+            if (tracker != null) {
+                for (String key : keys) {
+                    if (!docs.containsKey(key)) {
+                        invalidateCache(collection, key);
+                    }
+                }
+                nodesCache.putNonConflictingDocs(tracker, (Iterable<NodeDocument>) docs.values());
+            }
+            return docs;
+        } finally {
+            if (tracker != null) {
+                tracker.close();
+            }
+            stats.doneQuery(watch.elapsed(TimeUnit.NANOSECONDS), collection,
+                    keys.get(0), keys.get(keys.size() - 1), false, docs.size(), -1, isSlaveOk);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends Document> T find(final Collection<T> collection,
                                        final String key,
@@ -93,12 +93,7 @@ public class MongoVersionGCSupport extends VersionGCSupport {
 
     @Override
     public CloseableIterable<NodeDocument> getPossiblyDeletedDocs(final long fromModified, final long toModified) {
-        //_deletedOnce == true && _modified >= fromModified && _modified < toModified
-        Bson query = Filters.and(
-                Filters.eq(DELETED_ONCE, true),
-                Filters.gte(MODIFIED_IN_SECS, getModifiedInSecs(fromModified)),
-                Filters.lt(MODIFIED_IN_SECS, getModifiedInSecs(toModified))
-        );
+        Bson query = createPossiblyDeletedQuery(fromModified, toModified);
         FindIterable<BasicDBObject> cursor = getNodeCollection()
                 .find(query).batchSize(batchSize);
 
@@ -106,6 +101,12 @@ public class MongoVersionGCSupport extends VersionGCSupport {
                 input -> store.convertFromDBObject(NODES, input)));
     }
 
+    @Override
+    public long getPossiblyDeletedDocsCount(long fromModified, long toModified) {
+        Bson query = createPossiblyDeletedQuery(fromModified, toModified);
+        return getNodeCollection().countDocuments(query);
+    }
+
     @Override
     public long getDeletedOnceCount() {
         Bson query = Filters.eq(DELETED_ONCE, Boolean.TRUE);
@@ -178,6 +179,15 @@ public class MongoVersionGCSupport extends VersionGCSupport {
         return result.get(0);
     }
 
+    private static Bson createPossiblyDeletedQuery(long fromModified, long toModified) {
+        //_deletedOnce == true && _modified >= fromModified && _modified < toModified
+        return Filters.and(
+                Filters.eq(DELETED_ONCE, true),
+                Filters.gte(MODIFIED_IN_SECS, getModifiedInSecs(fromModified)),
+                Filters.lt(MODIFIED_IN_SECS, getModifiedInSecs(toModified))
+        );
+    }
+
     private List<Bson> createQueries(Set<SplitDocType> gcTypes,
                                  RevisionVector sweepRevs,
                                  long oldestRevTimeStamp) {
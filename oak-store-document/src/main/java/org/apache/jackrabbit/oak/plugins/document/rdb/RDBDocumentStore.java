@@ -45,6 +45,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -92,6 +93,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -281,6 +283,62 @@ public class RDBDocumentStore implements DocumentStore {
         return readDocumentCached(collection, id, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection, List<String> ids, int maxCacheAge) {
+        Map<String, T> documents = new HashMap<String, T>();
+        Set<String> toRead = new LinkedHashSet<String>();
+        for (String id : ids) {
+            NodeDocument cached = null;
+            if (collection == Collection.NODES && maxCacheAge > 0) {
+                cached = nodesCache.getIfPresent(id);
+            }
+            long lastCheckTime = cached == null ? 0 : cached.getLastCheckTime();
+            if (lastCheckTime != 0
+                    && (maxCacheAge == Integer.MAX_VALUE || System.currentTimeMillis() - lastCheckTime < maxCacheAge)) {
+                stats.doneFindCached(Collection.NODES, id);
+                if (cached != NodeDocument.NULL) {
+                    documents.put(id, castAsT(unwrap(cached)));
+                }
+            } else {
+                toRead.add(id);
+            }
+        }
+
+        if (!toRead.isEmpty()) {
+            final Stopwatch watch = startWatch();
+            int resultSize = 0;
+            try (CacheChangesTracker tracker = obtainTracker(collection, toRead)) {
+                Map<String, T> read = readDocumentsUncached(collection, toRead);
+                for (T doc : read.values()) {
+                    doc.seal();
+                }
+                resultSize = read.size();
+                documents.putAll(read);
+                if (collection == Collection.NODES) {
+                    for (String id : toRead) {
+                        if (!read.containsKey(id)) {
+                            invalidateNodesCache(id, true);
+                        }
+                    }
+                    nodesCache.putNonConflictingDocs(tracker, castAsNodeDocumentList(new ArrayList<T>(read.values())));
+                }
+            } finally {
+                stats.doneQuery(watch.elapsed(TimeUnit.NANOSECONDS), collection, Iterables.getFirst(toRead, null),
+                        Iterables.getLast(toRead), false, resultSize, -1, false);
+            }
+        }
+
+        List<T> result = new ArrayList<T>(documents.size());
+        for (String id : ids) {
+            T doc = documents.get(id);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey, int limit) {
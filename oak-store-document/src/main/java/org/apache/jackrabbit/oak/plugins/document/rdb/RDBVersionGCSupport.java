@@ -74,10 +74,7 @@ public class RDBVersionGCSupport extends VersionGCSupport {
 
     @Override
     public Iterable<NodeDocument> getPossiblyDeletedDocs(final long fromModified, final long toModified) {
-        List<QueryCondition> conditions = new ArrayList<QueryCondition>();
-        conditions.add(new QueryCondition(NodeDocument.DELETED_ONCE, "=", 1));
-        conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, "<", NodeDocument.getModifiedInSecs(toModified)));
-        conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", NodeDocument.getModifiedInSecs(fromModified)));
+        List<QueryCondition> conditions = getPossiblyDeletedConditions(fromModified, toModified);
         if (MODE == 1) {
             return getIterator(RDBDocumentStore.EMPTY_KEY_PATTERN, conditions);
         } else {
@@ -85,6 +82,20 @@ public class RDBVersionGCSupport extends VersionGCSupport {
         }
     }
 
+    @Override
+    public long getPossiblyDeletedDocsCount(long fromModified, long toModified) {
+        return store.queryCount(Collection.NODES, null, null, RDBDocumentStore.EMPTY_KEY_PATTERN,
+                getPossiblyDeletedConditions(fromModified, toModified));
+    }
+
+    private static List<QueryCondition> getPossiblyDeletedConditions(long fromModified, long toModified) {
+        List<QueryCondition> conditions = new ArrayList<QueryCondition>();
+        conditions.add(new QueryCondition(NodeDocument.DELETED_ONCE, "=", 1));
+        conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, "<", NodeDocument.getModifiedInSecs(toModified)));
+        conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", NodeDocument.getModifiedInSecs(fromModified)));
+        return conditions;
+    }
+
     @Override
     protected Iterable<NodeDocument> identifyGarbage(final Set<SplitDocType> gcTypes, final RevisionVector sweepRevs,
             final long oldestRevTimeStamp) {
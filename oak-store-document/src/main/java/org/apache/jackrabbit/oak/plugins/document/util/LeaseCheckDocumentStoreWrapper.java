@@ -70,6 +70,14 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public final <T extends Document> List<T> findAll(Collection<T> collection, List<String> keys,
+            int maxCacheAge) {
+        performLeaseCheck();
+        return delegate.findAll(collection, keys, maxCacheAge);
+    }
+
     @Override
     public final <T extends Document> List<T> query(Collection<T> collection,
             String fromKey, String toKey, int limit) {
@@ -100,6 +100,25 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(final Collection<T> collection,
+                                                final List<String> keys,
+                                                final int maxCacheAge) {
+        try {
+            logMethod("findAll", collection, keys, maxCacheAge);
+            return logResult(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return store.findAll(collection, keys, maxCacheAge);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(final Collection<T> collection,
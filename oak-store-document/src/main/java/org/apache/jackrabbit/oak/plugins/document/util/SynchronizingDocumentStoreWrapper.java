@@ -50,6 +50,13 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    @NotNull
+    public synchronized <T extends Document> List<T> findAll(final Collection<T> collection, final List<String> keys,
+            final int maxCacheAge) {
+        return store.findAll(collection, keys, maxCacheAge);
+    }
+
     @Override
     @NotNull
     public synchronized <T extends Document> List<T> query(final Collection<T> collection, final String fromKey,
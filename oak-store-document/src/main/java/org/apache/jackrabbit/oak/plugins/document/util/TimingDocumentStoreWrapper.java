@@ -139,6 +139,22 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> List<T> findAll(Collection<T> collection, List<String> keys, int maxCacheAge) {
+        try {
+            long start = now();
+            List<T> result = base.findAll(collection, keys, maxCacheAge);
+            updateAndLogTimes("findAll", start, 0, size(result));
+            if (logCommonCall()) {
+                logCommonCall(start, "findAll " + collection + " " + keys.size() + " keys");
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @NotNull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -72,6 +72,51 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         removeMe.add(id);
     }
 
+    @Test
+    public void testFindMultipleKeys() {
+        String base = this.getClass().getName() + ".testFindMultipleKeys-";
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            String id = base + i;
+            super.ds.remove(Collection.NODES, id);
+            ids.add(id);
+            if (i != 2) {
+                UpdateOp up = new UpdateOp(id, true);
+                up.set("value", i);
+                ops.add(up);
+                removeMe.add(id);
+            }
+        }
+        assertTrue(super.ds.create(Collection.NODES, ops));
+
+        // bring one document into the cache, read all others from the store
+        super.ds.invalidateCache();
+        assertNotNull(super.ds.find(Collection.NODES, base + 4));
+
+        List<String> keys = Lists.reverse(ids);
+        List<NodeDocument> docs = super.ds.findAll(Collection.NODES, keys, Integer.MAX_VALUE);
+        assertEquals(4, docs.size());
+        assertEquals(base + 4, docs.get(0).getId());
+        assertEquals(base + 3, docs.get(1).getId());
+        assertEquals(base + 1, docs.get(2).getId());
+        assertEquals(base + 0, docs.get(3).getId());
+        for (NodeDocument doc : docs) {
+            assertTrue(doc.isSealed());
+            assertNotNull(super.ds.getIfCached(Collection.NODES, doc.getId()));
+        }
+
+        // documents updated meanwhile are read again without cache
+        UpdateOp up = new UpdateOp(base + 1, false);
+        up.set("value", 42);
+        assertNotNull(super.ds.findAndUpdate(Collection.NODES, up));
+        docs = super.ds.findAll(Collection.NODES, keys, 0);
+        assertEquals(4, docs.size());
+        assertEquals(42L, ((Number) docs.get(2).get("value")).longValue());
+
+        assertTrue(super.ds.findAll(Collection.NODES, Collections.<String>emptyList(), 0).isEmpty());
+    }
+
     @Test
     public void testAddAndRemoveWithoutIdInUpdateOp() {
         String id = this.getClass().getName() + ".testAddAndRemoveWithoutIdInUpdateOp";
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -45,6 +46,7 @@ import static com.google.common.collect.Sets.union;
 import static java.util.Collections.synchronizedList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -387,6 +389,42 @@ public class CommitQueueTest {
         }
     }
 
+    @Test
+    public void interruptMustNotReleaseCommit() throws Exception {
+        RevisionContext context = new DummyRevisionContext();
+        final CommitQueue queue = new CommitQueue(context);
+        final Revision r1 = queue.createRevision();
+        final Revision r2 = queue.createRevision();
+        final List<Revision> headOfQueue = synchronizedList(new ArrayList<Revision>());
+        final CommitQueue.Callback c = new CommitQueue.Callback() {
+            @Override
+            public void headOfQueue(@NotNull Revision revision) {
+                headOfQueue.add(revision);
+            }
+        };
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.done(r2, c);
+            }
+        });
+        t.start();
+        // wait until t is parked
+        while (t.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        t.interrupt();
+        t.join(100);
+        assertTrue(t.isAlive());
+        assertTrue(headOfQueue.isEmpty());
+
+        queue.done(r1, c);
+        t.join();
+        assertEquals(Arrays.asList(r1, r2), headOfQueue);
+        assertFalse(queue.contains(r1));
+        assertFalse(queue.contains(r2));
+    }
+
     private void assertNoExceptions() throws Exception {
         if (!exceptions.isEmpty()) {
             throw exceptions.get(0);
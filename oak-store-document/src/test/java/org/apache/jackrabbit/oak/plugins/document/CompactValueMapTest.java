@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator.INSTANCE;
+import static org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator.REVERSE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompactValueMapTest {
+
+    @Test
+    public void sameAsTreeMap() {
+        for (boolean reverse : new boolean[]{true, false}) {
+            TreeMap<Revision, String> map = newValueMap(reverse ? REVERSE : INSTANCE);
+            CompactValueMap compact = CompactValueMap.compact(map);
+            assertNotNull(compact);
+            assertEquals(map, compact);
+            assertEquals(map.hashCode(), compact.hashCode());
+            assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(compact.keySet()));
+            assertEquals(new ArrayList<>(map.values()), new ArrayList<>(compact.values()));
+            assertEquals(map.firstKey(), compact.firstKey());
+            assertEquals(map.lastKey(), compact.lastKey());
+            assertSame(map.comparator(), compact.comparator());
+
+            for (Revision r : map.keySet()) {
+                assertTrue(compact.containsKey(r));
+                assertEquals(map.get(r), compact.get(r));
+                assertFalse(compact.containsKey(r.asBranchRevision()));
+                assertEquals(map.headMap(r), compact.headMap(r));
+                assertEquals(map.tailMap(r), compact.tailMap(r));
+                assertEquals(map.tailMap(r).headMap(map.lastKey()),
+                        compact.tailMap(r).headMap(map.lastKey()));
+                assertEquals(map.headMap(r.asBranchRevision()),
+                        compact.headMap(r.asBranchRevision()));
+            }
+            Revision first = map.firstKey();
+            Revision last = map.lastKey();
+            assertEquals(map.subMap(first, last), compact.subMap(first, last));
+            assertEquals(map.subMap(last, last), compact.subMap(last, last));
+            assertTrue(compact.subMap(last, last).isEmpty());
+            assertNull(compact.get(new Revision(7, 0, 1)));
+            assertNull(compact.get("r1-0-1"));
+        }
+    }
+
+    @Test
+    public void immutable() {
+        CompactValueMap compact = CompactValueMap.compact(newValueMap(REVERSE));
+        assertNotNull(compact);
+        try {
+            compact.put(new Revision(7, 0, 1), "c");
+            fail("must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            compact.remove(compact.firstKey());
+            fail("must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void notCompacted() {
+        TreeMap<Revision, String> map = newValueMap(REVERSE);
+        map.put(new Revision(7, 0, 1, true), "c");
+        assertNull(CompactValueMap.compact(map));
+
+        TreeMap<Revision, Object> values = new TreeMap<Revision, Object>(REVERSE);
+        values.put(new Revision(1, 0, 1), 1L);
+        assertNull(CompactValueMap.compact(values));
+
+        assertNull(CompactValueMap.compact(new TreeMap<Revision, String>()));
+    }
+
+    @Test
+    public void nullValue() {
+        TreeMap<Revision, String> map = newValueMap(REVERSE);
+        Revision r = new Revision(7, 0, 1);
+        map.put(r, null);
+        CompactValueMap compact = CompactValueMap.compact(map);
+        assertNotNull(compact);
+        assertTrue(compact.containsKey(r));
+        assertNull(compact.get(r));
+        assertEquals(map, compact);
+    }
+
+    @Test
+    public void sealedDocument() {
+        NodeDocument doc = new NodeDocument(new MemoryDocumentStore());
+        doc.put(Document.ID, "1:/foo");
+        doc.put(NodeDocument.REVISIONS, newValueMap(REVERSE));
+        doc.put("prop", newValueMap(REVERSE));
+        int memory = doc.getMemory();
+        doc.seal();
+        assertTrue(doc.get(NodeDocument.REVISIONS) instanceof CompactValueMap);
+        assertTrue(doc.get("prop") instanceof CompactValueMap);
+        assertEquals(newValueMap(REVERSE), doc.getLocalRevisions());
+        assertEquals(newValueMap(REVERSE), doc.getValueMap("prop"));
+        assertTrue(doc.getMemory() < memory);
+
+        // copies of a sealed document are modifiable
+        NodeDocument copy = new NodeDocument(new MemoryDocumentStore());
+        doc.deepCopy(copy);
+        @SuppressWarnings("unchecked")
+        Map<Revision, String> map = (Map<Revision, String>) copy.get("prop");
+        map.put(new Revision(7, 0, 1), "7");
+        assertEquals(6, map.size());
+    }
+
+    private static TreeMap<Revision, String> newValueMap(Comparator<Revision> comparator) {
+        TreeMap<Revision, String> map = new TreeMap<Revision, String>(comparator);
+        map.put(new Revision(1, 0, 1), "c");
+        map.put(new Revision(2, 0, 1), "c");
+        map.put(new Revision(2, 1, 1), "c-r2-0-1");
+        map.put(new Revision(2, 1, 2), "c");
+        map.put(new Revision(5, 3, 3), "\"value\"");
+        return map;
+    }
+}
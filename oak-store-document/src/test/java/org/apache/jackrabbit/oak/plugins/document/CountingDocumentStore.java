@@ -97,6 +97,18 @@ public class CountingDocumentStore implements DocumentStore {
         return rewrap(collection, delegate.find(collection, key, maxCacheAge));
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                List<String> keys,
+                                                int maxCacheAge) {
+        getStats(collection).numFindCalls++;
+        if (printStacks) {
+            new Exception("findAll [" + getStats(collection).numFindCalls + "] (" + collection + ") " + keys + " [max: " + maxCacheAge + "]").printStackTrace();
+        }
+        return rewrap(collection, delegate.findAll(collection, keys, maxCacheAge));
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -23,6 +23,7 @@ import java.lang.management.ManagementFactory;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
@@ -86,10 +87,29 @@ public class DocumentNodeStoreStatsTest {
         assertEquals(105, m.getCount());
     }
 
+    @Test
+    public void commitQueue() {
+        stats.doneCommitQueued(1);
+        stats.doneCommitQueued(5);
+        Histogram h = getHistogram(DocumentNodeStoreStats.COMMIT_QUEUE_SIZE);
+        assertEquals(2, h.getCount());
+        assertEquals(5, h.getSnapshot().getMax());
+        assertEquals(1, getMeter(DocumentNodeStoreStats.COMMIT_QUEUE_CONTENDED).getCount());
+
+        stats.doneSuspendUntilAll(42);
+        Timer t = getTimer(DocumentNodeStoreStats.COMMIT_QUEUE_SUSPEND_TIME);
+        assertEquals(1, t.getCount());
+        assertEquals(MICROSECONDS.toNanos(42), t.getSnapshot().getMax());
+    }
+
     private Meter getMeter(String name) {
         return statsProvider.getRegistry().getMeters().get(name);
     }
 
+    private Histogram getHistogram(String name) {
+        return statsProvider.getRegistry().getHistograms().get(name);
+    }
+
     private Timer getTimer(String name) {
         return statsProvider.getRegistry().getTimers().get(name);
     }
@@ -47,6 +47,14 @@ public class DocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                List<String> keys,
+                                                int maxCacheAge) {
+        return store.findAll(collection, keys, maxCacheAge);
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
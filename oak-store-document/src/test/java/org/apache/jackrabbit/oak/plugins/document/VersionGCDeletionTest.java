@@ -32,14 +32,18 @@ import static org.junit.Assert.fail;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
@@ -216,6 +220,139 @@ public class VersionGCDeletionTest {
         }
     }
 
+    @Test
+    public void deleteInParallel() throws Exception {
+        DocumentStore ds = new MemoryDocumentStore();
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ds)
+                .setAsyncDelay(0)
+                .getNodeStore();
+        int numNodes = removeNodesOverTime(20);
+
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withParallelism(4));
+        VersionGCStats stats = gc.gc(1, HOURS);
+        assertEquals(numNodes, stats.deletedDocGCCount);
+        assertEquals(numNodes, stats.deletedLeafDocGCCount);
+        for (int i = 0; i < numNodes; i++) {
+            assertNull(ds.find(Collection.NODES, Utils.getIdFromPath("/n" + i)));
+        }
+        assertTrue(getCompletedShards(ds).isEmpty());
+    }
+
+    @Test
+    public void resumeParallel() throws Exception {
+        String failingId = Utils.getIdFromPath("/n19");
+        AtomicBoolean fail = new AtomicBoolean(true);
+        DocumentStore ds = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> int remove(Collection<T> collection,
+                                                   Map<String, Long> toRemove) {
+                if (fail.get() && toRemove.containsKey(failingId)) {
+                    throw new DocumentStoreException("remove failed");
+                }
+                return super.remove(collection, toRemove);
+            }
+        };
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ds)
+                .setAsyncDelay(0)
+                .getNodeStore();
+        int numNodes = removeNodesOverTime(20);
+
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withParallelism(2));
+        try {
+            gc.gc(1, HOURS);
+            fail("must fail with DocumentStoreException");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        // shards completed by the failed run are kept
+        assertFalse(getCompletedShards(ds).isEmpty());
+        assertNull(ds.find(Collection.NODES, Utils.getIdFromPath("/n0")));
+        assertNotNull(ds.find(Collection.NODES, failingId));
+
+        // resumed run must only collect the remaining documents
+        fail.set(false);
+        VersionGCStats stats = gc.gc(1, HOURS);
+        assertTrue(stats.deletedDocGCCount > 0);
+        assertTrue(stats.deletedDocGCCount < numNodes);
+        for (int i = 0; i < numNodes; i++) {
+            assertNull(ds.find(Collection.NODES, Utils.getIdFromPath("/n" + i)));
+        }
+        assertTrue(getCompletedShards(ds).isEmpty());
+    }
+
+    @Test
+    public void runningShardsCompleteBeforeFailure() throws Exception {
+        String failingId = Utils.getIdFromPath("/n0");
+        AtomicBoolean armed = new AtomicBoolean();
+        AtomicBoolean blocked = new AtomicBoolean();
+        CountDownLatch blockedStarted = new CountDownLatch(1);
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicInteger activeRemoves = new AtomicInteger();
+        AtomicBoolean blockedCompleted = new AtomicBoolean();
+        DocumentStore ds = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> int remove(Collection<T> collection,
+                                                   Map<String, Long> toRemove) {
+                if (!armed.get()) {
+                    return super.remove(collection, toRemove);
+                }
+                if (toRemove.containsKey(failingId)) {
+                    // fail while another shard is removing documents
+                    awaitUninterruptibly(blockedStarted);
+                    failed.countDown();
+                    throw new DocumentStoreException("remove failed");
+                }
+                if (!blocked.compareAndSet(false, true)) {
+                    return super.remove(collection, toRemove);
+                }
+                activeRemoves.incrementAndGet();
+                try {
+                    blockedStarted.countDown();
+                    awaitUninterruptibly(failed);
+                    // still busy when the failure is reported
+                    Uninterruptibles.sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+                    int num = super.remove(collection, toRemove);
+                    blockedCompleted.set(true);
+                    return num;
+                } finally {
+                    activeRemoves.decrementAndGet();
+                }
+            }
+        };
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setDocumentStore(ds)
+                .setAsyncDelay(0)
+                .getNodeStore();
+        removeNodesOverTime(20);
+
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setOptions(gc.getOptions().withParallelism(2));
+        armed.set(true);
+        try {
+            gc.gc(1, HOURS);
+            fail("must fail with DocumentStoreException");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        // the shard running when the other shard failed must have completed
+        assertEquals(0, activeRemoves.get());
+        assertTrue(blockedCompleted.get());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        Uninterruptibles.awaitUninterruptibly(latch, 10, TimeUnit.SECONDS);
+    }
+
     @Test
     public void gcWithPathsHavingNewLine() throws Exception{
         int noOfDocsToDelete = 200;
@@ -393,6 +530,42 @@ public class VersionGCDeletionTest {
         assertEquals(expected, names);
     }
 
+    /**
+     * Creates nodes and removes them one after another, ten minutes apart.
+     * Afterwards the clock is moved forward, such that all removed nodes are
+     * older than one hour.
+     */
+    private int removeNodesOverTime(int numNodes) throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        for (int i = 0; i < numNodes; i++) {
+            builder.child("n" + i);
+        }
+        merge(store, builder);
+        for (int i = 0; i < numNodes; i++) {
+            builder = store.getRoot().builder();
+            builder.child("n" + i).remove();
+            merge(store, builder);
+            clock.waitUntil(clock.getTime() + MINUTES.toMillis(10));
+        }
+        store.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(2));
+        return numNodes;
+    }
+
+    private static List<String> getCompletedShards(DocumentStore ds) {
+        List<String> shards = Lists.newArrayList();
+        Document settings = ds.find(Collection.SETTINGS,
+                VersionGarbageCollector.SETTINGS_COLLECTION_ID);
+        if (settings != null) {
+            for (String k : settings.keySet()) {
+                if (k.startsWith(VersionGarbageCollector.SETTINGS_COLLECTION_COMPLETED_SHARD_PREFIX)) {
+                    shards.add(k);
+                }
+            }
+        }
+        return shards;
+    }
+
     private void merge(DocumentNodeStore store, NodeBuilder builder)
             throws CommitFailedException {
         store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
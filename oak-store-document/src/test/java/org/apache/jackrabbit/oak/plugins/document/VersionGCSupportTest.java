@@ -29,6 +29,7 @@ import org.apache.jackrabbit.oak.plugins.document.mongo.MongoTestUtils;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoVersionGCSupport;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBVersionGCSupport;
+import org.apache.jackrabbit.oak.plugins.document.util.TimeInterval;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.junit.After;
@@ -126,6 +127,44 @@ public class VersionGCSupportTest {
         assertPossiblyDeleted(51, 60, 0);
     }
 
+    @Test
+    public void getPossiblyDeletedDocsShards() {
+        long offset = SECONDS.toMillis(42);
+        for (int i = 0; i < 20; i++) {
+            Revision r = new Revision(offset + SECONDS.toMillis(i * i), 0, 1);
+            String id = Utils.getIdFromPath("/doc-" + i);
+            ids.add(id);
+            UpdateOp op = new UpdateOp(id, true);
+            NodeDocument.setModified(op, r);
+            NodeDocument.setDeleted(op, r, true);
+            store.create(Collection.NODES, Lists.newArrayList(op));
+        }
+
+        long from = SECONDS.toMillis(3);
+        long to = SECONDS.toMillis(1000);
+        // either counted or not supported by the fixture
+        long count = gcSupport.getPossiblyDeletedDocsCount(from, to);
+        assertTrue(count == 20 || count == -1);
+
+        List<TimeInterval> shards = gcSupport.getPossiblyDeletedDocsShards(from, to, 4);
+        assertTrue(shards.size() > 1);
+        assertTrue(shards.size() <= 4);
+        assertEquals(from, shards.get(0).fromMs);
+        assertEquals(to, shards.get(shards.size() - 1).toMs);
+        int num = 0;
+        long start = from;
+        for (TimeInterval shard : shards) {
+            assertEquals(start, shard.fromMs);
+            start = shard.toMs;
+            num += Iterables.size(gcSupport.getPossiblyDeletedDocs(shard.fromMs, shard.toMs));
+        }
+        assertEquals(20, num);
+
+        // an empty range cannot be split
+        shards = gcSupport.getPossiblyDeletedDocsShards(from, from, 4);
+        assertEquals(1, shards.size());
+    }
+
     @Test
     public void findOldest() {
         // see OAK-8476
@@ -23,6 +23,7 @@ import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentMKBuilderProvider;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -39,6 +40,7 @@ import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -78,6 +80,7 @@ public class ReadOnlyDocumentStoreWrapperTest {
         for (Collection collection : collections) {
             readOnlyStore.find(collection, null);
             readOnlyStore.find(collection, null, 0);
+            readOnlyStore.findAll(collection, Lists.<String>newArrayList(), 0);
 
             readOnlyStore.query(collection, null, null, 0);
             readOnlyStore.query(collection, null, null, null, 0, 0);
@@ -159,6 +162,23 @@ public class ReadOnlyDocumentStoreWrapperTest {
         readOnlyStore.determineServerTimeDifferenceMillis();
     }
 
+    @Test
+    public void findAll() {
+        DocumentStore docStore = new MemoryDocumentStore();
+        List<UpdateOp> ops = Lists.newArrayList();
+        for (String id : new String[]{"1:/a", "1:/b"}) {
+            ops.add(new UpdateOp(id, true));
+        }
+        assertTrue(docStore.create(Collection.NODES, ops));
+
+        DocumentStore readOnlyStore = ReadOnlyDocumentStoreWrapperFactory.getInstance(docStore);
+        List<NodeDocument> docs = readOnlyStore.findAll(Collection.NODES,
+                Lists.newArrayList("1:/b", "1:/missing", "1:/a"), 0);
+        assertEquals(2, docs.size());
+        assertEquals("1:/b", docs.get(0).getId());
+        assertEquals("1:/a", docs.get(1).getId());
+    }
+
     @Test
     public void backgroundRead() throws Exception {
         DocumentStore docStore = new MemoryDocumentStore();
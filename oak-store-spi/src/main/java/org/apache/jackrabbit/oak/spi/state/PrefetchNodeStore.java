@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.state;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A node store that can read a batch of nodes ahead of time. Callers that
+ * know which nodes will be read next, like the query engine iterating over
+ * the result of an index lookup, use this to replace many individual reads
+ * with a single read from the backend.
+ */
+public interface PrefetchNodeStore {
+
+    /**
+     * A prefetcher that does nothing.
+     */
+    PrefetchNodeStore NOOP = paths -> {};
+
+    /**
+     * Prefetch the nodes with the given paths into the caches of the node
+     * store. This is only a hint: implementations may ignore some or all of
+     * the paths, and paths of nodes that do not exist are silently ignored.
+     *
+     * @param paths the paths of the nodes that will be read soon.
+     */
+    void prefetch(@NotNull Iterable<String> paths);
+
+}